@@ -0,0 +1,104 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import org.apache.http.config.ConnectionConfig;
+import org.apache.http.conn.HttpConnectionFactory;
+import org.apache.http.conn.ManagedHttpClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.DefaultHttpResponseParserFactory;
+import org.apache.http.impl.conn.DefaultManagedHttpClientConnection;
+import org.apache.http.io.SessionInputBuffer;
+
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Creates connections for the Apache connector that remember, per thread, which connection last
+ * received a response body. Jersey doesn't expose the connection behind a response, and closing
+ * an Apache response stream reads the rest of the body, so this is how a stream closed early
+ * finds the connection to shut down instead. The connector reads the response on the thread
+ * that hands it to us, so the connection is picked up with {@link #takeReceived()} there.
+ */
+class AbortableConnectionFactory
+    implements HttpConnectionFactory<HttpRoute, ManagedHttpClientConnection> {
+
+  static final AbortableConnectionFactory INSTANCE = new AbortableConnectionFactory();
+
+  private static final AtomicLong COUNTER = new AtomicLong();
+  private static final ThreadLocal<ManagedHttpClientConnection> RECEIVED = new ThreadLocal<>();
+
+  /**
+   * Returns the connection that last received a response body on this thread, or null if there
+   * is none, and forgets it.
+   */
+  static ManagedHttpClientConnection takeReceived() {
+    final ManagedHttpClientConnection connection = RECEIVED.get();
+    RECEIVED.remove();
+    return connection;
+  }
+
+  @Override
+  public ManagedHttpClientConnection create(final HttpRoute route,
+                                            final ConnectionConfig config) {
+    final ConnectionConfig connectionConfig = config != null ? config : ConnectionConfig.DEFAULT;
+    CharsetDecoder decoder = null;
+    CharsetEncoder encoder = null;
+    final Charset charset = connectionConfig.getCharset();
+    if (charset != null) {
+      final CodingErrorAction malformed = connectionConfig.getMalformedInputAction() != null
+                                          ? connectionConfig.getMalformedInputAction()
+                                          : CodingErrorAction.REPORT;
+      final CodingErrorAction unmappable = connectionConfig.getUnmappableInputAction() != null
+                                           ? connectionConfig.getUnmappableInputAction()
+                                           : CodingErrorAction.REPORT;
+      decoder = charset.newDecoder()
+          .onMalformedInput(malformed)
+          .onUnmappableCharacter(unmappable);
+      encoder = charset.newEncoder()
+          .onMalformedInput(malformed)
+          .onUnmappableCharacter(unmappable);
+    }
+    return new Connection("http-outgoing-" + COUNTER.getAndIncrement(),
+                          connectionConfig, decoder, encoder);
+  }
+
+  private static class Connection extends DefaultManagedHttpClientConnection {
+
+    Connection(final String id, final ConnectionConfig config, final CharsetDecoder decoder,
+               final CharsetEncoder encoder) {
+      super(id, config.getBufferSize(), config.getFragmentSizeHint(), decoder, encoder,
+            config.getMessageConstraints(), null, null, null,
+            DefaultHttpResponseParserFactory.INSTANCE);
+    }
+
+    @Override
+    protected InputStream createInputStream(final long len, final SessionInputBuffer inbuffer) {
+      RECEIVED.set(this);
+      return super.createInputStream(len, inbuffer);
+    }
+  }
+}
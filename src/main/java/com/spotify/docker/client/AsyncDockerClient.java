@@ -0,0 +1,471 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+import com.spotify.docker.client.DockerClient.AttachParameter;
+import com.spotify.docker.client.DockerClient.BuildParameter;
+import com.spotify.docker.client.DockerClient.EventsParam;
+import com.spotify.docker.client.DockerClient.ExecParameter;
+import com.spotify.docker.client.DockerClient.ExecStartParameter;
+import com.spotify.docker.client.DockerClient.ListContainersParam;
+import com.spotify.docker.client.DockerClient.ListImagesParam;
+import com.spotify.docker.client.DockerClient.LogsParam;
+import com.spotify.docker.client.DockerClient.LogsParameter;
+import com.spotify.docker.client.messages.AuthConfig;
+import com.spotify.docker.client.messages.Container;
+import com.spotify.docker.client.messages.ContainerConfig;
+import com.spotify.docker.client.messages.ContainerCreation;
+import com.spotify.docker.client.messages.ContainerExit;
+import com.spotify.docker.client.messages.ContainerInfo;
+import com.spotify.docker.client.messages.HostConfig;
+import com.spotify.docker.client.messages.Image;
+import com.spotify.docker.client.messages.ImageInfo;
+import com.spotify.docker.client.messages.Info;
+import com.spotify.docker.client.messages.RemovedImage;
+import com.spotify.docker.client.messages.Version;
+
+import java.io.Closeable;
+import java.io.InputStream;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A non-blocking client for interacting with dockerd. Every operation returns immediately with a
+ * future that completes once docker has responded.
+ *
+ * Note: Futures fail with the same exceptions that the corresponding {@link DockerClient} methods
+ * throw, e.g. {@link ContainerNotFoundException} or {@link DockerRequestException} on unexpected
+ * docker response status codes. Listeners added with a direct executor run on the thread that
+ * completed the request, so they should not block.
+ */
+public interface AsyncDockerClient extends Closeable {
+
+  /**
+   * Ping the docker daemon.
+   *
+   * @see DockerClient#ping()
+   */
+  ListenableFuture<String> ping();
+
+  /**
+   * Get the docker version.
+   */
+  ListenableFuture<Version> version();
+
+  /**
+   * Check auth configuration.
+   */
+  ListenableFuture<Integer> auth(AuthConfig authConfig);
+
+  /**
+   * Get docker instance information.
+   */
+  ListenableFuture<Info> info();
+
+  /**
+   * List docker containers.
+   *
+   * @param params Container listing and filtering options.
+   * @return A future list of containers.
+   */
+  ListenableFuture<List<Container>> listContainers(ListContainersParam... params);
+
+  /**
+   * List docker images.
+   *
+   * @param params Image listing and filtering options.
+   * @return A future list of images.
+   */
+  ListenableFuture<List<Image>> listImages(ListImagesParam... params);
+
+  /**
+   * Inspect a docker container.
+   *
+   * @param containerId The id of the container to inspect.
+   * @return Future info about the container. Fails with {@link ContainerNotFoundException} if
+   * the container was not found (404).
+   */
+  ListenableFuture<ContainerInfo> inspectContainer(String containerId);
+
+  /**
+   * Create a new image from a container's changes.
+   *
+   * @see DockerClient#commitContainer(String, String, String, ContainerConfig, String, String)
+   */
+  ListenableFuture<ContainerCreation> commitContainer(String containerId,
+                                                      String repo,
+                                                      String tag,
+                                                      ContainerConfig config,
+                                                      String comment,
+                                                      String author);
+
+  /**
+   * Inspect a docker container image.
+   *
+   * @param image The image to inspect.
+   * @return Future info about the image. Fails with {@link ImageNotFoundException} if the image
+   * was not found (404).
+   */
+  ListenableFuture<ImageInfo> inspectImage(String image);
+
+  /**
+   * Remove a docker image.
+   *
+   * @param image The image to remove.
+   * @return A future list describing each image which was removed. Fails with
+   * {@link ImageNotFoundException} if the image was not found (404).
+   */
+  ListenableFuture<List<RemovedImage>> removeImage(String image);
+
+  /**
+   * Remove a docker image.
+   *
+   * @param image The image to remove.
+   * @param force Force image removal.
+   * @param noPrune Do not delete untagged parents.
+   * @return A future list describing each image which was removed. Fails with
+   * {@link ImageNotFoundException} if the image was not found (404).
+   */
+  ListenableFuture<List<RemovedImage>> removeImage(String image, boolean force, boolean noPrune);
+
+  /**
+   * Pull a docker container image.
+   *
+   * @param image The image to pull.
+   */
+  ListenableFuture<Void> pull(String image);
+
+  /**
+   * Pull a docker container image, using a custom ProgressHandler. The handler is called on the
+   * thread that reads the progress messages.
+   *
+   * @param image The image to pull.
+   * @param handler The handler to use for processing each progress message received from Docker.
+   */
+  ListenableFuture<Void> pull(String image, ProgressHandler handler);
+
+  /**
+   * Pull a private docker container image.
+   *
+   * @param image The image to pull.
+   * @param authConfig The authentication config needed to pull the image.
+   */
+  ListenableFuture<Void> pull(String image, AuthConfig authConfig);
+
+  /**
+   * Pull a private docker container image, using a custom ProgressHandler.
+   *
+   * @param image The image to pull.
+   * @param authConfig The authentication config needed to pull the image.
+   * @param handler The handler to use for processing each progress message received from Docker.
+   */
+  ListenableFuture<Void> pull(String image, AuthConfig authConfig, ProgressHandler handler);
+
+  /**
+   * Push a docker container image.
+   *
+   * @param image The image to push.
+   */
+  ListenableFuture<Void> push(String image);
+
+  /**
+   * Push a docker container image, using a custom ProgressHandler.
+   *
+   * @param image The image to push.
+   * @param handler The handler to use for processing each progress message received from Docker.
+   */
+  ListenableFuture<Void> push(String image, ProgressHandler handler);
+
+  /**
+   * Tag a docker image.
+   *
+   * @param image The image to tag.
+   * @param name The new name that will be applied to the image.
+   */
+  ListenableFuture<Void> tag(String image, String name);
+
+  /**
+   * Build a docker image.
+   *
+   * @param directory The directory containing the dockerfile.
+   * @param params Additional flags to use during build.
+   * @return The future id of the built image if successful, otherwise null. Fails with an
+   * {@link java.io.IOException} if the directory could not be read.
+   */
+  ListenableFuture<String> build(Path directory, BuildParameter... params);
+
+  /**
+   * Build a docker image.
+   *
+   * @param directory The directory containing the dockerfile.
+   * @param name The repository name and optional tag to apply to the built image.
+   * @param params Additional flags to use during build.
+   * @return The future id of the built image if successful, otherwise null.
+   */
+  ListenableFuture<String> build(Path directory, String name, BuildParameter... params);
+
+  /**
+   * Build a docker image.
+   *
+   * @param directory The directory containing the dockerfile.
+   * @param handler The handler to use for processing each progress message received from Docker.
+   * @param params Additional flags to use during build.
+   * @return The future id of the built image if successful, otherwise null.
+   */
+  ListenableFuture<String> build(Path directory, ProgressHandler handler,
+                                 BuildParameter... params);
+
+  /**
+   * Build a docker image.
+   *
+   * @param directory The directory containing the dockerfile.
+   * @param name The repository name and optional tag to apply to the built image.
+   * @param handler The handler to use for processing each progress message received from Docker.
+   * @param params Additional flags to use during build.
+   * @return The future id of the built image if successful, otherwise null.
+   */
+  ListenableFuture<String> build(Path directory, String name, ProgressHandler handler,
+                                 BuildParameter... params);
+
+  /**
+   * Create a docker container.
+   *
+   * @param config The container configuration.
+   * @return Future container creation result. Fails with {@link ImageNotFoundException} if the
+   * image was not found (404).
+   */
+  ListenableFuture<ContainerCreation> createContainer(ContainerConfig config);
+
+  /**
+   * Create a docker container.
+   *
+   * @param config The container configuration.
+   * @param name   The container name.
+   * @return Future container creation result. Fails with {@link ImageNotFoundException} if the
+   * image was not found (404).
+   */
+  ListenableFuture<ContainerCreation> createContainer(ContainerConfig config, String name);
+
+  /**
+   * Start a docker container.
+   *
+   * @param containerId The id of the container to start.
+   */
+  ListenableFuture<Void> startContainer(String containerId);
+
+  /**
+   * Start a docker container.
+   *
+   * @param containerId The id of the container to start.
+   * @param hostConfig  The docker host configuration to use when starting the container.
+   */
+  ListenableFuture<Void> startContainer(String containerId, HostConfig hostConfig);
+
+  /**
+   * Stop a docker container by sending a SIGTERM, and following up with a SIGKILL if the
+   * container doesn't exit gracefully and in a timely manner.
+   *
+   * @param containerId The id of the container to stop.
+   * @param secondsToWaitBeforeKilling Time to wait after SIGTERM before sending SIGKILL.
+   */
+  ListenableFuture<Void> stopContainer(String containerId, int secondsToWaitBeforeKilling);
+
+  /**
+   * Pause a docker container.
+   *
+   * @param containerId The id of the container to pause.
+   */
+  ListenableFuture<Void> pauseContainer(String containerId);
+
+  /**
+   * Unpause a docker container.
+   *
+   * @param containerId The id of the container to unpause.
+   */
+  ListenableFuture<Void> unpauseContainer(String containerId);
+
+  /**
+   * Restart a docker container with a 10 second default wait.
+   *
+   * @param containerId The id of the container to restart.
+   */
+  ListenableFuture<Void> restartContainer(String containerId);
+
+  /**
+   * Restart a docker container.
+   *
+   * @param containerId                The id of the container to restart.
+   * @param secondsToWaitBeforeRestart number of seconds to wait before killing the container.
+   */
+  ListenableFuture<Void> restartContainer(String containerId, int secondsToWaitBeforeRestart);
+
+  /**
+   * Wait for a docker container to exit.
+   *
+   * @param containerId The id of the container to wait for.
+   * @return Future exit response with status code.
+   */
+  ListenableFuture<ContainerExit> waitContainer(String containerId);
+
+  /**
+   * Wait for several docker containers to exit. Unlike {@link #waitContainer(String)}, this
+   * doesn't hold a connection open per container: all containers are waited for by following
+   * the daemon's event stream, and inspected once they die to get their exit code. At most
+   * {@code bulkConcurrency} of these inspects run at a time.
+   * <p>
+   * A container that is removed before it could be inspected after dying, e.g. because it was
+   * run with {@code --rm}, fails with {@link ContainerRemovedException}, since its exit code is
+   * lost. A container that doesn't exist when it's registered fails with
+   * {@link ContainerNotFoundException}.
+   *
+   * @param containerIds The ids of the containers to wait for.
+   * @return A future exit response for each container, by id.
+   */
+  Map<String, ListenableFuture<ContainerExit>> waitContainers(Collection<String> containerIds);
+
+  /**
+   * Kill a docker container.
+   *
+   * @param containerId The id of the container to kill.
+   */
+  ListenableFuture<Void> killContainer(String containerId);
+
+  /**
+   * Remove a docker container.
+   *
+   * @param containerId The id of the container to remove.
+   */
+  ListenableFuture<Void> removeContainer(String containerId);
+
+  /**
+   * Remove a docker container.
+   *
+   * @param containerId   The id of the container to remove.
+   * @param removeVolumes Whether to remove volumes as well.
+   */
+  ListenableFuture<Void> removeContainer(String containerId, boolean removeVolumes);
+
+  /**
+   * Inspect several docker containers, a bounded number at a time.
+   *
+   * @see DockerClient#inspectContainers(Collection)
+   */
+  ListenableFuture<BulkResult<ContainerInfo>> inspectContainers(Collection<String> containerIds);
+
+  /**
+   * Stop several docker containers, a bounded number at a time.
+   *
+   * @see DockerClient#stopContainers(Collection, int)
+   */
+  ListenableFuture<BulkResult<Void>> stopContainers(Collection<String> containerIds,
+                                                    int secondsToWaitBeforeKilling);
+
+  /**
+   * Kill several docker containers, a bounded number at a time.
+   *
+   * @see DockerClient#killContainers(Collection)
+   */
+  ListenableFuture<BulkResult<Void>> killContainers(Collection<String> containerIds);
+
+  /**
+   * Remove several docker containers, a bounded number at a time.
+   *
+   * @see DockerClient#removeContainers(Collection, boolean)
+   */
+  ListenableFuture<BulkResult<Void>> removeContainers(Collection<String> containerIds,
+                                                      boolean removeVolumes);
+
+  /**
+   * Export a docker container as a tar archive.
+   *
+   * @param containerId The id of the container to export.
+   * @return A future stream in tar format.
+   */
+  ListenableFuture<InputStream> exportContainer(String containerId);
+
+  /**
+   * Copies some files out of a container.
+   *
+   * @see DockerClient#copyContainer(String, String)
+   */
+  ListenableFuture<InputStream> copyContainer(String containerId, String path);
+
+  /**
+   * Get docker container logs.
+   *
+   * @param containerId The id of the container to get logs for.
+   * @param params      Params for controlling what streams to get and whether to tail or not.
+   * @return A future log message stream.
+   */
+  ListenableFuture<LogStream> logs(String containerId, LogsParameter... params);
+
+  /**
+   * Get docker container logs.
+   *
+   * @see DockerClient#logs(String, LogsParam, LogsParam...)
+   */
+  ListenableFuture<LogStream> logs(String containerId, LogsParam param, LogsParam... params);
+
+  /**
+   * Sets up an exec instance in a running container id.
+   *
+   * @param containerId The id of the container
+   * @param cmd shell command
+   * @return Future exec id
+   */
+  ListenableFuture<String> execCreate(String containerId, String[] cmd, ExecParameter... params);
+
+  /**
+   * Starts a previously set up exec instance id.
+   *
+   * @param execId exec id
+   * @return Future exec output. Fails with {@link ExecNotFoundException} if the exec was not
+   * found (404).
+   */
+  ListenableFuture<LogStream> execStart(String execId, ExecStartParameter... params);
+
+  /**
+   * Attach to the container id.
+   *
+   * @param containerId The id of the container to attach to.
+   * @param params      Params for controlling what streams to get.
+   * @return A future log message stream.
+   */
+  ListenableFuture<LogStream> attachContainer(String containerId, AttachParameter... params);
+
+  /**
+   * Get a stream of events from the daemon.
+   *
+   * @see DockerClient#events(EventsParam...)
+   */
+  ListenableFuture<EventStream> events(EventsParam... params);
+
+  /**
+   * Closes any and all underlying connections to docker, and release resources.
+   */
+  @Override
+  void close();
+}
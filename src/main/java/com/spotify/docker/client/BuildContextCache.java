@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * An on-disk cache of the compressed tar entries of build context files, so that a file that
+ * hasn't changed since the last build doesn't have to be read or compressed again.
+ *
+ * With a cache, every file of a context is compressed as a gzip member of its own, holding its
+ * tar header and content. Concatenated gzip members form a valid gzip stream, so the member
+ * from the cache is sent as is. A file is considered unchanged while its path, name in the
+ * context, size, modification time and mode are, which is how {@code make} and the docker CLI
+ * decide too.
+ *
+ * There is one cache file per context file and compression level, named after a hash of both.
+ * It starts with the full key, so a changed file is a miss and its cache file is replaced.
+ * Cache files are replaced atomically, so builds may share a cache directory, and it's safe to
+ * delete the directory at any time. Entries of files that no longer exist are not cleaned up.
+ */
+class BuildContextCache {
+
+  private static final Logger log = LoggerFactory.getLogger(BuildContextCache.class);
+
+  private static final int FORMAT_VERSION = 1;
+
+  private final Path directory;
+
+  BuildContextCache(final Path directory) {
+    this.directory = directory;
+  }
+
+  /**
+   * Look up the entry of a file in the context.
+   *
+   * @param file  The file.
+   * @param name  Its name in the context.
+   * @param attrs Its attributes, as read while walking the context.
+   * @param mode  Its mode in the tar entry.
+   * @param level The gzip level it's compressed at.
+   */
+  Entry entry(final Path file, final String name, final BasicFileAttributes attrs,
+              final int mode, final int level) {
+    final String path = file.toAbsolutePath().toString();
+    final String id = Hashing.sha1()
+        .hashString(path + '\0' + name + '\0' + level, UTF_8)
+        .toString();
+    final String key = FORMAT_VERSION + "\0" + path + '\0' + name + '\0' + level + '\0'
+                       + attrs.size() + '\0' + attrs.lastModifiedTime().to(NANOSECONDS) + '\0'
+                       + mode;
+    return new Entry(directory.resolve(id.substring(0, 2)).resolve(id), key);
+  }
+
+  class Entry {
+
+    private final Path path;
+    private final String key;
+
+    private Entry(final Path path, final String key) {
+      this.path = path;
+      this.key = key;
+    }
+
+    /**
+     * Write the cached gzip member to {@code out} if there is one for the file as it is now.
+     *
+     * @return true if it was written, false if the file has to be compressed.
+     */
+    boolean transferTo(final OutputStream out) throws IOException {
+      final InputStream in;
+      try {
+        in = Files.newInputStream(path);
+      } catch (NoSuchFileException e) {
+        return false;
+      } catch (IOException e) {
+        log.debug("Can't read build context cache file {}", path, e);
+        return false;
+      }
+      try (DataInputStream dataIn = new DataInputStream(new BufferedInputStream(in))) {
+        final String cachedKey;
+        try {
+          cachedKey = dataIn.readUTF();
+        } catch (IOException e) {
+          log.debug("Ignoring unreadable build context cache file {}", path, e);
+          return false;
+        }
+        if (!cachedKey.equals(key)) {
+          return false;
+        }
+        // Nothing has been written yet if reading fails above, but from here on the failure
+        // has to fail the build
+        ByteStreams.copy(dataIn, out);
+        return true;
+      }
+    }
+
+    /**
+     * Returns a stream that writes a freshly compressed gzip member to {@code out} and keeps a
+     * copy of it to store with {@link Writer#commit()}.
+     */
+    Writer writer(final OutputStream out) throws IOException {
+      return new Writer(out);
+    }
+
+    /**
+     * Passes a gzip member through to the destination and copies it to a temporary file in the
+     * cache. Closing it leaves the destination open. Failing to write to the cache never fails
+     * the build; the member just isn't cached.
+     */
+    class Writer extends OutputStream {
+
+      private final OutputStream out;
+      private Path temp;
+      private DataOutputStream cacheOut;
+
+      private Writer(final OutputStream out) {
+        this.out = out;
+        try {
+          Files.createDirectories(path.getParent());
+          temp = Files.createTempFile(path.getParent(), path.getFileName().toString(), ".tmp");
+          cacheOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)));
+          cacheOut.writeUTF(key);
+        } catch (IOException e) {
+          cacheFailed(e);
+        }
+      }
+
+      @Override
+      public void write(final int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+      }
+
+      @Override
+      public void write(final byte[] b, final int off, final int len) throws IOException {
+        out.write(b, off, len);
+        if (cacheOut != null) {
+          try {
+            cacheOut.write(b, off, len);
+          } catch (IOException e) {
+            cacheFailed(e);
+          }
+        }
+      }
+
+      @Override
+      public void close() {
+        if (cacheOut != null) {
+          try {
+            cacheOut.close();
+          } catch (IOException e) {
+            cacheFailed(e);
+          }
+        }
+      }
+
+      /**
+       * Store the member that was written, once it's complete and this stream is closed.
+       */
+      void commit() {
+        if (cacheOut == null) {
+          return;
+        }
+        try {
+          Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING,
+                     StandardCopyOption.ATOMIC_MOVE);
+          cacheOut = null;
+          temp = null;
+        } catch (IOException e) {
+          cacheFailed(e);
+        }
+      }
+
+      /**
+       * Throw away the copy of the member unless it was committed.
+       */
+      void discard() {
+        if (cacheOut != null) {
+          close();
+          delete();
+        }
+      }
+
+      private void cacheFailed(final IOException e) {
+        log.warn("Not caching build context file in {}", path, e);
+        if (cacheOut != null) {
+          try {
+            cacheOut.close();
+          } catch (IOException ignored) {
+            // deleted below
+          }
+        }
+        delete();
+      }
+
+      private void delete() {
+        cacheOut = null;
+        if (temp != null) {
+          try {
+            Files.deleteIfExists(temp);
+          } catch (IOException e) {
+            log.debug("Failed to delete {}", temp, e);
+          }
+          temp = null;
+        }
+      }
+    }
+  }
+}
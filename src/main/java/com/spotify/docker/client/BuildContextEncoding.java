@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import java.util.zip.Deflater;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * How the tarball of a build context is encoded on its way to the daemon, which accepts it
+ * either uncompressed or gzipped. Compressing costs CPU on both ends and only pays off when
+ * bandwidth to the daemon is limited, so over a local unix socket a plain tar is faster.
+ *
+ * @see DefaultDockerClient.Builder#buildContextEncoding(BuildContextEncoding)
+ */
+public final class BuildContextEncoding {
+
+  private static final int NO_COMPRESSION = -2;
+  private static final int AUTO = -3;
+
+  private static final BuildContextEncoding TAR = new BuildContextEncoding(NO_COMPRESSION);
+  private static final BuildContextEncoding GZIP =
+      new BuildContextEncoding(Deflater.DEFAULT_COMPRESSION);
+  private static final BuildContextEncoding DETECT = new BuildContextEncoding(AUTO);
+
+  private final int level;
+
+  private BuildContextEncoding(final int level) {
+    this.level = level;
+  }
+
+  /**
+   * Send the tarball uncompressed.
+   */
+  public static BuildContextEncoding tar() {
+    return TAR;
+  }
+
+  /**
+   * Gzip the tarball at the default compression level.
+   */
+  public static BuildContextEncoding gzip() {
+    return GZIP;
+  }
+
+  /**
+   * Gzip the tarball at {@code level}, from 1 for the fastest to 9 for the best compression.
+   */
+  public static BuildContextEncoding gzip(final int level) {
+    checkArgument(level >= Deflater.BEST_SPEED && level <= Deflater.BEST_COMPRESSION,
+                  "level must be between 1 and 9");
+    return new BuildContextEncoding(level);
+  }
+
+  /**
+   * Send the tarball uncompressed to a daemon on a unix socket, and gzip it for any other
+   * endpoint.
+   */
+  public static BuildContextEncoding auto() {
+    return DETECT;
+  }
+
+  /**
+   * Resolve {@link #auto()} for an endpoint with the given URI scheme.
+   */
+  BuildContextEncoding forScheme(final String scheme) {
+    if (level != AUTO) {
+      return this;
+    }
+    return "unix".equals(scheme) ? TAR : GZIP;
+  }
+
+  boolean isCompressed() {
+    checkState(level != AUTO, "auto must be resolved for an endpoint first");
+    return level != NO_COMPRESSION;
+  }
+
+  /**
+   * The gzip level, or {@link Deflater#DEFAULT_COMPRESSION}.
+   */
+  int level() {
+    return level;
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    return o instanceof BuildContextEncoding && ((BuildContextEncoding) o).level == level;
+  }
+
+  @Override
+  public int hashCode() {
+    return level;
+  }
+
+  @Override
+  public String toString() {
+    if (level == NO_COMPRESSION) {
+      return "tar";
+    } else if (level == AUTO) {
+      return "auto";
+    }
+    return level == Deflater.DEFAULT_COMPRESSION ? "gzip" : "gzip(" + level + ")";
+  }
+}
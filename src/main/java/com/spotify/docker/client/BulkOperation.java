@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import com.google.common.base.Function;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.collect.Maps.newLinkedHashMap;
+import static com.google.common.collect.Sets.newLinkedHashSet;
+
+/**
+ * Runs an operation for each of a set of containers, with at most a fixed number of them in
+ * flight at a time. A new request is started whenever one completes, so the operation is limited
+ * by the concurrency rather than by round trips.
+ */
+class BulkOperation<T> {
+
+  /**
+   * Placeholder for null results, which the concurrent map can't hold.
+   */
+  private static final Object NULL = new Object();
+
+  private final Function<String, ListenableFuture<T>> operation;
+  private final int concurrency;
+  private final Set<String> ids;
+  private final Iterator<String> next;
+  private final ConcurrentMap<String, Object> outcomes = new ConcurrentHashMap<>();
+  private final SettableFuture<BulkResult<T>> result = SettableFuture.create();
+
+  private final AtomicInteger draining = new AtomicInteger();
+  private final AtomicInteger remaining;
+  private int inFlight;
+
+  private BulkOperation(final Iterable<String> ids, final int concurrency,
+                        final Function<String, ListenableFuture<T>> operation) {
+    checkArgument(concurrency > 0, "concurrency must be positive");
+    this.ids = new LinkedHashSet<>();
+    for (final String id : ids) {
+      this.ids.add(id);
+    }
+    this.next = this.ids.iterator();
+    this.concurrency = concurrency;
+    this.operation = operation;
+    this.remaining = new AtomicInteger(this.ids.size());
+  }
+
+  /**
+   * Run {@code operation} for each ID, at most {@code concurrency} at a time.
+   */
+  static <T> ListenableFuture<BulkResult<T>> run(
+      final Iterable<String> ids, final int concurrency,
+      final Function<String, ListenableFuture<T>> operation) {
+    final BulkOperation<T> bulk = new BulkOperation<>(ids, concurrency, operation);
+    if (bulk.ids.isEmpty()) {
+      bulk.finish();
+    } else {
+      bulk.drain();
+    }
+    return bulk.result;
+  }
+
+  /**
+   * Start requests until {@code concurrency} are in flight. Completions that happen on this
+   * thread, e.g. because the result was cached, loop here instead of recursing.
+   */
+  private void drain() {
+    if (draining.getAndIncrement() != 0) {
+      return;
+    }
+    do {
+      String id;
+      while ((id = take()) != null) {
+        start(id);
+      }
+    } while (draining.decrementAndGet() != 0);
+  }
+
+  private synchronized String take() {
+    if (inFlight >= concurrency || !next.hasNext()) {
+      return null;
+    }
+    inFlight++;
+    return next.next();
+  }
+
+  private synchronized void done() {
+    inFlight--;
+  }
+
+  private void start(final String id) {
+    ListenableFuture<T> future;
+    try {
+      future = operation.apply(id);
+    } catch (RuntimeException e) {
+      future = Futures.immediateFailedFuture(e);
+    }
+    Futures.addCallback(future, new FutureCallback<T>() {
+      @Override
+      public void onSuccess(final T value) {
+        complete(id, value == null ? NULL : value);
+      }
+
+      @Override
+      public void onFailure(final Throwable t) {
+        complete(id, t instanceof ContainerNotFoundException
+                     ? new NotFound() : new Failure(t));
+      }
+    });
+  }
+
+  private void complete(final String id, final Object outcome) {
+    outcomes.put(id, outcome);
+    done();
+    if (remaining.decrementAndGet() == 0) {
+      finish();
+    } else {
+      drain();
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  private void finish() {
+    final Map<String, T> successes = newLinkedHashMap();
+    final Set<String> notFound = newLinkedHashSet();
+    final Map<String, Throwable> failures = newLinkedHashMap();
+    for (final String id : ids) {
+      final Object outcome = outcomes.get(id);
+      if (outcome instanceof NotFound) {
+        notFound.add(id);
+      } else if (outcome instanceof Failure) {
+        failures.put(id, ((Failure) outcome).cause);
+      } else {
+        successes.put(id, outcome == NULL ? null : (T) outcome);
+      }
+    }
+    result.set(new BulkResult<>(successes, notFound, failures));
+  }
+
+  private static class NotFound {
+  }
+
+  private static class Failure {
+
+    private final Throwable cause;
+
+    Failure(final Throwable cause) {
+      this.cause = cause;
+    }
+  }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import com.google.common.base.Objects;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The outcome of a bulk operation such as {@link DockerClient#removeContainers}, by container
+ * ID. Every ID ends up in exactly one of {@link #successes()}, {@link #notFound()} or
+ * {@link #failures()}, in the order the IDs were given.
+ *
+ * @param <T> The result of the operation for a single container, or {@link Void}.
+ */
+public class BulkResult<T> {
+
+  private final Map<String, T> successes;
+  private final Set<String> notFound;
+  private final Map<String, Throwable> failures;
+
+  BulkResult(final Map<String, T> successes, final Set<String> notFound,
+             final Map<String, Throwable> failures) {
+    this.successes = Collections.unmodifiableMap(successes);
+    this.notFound = Collections.unmodifiableSet(notFound);
+    this.failures = Collections.unmodifiableMap(failures);
+  }
+
+  /**
+   * The results of the containers the operation succeeded for. Values are null for operations
+   * that don't return anything.
+   */
+  public Map<String, T> successes() {
+    return successes;
+  }
+
+  /**
+   * The containers that don't exist.
+   */
+  public Set<String> notFound() {
+    return notFound;
+  }
+
+  /**
+   * The containers the operation failed for, for any other reason than the container not
+   * existing.
+   */
+  public Map<String, Throwable> failures() {
+    return failures;
+  }
+
+  /**
+   * Returns true if the operation succeeded for every container.
+   */
+  public boolean isSuccessful() {
+    return notFound.isEmpty() && failures.isEmpty();
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+        .add("successes", successes.keySet())
+        .add("notFound", notFound)
+        .add("failures", failures)
+        .toString();
+  }
+}
@@ -24,12 +24,16 @@ package com.spotify.docker.client;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
 import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipParameters;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.nio.file.FileSystems;
 import java.nio.file.FileVisitOption;
 import java.nio.file.FileVisitResult;
@@ -43,13 +47,16 @@ import java.nio.file.attribute.PosixFileAttributes;
 import java.nio.file.attribute.PosixFilePermission;
 import java.util.EnumSet;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 import static org.apache.commons.compress.archivers.tar.TarArchiveOutputStream.BIGNUMBER_POSIX;
 import static org.apache.commons.compress.archivers.tar.TarArchiveOutputStream.LONGFILE_POSIX;
 
 /**
  * This helper class is used during the docker build command to create a gzip tarball of a directory
- * containing a Dockerfile.
+ * containing a Dockerfile, either as a temporary file or written straight to a stream. A stream
+ * may also be sent uncompressed, see {@link BuildContextEncoding}. Files matched by the
+ * directory's {@code .dockerignore} are left out, see {@link DockerIgnore}.
  */
 class CompressedDirectory {
 
@@ -68,6 +75,14 @@ class CompressedDirectory {
    */
   private static final String POSIX_FILE_VIEW = "posix";
 
+  /**
+   * Size of the buffer between the compressor and the destination stream. The compressor writes
+   * in small pieces, and every write to a chunked request body becomes a chunk.
+   */
+  static final int BUFFER_SIZE = 64 * 1024;
+
+  private static final int RECORD_SIZE = 512;
+
   /**
    * This method creates a gzip tarball of the specified directory. File permissions will be
    * retained. The file will be created in a temporary directory using the
@@ -95,23 +110,90 @@ class CompressedDirectory {
   public static File create(final Path directory) throws IOException {
     final File file = File.createTempFile("docker-client-", ".tar.gz");
 
-    try (FileOutputStream fileOut = new FileOutputStream(file);
-         GzipCompressorOutputStream gzipOut = new GzipCompressorOutputStream(fileOut);
-         TarArchiveOutputStream tarOut = new TarArchiveOutputStream(gzipOut)) {
+    try (FileOutputStream fileOut = new FileOutputStream(file)) {
+      write(directory, fileOut);
+    } catch (Throwable t) {
+      // If an error occurs, delete temporary file before rethrowing exception.
+      delete(file);
+      throw t;
+    }
+
+    return file;
+  }
+
+  /**
+   * Writes a gzip tarball of the specified directory to {@code out} while the directory is
+   * walked, so that nothing is staged on disk. File permissions will be retained. At most
+   * {@link #BUFFER_SIZE} bytes of compressed output are held before being written to
+   * {@code out}, which is flushed but not closed.
+   *
+   * @param directory the directory to compress
+   * @param out the stream to write the gzip tarball to
+   * @throws IOException
+   */
+  static void write(final Path directory, final OutputStream out) throws IOException {
+    write(directory, out, BuildContextEncoding.gzip(), null, null);
+  }
+
+  /**
+   * Like {@link #write(Path, OutputStream)}, but encodes the tarball as {@code encoding} says.
+   * Gzip compression runs on {@code pool} with a {@link ParallelGzipOutputStream} unless it's
+   * null. If {@code cache} isn't null and the tarball is compressed, every file becomes a gzip
+   * member of its own that is taken from the cache while the file is unchanged.
+   */
+  static void write(final Path directory, final OutputStream out,
+                    final BuildContextEncoding encoding, final ForkJoinPool pool,
+                    final BuildContextCache cache)
+      throws IOException {
+    final BufferedOutputStream bufferedOut =
+        new BufferedOutputStream(new UnclosableOutputStream(out), BUFFER_SIZE);
+    if (cache != null && encoding.isCompressed()) {
+      writeCached(directory, bufferedOut, encoding, pool, cache);
+      return;
+    }
+    try (OutputStream encodedOut = encode(bufferedOut, encoding, pool);
+         TarArchiveOutputStream tarOut = new TarArchiveOutputStream(encodedOut)) {
       tarOut.setLongFileMode(LONGFILE_POSIX);
       tarOut.setBigNumberMode(BIGNUMBER_POSIX);
       Files.walkFileTree(directory,
                          EnumSet.of(FileVisitOption.FOLLOW_LINKS),
                          Integer.MAX_VALUE,
-                         new Visitor(directory, tarOut));
+                         new Visitor(directory, DockerIgnore.load(directory), tarOut));
+    }
+  }
 
-    } catch (Throwable t) {
-      // If an error occurs, delete temporary file before rethrowing exception.
-      delete(file);
-      throw t;
+  private static void writeCached(final Path directory, final OutputStream out,
+                                  final BuildContextEncoding encoding, final ForkJoinPool pool,
+                                  final BuildContextCache cache) throws IOException {
+    final MemberOutputStream members = new MemberOutputStream();
+    // Without padding to a block size, the end of the archive doesn't depend on which files
+    // were spliced in from the cache
+    try (TarArchiveOutputStream tarOut = new TarArchiveOutputStream(members, RECORD_SIZE)) {
+      tarOut.setLongFileMode(LONGFILE_POSIX);
+      tarOut.setBigNumberMode(BIGNUMBER_POSIX);
+      Files.walkFileTree(directory,
+                         EnumSet.of(FileVisitOption.FOLLOW_LINKS),
+                         Integer.MAX_VALUE,
+                         new CachingVisitor(directory, DockerIgnore.load(directory), tarOut,
+                                            members, out, encoding, pool, cache));
+      // The end of archive records go in a member of their own
+      try (OutputStream member = encode(out, encoding, pool)) {
+        members.target = member;
+        tarOut.finish();
+      }
     }
+  }
 
-    return file;
+  private static OutputStream encode(final OutputStream out, final BuildContextEncoding encoding,
+                                     final ForkJoinPool pool) throws IOException {
+    if (!encoding.isCompressed()) {
+      return out;
+    } else if (pool != null) {
+      return new ParallelGzipOutputStream(out, pool, encoding.level());
+    }
+    final GzipParameters parameters = new GzipParameters();
+    parameters.setCompressionLevel(encoding.level());
+    return new GzipCompressorOutputStream(out, parameters);
   }
 
   /**
@@ -139,28 +221,91 @@ class CompressedDirectory {
     return deleted;
   }
 
+  /**
+   * Lets the destination stream outlive the compressor streams wrapped around it.
+   */
+  private static class UnclosableOutputStream extends FilterOutputStream {
+
+    UnclosableOutputStream(final OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+      out.write(b, off, len);
+    }
+
+    @Override
+    public void close() throws IOException {
+      out.flush();
+    }
+  }
+
+  /**
+   * Passes the tar stream on to the gzip member of the file that is being added.
+   */
+  private static class MemberOutputStream extends OutputStream {
+
+    private OutputStream target;
+
+    @Override
+    public void write(final int b) throws IOException {
+      target.write(b);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+      target.write(b, off, len);
+    }
+
+    @Override
+    public void close() {
+      // Every member is closed on its own
+    }
+  }
+
   private static class Visitor extends SimpleFileVisitor<Path> {
 
     private final Path root;
+    private final DockerIgnore ignore;
     private final TarArchiveOutputStream tarStream;
 
-    private Visitor(final Path root, final TarArchiveOutputStream tarStream) {
+    private Visitor(final Path root, final DockerIgnore ignore,
+                    final TarArchiveOutputStream tarStream) {
       this.root = root;
+      this.ignore = ignore;
       this.tarStream = tarStream;
     }
 
     @Override
-    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-      final TarArchiveEntry entry = new TarArchiveEntry(file.toFile());
+    public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+      // Don't even list directories that are ignored as a whole, like .git or node_modules
+      if (!ignore.isEmpty() && !dir.equals(root)
+          && ignore.isPrunable(DockerIgnore.relativePath(root, dir))) {
+        return FileVisitResult.SKIP_SUBTREE;
+      }
+      return FileVisitResult.CONTINUE;
+    }
 
+    @Override
+    public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+      if (!ignore.isEmpty() && ignore.isExcluded(DockerIgnore.relativePath(root, file))) {
+        return FileVisitResult.CONTINUE;
+      }
       final Path relativePath = root.relativize(file);
-      entry.setName(relativePath.toString());
-      entry.setMode(getFileMode(file));
+      addFile(file, attrs, relativePath.toString(), getFileMode(file));
+      return FileVisitResult.CONTINUE;
+    }
+
+    void addFile(final Path file, final BasicFileAttributes attrs, final String name,
+                 final int mode) throws IOException {
+      final TarArchiveEntry entry = new TarArchiveEntry(file.toFile());
+      entry.setName(name);
+      entry.setMode(mode);
       entry.setSize(attrs.size());
       tarStream.putArchiveEntry(entry);
       Files.copy(file, tarStream);
       tarStream.closeArchiveEntry();
-      return FileVisitResult.CONTINUE;
     }
 
     private static int getFileMode(Path file) throws IOException {
@@ -214,4 +359,52 @@ class CompressedDirectory {
     }
 
   }
+
+  /**
+   * Adds every file as a gzip member of its own, from the cache if it has the file as it is
+   * now, or else freshly compressed and stored in the cache.
+   */
+  private static class CachingVisitor extends Visitor {
+
+    private final MemberOutputStream members;
+    private final OutputStream out;
+    private final BuildContextEncoding encoding;
+    private final ForkJoinPool pool;
+    private final BuildContextCache cache;
+
+    private CachingVisitor(final Path root, final DockerIgnore ignore,
+                           final TarArchiveOutputStream tarStream,
+                           final MemberOutputStream members, final OutputStream out,
+                           final BuildContextEncoding encoding, final ForkJoinPool pool,
+                           final BuildContextCache cache) {
+      super(root, ignore, tarStream);
+      this.members = members;
+      this.out = out;
+      this.encoding = encoding;
+      this.pool = pool;
+      this.cache = cache;
+    }
+
+    @Override
+    void addFile(final Path file, final BasicFileAttributes attrs, final String name,
+                 final int mode) throws IOException {
+      final BuildContextCache.Entry cached =
+          cache.entry(file, name, attrs, mode, encoding.level());
+      if (cached.transferTo(out)) {
+        return;
+      }
+      final BuildContextCache.Entry.Writer writer = cached.writer(out);
+      try {
+        try (OutputStream member = encode(writer, encoding, pool)) {
+          members.target = member;
+          super.addFile(file, attrs, name, mode);
+        } finally {
+          members.target = null;
+        }
+        writer.commit();
+      } finally {
+        writer.discard();
+      }
+    }
+  }
 }
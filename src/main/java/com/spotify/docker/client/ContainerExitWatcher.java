@@ -0,0 +1,374 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.spotify.docker.client.messages.ContainerExit;
+import com.spotify.docker.client.messages.ContainerInfo;
+import com.spotify.docker.client.messages.ContainerState;
+import com.spotify.docker.client.messages.DockerTimestamp;
+import com.spotify.docker.client.messages.Event;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Throwables.propagateIfInstanceOf;
+import static com.spotify.docker.client.DockerClient.EventsParam.event;
+import static com.spotify.docker.client.DockerClient.EventsParam.since;
+import static com.spotify.docker.client.DockerClient.EventsParam.until;
+import static java.lang.System.currentTimeMillis;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Waits for any number of containers to exit using a single event stream, instead of holding
+ * a connection per container open on {@code /containers/{id}/wait}.
+ *
+ * A container is inspected when it's registered and again when it dies, to get its exit code.
+ * At most {@code inspectConcurrency} inspects are in flight at a time, and further ones are
+ * queued, so waiting for thousands of containers doesn't flood the daemon. If a container is
+ * removed before it could be inspected after dying, e.g. because it was run with {@code --rm},
+ * its exit code is lost and its future fails with {@link ContainerRemovedException}.
+ * Like {@code /containers/{id}/wait}, waiting for a container that hasn't been started yet
+ * lasts until it has been started and exits.
+ * The event stream is followed in short windows while there are containers to wait for, so its
+ * connection is given back once there are none. If the stream fails, every container that's
+ * still being waited for is inspected again to catch exits that happened in the meantime.
+ */
+class ContainerExitWatcher implements Closeable {
+
+  private static final Logger log = LoggerFactory.getLogger(ContainerExitWatcher.class);
+
+  private static final Pattern CONTAINER_ID = Pattern.compile("[0-9a-f]{64}");
+
+  private static final long WINDOW_MILLIS = SECONDS.toMillis(5);
+  private static final long RETRY_DELAY_MILLIS = SECONDS.toMillis(1);
+  private static final long CLOCK_SKEW_TOLERANCE_MILLIS = SECONDS.toMillis(1);
+
+  private final AsyncDockerClient docker;
+  private final ExecutorService executor;
+  private final ConcurrentMap<String, SettableFuture<ContainerExit>> pending =
+      new ConcurrentHashMap<>();
+
+  private final int inspectConcurrency;
+  private final Map<String, SettableFuture<ContainerInfo>> inspects = new LinkedHashMap<>();
+  private final AtomicInteger draining = new AtomicInteger();
+  private int inspecting;
+
+  private final Object lock = new Object();
+  private boolean following;
+  private volatile boolean closed;
+
+  ContainerExitWatcher(final AsyncDockerClient docker, final int inspectConcurrency) {
+    checkArgument(inspectConcurrency > 0, "inspectConcurrency must be positive");
+    this.docker = docker;
+    this.inspectConcurrency = inspectConcurrency;
+    this.executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+        .setDaemon(true)
+        .setNameFormat("docker-exit-watcher-%d")
+        .build());
+  }
+
+  /**
+   * Returns a future that completes when the container exits.
+   *
+   * @param containerId The ID or name of the container.
+   */
+  ListenableFuture<ContainerExit> watch(final String containerId) {
+    if (CONTAINER_ID.matcher(containerId).matches()) {
+      return watchId(containerId);
+    }
+    // Events only carry full IDs
+    return Futures.transform(
+        inspect(containerId),
+        new AsyncFunction<ContainerInfo, ContainerExit>() {
+          @Override
+          public ListenableFuture<ContainerExit> apply(final ContainerInfo info) {
+            return watchId(info.id());
+          }
+        });
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    executor.shutdownNow();
+    for (final SettableFuture<ContainerExit> future : pending.values()) {
+      future.setException(new DockerException("Docker client closed"));
+    }
+  }
+
+  private ListenableFuture<ContainerExit> watchId(final String id) {
+    if (closed) {
+      return Futures.immediateFailedFuture(new DockerException("Docker client closed"));
+    }
+    final SettableFuture<ContainerExit> future = SettableFuture.create();
+    final SettableFuture<ContainerExit> existing = pending.putIfAbsent(id, future);
+    if (existing != null) {
+      return existing;
+    }
+    future.addListener(new Runnable() {
+      @Override
+      public void run() {
+        pending.remove(id, future);
+      }
+    }, MoreExecutors.sameThreadExecutor());
+
+    // Register before checking, so that an exit is either seen here or by the event stream.
+    follow();
+    check(id, false);
+    return future;
+  }
+
+  /**
+   * Inspect a container, and complete its future if it has exited.
+   *
+   * @param id         The ID of the container.
+   * @param registered Whether the container has been seen before, so that not finding it means
+   *                   it has been removed since.
+   */
+  private void check(final String id, final boolean registered) {
+    Futures.addCallback(inspect(id), new FutureCallback<ContainerInfo>() {
+      @Override
+      public void onSuccess(final ContainerInfo info) {
+        if (exited(info.state())) {
+          complete(id, new ContainerExit(info.state().exitCode()));
+        }
+      }
+
+      @Override
+      public void onFailure(final Throwable t) {
+        final SettableFuture<ContainerExit> future = pending.get(id);
+        if (future == null) {
+          return;
+        }
+        if (registered && t instanceof ContainerNotFoundException) {
+          future.setException(new ContainerRemovedException(id, t));
+        } else {
+          future.setException(t);
+        }
+      }
+    });
+  }
+
+  /**
+   * Inspect a container once fewer than {@code inspectConcurrency} inspects are in flight.
+   * Inspects of a container that are still queued share a single request.
+   */
+  private ListenableFuture<ContainerInfo> inspect(final String id) {
+    final SettableFuture<ContainerInfo> future;
+    synchronized (inspects) {
+      final SettableFuture<ContainerInfo> queued = inspects.get(id);
+      if (queued != null) {
+        return queued;
+      }
+      future = SettableFuture.create();
+      inspects.put(id, future);
+    }
+    drain();
+    return future;
+  }
+
+  /**
+   * Start queued inspects until {@code inspectConcurrency} are in flight. Completions that
+   * happen on this thread loop here instead of recursing.
+   */
+  private void drain() {
+    if (draining.getAndIncrement() != 0) {
+      return;
+    }
+    do {
+      Map.Entry<String, SettableFuture<ContainerInfo>> next;
+      while ((next = take()) != null) {
+        start(next.getKey(), next.getValue());
+      }
+    } while (draining.decrementAndGet() != 0);
+  }
+
+  private Map.Entry<String, SettableFuture<ContainerInfo>> take() {
+    synchronized (inspects) {
+      if (inspecting >= inspectConcurrency || inspects.isEmpty()) {
+        return null;
+      }
+      final Iterator<Map.Entry<String, SettableFuture<ContainerInfo>>> it =
+          inspects.entrySet().iterator();
+      final Map.Entry<String, SettableFuture<ContainerInfo>> next = it.next();
+      it.remove();
+      inspecting++;
+      return next;
+    }
+  }
+
+  private void start(final String id, final SettableFuture<ContainerInfo> result) {
+    ListenableFuture<ContainerInfo> future;
+    try {
+      future = docker.inspectContainer(id);
+    } catch (RuntimeException e) {
+      future = Futures.immediateFailedFuture(e);
+    }
+    Futures.addCallback(future, new FutureCallback<ContainerInfo>() {
+      @Override
+      public void onSuccess(final ContainerInfo info) {
+        done();
+        result.set(info);
+      }
+
+      @Override
+      public void onFailure(final Throwable t) {
+        done();
+        result.setException(t);
+      }
+    });
+  }
+
+  private void done() {
+    synchronized (inspects) {
+      inspecting--;
+    }
+    drain();
+  }
+
+  /**
+   * Returns true if the container has run and stopped. A container that has been created but
+   * not started isn't running either, but the daemon reports the zero time, 0001-01-01, as its
+   * finish time.
+   */
+  static boolean exited(final ContainerState state) {
+    if (Boolean.TRUE.equals(state.running())) {
+      return false;
+    }
+    final DockerTimestamp finishedAt = state.finishedAtTimestamp();
+    return finishedAt != null && finishedAt.epochSecond() > 0;
+  }
+
+  private void complete(final String id, final ContainerExit exit) {
+    final SettableFuture<ContainerExit> future = pending.get(id);
+    if (future != null) {
+      future.set(exit);
+    }
+  }
+
+  /**
+   * Start following events unless we already are.
+   */
+  private void follow() {
+    synchronized (lock) {
+      if (following || closed) {
+        return;
+      }
+      following = true;
+    }
+    final long since = currentTimeMillis();
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        follow(since);
+      }
+    });
+  }
+
+  private void follow(final long start) {
+    long since = start;
+    while (!closed) {
+      synchronized (lock) {
+        if (pending.isEmpty()) {
+          following = false;
+          return;
+        }
+      }
+      try {
+        since = followWindow(since);
+      } catch (InterruptedException e) {
+        return;
+      } catch (Exception e) {
+        log.warn("Failed to follow docker events, checking containers", e);
+        checkAll();
+        try {
+          Thread.sleep(RETRY_DELAY_MILLIS);
+        } catch (InterruptedException ie) {
+          return;
+        }
+      }
+    }
+  }
+
+  /**
+   * Follow events from {@code since} until shortly from now, and return where the next window
+   * should start.
+   */
+  private long followWindow(final long since) throws DockerException, InterruptedException {
+    // The daemon only knows whole seconds
+    final long until =
+        SECONDS.toMillis(MILLISECONDS.toSeconds(currentTimeMillis() + WINDOW_MILLIS));
+    try (EventStream events = get(docker.events(since(new Date(since)), until(new Date(until)),
+                                                event("die")))) {
+      while (events.hasNext()) {
+        final Event event = events.next();
+        if ("die".equals(event.status()) && pending.containsKey(event.id())) {
+          check(event.id(), true);
+        }
+      }
+    }
+    if (currentTimeMillis() < until - CLOCK_SKEW_TOLERANCE_MILLIS) {
+      // The stream was cut short, so we may have missed exits.
+      log.warn("Docker event stream ended early, checking containers");
+      checkAll();
+    }
+    return until;
+  }
+
+  private void checkAll() {
+    for (final String id : pending.keySet()) {
+      check(id, true);
+    }
+  }
+
+  private static <T> T get(final ListenableFuture<T> future)
+      throws DockerException, InterruptedException {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      propagateIfInstanceOf(e.getCause(), DockerException.class);
+      throw new DockerException(e.getCause());
+    }
+  }
+}
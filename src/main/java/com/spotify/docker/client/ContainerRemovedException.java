@@ -0,0 +1,37 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+/**
+ * Thrown when waiting for a container that was removed before its exit code could be read, e.g.
+ * because it was run with {@code --rm}. The container has exited, but with an unknown code.
+ */
+public class ContainerRemovedException extends ContainerNotFoundException {
+
+  public ContainerRemovedException(final String containerId, final Throwable cause) {
+    super(containerId, cause);
+  }
+
+  public ContainerRemovedException(final String containerId) {
+    this(containerId, null);
+  }
+}
@@ -0,0 +1,279 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.spotify.docker.client.messages.Container;
+import com.spotify.docker.client.messages.ContainerInfo;
+import com.spotify.docker.client.messages.Event;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static com.spotify.docker.client.DockerClient.EventsParam.since;
+import static com.spotify.docker.client.DockerClient.EventsParam.until;
+import static com.spotify.docker.client.DockerClient.ListContainersParam.allContainers;
+import static java.lang.System.currentTimeMillis;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * A local copy of the state of all containers on a docker host, kept up to date through the
+ * daemon's event stream. Queries are answered from memory instead of listing and inspecting
+ * containers on the daemon.
+ *
+ * {@link #start()} takes a snapshot of all containers. After that, the mirror follows the event
+ * stream in windows of half the maximum staleness, re-inspecting only the containers that events
+ * name. A window that ends on time proves that the mirror saw every event up to its end. If the
+ * event stream fails or ends early, the mirror takes a new snapshot.
+ *
+ * When the mirror can't vouch for having seen all events within the maximum staleness, queries
+ * go to the daemon instead.
+ */
+public class ContainerStateMirror implements Closeable {
+
+  private static final Logger log = LoggerFactory.getLogger(ContainerStateMirror.class);
+
+  public static final long DEFAULT_MAX_STALENESS_MILLIS = SECONDS.toMillis(10);
+
+  private static final long RETRY_DELAY_MILLIS = SECONDS.toMillis(1);
+
+  /**
+   * How much earlier than expected the daemon may end a window, e.g. because its clock is ahead
+   * of ours.
+   */
+  private static final long CLOCK_SKEW_TOLERANCE_MILLIS = SECONDS.toMillis(1);
+
+  /**
+   * Events about images rather than containers.
+   */
+  private static final Set<String> IMAGE_EVENTS =
+      ImmutableSet.of("untag", "delete", "pull", "push", "tag", "import");
+
+  private final DockerClient docker;
+  private final long maxStalenessMillis;
+  private final ExecutorService executor;
+
+  private volatile ConcurrentMap<String, ContainerInfo> containers =
+      new ConcurrentHashMap<>();
+  private volatile long syncedUntilMillis;
+  private volatile boolean resync;
+  private volatile boolean closed;
+
+  public ContainerStateMirror(final DockerClient docker) {
+    this(docker, DEFAULT_MAX_STALENESS_MILLIS);
+  }
+
+  public ContainerStateMirror(final DockerClient docker, final long maxStalenessMillis) {
+    checkArgument(maxStalenessMillis >= SECONDS.toMillis(4),
+                  "maxStalenessMillis must be at least four seconds");
+    this.docker = checkNotNull(docker, "docker");
+    this.maxStalenessMillis = maxStalenessMillis;
+    this.executor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder()
+        .setDaemon(true)
+        .setNameFormat("container-state-mirror-%d")
+        .build());
+  }
+
+  /**
+   * Take the initial snapshot and start following events.
+   */
+  public void start() throws DockerException, InterruptedException {
+    checkState(!closed, "mirror is closed");
+    snapshot();
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        follow();
+      }
+    });
+  }
+
+  /**
+   * List containers. If the mirror is too stale, the containers are listed and inspected on the
+   * daemon instead, and the mirror is left for the event follower to resynchronize.
+   *
+   * @param all Include containers that aren't running.
+   */
+  public List<ContainerInfo> listContainers(final boolean all)
+      throws DockerException, InterruptedException {
+    final ImmutableList.Builder<ContainerInfo> builder = ImmutableList.builder();
+    if (stalenessMillis() > maxStalenessMillis) {
+      final List<Container> listed = all
+                                     ? docker.listContainers(allContainers())
+                                     : docker.listContainers();
+      for (final Container container : listed) {
+        try {
+          builder.add(docker.inspectContainer(container.id()));
+        } catch (ContainerNotFoundException e) {
+          // Removed since we listed it
+        }
+      }
+      return builder.build();
+    }
+    for (final ContainerInfo info : containers.values()) {
+      if (all || Boolean.TRUE.equals(info.state().running())) {
+        builder.add(info);
+      }
+    }
+    return builder.build();
+  }
+
+  /**
+   * Inspect a container by ID or name. Containers that the mirror doesn't know by their full ID
+   * or name, such as those referred to by an ID prefix or created after the last event the
+   * mirror has seen, are inspected on the daemon.
+   *
+   * @throws ContainerNotFoundException if the container was not found.
+   */
+  public ContainerInfo inspectContainer(final String containerId)
+      throws DockerException, InterruptedException {
+    if (stalenessMillis() > maxStalenessMillis) {
+      return docker.inspectContainer(containerId);
+    }
+    final ContainerInfo info = containers.get(containerId);
+    if (info != null) {
+      return info;
+    }
+    final String name = containerId.startsWith("/") ? containerId : "/" + containerId;
+    for (final ContainerInfo candidate : containers.values()) {
+      if (name.equals(candidate.name())) {
+        return candidate;
+      }
+    }
+    return docker.inspectContainer(containerId);
+  }
+
+  /**
+   * Returns how long ago the mirror was last known to have seen every event.
+   */
+  public long stalenessMillis() {
+    return currentTimeMillis() - syncedUntilMillis;
+  }
+
+  /**
+   * Stop following events. This returns immediately; the event stream is released once the
+   * current window ends.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    executor.shutdownNow();
+  }
+
+  /**
+   * Replace the mirror with a fresh listing of all containers.
+   */
+  private synchronized void snapshot() throws DockerException, InterruptedException {
+    // Events that happen while we're listing will be replayed when we subscribe from here.
+    final long start = currentTimeMillis();
+    final ConcurrentMap<String, ContainerInfo> snapshot = new ConcurrentHashMap<>();
+    for (final Container container : docker.listContainers(allContainers())) {
+      try {
+        snapshot.put(container.id(), docker.inspectContainer(container.id()));
+      } catch (ContainerNotFoundException e) {
+        // Removed since we listed it
+      }
+    }
+    containers = snapshot;
+    syncedUntilMillis = start;
+    resync = false;
+  }
+
+  private void follow() {
+    while (!closed) {
+      try {
+        if (resync) {
+          snapshot();
+        }
+        followWindow();
+      } catch (InterruptedException e) {
+        return;
+      } catch (Exception e) {
+        log.warn("Failed to follow docker events, resynchronizing", e);
+        resync = true;
+        try {
+          Thread.sleep(RETRY_DELAY_MILLIS);
+        } catch (InterruptedException ie) {
+          return;
+        }
+      }
+    }
+  }
+
+  private void followWindow() throws DockerException, InterruptedException {
+    final long since = syncedUntilMillis;
+    // The daemon only knows whole seconds
+    final long until =
+        SECONDS.toMillis(MILLISECONDS.toSeconds(currentTimeMillis() + maxStalenessMillis / 2));
+    try (EventStream events = docker.events(since(new Date(since)), until(new Date(until)))) {
+      while (events.hasNext()) {
+        apply(events.next());
+      }
+    }
+    if (currentTimeMillis() < until - CLOCK_SKEW_TOLERANCE_MILLIS) {
+      // The stream was cut short, so we may have missed events.
+      log.warn("Docker event stream ended early, resynchronizing");
+      resync = true;
+      return;
+    }
+    synchronized (this) {
+      // A snapshot might have moved us further ahead while we were following.
+      if (!resync && syncedUntilMillis == since) {
+        syncedUntilMillis = until;
+      }
+    }
+  }
+
+  private void apply(final Event event) throws DockerException, InterruptedException {
+    final String id = event.id();
+    if (id == null || IMAGE_EVENTS.contains(event.status())) {
+      return;
+    }
+    final Map<String, ContainerInfo> containers = this.containers;
+    if ("destroy".equals(event.status())) {
+      containers.remove(id);
+      return;
+    }
+    try {
+      final ContainerInfo info = docker.inspectContainer(id);
+      containers.put(info.id(), info);
+    } catch (ContainerNotFoundException e) {
+      containers.remove(id);
+    }
+  }
+}
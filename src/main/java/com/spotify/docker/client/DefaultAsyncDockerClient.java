@@ -0,0 +1,1362 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import com.google.common.base.Function;
+import com.google.common.base.Supplier;
+import com.google.common.collect.LinkedHashMultimap;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Multimaps;
+import com.google.common.collect.ObjectArrays;
+import com.google.common.io.CharStreams;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.FutureFallback;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.spotify.docker.client.DockerClient.AttachParameter;
+import com.spotify.docker.client.DockerClient.BuildParameter;
+import com.spotify.docker.client.DockerClient.EventsFilterParam;
+import com.spotify.docker.client.DockerClient.EventsParam;
+import com.spotify.docker.client.DockerClient.ExecParameter;
+import com.spotify.docker.client.DockerClient.ExecStartParameter;
+import com.spotify.docker.client.DockerClient.ListContainersParam;
+import com.spotify.docker.client.DockerClient.ListImagesFilterParam;
+import com.spotify.docker.client.DockerClient.ListImagesParam;
+import com.spotify.docker.client.DockerClient.LogsParam;
+import com.spotify.docker.client.DockerClient.LogsParameter;
+import com.spotify.docker.client.messages.AuthConfig;
+import com.spotify.docker.client.messages.Container;
+import com.spotify.docker.client.messages.ContainerConfig;
+import com.spotify.docker.client.messages.ContainerCreation;
+import com.spotify.docker.client.messages.ContainerExit;
+import com.spotify.docker.client.messages.ContainerInfo;
+import com.spotify.docker.client.messages.HostConfig;
+import com.spotify.docker.client.messages.Image;
+import com.spotify.docker.client.messages.ImageInfo;
+import com.spotify.docker.client.messages.Info;
+import com.spotify.docker.client.messages.ProgressMessage;
+import com.spotify.docker.client.messages.RemovedImage;
+import com.spotify.docker.client.messages.Version;
+
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.ManagedHttpClientConnection;
+import org.glassfish.hk2.api.MultiException;
+import org.glassfish.jersey.client.ClientProperties;
+import org.glassfish.jersey.client.RequestEntityProcessing;
+import org.glassfish.jersey.internal.util.Base64;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.Invocation;
+import javax.ws.rs.client.InvocationCallback;
+import javax.ws.rs.client.ResponseProcessingException;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Strings.isNullOrEmpty;
+import static com.google.common.base.Strings.nullToEmpty;
+import static com.google.common.collect.Maps.newHashMap;
+import static com.google.common.collect.Maps.newLinkedHashMap;
+import static com.google.common.util.concurrent.Futures.immediateFailedFuture;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static com.google.common.util.concurrent.Futures.transform;
+import static com.google.common.util.concurrent.Futures.withFallback;
+import static com.spotify.docker.client.ObjectMapperProvider.objectMapper;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.unmodifiableMap;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static javax.ws.rs.HttpMethod.DELETE;
+import static javax.ws.rs.HttpMethod.GET;
+import static javax.ws.rs.HttpMethod.POST;
+import static javax.ws.rs.core.MediaType.APPLICATION_JSON_TYPE;
+import static javax.ws.rs.core.MediaType.APPLICATION_OCTET_STREAM_TYPE;
+
+/**
+ * An {@link AsyncDockerClient} that shares the Jersey clients, and thereby the connection pools,
+ * of a {@link DefaultDockerClient}. Obtain one through {@link DefaultDockerClient#async()}.
+ *
+ * Requests are submitted through Jersey's async invoker and completed from an
+ * {@link InvocationCallback}, so the caller isn't blocked while a request is in flight. Error
+ * responses are translated into {@link DockerException DockerExceptions} before the returned
+ * future fails.
+ *
+ * The connectors underneath are blocking, so Jersey runs every request on a thread of its async
+ * executor, which stays parked until the response has arrived. Every call in flight therefore
+ * still takes a thread, just not the caller's. The executor is bounded by the connection pool
+ * size, since a request beyond that would only wait for a connection.
+ */
+class DefaultAsyncDockerClient implements AsyncDockerClient {
+
+  private static final Logger log = LoggerFactory.getLogger(DefaultAsyncDockerClient.class);
+
+  private static final String VERSION = "v1.12";
+
+  private static final Pattern CONTAINER_NAME_PATTERN = Pattern.compile("/?[a-zA-Z0-9_-]+");
+  private static final Pattern API_VERSION_PATTERN = Pattern.compile("(\\d+)\\.(\\d+)");
+
+  private static final GenericType<List<Container>> CONTAINER_LIST =
+      new GenericType<List<Container>>() {};
+
+  private static final GenericType<List<Image>> IMAGE_LIST =
+      new GenericType<List<Image>>() {};
+
+  private static final GenericType<List<RemovedImage>> REMOVED_IMAGE_LIST =
+      new GenericType<List<RemovedImage>>() {};
+
+  private static final Function<Object, Void> TO_VOID = new Function<Object, Void>() {
+    @Override
+    public Void apply(final Object input) {
+      return null;
+    }
+  };
+
+  private final Client client;
+  private final Client noTimeoutClient;
+  private final URI uri;
+  private final AuthConfig authConfig;
+  private final RequestCoalescer coalescer;
+  private final ImageInfoCache imageCache;
+  private final StreamCloser streamCloser;
+  private final ContainerExitWatcher exitWatcher;
+  private final int bulkConcurrency;
+  private final BuildContextEncoding contextEncoding;
+  private final ForkJoinPool compressionPool;
+  private final BuildContextCache contextCache;
+  private final boolean sameThread;
+  private volatile String apiVersion;
+
+  /**
+   * @param coalescer  Shares in-flight GET requests between concurrent identical calls, or null
+   *                   to send every call on its own.
+   * @param imageCache Caches the results of inspectImage, or null to not cache them.
+   * @param streamCloser Decides what closing a log or progress stream early does to its
+   *                     connection.
+   * @param bulkConcurrency The number of requests a bulk operation may have in flight.
+   * @param contextEncoding How build contexts are encoded, resolved for {@code uri}.
+   * @param compressionPool Compresses build contexts in parallel, or null to compress them on
+   *                        the thread that sends the request.
+   * @param contextCache Caches the compressed files of build contexts, or null to compress
+   *                     every file on every build.
+   * @param sameThread Send requests on the calling thread and return completed futures, instead
+   *                   of sending them on Jersey's async executor.
+   */
+  DefaultAsyncDockerClient(final Client client, final Client noTimeoutClient, final URI uri,
+                           final AuthConfig authConfig, final RequestCoalescer coalescer,
+                           final ImageInfoCache imageCache, final StreamCloser streamCloser,
+                           final int bulkConcurrency, final BuildContextEncoding contextEncoding,
+                           final ForkJoinPool compressionPool,
+                           final BuildContextCache contextCache, final boolean sameThread) {
+    checkArgument(bulkConcurrency > 0, "bulkConcurrency must be positive");
+    this.client = checkNotNull(client, "client");
+    this.noTimeoutClient = checkNotNull(noTimeoutClient, "noTimeoutClient");
+    this.uri = checkNotNull(uri, "uri");
+    this.authConfig = authConfig;
+    this.coalescer = coalescer;
+    this.imageCache = imageCache;
+    this.streamCloser = checkNotNull(streamCloser, "streamCloser");
+    this.bulkConcurrency = bulkConcurrency;
+    this.exitWatcher = new ContainerExitWatcher(this, bulkConcurrency);
+    this.contextEncoding = checkNotNull(contextEncoding, "contextEncoding");
+    this.compressionPool = compressionPool;
+    this.contextCache = contextCache;
+    this.sameThread = sameThread;
+  }
+
+  @Override
+  public void close() {
+    exitWatcher.close();
+    client.close();
+    noTimeoutClient.close();
+  }
+
+  @Override
+  public ListenableFuture<String> ping() {
+    final WebTarget resource = client.target(uri).path("_ping");
+    return request(GET, String.class, resource, resource.request());
+  }
+
+  @Override
+  public ListenableFuture<Version> version() {
+    final WebTarget resource = resource().path("version");
+    return request(GET, Version.class, resource, resource.request(APPLICATION_JSON_TYPE));
+  }
+
+  @Override
+  public ListenableFuture<Integer> auth(final AuthConfig authConfig) {
+    final WebTarget resource = resource().path("auth");
+    final ListenableFuture<Response> response =
+        request(POST, Response.class, resource, resource.request(APPLICATION_JSON_TYPE),
+                Entity.json(authConfig));
+    return transform(response, new Function<Response, Integer>() {
+      @Override
+      public Integer apply(final Response response) {
+        response.close();
+        return response.getStatus();
+      }
+    });
+  }
+
+  @Override
+  public ListenableFuture<Info> info() {
+    final WebTarget resource = resource().path("info");
+    return request(GET, Info.class, resource, resource.request(APPLICATION_JSON_TYPE));
+  }
+
+  @Override
+  public ListenableFuture<List<Container>> listContainers(final ListContainersParam... params) {
+    WebTarget resource = resource()
+        .path("containers").path("json");
+
+    for (ListContainersParam param : params) {
+      resource = resource.queryParam(param.name(), param.value());
+    }
+
+    return request(GET, CONTAINER_LIST, resource, resource.request(APPLICATION_JSON_TYPE));
+  }
+
+  @Override
+  public ListenableFuture<List<Image>> listImages(final ListImagesParam... params) {
+    WebTarget resource = resource()
+        .path("images").path("json");
+
+    final Map<String, String> filters = newHashMap();
+    for (ListImagesParam param : params) {
+      if (param instanceof ListImagesFilterParam) {
+        filters.put(param.name(), param.value());
+      } else {
+        resource = resource.queryParam(param.name(), param.value());
+      }
+    }
+
+    try {
+      resource = filters(resource, Multimaps.forMap(filters));
+    } catch (IOException e) {
+      return immediateFailedFuture(new DockerException(e));
+    }
+
+    return request(GET, IMAGE_LIST, resource, resource.request(APPLICATION_JSON_TYPE));
+  }
+
+  /**
+   * If filters were specified, we must put them in a JSON object and pass them using the
+   * 'filters' query param like this: filters={"dangling":["true"]}
+   */
+  private static WebTarget filters(final WebTarget resource,
+                                   final Multimap<String, String> filters) throws IOException {
+    if (filters.isEmpty()) {
+      return resource;
+    }
+    final StringWriter writer = new StringWriter();
+    final JsonGenerator generator = objectMapper().getFactory().createGenerator(writer);
+    generator.writeStartObject();
+    for (Map.Entry<String, Collection<String>> entry : filters.asMap().entrySet()) {
+      generator.writeArrayFieldStart(entry.getKey());
+      for (final String value : entry.getValue()) {
+        generator.writeString(value);
+      }
+      generator.writeEndArray();
+    }
+    generator.writeEndObject();
+    generator.close();
+    // We must URL encode the string, otherwise Jersey chokes on the double-quotes in the json.
+    final String encoded = URLEncoder.encode(writer.toString(), UTF_8.name());
+    return resource.queryParam("filters", encoded);
+  }
+
+  @Override
+  public ListenableFuture<ContainerCreation> createContainer(final ContainerConfig config) {
+    return createContainer(config, null);
+  }
+
+  @Override
+  public ListenableFuture<ContainerCreation> createContainer(final ContainerConfig config,
+                                                             final String name) {
+    WebTarget resource = resource()
+        .path("containers").path("create");
+
+    if (name != null) {
+      checkArgument(CONTAINER_NAME_PATTERN.matcher(name).matches(),
+                    "Invalid container name: \"%s\"", name);
+      resource = resource.queryParam("name", name);
+    }
+
+    log.info("Creating container with ContainerConfig: {}", config);
+
+    return withFallback(request(POST, ContainerCreation.class, resource,
+                                resource.request(APPLICATION_JSON_TYPE), Entity.json(config)),
+                        this.<ContainerCreation>imageNotFound(config.image()));
+  }
+
+  @Override
+  public ListenableFuture<Void> startContainer(final String containerId) {
+    return startContainer(containerId, HostConfig.builder().build());
+  }
+
+  @Override
+  public ListenableFuture<Void> startContainer(final String containerId,
+                                               final HostConfig hostConfig) {
+    checkNotNull(containerId, "containerId");
+    checkNotNull(hostConfig, "hostConfig");
+
+    log.info("Starting container with HostConfig: {}", hostConfig);
+
+    final WebTarget resource = resource()
+        .path("containers").path(containerId).path("start");
+    return withFallback(request(POST, resource, resource
+                                    .request(APPLICATION_JSON_TYPE)
+                                    .property(ClientProperties.REQUEST_ENTITY_PROCESSING,
+                                              RequestEntityProcessing.BUFFERED),
+                                Entity.json(hostConfig)),
+                        this.<Void>containerNotFound(containerId));
+  }
+
+  @Override
+  public ListenableFuture<Void> pauseContainer(final String containerId) {
+    checkNotNull(containerId, "containerId");
+
+    final WebTarget resource = resource()
+        .path("containers").path(containerId).path("pause");
+    return withFallback(request(POST, resource, resource.request()),
+                        this.<Void>containerNotFound(containerId));
+  }
+
+  @Override
+  public ListenableFuture<Void> unpauseContainer(final String containerId) {
+    checkNotNull(containerId, "containerId");
+
+    final WebTarget resource = resource()
+        .path("containers").path(containerId).path("unpause");
+    return withFallback(request(POST, resource, resource.request()),
+                        this.<Void>containerNotFound(containerId));
+  }
+
+  @Override
+  public ListenableFuture<Void> restartContainer(final String containerId) {
+    return restartContainer(containerId, 10);
+  }
+
+  @Override
+  public ListenableFuture<Void> restartContainer(final String containerId,
+                                                 final int secondsToWaitBeforeRestart) {
+    checkNotNull(containerId, "containerId");
+
+    final WebTarget resource = resource().path("containers").path(containerId)
+        .path("restart")
+        .queryParam("t", String.valueOf(secondsToWaitBeforeRestart));
+    return withFallback(request(POST, resource, resource.request()),
+                        this.<Void>containerNotFound(containerId));
+  }
+
+  @Override
+  public ListenableFuture<Void> killContainer(final String containerId) {
+    final WebTarget resource = resource().path("containers").path(containerId).path("kill");
+    return withFallback(request(POST, resource, resource.request()),
+                        this.<Void>containerNotFound(containerId));
+  }
+
+  @Override
+  public ListenableFuture<Void> stopContainer(final String containerId,
+                                              final int secondsToWaitBeforeKilling) {
+    final WebTarget resource = noTimeoutResource()
+        .path("containers").path(containerId).path("stop")
+        .queryParam("t", String.valueOf(secondsToWaitBeforeKilling));
+    return withFallback(request(POST, resource, resource.request()), new RequestFallback<Void>() {
+      @Override
+      ListenableFuture<Void> create(final DockerRequestException e) throws DockerException {
+        switch (e.status()) {
+          case 304: // already stopped, so we're cool
+            return immediateFuture(null);
+          case 404:
+            throw new ContainerNotFoundException(containerId, e);
+          default:
+            throw e;
+        }
+      }
+    });
+  }
+
+  @Override
+  public ListenableFuture<ContainerExit> waitContainer(final String containerId) {
+    final WebTarget resource = noTimeoutResource()
+        .path("containers").path(containerId).path("wait");
+    // Wait forever
+    return withFallback(request(POST, ContainerExit.class, resource,
+                                resource.request(APPLICATION_JSON_TYPE)),
+                        this.<ContainerExit>containerNotFound(containerId));
+  }
+
+  @Override
+  public Map<String, ListenableFuture<ContainerExit>> waitContainers(
+      final Collection<String> containerIds) {
+    final Map<String, ListenableFuture<ContainerExit>> exits = newLinkedHashMap();
+    for (final String containerId : containerIds) {
+      if (!exits.containsKey(containerId)) {
+        exits.put(containerId, exitWatcher.watch(containerId));
+      }
+    }
+    return unmodifiableMap(exits);
+  }
+
+  @Override
+  public ListenableFuture<Void> removeContainer(final String containerId) {
+    return removeContainer(containerId, false);
+  }
+
+  @Override
+  public ListenableFuture<Void> removeContainer(final String containerId,
+                                                final boolean removeVolumes) {
+    final WebTarget resource = resource()
+        .path("containers").path(containerId);
+    return withFallback(request(DELETE, resource, resource
+                            .queryParam("v", String.valueOf(removeVolumes))
+                            .request(APPLICATION_JSON_TYPE)),
+                        this.<Void>containerNotFound(containerId));
+  }
+
+  @Override
+  public ListenableFuture<BulkResult<ContainerInfo>> inspectContainers(
+      final Collection<String> containerIds) {
+    return BulkOperation.run(containerIds, bulkConcurrency,
+                             new Function<String, ListenableFuture<ContainerInfo>>() {
+                               @Override
+                               public ListenableFuture<ContainerInfo> apply(final String id) {
+                                 return inspectContainer(id);
+                               }
+                             });
+  }
+
+  @Override
+  public ListenableFuture<BulkResult<Void>> stopContainers(
+      final Collection<String> containerIds, final int secondsToWaitBeforeKilling) {
+    return BulkOperation.run(containerIds, bulkConcurrency,
+                             new Function<String, ListenableFuture<Void>>() {
+                               @Override
+                               public ListenableFuture<Void> apply(final String id) {
+                                 return stopContainer(id, secondsToWaitBeforeKilling);
+                               }
+                             });
+  }
+
+  @Override
+  public ListenableFuture<BulkResult<Void>> killContainers(
+      final Collection<String> containerIds) {
+    return BulkOperation.run(containerIds, bulkConcurrency,
+                             new Function<String, ListenableFuture<Void>>() {
+                               @Override
+                               public ListenableFuture<Void> apply(final String id) {
+                                 return killContainer(id);
+                               }
+                             });
+  }
+
+  @Override
+  public ListenableFuture<BulkResult<Void>> removeContainers(
+      final Collection<String> containerIds, final boolean removeVolumes) {
+    return BulkOperation.run(containerIds, bulkConcurrency,
+                             new Function<String, ListenableFuture<Void>>() {
+                               @Override
+                               public ListenableFuture<Void> apply(final String id) {
+                                 return removeContainer(id, removeVolumes);
+                               }
+                             });
+  }
+
+  @Override
+  public ListenableFuture<InputStream> exportContainer(final String containerId) {
+    final WebTarget resource = resource()
+        .path("containers").path(containerId).path("export");
+    return request(GET, InputStream.class, resource,
+                   resource.request(APPLICATION_OCTET_STREAM_TYPE));
+  }
+
+  @Override
+  public ListenableFuture<InputStream> copyContainer(final String containerId,
+                                                     final String path) {
+    final WebTarget resource = resource()
+        .path("containers").path(containerId).path("copy");
+
+    // Internal JSON object; not worth it to create class for this
+    JsonNodeFactory nf = JsonNodeFactory.instance;
+    final JsonNode params = nf.objectNode().set("Resource", nf.textNode(path));
+
+    return request(POST, InputStream.class, resource,
+                   resource.request(APPLICATION_OCTET_STREAM_TYPE),
+                   Entity.json(params));
+  }
+
+  @Override
+  public ListenableFuture<ContainerInfo> inspectContainer(final String containerId) {
+    final WebTarget resource = resource().path("containers").path(containerId).path("json");
+    return withFallback(request(GET, ContainerInfo.class, resource,
+                                resource.request(APPLICATION_JSON_TYPE)),
+                        this.<ContainerInfo>containerNotFound(containerId));
+  }
+
+  @Override
+  public ListenableFuture<ContainerCreation> commitContainer(final String containerId,
+                                                             final String repo,
+                                                             final String tag,
+                                                             final ContainerConfig config,
+                                                             final String comment,
+                                                             final String author) {
+    checkNotNull(containerId, "containerId");
+    checkNotNull(repo, "repo");
+    checkNotNull(config, "containerConfig");
+
+    WebTarget resource = resource()
+        .path("commit")
+        .queryParam("container", containerId)
+        .queryParam("repo", repo)
+        .queryParam("comment", comment);
+
+    if (!isNullOrEmpty(author)) {
+      resource = resource.queryParam("author", author);
+    }
+    if (!isNullOrEmpty(comment)) {
+      resource = resource.queryParam("comment", comment);
+    }
+    if (!isNullOrEmpty(tag)) {
+      resource = resource.queryParam("tag", tag);
+    }
+
+    log.info("Committing container id: {} to repository: {} with ContainerConfig: {}", containerId,
+             repo, config);
+
+    return withFallback(request(POST, ContainerCreation.class, resource,
+                                resource.request(APPLICATION_JSON_TYPE), Entity.json(config)),
+                        this.<ContainerCreation>containerNotFound(containerId));
+  }
+
+  @Override
+  public ListenableFuture<Void> pull(final String image) {
+    return pull(image, new LoggingPullHandler(image));
+  }
+
+  @Override
+  public ListenableFuture<Void> pull(final String image, final ProgressHandler handler) {
+    return pull(image, authConfig, handler);
+  }
+
+  @Override
+  public ListenableFuture<Void> pull(final String image, final AuthConfig authConfig) {
+    return pull(image, authConfig, new LoggingPullHandler(image));
+  }
+
+  @Override
+  public ListenableFuture<Void> pull(final String image, final AuthConfig authConfig,
+                                     final ProgressHandler handler) {
+    final ImageRef imageRef = new ImageRef(image);
+
+    WebTarget resource = resource().path("images").path("create");
+
+    resource = resource.queryParam("fromImage", imageRef.getImage());
+    if (imageRef.getTag() != null) {
+      resource = resource.queryParam("tag", imageRef.getTag());
+    }
+
+    final String authHeader;
+    try {
+      authHeader = authHeader(authConfig);
+    } catch (DockerException e) {
+      return immediateFailedFuture(e);
+    }
+
+    return invalidateName(tail(request(POST, ProgressStream.class, resource,
+                                       resource.request(APPLICATION_JSON_TYPE)
+                                           .header("X-Registry-Auth", authHeader)),
+                               handler, POST, resource.getUri()),
+                          image);
+  }
+
+  @Override
+  public ListenableFuture<Void> push(final String image) {
+    return push(image, new LoggingPushHandler(image));
+  }
+
+  @Override
+  public ListenableFuture<Void> push(final String image, final ProgressHandler handler) {
+    final ImageRef imageRef = new ImageRef(image);
+
+    WebTarget resource =
+        resource().path("images").path(imageRef.getImage()).path("push");
+
+    if (imageRef.getTag() != null) {
+      resource = resource.queryParam("tag", imageRef.getTag());
+    }
+
+    final String authHeader;
+    try {
+      authHeader = authHeader(authConfig);
+    } catch (DockerException e) {
+      return immediateFailedFuture(e);
+    }
+
+    // the docker daemon requires that the X-Registry-Auth header is specified
+    // with a non-empty string even if your registry doesn't use authentication
+    return tail(request(POST, ProgressStream.class, resource,
+                        resource.request(APPLICATION_JSON_TYPE)
+                            .header("X-Registry-Auth", authHeader)),
+                handler, POST, resource.getUri());
+  }
+
+  @Override
+  public ListenableFuture<Void> tag(final String image, final String name) {
+    final ImageRef imageRef = new ImageRef(name);
+
+    WebTarget resource =
+        resource().path("images").path(image).path("tag");
+
+    resource = resource.queryParam("repo", imageRef.getImage());
+    if (imageRef.getTag() != null) {
+      resource = resource.queryParam("tag", imageRef.getTag());
+    }
+
+    return invalidateName(withFallback(request(POST, resource, resource.request()),
+                                       this.<Void>imageNotFound(image)),
+                          name);
+  }
+
+  @Override
+  public ListenableFuture<String> build(final Path directory, final BuildParameter... params) {
+    return build(directory, null, new LoggingBuildHandler(), params);
+  }
+
+  @Override
+  public ListenableFuture<String> build(final Path directory, final String name,
+                                        final BuildParameter... params) {
+    return build(directory, name, new LoggingBuildHandler(), params);
+  }
+
+  @Override
+  public ListenableFuture<String> build(final Path directory, final ProgressHandler handler,
+                                        final BuildParameter... params) {
+    return build(directory, null, handler, params);
+  }
+
+  @Override
+  public ListenableFuture<String> build(final Path directory, final String name,
+                                        final ProgressHandler handler,
+                                        final BuildParameter... params) {
+    checkNotNull(handler, "handler");
+
+    WebTarget resource = resource().path("build");
+
+    for (final BuildParameter param : params) {
+      resource = resource.queryParam(param.queryParam, String.valueOf(param.value));
+    }
+    if (name != null) {
+      resource = resource.queryParam("t", name);
+    }
+
+    // The context is encoded as it's sent, so the daemon receives it while the directory is
+    // still being walked and nothing is staged on disk.
+    final StreamingOutput context = new StreamingOutput() {
+      @Override
+      public void write(final OutputStream output) throws IOException {
+        CompressedDirectory.write(directory, output, contextEncoding, compressionPool,
+                                  contextCache);
+      }
+    };
+
+    final URI uri = resource.getUri();
+    final ListenableFuture<ProgressStream> stream =
+        request(POST, ProgressStream.class, resource,
+                resource.request(APPLICATION_JSON_TYPE)
+                    .property(ClientProperties.REQUEST_ENTITY_PROCESSING,
+                              RequestEntityProcessing.CHUNKED),
+                Entity.entity(context, "application/tar"));
+
+    final ListenableFuture<String> imageId =
+        transform(stream, new AsyncFunction<ProgressStream, String>() {
+          @Override
+          public ListenableFuture<String> apply(final ProgressStream build) throws Exception {
+            try {
+              String imageId = null;
+              while (build.hasNextMessage(POST, uri)) {
+                final ProgressMessage message = build.nextMessage(POST, uri);
+                final String id = message.buildImageId();
+                if (id != null) {
+                  imageId = id;
+                }
+                handler.progress(message);
+              }
+              return immediateFuture(imageId);
+            } finally {
+              build.close();
+            }
+          }
+        });
+
+    return name == null ? imageId : invalidateName(imageId, name);
+  }
+
+  @Override
+  public ListenableFuture<ImageInfo> inspectImage(final String image) {
+    final WebTarget resource = resource().path("images").path(image).path("json");
+    if (imageCache == null) {
+      return withFallback(request(GET, ImageInfo.class, resource,
+                                  resource.request(APPLICATION_JSON_TYPE)),
+                          this.<ImageInfo>imageNotFound(image));
+    }
+
+    final ImageInfo cached = imageCache.get(image);
+    if (cached != null) {
+      return immediateFuture(cached);
+    }
+
+    // Read the body as a string first so that the cache can be bounded by its size
+    final ListenableFuture<String> json =
+        request(GET, String.class, resource, resource.request(APPLICATION_JSON_TYPE));
+    return withFallback(transform(json, new AsyncFunction<String, ImageInfo>() {
+      @Override
+      public ListenableFuture<ImageInfo> apply(final String json) throws Exception {
+        final ImageInfo info;
+        try {
+          info = objectMapper().readValue(json, ImageInfo.class);
+        } catch (IOException e) {
+          throw new DockerException(e);
+        }
+        imageCache.put(image, info, json.length());
+        return immediateFuture(info);
+      }
+    }), this.<ImageInfo>imageNotFound(image));
+  }
+
+  @Override
+  public ListenableFuture<List<RemovedImage>> removeImage(final String image) {
+    return removeImage(image, false, false);
+  }
+
+  @Override
+  public ListenableFuture<List<RemovedImage>> removeImage(final String image,
+                                                          final boolean force,
+                                                          final boolean noPrune) {
+    final WebTarget resource = resource().path("images").path(image)
+        .queryParam("force", String.valueOf(force))
+        .queryParam("noprune", String.valueOf(noPrune));
+    final ListenableFuture<List<RemovedImage>> removed =
+        withFallback(request(DELETE, REMOVED_IMAGE_LIST, resource,
+                             resource.request(APPLICATION_JSON_TYPE)),
+                     new RequestFallback<List<RemovedImage>>() {
+                       @Override
+                       ListenableFuture<List<RemovedImage>> create(
+                           final DockerRequestException e) throws DockerException {
+                         switch (e.status()) {
+                           case 404:
+                             throw new ImageNotFoundException(image);
+                           default:
+                             throw e;
+                         }
+                       }
+                     });
+    if (imageCache == null) {
+      return removed;
+    }
+
+    return transform(removed, new Function<List<RemovedImage>, List<RemovedImage>>() {
+      @Override
+      public List<RemovedImage> apply(final List<RemovedImage> images) {
+        imageCache.invalidate(image);
+        for (final RemovedImage removedImage : images) {
+          if (removedImage.imageId() != null) {
+            imageCache.invalidate(removedImage.imageId());
+          }
+        }
+        return images;
+      }
+    });
+  }
+
+  @Override
+  public ListenableFuture<LogStream> logs(final String containerId,
+                                          final LogsParameter... params) {
+    final LogsParam[] logsParams = new LogsParam[params.length];
+    for (int i = 0; i < params.length; i++) {
+      logsParams[i] = LogsParam.of(params[i]);
+    }
+    return requestLogs(containerId, logsParams);
+  }
+
+  @Override
+  public ListenableFuture<LogStream> logs(final String containerId, final LogsParam param,
+                                          final LogsParam... params) {
+    return requestLogs(containerId, ObjectArrays.concat(param, params));
+  }
+
+  private ListenableFuture<LogStream> requestLogs(final String containerId,
+                                                  final LogsParam[] params) {
+    for (final LogsParam param : params) {
+      if (param.name().equals("tail") || param.name().equals("since")) {
+        return transform(apiVersion(), new AsyncFunction<String, LogStream>() {
+          @Override
+          public ListenableFuture<LogStream> apply(final String apiVersion) {
+            return requestLogs(containerId, apiVersion, params);
+          }
+        });
+      }
+    }
+    return requestLogs(containerId, null, params);
+  }
+
+  /**
+   * @param apiVersion The daemon's API version, which decides whether tail and since are sent
+   *                   to the daemon or applied to the stream on the client. Null if neither is
+   *                   used.
+   */
+  private ListenableFuture<LogStream> requestLogs(final String containerId,
+                                                  final String apiVersion,
+                                                  final LogsParam[] params) {
+    // Daemons may ignore parameters that are newer than the API version in the path
+    final WebTarget base = isApiVersionAtLeast(apiVersion, 1, 13)
+                           ? client.target(uri).path("v" + apiVersion)
+                           : resource();
+    WebTarget resource = base.path("containers").path(containerId).path("logs");
+
+    boolean follow = false;
+    boolean timestamps = false;
+    int tail = -1;
+    long sinceMillis = -1;
+    for (final LogsParam param : params) {
+      if (param.name().equals("tail") && !isApiVersionAtLeast(apiVersion, 1, 13)) {
+        tail = Integer.parseInt(param.value());
+        continue;
+      }
+      if (param.name().equals("since") && !isApiVersionAtLeast(apiVersion, 1, 19)) {
+        sinceMillis = SECONDS.toMillis(Long.parseLong(param.value()));
+        continue;
+      }
+      follow |= param.name().equals("follow");
+      timestamps |= param.name().equals("timestamps");
+      resource = resource.queryParam(param.name(), param.value());
+    }
+
+    if (tail >= 0 && follow) {
+      return immediateFailedFuture(new DockerException(
+          "Docker API version " + apiVersion + " can't tail a followed log"));
+    }
+    if (sinceMillis >= 0 && !timestamps) {
+      // Filtering by time needs the time of every message
+      resource = resource.queryParam("timestamps", String.valueOf(true));
+    }
+
+    final ListenableFuture<LogStream> stream =
+        withFallback(request(GET, LogStream.class, resource,
+                             resource.request("application/vnd.docker.raw-stream")),
+                     this.<LogStream>containerNotFound(containerId, false));
+    if (tail < 0 && sinceMillis < 0) {
+      return stream;
+    }
+    final LogsFallback fallback = new LogsFallback(tail, sinceMillis,
+                                                   sinceMillis >= 0 && !timestamps);
+    return transform(stream, new Function<LogStream, LogStream>() {
+      @Override
+      public LogStream apply(final LogStream stream) {
+        stream.fallback(fallback);
+        return stream;
+      }
+    });
+  }
+
+  @Override
+  public ListenableFuture<LogStream> attachContainer(final String containerId,
+                                                     final AttachParameter... params) {
+    WebTarget resource = resource().path("containers").path(containerId)
+        .path("attach");
+
+    for (final AttachParameter param : params) {
+      resource = resource.queryParam(param.name().toLowerCase(Locale.ROOT),
+                                     String.valueOf(true));
+    }
+
+    return withFallback(request(POST, LogStream.class, resource,
+                                resource.request("application/vnd.docker.raw-stream")),
+                        this.<LogStream>containerNotFound(containerId, false));
+  }
+
+  @Override
+  public ListenableFuture<EventStream> events(final EventsParam... params) {
+    WebTarget resource = noTimeoutResource().path("events");
+
+    final Multimap<String, String> filters = LinkedHashMultimap.create();
+    for (final EventsParam param : params) {
+      if (param instanceof EventsFilterParam) {
+        filters.put(param.name(), param.value());
+      } else {
+        resource = resource.queryParam(param.name(), param.value());
+      }
+    }
+
+    try {
+      resource = filters(resource, filters);
+    } catch (IOException e) {
+      return immediateFailedFuture(new DockerException(e));
+    }
+
+    return request(GET, EventStream.class, resource, resource.request(APPLICATION_JSON_TYPE));
+  }
+
+  @Override
+  public ListenableFuture<String> execCreate(final String containerId, final String[] cmd,
+                                             final ExecParameter... params) {
+    final WebTarget resource = resource().path("containers").path(containerId).path("exec");
+
+    final StringWriter writer = new StringWriter();
+    try {
+      final JsonGenerator generator = objectMapper().getFactory().createGenerator(writer);
+      generator.writeStartObject();
+
+      for (ExecParameter param : params) {
+        generator.writeBooleanField(param.getName(), true);
+      }
+
+      generator.writeArrayFieldStart("Cmd");
+      for (String s : cmd) {
+        generator.writeString(s);
+      }
+      generator.writeEndArray();
+
+      generator.writeEndObject();
+      generator.close();
+    } catch (IOException e) {
+      return immediateFailedFuture(new DockerException(e));
+    }
+
+    final ListenableFuture<String> response =
+        withFallback(request(POST, String.class, resource,
+                             resource.request(APPLICATION_JSON_TYPE),
+                             Entity.json(writer.toString())),
+                     this.<String>containerNotFound(containerId, false));
+
+    return transform(response, new AsyncFunction<String, String>() {
+      @Override
+      public ListenableFuture<String> apply(final String response) throws DockerException {
+        try {
+          JsonNode json = objectMapper().readTree(response);
+          return immediateFuture(json.findValue("Id").textValue());
+        } catch (IOException e) {
+          throw new DockerException(e);
+        }
+      }
+    });
+  }
+
+  @Override
+  public ListenableFuture<LogStream> execStart(final String execId,
+                                               final ExecStartParameter... params) {
+    final WebTarget resource = resource().path("exec").path(execId).path("start");
+
+    final StringWriter writer = new StringWriter();
+    try {
+      final JsonGenerator generator = objectMapper().getFactory().createGenerator(writer);
+      generator.writeStartObject();
+
+      for (ExecStartParameter param : params) {
+        generator.writeBooleanField(param.getName(), true);
+      }
+
+      generator.writeEndObject();
+      generator.close();
+    } catch (IOException e) {
+      return immediateFailedFuture(new DockerException(e));
+    }
+
+    return withFallback(request(POST, LogStream.class, resource,
+                                resource.request("application/vnd.docker.raw-stream"),
+                                Entity.json(writer.toString())),
+                        new RequestFallback<LogStream>() {
+                          @Override
+                          ListenableFuture<LogStream> create(final DockerRequestException e)
+                              throws DockerException {
+                            switch (e.status()) {
+                              case 404:
+                                throw new ExecNotFoundException(execId);
+                              default:
+                                throw e;
+                            }
+                          }
+                        });
+  }
+
+  /**
+   * Returns the API version of the daemon. It's only asked for once.
+   */
+  private ListenableFuture<String> apiVersion() {
+    final String known = apiVersion;
+    if (known != null) {
+      return immediateFuture(known);
+    }
+    return transform(version(), new Function<Version, String>() {
+      @Override
+      public String apply(final Version version) {
+        apiVersion = nullToEmpty(version.apiVersion());
+        return apiVersion;
+      }
+    });
+  }
+
+  /**
+   * Returns true if {@code apiVersion} is {@code major.minor} or later.
+   */
+  static boolean isApiVersionAtLeast(final String apiVersion, final int major, final int minor) {
+    if (apiVersion == null) {
+      return false;
+    }
+    final Matcher matcher = API_VERSION_PATTERN.matcher(apiVersion);
+    if (!matcher.matches()) {
+      return false;
+    }
+    final int actualMajor = Integer.parseInt(matcher.group(1));
+    final int actualMinor = Integer.parseInt(matcher.group(2));
+    return actualMajor > major || (actualMajor == major && actualMinor >= minor);
+  }
+
+  private WebTarget resource() {
+    return client.target(uri).path(VERSION);
+  }
+
+  private WebTarget noTimeoutResource() {
+    return noTimeoutClient.target(uri).path(VERSION);
+  }
+
+  /**
+   * Reads all progress messages of a pull or push on the thread that delivered the stream, and
+   * closes the stream afterwards.
+   */
+  private ListenableFuture<Void> tail(final ListenableFuture<ProgressStream> stream,
+                                      final ProgressHandler handler,
+                                      final String method, final URI uri) {
+    return transform(stream, new AsyncFunction<ProgressStream, Void>() {
+      @Override
+      public ListenableFuture<Void> apply(final ProgressStream stream) throws Exception {
+        try {
+          stream.tail(handler, method, uri);
+        } finally {
+          stream.close();
+        }
+        return immediateFuture(null);
+      }
+    });
+  }
+
+  private <T> ListenableFuture<T> request(final String method, final Class<T> clazz,
+                                          final WebTarget resource,
+                                          final Invocation.Builder request) {
+    return request(method, new GenericType<T>(clazz), resource, request, null);
+  }
+
+  private <T> ListenableFuture<T> request(final String method, final Class<T> clazz,
+                                          final WebTarget resource,
+                                          final Invocation.Builder request,
+                                          final Entity<?> entity) {
+    return request(method, new GenericType<T>(clazz), resource, request, entity);
+  }
+
+  private <T> ListenableFuture<T> request(final String method, final GenericType<T> type,
+                                          final WebTarget resource,
+                                          final Invocation.Builder request) {
+    return request(method, type, resource, request, null);
+  }
+
+  private ListenableFuture<Void> request(final String method,
+                                         final WebTarget resource,
+                                         final Invocation.Builder request) {
+    return transform(request(method, String.class, resource, request), TO_VOID);
+  }
+
+  private ListenableFuture<Void> request(final String method,
+                                         final WebTarget resource,
+                                         final Invocation.Builder request,
+                                         final Entity<?> entity) {
+    return transform(request(method, String.class, resource, request, entity), TO_VOID);
+  }
+
+  private <T> ListenableFuture<T> request(final String method, final GenericType<T> type,
+                                          final WebTarget resource,
+                                          final Invocation.Builder request,
+                                          final Entity<?> entity) {
+    if (coalescer != null && entity == null && method.equals(GET)
+        && RequestCoalescer.isShareable(type)) {
+      final String key = method + " " + resource.getUri() + " " + type;
+      return coalescer.coalesce(key, new Supplier<ListenableFuture<T>>() {
+        @Override
+        public ListenableFuture<T> get() {
+          return send(method, type, resource, request, null);
+        }
+      });
+    }
+    return send(method, type, resource, request, entity);
+  }
+
+  private <T> ListenableFuture<T> send(final String method, final GenericType<T> type,
+                                       final WebTarget resource,
+                                       final Invocation.Builder request,
+                                       final Entity<?> entity) {
+    final SettableFuture<T> future = SettableFuture.create();
+    final ResponseCallback<T> callback = new ResponseCallback<>(method, type, resource, future);
+    if (sameThread) {
+      final Response response;
+      try {
+        response = entity == null ? request.method(method) : request.method(method, entity);
+      } catch (RuntimeException e) {
+        callback.failed(e);
+        return future;
+      }
+      callback.completed(response);
+      return future;
+    }
+    try {
+      if (entity == null) {
+        request.async().method(method, callback);
+      } else {
+        request.async().method(method, entity, callback);
+      }
+    } catch (RuntimeException e) {
+      future.setException(propagate(method, resource, e));
+    }
+    return future;
+  }
+
+  /**
+   * Forget which image a name resolves to once {@code future} completes, since the operation
+   * may have moved it.
+   */
+  private <T> ListenableFuture<T> invalidateName(final ListenableFuture<T> future,
+                                                 final String name) {
+    if (imageCache != null) {
+      future.addListener(new Runnable() {
+        @Override
+        public void run() {
+          imageCache.invalidateName(name);
+        }
+      }, MoreExecutors.sameThreadExecutor());
+    }
+    return future;
+  }
+
+  private Exception propagate(final String method, final WebTarget resource,
+                              final Throwable e) {
+    Throwable cause = e;
+
+    // Sometimes e is a org.glassfish.hk2.api.MultiException
+    // which contains the cause we're actually interested in.
+    // So we unpack it here.
+    if ((e instanceof MultiException) && (e.getCause() != null)) {
+      cause = e.getCause();
+    }
+
+    Response response = null;
+    if (cause instanceof ResponseProcessingException) {
+      response = ((ResponseProcessingException) cause).getResponse();
+    } else if (cause instanceof WebApplicationException) {
+      response = ((WebApplicationException) cause).getResponse();
+    } else if ((cause instanceof ProcessingException) && (cause.getCause() != null)) {
+      // For a ProcessingException, The exception message or nested Throwable cause SHOULD contain
+      // additional information about the reason of the processing failure.
+      cause = cause.getCause();
+    }
+
+    if (response != null) {
+      return new DockerRequestException(method, resource.getUri(), response.getStatus(),
+                                        message(response), cause);
+    } else if ((cause instanceof SocketTimeoutException) ||
+               (cause instanceof ConnectTimeoutException)) {
+      return new DockerTimeoutException(method, resource.getUri(), e);
+    } else if ((cause instanceof InterruptedIOException)
+               || (cause instanceof ClosedByInterruptException)
+               || (cause instanceof InterruptedException)) {
+      return new InterruptedException("Interrupted: " + method + " " + resource);
+    } else {
+      return new DockerException(e);
+    }
+  }
+
+  private static ResponseStream responseStream(final Object entity) {
+    if (entity instanceof LogStream) {
+      return ((LogStream) entity).responseStream();
+    } else if (entity instanceof ProgressStream) {
+      return ((ProgressStream) entity).responseStream();
+    } else if (entity instanceof EventStream) {
+      return ((EventStream) entity).responseStream();
+    } else {
+      return null;
+    }
+  }
+
+  private String message(final Response response) {
+    final Readable reader = new InputStreamReader(response.readEntity(InputStream.class), UTF_8);
+    try {
+      return CharStreams.toString(reader);
+    } catch (IOException | ProcessingException ignore) {
+      return null;
+    } finally {
+      response.close();
+    }
+  }
+
+  private String authHeader(final AuthConfig authConfig) throws DockerException {
+    if (authConfig == null) {
+      return "null";
+    }
+    try {
+      return Base64.encodeAsString(ObjectMapperProvider
+                                       .objectMapper()
+                                       .writeValueAsString(authConfig));
+    } catch (JsonProcessingException ex) {
+      throw new DockerException("Could not encode X-Registry-Auth header", ex);
+    }
+  }
+
+  private <T> FutureFallback<T> containerNotFound(final String containerId) {
+    return containerNotFound(containerId, true);
+  }
+
+  private <T> FutureFallback<T> containerNotFound(final String containerId,
+                                                  final boolean withCause) {
+    return new RequestFallback<T>() {
+      @Override
+      ListenableFuture<T> create(final DockerRequestException e) throws DockerException {
+        switch (e.status()) {
+          case 404:
+            throw new ContainerNotFoundException(containerId, withCause ? e : null);
+          default:
+            throw e;
+        }
+      }
+    };
+  }
+
+  private <T> FutureFallback<T> imageNotFound(final String image) {
+    return new RequestFallback<T>() {
+      @Override
+      ListenableFuture<T> create(final DockerRequestException e) throws DockerException {
+        switch (e.status()) {
+          case 404:
+            throw new ImageNotFoundException(image, e);
+          default:
+            throw e;
+        }
+      }
+    };
+  }
+
+  /**
+   * Translates a failed request into an endpoint specific exception based on the response status.
+   * Failures other than {@link DockerRequestException} are passed through untouched.
+   */
+  private abstract static class RequestFallback<T> implements FutureFallback<T> {
+
+    @Override
+    public ListenableFuture<T> create(final Throwable t) throws Exception {
+      if (t instanceof DockerRequestException) {
+        return create((DockerRequestException) t);
+      }
+      return immediateFailedFuture(t);
+    }
+
+    abstract ListenableFuture<T> create(DockerRequestException e) throws DockerException;
+  }
+
+  /**
+   * Completes a future with the entity of a response. The callback itself always asks Jersey for
+   * the raw {@link Response}: Jersey resolves the entity type from the type argument of the
+   * callback class, which would be erased for a generic callback.
+   */
+  private class ResponseCallback<T> implements InvocationCallback<Response> {
+
+    private final String method;
+    private final GenericType<T> type;
+    private final WebTarget resource;
+    private final SettableFuture<T> future;
+
+    private ResponseCallback(final String method, final GenericType<T> type,
+                             final WebTarget resource, final SettableFuture<T> future) {
+      this.method = method;
+      this.type = type;
+      this.resource = resource;
+      this.future = future;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public void completed(final Response response) {
+      final ManagedHttpClientConnection connection = AbortableConnectionFactory.takeReceived();
+      try {
+        if (type.getRawType() == Response.class) {
+          future.set((T) response);
+        } else if (response.getStatusInfo().getFamily() == Response.Status.Family.SUCCESSFUL) {
+          final T entity = response.readEntity(type);
+          final ResponseStream stream = responseStream(entity);
+          if (stream != null) {
+            stream.attach(response, connection, streamCloser);
+          }
+          future.set(entity);
+        } else {
+          future.setException(new DockerRequestException(method, resource.getUri(),
+                                                          response.getStatus(),
+                                                          message(response)));
+        }
+      } catch (Throwable t) {
+        response.close();
+        future.setException(propagate(method, resource, t));
+      }
+    }
+
+    @Override
+    public void failed(final Throwable throwable) {
+      AbortableConnectionFactory.takeReceived();
+      future.setException(propagate(method, resource, throwable));
+    }
+  }
+}
@@ -21,13 +21,10 @@
 
 package com.spotify.docker.client;
 
-import com.google.common.io.CharStreams;
+import com.google.common.cache.CacheStats;
 import com.google.common.net.HostAndPort;
+import com.google.common.util.concurrent.ListenableFuture;
 
-import com.fasterxml.jackson.core.JsonGenerator;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.spotify.docker.client.messages.AuthConfig;
 import com.spotify.docker.client.messages.Container;
 import com.spotify.docker.client.messages.ContainerConfig;
@@ -38,74 +35,45 @@ import com.spotify.docker.client.messages.HostConfig;
 import com.spotify.docker.client.messages.Image;
 import com.spotify.docker.client.messages.ImageInfo;
 import com.spotify.docker.client.messages.Info;
-import com.spotify.docker.client.messages.ProgressMessage;
 import com.spotify.docker.client.messages.RemovedImage;
 import com.spotify.docker.client.messages.Version;
 
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.config.Registry;
 import org.apache.http.config.RegistryBuilder;
-import org.apache.http.conn.ConnectTimeoutException;
 import org.apache.http.conn.socket.ConnectionSocketFactory;
-import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
-import org.glassfish.hk2.api.MultiException;
 import org.glassfish.jersey.apache.connector.ApacheClientProperties;
 import org.glassfish.jersey.apache.connector.ApacheConnectorProvider;
 import org.glassfish.jersey.client.ClientConfig;
 import org.glassfish.jersey.client.ClientProperties;
-import org.glassfish.jersey.client.RequestEntityProcessing;
-import org.glassfish.jersey.internal.util.Base64;
 import org.glassfish.jersey.jackson.JacksonFeature;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import org.glassfish.jersey.spi.RequestExecutorProvider;
 
 import java.io.Closeable;
-import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.InterruptedIOException;
-import java.io.StringWriter;
-import java.net.SocketTimeoutException;
 import java.net.URI;
-import java.net.URLEncoder;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Collection;
 import java.util.List;
-import java.util.Locale;
-import java.util.Map;
 import java.util.concurrent.ExecutionException;
-import java.util.regex.Pattern;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
 
-import javax.ws.rs.ProcessingException;
-import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.client.Client;
 import javax.ws.rs.client.ClientBuilder;
-import javax.ws.rs.client.Entity;
-import javax.ws.rs.client.Invocation;
-import javax.ws.rs.client.ResponseProcessingException;
-import javax.ws.rs.client.WebTarget;
-import javax.ws.rs.core.GenericType;
-import javax.ws.rs.core.Response;
 
 import static com.google.common.base.Optional.fromNullable;
-import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Strings.isNullOrEmpty;
-import static com.google.common.collect.Maps.newHashMap;
-import static com.spotify.docker.client.CompressedDirectory.delete;
-import static com.spotify.docker.client.ObjectMapperProvider.objectMapper;
+import static com.google.common.base.Throwables.propagateIfInstanceOf;
+import static com.google.common.base.Throwables.propagateIfPossible;
 import static java.lang.System.getProperty;
 import static java.lang.System.getenv;
-import static java.nio.charset.StandardCharsets.UTF_8;
 import static java.util.concurrent.TimeUnit.SECONDS;
-import static javax.ws.rs.HttpMethod.DELETE;
-import static javax.ws.rs.HttpMethod.GET;
-import static javax.ws.rs.HttpMethod.POST;
-import static javax.ws.rs.core.MediaType.APPLICATION_JSON_TYPE;
-import static javax.ws.rs.core.MediaType.APPLICATION_OCTET_STREAM_TYPE;
 
 public class DefaultDockerClient implements DockerClient, Closeable {
 
@@ -115,37 +83,32 @@ public class DefaultDockerClient implements DockerClient, Closeable {
 
   private static final String UNIX_SCHEME = "unix";
 
-  private static final String VERSION = "v1.12";
-  private static final Logger log = LoggerFactory.getLogger(DefaultDockerClient.class);
-
   public static final long NO_TIMEOUT = 0;
 
   private static final long DEFAULT_CONNECT_TIMEOUT_MILLIS = SECONDS.toMillis(5);
   private static final long DEFAULT_READ_TIMEOUT_MILLIS = SECONDS.toMillis(30);
+  private static final long DEFAULT_IMAGE_NAME_CACHE_TTL_MILLIS = SECONDS.toMillis(5);
   private static final int DEFAULT_CONNECTION_POOL_SIZE = 100;
+  private static final int DEFAULT_BULK_CONCURRENCY = 10;
+  private static final long DEFAULT_STREAM_DRAIN_LIMIT = 64 * 1024;
 
   private static final ClientConfig DEFAULT_CONFIG = new ClientConfig(
       ObjectMapperProvider.class,
       JacksonFeature.class,
       LogsResponseReader.class,
+      EventsResponseReader.class,
       ProgressResponseReader.class);
 
-  private static final Pattern CONTAINER_NAME_PATTERN = Pattern.compile("/?[a-zA-Z0-9_-]+");
-
-  private static final GenericType<List<Container>> CONTAINER_LIST =
-      new GenericType<List<Container>>() {};
-
-  private static final GenericType<List<Image>> IMAGE_LIST =
-      new GenericType<List<Image>>() {};
-
-  private static final GenericType<List<RemovedImage>> REMOVED_IMAGE_LIST =
-      new GenericType<List<RemovedImage>>() {};
-
   private final Client client;
   private final Client noTimeoutClient;
 
   private final URI uri;
-  private final AuthConfig authConfig;
+  private final AsyncDockerClient async;
+  private final AsyncDockerClient sameThread;
+  private final RequestCoalescer coalescer;
+  private final ImageInfoCache imageCache;
+  private final StreamCloser streamCloser;
+  private final ForkJoinPool compressionPool;
 
   Client getClient() {
     return client;
@@ -196,40 +159,116 @@ public class DefaultDockerClient implements DockerClient, Closeable {
       this.uri = originalUri;
     }
 
-    final PoolingHttpClientConnectionManager cm = getConnectionManager(builder);
-    final PoolingHttpClientConnectionManager noTimeoutCm = getConnectionManager(builder);
-
-    final RequestConfig requestConfig = RequestConfig.custom()
-        .setConnectionRequestTimeout((int) builder.connectTimeoutMillis)
-        .setConnectTimeout((int) builder.connectTimeoutMillis)
-        .setSocketTimeout((int) builder.readTimeoutMillis)
-        .build();
+    if (builder.rawHttpConnector) {
+      // The raw connector resolves timeouts per request, but sharing a pool between two clients
+      // keeps the no-timeout client independent of how requests are configured.
+      final HttpConnectionPool pool =
+          new HttpConnectionPool(uri, getSchemeRegistry(builder), builder.connectionPoolSize);
+      final ClientConfig config = clientConfig(builder)
+          .connectorProvider(new RawHttpConnectorProvider(pool, (int) builder.connectTimeoutMillis))
+          .property(ClientProperties.CONNECT_TIMEOUT, (int) builder.connectTimeoutMillis)
+          .property(ClientProperties.READ_TIMEOUT, (int) builder.readTimeoutMillis);
+
+      this.client = ClientBuilder.newClient(config);
+      this.noTimeoutClient = ClientBuilder.newBuilder()
+          .withConfig(config)
+          .property(ClientProperties.READ_TIMEOUT, (int) NO_TIMEOUT)
+          .build();
+    } else {
+      // Both clients lease from the same pool. The socket timeout is applied to the leased
+      // connection on every request, so keep-alive connections can be shared between them.
+      final PoolingHttpClientConnectionManager cm = getConnectionManager(builder);
+
+      final RequestConfig requestConfig = RequestConfig.custom()
+          .setConnectionRequestTimeout((int) builder.connectTimeoutMillis)
+          .setConnectTimeout((int) builder.connectTimeoutMillis)
+          .setSocketTimeout((int) builder.readTimeoutMillis)
+          .build();
+
+      final ClientConfig config = clientConfig(builder)
+          .connectorProvider(new ApacheConnectorProvider())
+          .property(ApacheClientProperties.CONNECTION_MANAGER, cm)
+          .property(ApacheClientProperties.REQUEST_CONFIG, requestConfig);
+
+      this.client = ClientBuilder.newClient(config);
+
+      // ApacheConnector doesn't respect per-request timeout settings.
+      // Workaround: instead create a client with infinite read timeout on top of the same
+      // connection pool, and use it for waitContainer and stopContainer.
+      final RequestConfig noReadTimeoutRequestConfig = RequestConfig.copy(requestConfig)
+          .setSocketTimeout((int) NO_TIMEOUT)
+          .build();
+      this.noTimeoutClient = ClientBuilder.newBuilder()
+          .withConfig(config)
+          .property(ApacheClientProperties.CONNECTION_MANAGER, cm)
+          .property(ApacheClientProperties.REQUEST_CONFIG, noReadTimeoutRequestConfig)
+          .build();
+    }
+
+    this.coalescer = builder.coalesceRequests ? new RequestCoalescer() : null;
+    this.imageCache = builder.imageCacheSize > 0
+                      ? new ImageInfoCache(builder.imageCacheSize, builder.imageNameCacheTtlMillis)
+                      : null;
+    this.streamCloser = new StreamCloser(builder.streamDrainLimit);
+    final BuildContextEncoding contextEncoding =
+        builder.buildContextEncoding.forScheme(uri.getScheme());
+    final BuildContextCache contextCache =
+        builder.buildContextCacheDirectory == null
+        ? null
+        : new BuildContextCache(builder.buildContextCacheDirectory);
+    this.compressionPool = builder.buildCompressionThreads > 1
+                           ? new ForkJoinPool(builder.buildCompressionThreads)
+                           : null;
+    this.async = new DefaultAsyncDockerClient(client, noTimeoutClient, uri, builder.authConfig,
+                                              coalescer, imageCache, streamCloser,
+                                              builder.bulkConcurrency, contextEncoding,
+                                              compressionPool, contextCache, false);
+    // Blocking calls send their request on the caller's thread rather than handing it to the
+    // async executor and waiting for it, so interrupting the caller aborts the request. Where
+    // the socket ignores interrupts they keep the executor hop, so that at least the wait for the
+    // response can be interrupted.
+    if (interruptibleSockets(uri, builder.nioUnixSockets)) {
+      this.sameThread = new DefaultAsyncDockerClient(client, noTimeoutClient, uri,
+                                                     builder.authConfig, coalescer, imageCache,
+                                                     streamCloser, builder.bulkConcurrency,
+                                                     contextEncoding, compressionPool,
+                                                     contextCache, true);
+    } else {
+      this.sameThread = async;
+    }
+  }
 
-    final ClientConfig config = DEFAULT_CONFIG
-        .connectorProvider(new ApacheConnectorProvider())
-        .property(ApacheClientProperties.CONNECTION_MANAGER, cm)
-        .property(ApacheClientProperties.REQUEST_CONFIG, requestConfig);
-    
-    this.authConfig = builder.authConfig;
+  /**
+   * Returns true if interrupting a thread blocked on a socket for the given URI closes it. Plain
+   * TCP sockets are backed by a channel, and so are Unix sockets from Java 16 onwards. TLS
+   * sockets and the jnr-unixsocket based {@link ApacheUnixSocket} ignore interrupts.
+   */
+  static boolean interruptibleSockets(final URI uri) {
+    return interruptibleSockets(uri, true);
+  }
 
-    this.client = ClientBuilder.newClient(config);
+  private static boolean interruptibleSockets(final URI uri, final boolean nioUnixSockets) {
+    final String scheme = uri.getScheme();
+    return scheme.equals("http")
+           || (scheme.equals(UNIX_SCHEME) && nioUnixSockets && NioUnixSocket.isSupported());
+  }
 
-    // ApacheConnector doesn't respect per-request timeout settings.
-    // Workaround: instead create a client with infinite read timeout,
-    // and use it for waitContainer and stopContainer.
-    final RequestConfig noReadTimeoutRequestConfig = RequestConfig.copy(requestConfig)
-        .setSocketTimeout((int) NO_TIMEOUT)
-        .build();
-    this.noTimeoutClient = ClientBuilder.newBuilder()
-        .withConfig(config)
-        .property(ApacheClientProperties.CONNECTION_MANAGER, noTimeoutCm)
-        .property(ApacheClientProperties.REQUEST_CONFIG, noReadTimeoutRequestConfig)
-        .build();
+  private static ClientConfig clientConfig(final Builder builder) {
+    final ClientConfig config = new ClientConfig().loadFrom(DEFAULT_CONFIG);
+    if (builder.requestExecutor != null) {
+      config.register(new ExternalRequestExecutorProvider(builder.requestExecutor));
+    } else {
+      // Each async request blocks a thread until its response arrives, and no more requests
+      // than there are connections can get that far. Jersey's default pool is unbounded.
+      config.property(ClientProperties.ASYNC_THREADPOOL_SIZE, builder.connectionPoolSize);
+    }
+    return config;
   }
 
   private PoolingHttpClientConnectionManager getConnectionManager(Builder builder) {
     final PoolingHttpClientConnectionManager cm =
-        new PoolingHttpClientConnectionManager(getSchemeRegistry(builder));
+        new PoolingHttpClientConnectionManager(getSchemeRegistry(builder),
+                                               AbortableConnectionFactory.INSTANCE);
 
     // Use all available connections instead of artificially limiting ourselves to 2 per server.
     cm.setMaxTotal(builder.connectionPoolSize);
@@ -250,99 +289,96 @@ public class DefaultDockerClient implements DockerClient, Closeable {
     final RegistryBuilder registryBuilder = RegistryBuilder
         .<ConnectionSocketFactory>create()
         .register("https", https)
-        .register("http", PlainConnectionSocketFactory.getSocketFactory());
+        .register("http", InterruptibleConnectionSocketFactory.INSTANCE);
 
     if (builder.uri.getScheme().equals(UNIX_SCHEME)) {
-      registryBuilder.register(UNIX_SCHEME, new UnixConnectionSocketFactory(builder.uri));
+      registryBuilder.register(UNIX_SCHEME, new UnixConnectionSocketFactory(
+          builder.uri, builder.socketReceiveBufferSize, builder.socketSendBufferSize,
+          builder.nioUnixSockets));
     }
 
     return registryBuilder.build();
   }
 
+  /**
+   * Returns a non-blocking view of this client. The returned client shares the connection pools
+   * of this client, and closing either of them closes both.
+   */
+  public AsyncDockerClient async() {
+    return async;
+  }
+
+  /**
+   * Returns the number of calls that were answered by sharing another identical in-flight
+   * request. Always zero unless {@link Builder#coalesceRequests(boolean)} is enabled.
+   */
+  public long coalescedRequests() {
+    return coalescer == null ? 0 : coalescer.coalescedRequests();
+  }
+
+  /**
+   * Returns hit, miss and eviction counts of the inspectImage cache. All counts are zero unless
+   * {@link Builder#imageCacheSize(long)} is set.
+   */
+  public CacheStats imageCacheStats() {
+    return imageCache == null ? new CacheStats(0, 0, 0, 0, 0, 0) : imageCache.stats();
+  }
+
+  /**
+   * Returns the number of log and progress streams that were closed before their end and read to
+   * the end anyway, so that their connection could be reused. See
+   * {@link Builder#streamDrainLimit(long)}.
+   */
+  public long drainedStreams() {
+    return streamCloser.drainedStreams();
+  }
+
+  /**
+   * Returns the number of log and progress streams that were closed before their end by
+   * aborting their connection. See {@link Builder#streamDrainLimit(long)}.
+   */
+  public long abortedStreams() {
+    return streamCloser.abortedStreams();
+  }
+
   @Override
   public void close() {
-    client.close();
-    noTimeoutClient.close();
+    async.close();
+    if (compressionPool != null) {
+      compressionPool.shutdown();
+    }
   }
 
   @Override
   public String ping() throws DockerException, InterruptedException {
-    final WebTarget resource = client.target(uri).path("_ping");
-    return request(GET, String.class, resource, resource.request());
+    return get(sameThread.ping());
   }
 
   @Override
   public Version version() throws DockerException, InterruptedException {
-    final WebTarget resource = resource().path("version");
-    return request(GET, Version.class, resource, resource.request(APPLICATION_JSON_TYPE));
+    return get(sameThread.version());
   }
 
   @Override
   public int auth(final AuthConfig authConfig) throws DockerException, InterruptedException {
-    final WebTarget resource = resource().path("auth");
-    final Response response =
-        request(POST, Response.class, resource, resource.request(APPLICATION_JSON_TYPE),
-                Entity.json(authConfig));
-    return response.getStatus();
+    return get(sameThread.auth(authConfig));
   }
 
   @Override
   public Info info() throws DockerException, InterruptedException {
-    final WebTarget resource = resource().path("info");
-    return request(GET, Info.class, resource, resource.request(APPLICATION_JSON_TYPE));
+    return get(sameThread.info());
   }
 
   @Override
   public List<Container> listContainers(final ListContainersParam... params)
       throws DockerException, InterruptedException {
-    WebTarget resource = resource()
-        .path("containers").path("json");
-
-    for (ListContainersParam param : params) {
-      resource = resource.queryParam(param.name(), param.value());
-    }
-
-    return request(GET, CONTAINER_LIST, resource, resource.request(APPLICATION_JSON_TYPE));
+    return get(sameThread.listContainers(params));
   }
 
   @Override
   public List<Image> listImages(ListImagesParam... params)
       throws DockerException, InterruptedException {
-    WebTarget resource = resource()
-        .path("images").path("json");
-
-    final Map<String, String> filters = newHashMap();
-    for (ListImagesParam param : params) {
-      if (param instanceof ListImagesFilterParam) {
-        filters.put(param.name(), param.value());
-      } else {
-        resource = resource.queryParam(param.name(), param.value());
-      }
-    }
-
-    // If filters were specified, we must put them in a JSON object and pass them using the
-    // 'filters' query param like this: filters={"dangling":["true"]}
-    try {
-      if (!filters.isEmpty()) {
-        final StringWriter writer = new StringWriter();
-        final JsonGenerator generator = objectMapper().getFactory().createGenerator(writer);
-        generator.writeStartObject();
-        for (Map.Entry<String, String> entry : filters.entrySet()) {
-          generator.writeArrayFieldStart(entry.getKey());
-          generator.writeString(entry.getValue());
-          generator.writeEndArray();
-        }
-        generator.writeEndObject();
-        generator.close();
-        // We must URL encode the string, otherwise Jersey chokes on the double-quotes in the json.
-        final String encoded = URLEncoder.encode(writer.toString(), UTF_8.name());
-        resource = resource.queryParam("filters", encoded);
-      }
-    } catch (IOException e) {
-      throw new DockerException(e);
-    }
-
-    return request(GET, IMAGE_LIST, resource, resource.request(APPLICATION_JSON_TYPE));
+    return get(sameThread.listImages(params));
   }
 
   @Override
@@ -355,28 +391,7 @@ public class DefaultDockerClient implements DockerClient, Closeable {
   public ContainerCreation createContainer(final ContainerConfig config,
                                            final String name)
       throws DockerException, InterruptedException {
-    WebTarget resource = resource()
-        .path("containers").path("create");
-
-    if (name != null) {
-      checkArgument(CONTAINER_NAME_PATTERN.matcher(name).matches(),
-                    "Invalid container name: \"%s\"", name);
-      resource = resource.queryParam("name", name);
-    }
-
-    log.info("Creating container with ContainerConfig: {}", config);
-
-    try {
-      return request(POST, ContainerCreation.class, resource, resource
-          .request(APPLICATION_JSON_TYPE), Entity.json(config));
-    } catch (DockerRequestException e) {
-      switch (e.status()) {
-        case 404:
-          throw new ImageNotFoundException(config.image(), e);
-        default:
-          throw e;
-      }
-    }
+    return get(sameThread.createContainer(config, name));
   }
 
   @Override
@@ -388,65 +403,19 @@ public class DefaultDockerClient implements DockerClient, Closeable {
   @Override
   public void startContainer(final String containerId, final HostConfig hostConfig)
       throws DockerException, InterruptedException {
-    checkNotNull(containerId, "containerId");
-    checkNotNull(hostConfig, "hostConfig");
-
-    log.info("Starting container with HostConfig: {}", hostConfig);
-
-    try {
-      final WebTarget resource = resource()
-          .path("containers").path(containerId).path("start");
-      request(POST, resource, resource
-                  .request(APPLICATION_JSON_TYPE)
-                  .property(ClientProperties.REQUEST_ENTITY_PROCESSING,
-                            RequestEntityProcessing.BUFFERED),
-              Entity.json(hostConfig));
-    } catch (DockerRequestException e) {
-      switch (e.status()) {
-        case 404:
-          throw new ContainerNotFoundException(containerId, e);
-        default:
-          throw e;
-      }
-    }
+    get(sameThread.startContainer(containerId, hostConfig));
   }
 
   @Override
   public void pauseContainer(final String containerId)
       throws DockerException, InterruptedException {
-    checkNotNull(containerId, "containerId");
-
-    try {
-      final WebTarget resource = resource()
-          .path("containers").path(containerId).path("pause");
-      request(POST, resource, resource.request());
-    } catch (DockerRequestException e) {
-      switch (e.status()) {
-        case 404:
-          throw new ContainerNotFoundException(containerId, e);
-        default:
-          throw e;
-      }
-    }
+    get(sameThread.pauseContainer(containerId));
   }
 
   @Override
   public void unpauseContainer(final String containerId)
       throws DockerException, InterruptedException {
-    checkNotNull(containerId, "containerId");
-
-    try {
-      final WebTarget resource = resource()
-          .path("containers").path(containerId).path("unpause");
-      request(POST, resource, resource.request());
-    } catch (DockerRequestException e) {
-      switch (e.status()) {
-        case 404:
-          throw new ContainerNotFoundException(containerId, e);
-        default:
-          throw e;
-      }
-    }
+    get(sameThread.unpauseContainer(containerId));
   }
 
   @Override
@@ -457,76 +426,24 @@ public class DefaultDockerClient implements DockerClient, Closeable {
   @Override
   public void restartContainer(String containerId, int secondsToWaitBeforeRestart)
       throws DockerException, InterruptedException {
-    checkNotNull(containerId, "containerId");
-    checkNotNull(secondsToWaitBeforeRestart, "secondsToWait");
-    try {
-      final WebTarget resource = resource().path("containers").path(containerId)
-          .path("restart")
-          .queryParam("t", String.valueOf(secondsToWaitBeforeRestart));
-      request(POST, resource, resource.request());
-    } catch (DockerRequestException e) {
-      switch (e.status()) {
-        case 404:
-          throw new ContainerNotFoundException(containerId, e);
-        default:
-          throw e;
-      }
-    }
+    get(sameThread.restartContainer(containerId, secondsToWaitBeforeRestart));
   }
 
-
   @Override
   public void killContainer(final String containerId) throws DockerException, InterruptedException {
-    try {
-      final WebTarget resource = resource().path("containers").path(containerId).path("kill");
-      request(POST, resource, resource.request());
-    } catch (DockerRequestException e) {
-      switch (e.status()) {
-        case 404:
-          throw new ContainerNotFoundException(containerId, e);
-        default:
-          throw e;
-      }
-    }
+    get(sameThread.killContainer(containerId));
   }
 
   @Override
   public void stopContainer(final String containerId, final int secondsToWaitBeforeKilling)
       throws DockerException, InterruptedException {
-    try {
-      final WebTarget resource = noTimeoutResource()
-          .path("containers").path(containerId).path("stop")
-          .queryParam("t", String.valueOf(secondsToWaitBeforeKilling));
-      request(POST, resource, resource.request());
-    } catch (DockerRequestException e) {
-      switch (e.status()) {
-        case 304: // already stopped, so we're cool
-          return;
-        case 404:
-          throw new ContainerNotFoundException(containerId, e);
-        default:
-          throw e;
-      }
-    }
+    get(sameThread.stopContainer(containerId, secondsToWaitBeforeKilling));
   }
 
   @Override
   public ContainerExit waitContainer(final String containerId)
       throws DockerException, InterruptedException {
-    try {
-      final WebTarget resource = noTimeoutResource()
-          .path("containers").path(containerId).path("wait");
-      // Wait forever
-      return request(POST, ContainerExit.class, resource,
-                     resource.request(APPLICATION_JSON_TYPE));
-    } catch (DockerRequestException e) {
-      switch (e.status()) {
-        case 404:
-          throw new ContainerNotFoundException(containerId, e);
-        default:
-          throw e;
-      }
-    }
+    return get(sameThread.waitContainer(containerId));
   }
 
   @Override
@@ -538,60 +455,51 @@ public class DefaultDockerClient implements DockerClient, Closeable {
   @Override
   public void removeContainer(final String containerId, final boolean removeVolumes)
       throws DockerException, InterruptedException {
-    try {
-      final WebTarget resource = resource()
-          .path("containers").path(containerId);
-      request(DELETE, resource, resource
-          .queryParam("v", String.valueOf(removeVolumes))
-          .request(APPLICATION_JSON_TYPE));
-    } catch (DockerRequestException e) {
-      switch (e.status()) {
-        case 404:
-          throw new ContainerNotFoundException(containerId, e);
-        default:
-          throw e;
-      }
-    }
+    get(sameThread.removeContainer(containerId, removeVolumes));
   }
 
   @Override
-  public InputStream exportContainer(String containerId)
+  public BulkResult<ContainerInfo> inspectContainers(final Collection<String> containerIds)
       throws DockerException, InterruptedException {
-    final WebTarget resource = resource()
-        .path("containers").path(containerId).path("export");
-    return request(GET, InputStream.class, resource,
-                   resource.request(APPLICATION_OCTET_STREAM_TYPE));
+    return get(async.inspectContainers(containerIds));
   }
 
   @Override
-  public InputStream copyContainer(String containerId, String path)
+  public BulkResult<Void> stopContainers(final Collection<String> containerIds,
+                                         final int secondsToWaitBeforeKilling)
       throws DockerException, InterruptedException {
-    final WebTarget resource = resource()
-        .path("containers").path(containerId).path("copy");
+    return get(async.stopContainers(containerIds, secondsToWaitBeforeKilling));
+  }
 
-    // Internal JSON object; not worth it to create class for this
-    JsonNodeFactory nf = JsonNodeFactory.instance;
-    final JsonNode params = nf.objectNode().set("Resource", nf.textNode(path));
+  @Override
+  public BulkResult<Void> killContainers(final Collection<String> containerIds)
+      throws DockerException, InterruptedException {
+    return get(async.killContainers(containerIds));
+  }
 
-    return request(POST, InputStream.class, resource,
-                   resource.request(APPLICATION_OCTET_STREAM_TYPE),
-                   Entity.json(params));
+  @Override
+  public BulkResult<Void> removeContainers(final Collection<String> containerIds,
+                                           final boolean removeVolumes)
+      throws DockerException, InterruptedException {
+    return get(async.removeContainers(containerIds, removeVolumes));
+  }
+
+  @Override
+  public InputStream exportContainer(String containerId)
+      throws DockerException, InterruptedException {
+    return get(sameThread.exportContainer(containerId));
+  }
+
+  @Override
+  public InputStream copyContainer(String containerId, String path)
+      throws DockerException, InterruptedException {
+    return get(sameThread.copyContainer(containerId, path));
   }
 
   @Override
   public ContainerInfo inspectContainer(final String containerId)
       throws DockerException, InterruptedException {
-    try {
-      final WebTarget resource = resource().path("containers").path(containerId).path("json");
-      return request(GET, ContainerInfo.class, resource, resource.request(APPLICATION_JSON_TYPE));
-    } catch (DockerRequestException e) {
-      switch (e.status()) {
-        case 404:
-          throw new ContainerNotFoundException(containerId, e);
-        default:
-          throw e;
-      }
-    }
+    return get(sameThread.inspectContainer(containerId));
   }
 
   @Override
@@ -602,41 +510,7 @@ public class DefaultDockerClient implements DockerClient, Closeable {
                                            final String comment,
                                            final String author)
       throws DockerException, InterruptedException {
-
-    checkNotNull(containerId, "containerId");
-    checkNotNull(repo, "repo");
-    checkNotNull(config, "containerConfig");
-
-    WebTarget resource = resource()
-        .path("commit")
-        .queryParam("container", containerId)
-        .queryParam("repo", repo)
-        .queryParam("comment", comment);
-
-    if (!isNullOrEmpty(author)) {
-      resource = resource.queryParam("author", author);
-    }
-    if (!isNullOrEmpty(comment)) {
-      resource = resource.queryParam("comment", comment);
-    }
-    if (!isNullOrEmpty(tag)) {
-      resource = resource.queryParam("tag", tag);
-    }
-
-    log.info("Committing container id: {} to repository: {} with ContainerConfig: {}", containerId,
-             repo, config);
-
-    try {
-      return request(POST, ContainerCreation.class, resource, resource
-          .request(APPLICATION_JSON_TYPE), Entity.json(config));
-    } catch (DockerRequestException e) {
-      switch (e.status()) {
-        case 404:
-          throw new ContainerNotFoundException(containerId, e);
-        default:
-          throw e;
-      }
-    }
+    return get(sameThread.commitContainer(containerId, repo, tag, config, comment, author));
   }
 
   @Override
@@ -647,22 +521,7 @@ public class DefaultDockerClient implements DockerClient, Closeable {
   @Override
   public void pull(final String image, final ProgressHandler handler)
       throws DockerException, InterruptedException {
-    final ImageRef imageRef = new ImageRef(image);
-
-    WebTarget resource = resource().path("images").path("create");
-
-    resource = resource.queryParam("fromImage", imageRef.getImage());
-    if (imageRef.getTag() != null) {
-      resource = resource.queryParam("tag", imageRef.getTag());
-    }
-    
-    try (ProgressStream pull = request(POST, ProgressStream.class, resource,
-                                       resource.request(APPLICATION_JSON_TYPE)
-                                               .header("X-Registry-Auth", authHeader()))) {
-      pull.tail(handler, POST, resource.getUri());
-    } catch (IOException e) {
-      throw new DockerException(e);
-    }
+    get(sameThread.pull(image, handler));
   }
 
   @Override
@@ -674,24 +533,7 @@ public class DefaultDockerClient implements DockerClient, Closeable {
   @Override
   public void pull(final String image, final AuthConfig authConfig, final ProgressHandler handler)
       throws DockerException, InterruptedException {
-    final ImageRef imageRef = new ImageRef(image);
-
-    WebTarget resource = resource().path("images").path("create");
-
-    resource = resource.queryParam("fromImage", imageRef.getImage());
-    if (imageRef.getTag() != null) {
-      resource = resource.queryParam("tag", imageRef.getTag());
-    }
-
-    try (ProgressStream pull =
-             request(POST, ProgressStream.class, resource,
-                     resource
-                         .request(APPLICATION_JSON_TYPE)
-                         .header("X-Registry-Auth", authHeader(authConfig)))) {
-      pull.tail(handler, POST, resource.getUri());
-    } catch (IOException e) {
-      throw new DockerException(e);
-    }
+    get(sameThread.pull(image, authConfig, handler));
   }
 
   @Override
@@ -702,50 +544,13 @@ public class DefaultDockerClient implements DockerClient, Closeable {
   @Override
   public void push(final String image, final ProgressHandler handler)
       throws DockerException, InterruptedException {
-    final ImageRef imageRef = new ImageRef(image);
-
-    WebTarget resource =
-        resource().path("images").path(imageRef.getImage()).path("push");
-
-    if (imageRef.getTag() != null) {
-      resource = resource.queryParam("tag", imageRef.getTag());
-    }
-
-    // the docker daemon requires that the X-Registry-Auth header is specified
-    // with a non-empty string even if your registry doesn't use authentication
-    try (ProgressStream push =
-             request(POST, ProgressStream.class, resource,
-                     resource.request(APPLICATION_JSON_TYPE)
-                             .header("X-Registry-Auth", authHeader()))) {
-      push.tail(handler, POST, resource.getUri());
-    } catch (IOException e) {
-      throw new DockerException(e);
-    }
+    get(sameThread.push(image, handler));
   }
 
   @Override
   public void tag(final String image, final String name)
       throws DockerException, InterruptedException {
-    final ImageRef imageRef = new ImageRef(name);
-
-    WebTarget resource =
-        resource().path("images").path(image).path("tag");
-
-    resource = resource.queryParam("repo", imageRef.getImage());
-    if (imageRef.getTag() != null) {
-      resource = resource.queryParam("tag", imageRef.getTag());
-    }
-
-    try {
-      request(POST, resource, resource.request());
-    } catch (DockerRequestException e) {
-      switch (e.status()) {
-        case 404:
-          throw new ImageNotFoundException(image, e);
-        default:
-          throw e;
-      }
-    }
+    get(sameThread.tag(image, name));
   }
 
   @Override
@@ -771,50 +576,21 @@ public class DefaultDockerClient implements DockerClient, Closeable {
   public String build(final Path directory, final String name, final ProgressHandler handler,
                       final BuildParameter... params)
       throws DockerException, InterruptedException, IOException {
-    checkNotNull(handler, "handler");
-
-    WebTarget resource = resource().path("build");
-
-    for (final BuildParameter param : params) {
-      resource = resource.queryParam(param.queryParam, String.valueOf(param.value));
-    }
-    if (name != null) {
-     resource = resource.queryParam("t", name);
-    }
-
-    final File compressedDirectory = CompressedDirectory.create(directory);
-
-    try (ProgressStream build = request(POST, ProgressStream.class, resource,
-                                        resource.request(APPLICATION_JSON_TYPE),
-                                        Entity.entity(compressedDirectory, "application/tar"))) {
-      String imageId = null;
-      while (build.hasNextMessage(POST, resource.getUri())) {
-        final ProgressMessage message = build.nextMessage(POST, resource.getUri());
-        final String id = message.buildImageId();
-        if (id != null) {
-          imageId = id;
-        }
-        handler.progress(message);
+    final ListenableFuture<String> build = sameThread.build(directory, name, handler, params);
+    if (build.isDone()) {
+      // Failing to compress the directory fails the build before any request is sent
+      try {
+        build.get();
+      } catch (ExecutionException e) {
+        propagateIfInstanceOf(e.getCause(), IOException.class);
       }
-      return imageId;
-    } finally {
-      delete(compressedDirectory);
     }
+    return get(build);
   }
 
   @Override
   public ImageInfo inspectImage(final String image) throws DockerException, InterruptedException {
-    try {
-      final WebTarget resource = resource().path("images").path(image).path("json");
-      return request(GET, ImageInfo.class, resource, resource.request(APPLICATION_JSON_TYPE));
-    } catch (DockerRequestException e) {
-      switch (e.status()) {
-        case 404:
-          throw new ImageNotFoundException(image, e);
-        default:
-          throw e;
-      }
-    }
+    return get(sameThread.inspectImage(image));
   }
 
   @Override
@@ -826,274 +602,60 @@ public class DefaultDockerClient implements DockerClient, Closeable {
   @Override
   public List<RemovedImage> removeImage(String image, boolean force, boolean noPrune)
       throws DockerException, InterruptedException {
-    try {
-      final WebTarget resource = resource().path("images").path(image)
-          .queryParam("force", String.valueOf(force))
-          .queryParam("noprune", String.valueOf(noPrune));
-      return request(DELETE, REMOVED_IMAGE_LIST, resource, resource.request(APPLICATION_JSON_TYPE));
-    } catch (DockerRequestException e) {
-      switch (e.status()) {
-        case 404:
-          throw new ImageNotFoundException(image);
-        default:
-          throw e;
-      }
-    }
+    return get(sameThread.removeImage(image, force, noPrune));
   }
 
   @Override
   public LogStream logs(final String containerId, final LogsParameter... params)
       throws DockerException, InterruptedException {
-    WebTarget resource = resource()
-        .path("containers").path(containerId).path("logs");
-
-    for (final LogsParameter param : params) {
-      resource = resource.queryParam(param.name().toLowerCase(Locale.ROOT), String.valueOf(true));
-    }
+    return get(sameThread.logs(containerId, params));
+  }
 
-    try {
-      return request(GET, LogStream.class, resource,
-                     resource.request("application/vnd.docker.raw-stream"));
-    } catch (DockerRequestException e) {
-      switch (e.status()) {
-        case 404:
-          throw new ContainerNotFoundException(containerId);
-        default:
-          throw e;
-      }
-    }
+  @Override
+  public LogStream logs(final String containerId, final LogsParam param,
+                        final LogsParam... params)
+      throws DockerException, InterruptedException {
+    return get(sameThread.logs(containerId, param, params));
   }
 
   @Override
   public LogStream attachContainer(final String containerId,
                                    final AttachParameter... params) throws DockerException,
       InterruptedException {
-    WebTarget resource = resource().path("containers").path(containerId)
-        .path("attach");
-
-    for (final AttachParameter param : params) {
-      resource = resource.queryParam(param.name().toLowerCase(Locale.ROOT),
-          String.valueOf(true));
-    }
+    return get(sameThread.attachContainer(containerId, params));
+  }
 
-    try {
-      return request(POST, LogStream.class, resource,
-          resource.request("application/vnd.docker.raw-stream"));
-    } catch (DockerRequestException e) {
-      switch (e.status()) {
-      case 404:
-        throw new ContainerNotFoundException(containerId);
-      default:
-        throw e;
-      }
-    }
+  @Override
+  public EventStream events(final EventsParam... params)
+      throws DockerException, InterruptedException {
+    return get(sameThread.events(params));
   }
 
   @Override
   public String execCreate(String containerId, String[] cmd, ExecParameter... params)
           throws DockerException, InterruptedException {
-    WebTarget resource = resource().path("containers").path(containerId).path("exec");
-
-    final StringWriter writer = new StringWriter();
-    try {
-      final JsonGenerator generator = objectMapper().getFactory().createGenerator(writer);
-      generator.writeStartObject();
-
-      for (ExecParameter param : params) {
-        generator.writeBooleanField(param.getName(), true);
-      }
-
-      generator.writeArrayFieldStart("Cmd");
-      for (String s : cmd) {
-        generator.writeString(s);
-      }
-      generator.writeEndArray();
-
-      generator.writeEndObject();
-      generator.close();
-    } catch (IOException e) {
-      throw new DockerException(e);
-    }
-
-
-    String response;
-    try {
-      response = request(POST, String.class, resource,
-              resource.request(APPLICATION_JSON_TYPE),
-              Entity.json(writer.toString()));
-    } catch (DockerRequestException e) {
-      switch (e.status()) {
-        case 404:
-          throw new ContainerNotFoundException(containerId);
-        default:
-          throw e;
-      }
-    }
-
-    try {
-      JsonNode json = objectMapper().readTree(response);
-      return json.findValue("Id").textValue();
-    } catch (IOException e) {
-      throw new DockerException(e);
-    }
+    return get(sameThread.execCreate(containerId, cmd, params));
   }
 
   @Override
   public LogStream execStart(String execId, ExecStartParameter... params)
           throws DockerException, InterruptedException {
-    WebTarget resource = resource().path("exec").path(execId).path("start");
-
-    final StringWriter writer = new StringWriter();
-    try {
-      final JsonGenerator generator = objectMapper().getFactory().createGenerator(writer);
-      generator.writeStartObject();
-
-      for (ExecStartParameter param : params) {
-        generator.writeBooleanField(param.getName(), true);
-      }
-
-      generator.writeEndObject();
-      generator.close();
-    } catch (IOException e) {
-      throw new DockerException(e);
-    }
-
-    try {
-      return request(POST, LogStream.class, resource,
-              resource.request("application/vnd.docker.raw-stream"),
-              Entity.json(writer.toString()));
-    } catch (DockerRequestException e) {
-      switch (e.status()) {
-        case 404:
-          throw new ExecNotFoundException(execId);
-        default:
-          throw e;
-      }
-    }
-  }
-
-  private WebTarget resource() {
-    return client.target(uri).path(VERSION);
-  }
-
-  private WebTarget noTimeoutResource() {
-    return noTimeoutClient.target(uri).path(VERSION);
-  }
-
-  private <T> T request(final String method, final GenericType<T> type,
-                        final WebTarget resource, final Invocation.Builder request)
-      throws DockerException, InterruptedException {
-    try {
-      return request.async().method(method, type).get();
-    } catch (ExecutionException | MultiException e) {
-      throw propagate(method, resource, e);
-    }
-  }
-
-  private <T> T request(final String method, final Class<T> clazz,
-                        final WebTarget resource, final Invocation.Builder request)
-      throws DockerException, InterruptedException {
-    try {
-      return request.async().method(method, clazz).get();
-    } catch (ExecutionException | MultiException e) {
-      throw propagate(method, resource, e);
-    }
-  }
-
-  private <T> T request(final String method, final Class<T> clazz,
-                        final WebTarget resource, final Invocation.Builder request,
-                        final Entity<?> entity)
-      throws DockerException, InterruptedException {
-    try {
-      return request.async().method(method, entity, clazz).get();
-    } catch (ExecutionException | MultiException e) {
-      throw propagate(method, resource, e);
-    }
-  }
-
-  private void request(final String method,
-                       final WebTarget resource,
-                       final Invocation.Builder request)
-      throws DockerException, InterruptedException {
-    try {
-      request.async().method(method, String.class).get();
-    } catch (ExecutionException | MultiException e) {
-      throw propagate(method, resource, e);
-    }
+    return get(sameThread.execStart(execId, params));
   }
 
-  private void request(final String method,
-                       final WebTarget resource,
-                       final Invocation.Builder request,
-                       final Entity<?> entity)
-      throws DockerException, InterruptedException {
-    try {
-      request.async().method(method, entity, String.class).get();
-    } catch (ExecutionException | MultiException e) {
-      throw propagate(method, resource, e);
-    }
-  }
-
-  private RuntimeException propagate(final String method, final WebTarget resource,
-                                     final Exception e)
+  /**
+   * Blocks until a request completes, rethrowing the exception that the request failed with.
+   */
+  private static <T> T get(final ListenableFuture<T> future)
       throws DockerException, InterruptedException {
-    Throwable cause = e.getCause();
-
-    // Sometimes e is a org.glassfish.hk2.api.MultiException
-    // which contains the cause we're actually interested in.
-    // So we unpack it here.
-    if (e instanceof MultiException) {
-      cause = cause.getCause();
-    }
-
-    Response response = null;
-    if (cause instanceof ResponseProcessingException) {
-      response = ((ResponseProcessingException) cause).getResponse();
-    } else if (cause instanceof WebApplicationException) {
-      response = ((WebApplicationException) cause).getResponse();
-    } else if ((cause instanceof ProcessingException) && (cause.getCause() != null)) {
-      // For a ProcessingException, The exception message or nested Throwable cause SHOULD contain
-      // additional information about the reason of the processing failure.
-      cause = cause.getCause();
-    }
-
-    if (response != null) {
-      throw new DockerRequestException(method, resource.getUri(), response.getStatus(),
-                                       message(response), cause);
-    } else if ((cause instanceof SocketTimeoutException) ||
-               (cause instanceof ConnectTimeoutException)) {
-      throw new DockerTimeoutException(method, resource.getUri(), e);
-    } else if ((cause instanceof InterruptedIOException)
-               || (cause instanceof InterruptedException)) {
-      throw new InterruptedException("Interrupted: " + method + " " + resource);
-    } else {
-      throw new DockerException(e);
-    }
-  }
-
-  private String message(final Response response) {
-    final Readable reader = new InputStreamReader(response.readEntity(InputStream.class), UTF_8);
-    try {
-      return CharStreams.toString(reader);
-    } catch (IOException ignore) {
-      return null;
-    }
-  }
-  
-  private String authHeader() throws DockerException {
-    return authHeader(authConfig);
-  }
-
-  private String authHeader(final AuthConfig authConfig) throws DockerException {
-    if (authConfig == null) {
-      return "null";
-    }
     try {
-      return Base64.encodeAsString(ObjectMapperProvider
-              .objectMapper()
-              .writeValueAsString(authConfig));
-    } catch (JsonProcessingException ex) {
-      throw new DockerException("Could not encode X-Registry-Auth header", ex);
+      return future.get();
+    } catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+      propagateIfInstanceOf(cause, DockerException.class);
+      propagateIfInstanceOf(cause, InterruptedException.class);
+      propagateIfPossible(cause);
+      throw new DockerException(cause);
     }
   }
 
@@ -1151,6 +713,19 @@ public class DefaultDockerClient implements DockerClient, Closeable {
     private long connectTimeoutMillis = DEFAULT_CONNECT_TIMEOUT_MILLIS;
     private long readTimeoutMillis = DEFAULT_READ_TIMEOUT_MILLIS;
     private int connectionPoolSize = DEFAULT_CONNECTION_POOL_SIZE;
+    private int bulkConcurrency = DEFAULT_BULK_CONCURRENCY;
+    private long streamDrainLimit = DEFAULT_STREAM_DRAIN_LIMIT;
+    private int buildCompressionThreads = 1;
+    private BuildContextEncoding buildContextEncoding = BuildContextEncoding.gzip();
+    private Path buildContextCacheDirectory;
+    private ExecutorService requestExecutor;
+    private int socketReceiveBufferSize;
+    private int socketSendBufferSize;
+    private boolean nioUnixSockets = true;
+    private boolean rawHttpConnector;
+    private boolean coalesceRequests;
+    private long imageCacheSize;
+    private long imageNameCacheTtlMillis = DEFAULT_IMAGE_NAME_CACHE_TTL_MILLIS;
     private DockerCertificates dockerCertificates;
     private AuthConfig authConfig;
 
@@ -1196,6 +771,96 @@ public class DefaultDockerClient implements DockerClient, Closeable {
       return this;
     }
 
+    public int socketReceiveBufferSize() {
+      return socketReceiveBufferSize;
+    }
+
+    /**
+     * Set the SO_RCVBUF size in bytes for unix:// connections to Docker. Zero, the default,
+     * keeps the system default. Only applied when running on Java 16 or later.
+     */
+    public Builder socketReceiveBufferSize(final int socketReceiveBufferSize) {
+      this.socketReceiveBufferSize = socketReceiveBufferSize;
+      return this;
+    }
+
+    public int socketSendBufferSize() {
+      return socketSendBufferSize;
+    }
+
+    /**
+     * Set the SO_SNDBUF size in bytes for unix:// connections to Docker. Zero, the default,
+     * keeps the system default. Only applied when running on Java 16 or later.
+     */
+    public Builder socketSendBufferSize(final int socketSendBufferSize) {
+      this.socketSendBufferSize = socketSendBufferSize;
+      return this;
+    }
+
+    /**
+     * Use {@link NioUnixSocket} for unix:// connections when the JVM supports it, which is the
+     * default. Turning it off forces the jnr-unixsocket implementation, so that benchmarks can
+     * compare the two on the same JVM.
+     */
+    Builder nioUnixSockets(final boolean nioUnixSockets) {
+      this.nioUnixSockets = nioUnixSockets;
+      return this;
+    }
+
+    public boolean rawHttpConnector() {
+      return rawHttpConnector;
+    }
+
+    /**
+     * Talk HTTP/1.1 to Docker directly over the socket instead of through the Apache HTTP
+     * client. Requests still go through Jersey, so responses, including log and progress
+     * streams, are handled the same way. Disabled by default.
+     */
+    public Builder rawHttpConnector(final boolean rawHttpConnector) {
+      this.rawHttpConnector = rawHttpConnector;
+      return this;
+    }
+
+    public boolean coalesceRequests() {
+      return coalesceRequests;
+    }
+
+    /**
+     * Let concurrent identical GET requests, such as inspecting the same container, share one
+     * request to Docker and its result. Streaming calls like logs are never shared. Results are
+     * shared between callers and must not be modified. Disabled by default.
+     */
+    public Builder coalesceRequests(final boolean coalesceRequests) {
+      this.coalesceRequests = coalesceRequests;
+      return this;
+    }
+
+    public long imageCacheSize() {
+      return imageCacheSize;
+    }
+
+    /**
+     * Cache the results of inspectImage by image ID, up to about this many bytes of image JSON.
+     * Zero, the default, disables the cache. Entries are dropped when the image is removed.
+     */
+    public Builder imageCacheSize(final long imageCacheSize) {
+      this.imageCacheSize = imageCacheSize;
+      return this;
+    }
+
+    public long imageNameCacheTtlMillis() {
+      return imageNameCacheTtlMillis;
+    }
+
+    /**
+     * Set how long the image cache remembers which image ID a name, tag or ID prefix resolved
+     * to. Tags can be moved to other images, so this should be short. Defaults to 5 seconds.
+     */
+    public Builder imageNameCacheTtlMillis(final long imageNameCacheTtlMillis) {
+      this.imageNameCacheTtlMillis = imageNameCacheTtlMillis;
+      return this;
+    }
+
     public DockerCertificates dockerCertificates() {
       return dockerCertificates;
     }
@@ -1213,16 +878,115 @@ public class DefaultDockerClient implements DockerClient, Closeable {
     }
 
     /**
-     * Set the size of the connection pool for connections to Docker. Note that due to
-     * a known issue, DefaultDockerClient maintains two separate connection pools, each
-     * of which is capped at this size. Therefore, the maximum number of concurrent
-     * connections to Docker may be up to 2 * connectionPoolSize.
+     * Set the size of the connection pool for connections to Docker. All requests, including
+     * those without a read timeout such as waitContainer, share this pool, so this is the
+     * maximum number of concurrent connections to Docker. Unless a
+     * {@link #requestExecutor(ExecutorService) request executor} is set, it's also the number of
+     * threads that run requests of the {@link DefaultDockerClient#async() async client}.
      */
     public Builder connectionPoolSize(int connectionPoolSize) {
       this.connectionPoolSize = connectionPoolSize;
       return this;
     }
+
+    public ExecutorService requestExecutor() {
+      return requestExecutor;
+    }
+
+    /**
+     * Run the requests of the {@link DefaultDockerClient#async() async client}, and the
+     * processing of their responses such as following pull progress, on this executor instead of
+     * a thread pool owned by the client. On JDK 21 and later this can be
+     * {@code Executors.newVirtualThreadPerTaskExecutor()}, so that an async call blocked on a
+     * long-running request such as waitContainer costs next to nothing.
+     *
+     * Blocking calls of this client don't use the executor: they run on the caller's thread,
+     * except over https and, before Java 16, unix sockets, whose sockets ignore interrupts. Streams
+     * such as {@link LogStream} are always read on the thread that iterates them. To run those on
+     * virtual threads, call the client from virtual threads.
+     *
+     * Unix sockets opened on a virtual thread use blocking channels, so they don't keep their
+     * carrier thread busy while they wait. The jnr-unixsocket fallback used before Java 16 does.
+     *
+     * The executor isn't shut down when the client is closed.
+     */
+    public Builder requestExecutor(final ExecutorService requestExecutor) {
+      this.requestExecutor = requestExecutor;
+      return this;
+    }
+
+    public int bulkConcurrency() {
+      return bulkConcurrency;
+    }
+
+    /**
+     * Set how many requests a bulk operation such as removeContainers may have in flight at a
+     * time. They share the connection pool with all other requests, so this should be well below
+     * the pool size. Defaults to 10.
+     */
+    public Builder bulkConcurrency(final int bulkConcurrency) {
+      this.bulkConcurrency = bulkConcurrency;
+      return this;
+    }
+
+    public long streamDrainLimit() {
+      return streamDrainLimit;
+    }
+
+    /**
+     * Set how many bytes closing a log or progress stream before its end may read to let the
+     * connection be reused. If more of the body is left, or its length isn't known as for a
+     * followed log, the connection is aborted instead. Defaults to 64 KiB.
+     */
+    public Builder streamDrainLimit(final long streamDrainLimit) {
+      this.streamDrainLimit = streamDrainLimit;
+      return this;
+    }
     
+    public int buildCompressionThreads() {
+      return buildCompressionThreads;
+    }
+
+    /**
+     * Set how many threads compress a build context. With more than one, the context is cut into
+     * blocks that are compressed in parallel on a pool owned by the client, at the cost of a
+     * slightly larger gzip stream. Defaults to 1, which compresses on the thread that sends the
+     * build request.
+     */
+    public Builder buildCompressionThreads(final int buildCompressionThreads) {
+      this.buildCompressionThreads = buildCompressionThreads;
+      return this;
+    }
+
+    public BuildContextEncoding buildContextEncoding() {
+      return buildContextEncoding;
+    }
+
+    /**
+     * Set how build contexts are sent to the daemon: as a plain tar, gzipped at some level, or
+     * {@link BuildContextEncoding#auto()} to skip compression over a unix socket where it only
+     * costs CPU. Defaults to {@link BuildContextEncoding#gzip()}.
+     */
+    public Builder buildContextEncoding(final BuildContextEncoding buildContextEncoding) {
+      this.buildContextEncoding = checkNotNull(buildContextEncoding, "buildContextEncoding");
+      return this;
+    }
+
+    public Path buildContextCacheDirectory() {
+      return buildContextCacheDirectory;
+    }
+
+    /**
+     * Cache the compressed files of build contexts in this directory, so that files that haven't
+     * changed since the last build are neither read nor compressed again. A file counts as
+     * unchanged while its path, size, modification time and mode are. Only applies when build
+     * contexts are compressed. Disabled by default.
+     */
+    public Builder buildContextCacheDirectory(final Path buildContextCacheDirectory) {
+      this.buildContextCacheDirectory = buildContextCacheDirectory;
+      return this;
+    }
+
     public AuthConfig authConfig() {
       return authConfig;
     }
@@ -1239,4 +1003,27 @@ public class DefaultDockerClient implements DockerClient, Closeable {
       return new DefaultDockerClient(this);
     }
   }
+
+  /**
+   * Hands Jersey an executor that belongs to the caller, and leaves it running when Jersey is
+   * done with it.
+   */
+  private static class ExternalRequestExecutorProvider implements RequestExecutorProvider {
+
+    private final ExecutorService executor;
+
+    ExternalRequestExecutorProvider(final ExecutorService executor) {
+      this.executor = executor;
+    }
+
+    @Override
+    public ExecutorService getRequestingExecutor() {
+      return executor;
+    }
+
+    @Override
+    public void releaseRequestingExecutor(final ExecutorService executor) {
+      // Owned by the caller
+    }
+  }
 }
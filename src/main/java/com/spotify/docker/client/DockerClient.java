@@ -38,7 +38,14 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Path;
+import java.util.Collection;
+import java.util.Date;
 import java.util.List;
+import java.util.Locale;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
 
 /**
  * A client for interacting with dockerd.
@@ -398,6 +405,50 @@ public interface DockerClient extends Closeable {
   void removeContainer(String containerId, boolean removeVolumes)
       throws DockerException, InterruptedException;
 
+  /**
+   * Inspect several docker containers, a bounded number at a time.
+   *
+   * @param containerIds The ids of the containers to inspect.
+   * @return The container info, containers not found and failures, by id.
+   * @see DefaultDockerClient.Builder#bulkConcurrency(int)
+   */
+  BulkResult<ContainerInfo> inspectContainers(Collection<String> containerIds)
+      throws DockerException, InterruptedException;
+
+  /**
+   * Stop several docker containers, a bounded number at a time.
+   *
+   * @param containerIds               The ids of the containers to stop.
+   * @param secondsToWaitBeforeKilling Seconds to wait for each container to stop before
+   *                                   killing it.
+   * @return The containers stopped, containers not found and failures.
+   * @see DefaultDockerClient.Builder#bulkConcurrency(int)
+   */
+  BulkResult<Void> stopContainers(Collection<String> containerIds,
+                                  int secondsToWaitBeforeKilling)
+      throws DockerException, InterruptedException;
+
+  /**
+   * Kill several docker containers, a bounded number at a time.
+   *
+   * @param containerIds The ids of the containers to kill.
+   * @return The containers killed, containers not found and failures.
+   * @see DefaultDockerClient.Builder#bulkConcurrency(int)
+   */
+  BulkResult<Void> killContainers(Collection<String> containerIds)
+      throws DockerException, InterruptedException;
+
+  /**
+   * Remove several docker containers, a bounded number at a time.
+   *
+   * @param containerIds  The ids of the containers to remove.
+   * @param removeVolumes Whether to remove volumes as well.
+   * @return The containers removed, containers not found and failures.
+   * @see DefaultDockerClient.Builder#bulkConcurrency(int)
+   */
+  BulkResult<Void> removeContainers(Collection<String> containerIds, boolean removeVolumes)
+      throws DockerException, InterruptedException;
+
   /**
    * Export a docker container as a tar archive.
    *
@@ -435,6 +486,20 @@ public interface DockerClient extends Closeable {
   LogStream logs(String containerId, LogsParameter... params)
       throws DockerException, InterruptedException;
 
+  /**
+   * Get docker container logs. {@link LogsParam#tail(int)} and {@link LogsParam#since(Date)} are
+   * sent to the daemon if its API version supports them, and applied on the client otherwise.
+   * The first parameter is separate so that {@code logs(containerId)} isn't ambiguous.
+   *
+   * @param containerId The id of the container to get logs for.
+   * @param param       A param for controlling what streams to get and which part of the log.
+   * @param params      More params.
+   * @return A log message stream.
+   * @throws ContainerNotFoundException if the container was not found (404).
+   */
+  LogStream logs(String containerId, LogsParam param, LogsParam... params)
+      throws DockerException, InterruptedException;
+
 
   /**
    * Sets up an exec instance in a running container id.
@@ -510,6 +575,91 @@ public interface DockerClient extends Closeable {
     TIMESTAMPS,
   }
 
+  /**
+   * Parameters for {@link #logs(String, LogsParam, LogsParam...)}
+   */
+  public static class LogsParam {
+
+    private final String name;
+    private final String value;
+
+    public LogsParam(final String name, final String value) {
+      this.name = name;
+      this.value = value;
+    }
+
+    /**
+     * Parameter name.
+     */
+    public String name() {
+      return name;
+    }
+
+    /**
+     * Parameter value.
+     */
+    public String value() {
+      return value;
+    }
+
+    /**
+     * Keep the stream open and return new messages as they are logged.
+     */
+    public static LogsParam follow() {
+      return create("follow", String.valueOf(true));
+    }
+
+    /**
+     * Return messages written to stdout.
+     */
+    public static LogsParam stdout() {
+      return create("stdout", String.valueOf(true));
+    }
+
+    /**
+     * Return messages written to stderr.
+     */
+    public static LogsParam stderr() {
+      return create("stderr", String.valueOf(true));
+    }
+
+    /**
+     * Prefix every message with the time it was logged.
+     */
+    public static LogsParam timestamps() {
+      return create("timestamps", String.valueOf(true));
+    }
+
+    /**
+     * Only return this many lines from the end of the log.
+     */
+    public static LogsParam tail(final int lines) {
+      checkArgument(lines >= 0, "lines must not be negative");
+      return create("tail", String.valueOf(lines));
+    }
+
+    /**
+     * Only return lines logged at or after this time.
+     */
+    public static LogsParam since(final Date since) {
+      return create("since", String.valueOf(SECONDS.convert(since.getTime(), MILLISECONDS)));
+    }
+
+    /**
+     * The parameter equivalent to a {@link LogsParameter} flag.
+     */
+    public static LogsParam of(final LogsParameter flag) {
+      return create(flag.name().toLowerCase(Locale.ROOT), String.valueOf(true));
+    }
+
+    /**
+     * Create a custom parameter.
+     */
+    public static LogsParam create(final String name, final String value) {
+      return new LogsParam(name, value);
+    }
+  }
+
   /**
    * Parameters for {@link #attachContainer(String, AttachParameter...)}
    */
@@ -533,6 +683,19 @@ public interface DockerClient extends Closeable {
   LogStream attachContainer(String containerId, AttachParameter... params)
       throws DockerException, InterruptedException;
 
+  /**
+   * Get a stream of events from the daemon, such as containers being created, started or
+   * dying. Without an {@link EventsParam#until} parameter the stream is kept open and new events
+   * are delivered as they happen.
+   *
+   * @param params Time bounds and filters for the events.
+   * @return A lazily parsed event stream.
+   * @throws InterruptedException
+   * @throws DockerException
+   */
+  EventStream events(EventsParam... params)
+      throws DockerException, InterruptedException;
+
   /**
    * Parameters for {@link #listContainers(ListContainersParam...)}
    */
@@ -690,4 +853,92 @@ public interface DockerClient extends Closeable {
       super(name, value);
     }
   }
+
+  /**
+   * Parameters for {@link #events(EventsParam...)}
+   */
+  public static class EventsParam {
+
+    private final String name;
+    private final String value;
+
+    public EventsParam(final String name, final String value) {
+      this.name = name;
+      this.value = value;
+    }
+
+    /**
+     * Parameter name.
+     */
+    public String name() {
+      return name;
+    }
+
+    /**
+     * Parameter value.
+     */
+    public String value() {
+      return value;
+    }
+
+    /**
+     * Only show events that happened at or after this time.
+     */
+    public static EventsParam since(final Date since) {
+      return create("since", String.valueOf(SECONDS.convert(since.getTime(), MILLISECONDS)));
+    }
+
+    /**
+     * Only show events that happened at or before this time. The stream ends once this time has
+     * passed.
+     */
+    public static EventsParam until(final Date until) {
+      return create("until", String.valueOf(SECONDS.convert(until.getTime(), MILLISECONDS)));
+    }
+
+    /**
+     * Only show events of the given kind, e.g. {@code die}. May be given more than once.
+     */
+    public static EventsParam event(final String event) {
+      return filter("event", event);
+    }
+
+    /**
+     * Only show events about the given container. May be given more than once.
+     */
+    public static EventsParam container(final String container) {
+      return filter("container", container);
+    }
+
+    /**
+     * Only show events about the given image. May be given more than once.
+     */
+    public static EventsParam image(final String image) {
+      return filter("image", image);
+    }
+
+    /**
+     * Create a custom filter.
+     */
+    public static EventsParam filter(final String name, final String value) {
+      return new EventsFilterParam(name, value);
+    }
+
+    /**
+     * Create a custom parameter.
+     */
+    public static EventsParam create(final String name, final String value) {
+      return new EventsParam(name, value);
+    }
+  }
+
+  /**
+   * Filter parameter for {@link #events(EventsParam...)}. This should be used by EventsParam
+   * only.
+   */
+  static class EventsFilterParam extends EventsParam {
+    public EventsFilterParam(String name, String value) {
+      super(name, value);
+    }
+  }
 }
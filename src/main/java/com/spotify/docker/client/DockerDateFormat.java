@@ -22,6 +22,7 @@
 package com.spotify.docker.client;
 
 import com.fasterxml.jackson.databind.util.StdDateFormat;
+import com.spotify.docker.client.messages.DockerTimestamp;
 
 import java.text.ParseException;
 import java.util.Date;
@@ -29,28 +30,23 @@ import java.util.Date;
 /**
  * Docker returns timestamps with nanosecond precision (e.g.
  * <tt>2014-10-17T21:22:56.949763914Z</tt>), but {@link Date} only supports milliseconds.
- * Creating a Date from the nanosecond timestamp results in the date being set to several
- * days after what date should be. This class converts the timestamp from nanoseconds to
- * milliseconds by removing the last six digits of the timestamp, so we can generate a Date
- * with the correct value (albeit with less precision).
- *
- * Note: a more complete solution would be to introduce a custom date type which can store the
- * nanosecond value in an additional field, so users can access the complete value. Or just use
- * Java 8 which has date objects with nanosecond support.
+ * {@link StdDateFormat} reads the nine fractional digits as milliseconds, which results in the
+ * date being set to several days after what it should be. This class parses RFC3339 timestamps
+ * with {@link DockerTimestamp} and truncates them to milliseconds, and leaves any other format
+ * to {@link StdDateFormat}.
  */
 public class DockerDateFormat extends StdDateFormat {
 
   private static final long serialVersionUID = 249048552876483658L;
 
   @Override
-  public Date parse(String source) throws ParseException {
-    // If the date has nanosecond precision (e.g. 2014-10-17T21:22:56.949763914Z), remove the last
-    // six digits so we can create a Date object, which only support milliseconds.
-    if (source.matches(".+\\.\\d{9}Z$")) {
-      source = source.replaceAll("\\d{6}Z$", "Z");
+  public Date parse(final String source) throws ParseException {
+    try {
+      return DockerTimestamp.parse(source).toDate();
+    } catch (ParseException e) {
+      // Not RFC3339, but maybe another format StdDateFormat knows
+      return super.parse(source);
     }
-
-    return super.parse(source);
   }
 
   @Override
@@ -0,0 +1,265 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import com.google.common.base.Joiner;
+import com.google.common.collect.ImmutableList;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The patterns of a build context's {@code .dockerignore} file, compiled into regular
+ * expressions once so that every path in the context can be checked cheaply while it's walked.
+ *
+ * Patterns follow the docker CLI: paths are relative to the context and separated by
+ * {@code /}, {@code *} and {@code ?} match within a path component, {@code **} matches any
+ * number of components, lines starting with {@code #} are comments and a leading {@code !}
+ * makes a pattern an exception. The last pattern that matches a path decides whether it's
+ * excluded, and a pattern that matches a directory matches everything in it. The Dockerfile
+ * and the {@code .dockerignore} file itself are always sent.
+ */
+class DockerIgnore {
+
+  static final String FILE_NAME = ".dockerignore";
+
+  private static final String DOCKERFILE = "Dockerfile";
+
+  private static final DockerIgnore EMPTY = new DockerIgnore(ImmutableList.<Rule>of());
+
+  private final List<Rule> rules;
+  private final boolean hasExceptions;
+
+  private DockerIgnore(final List<Rule> rules) {
+    this.rules = rules;
+    boolean hasExceptions = false;
+    for (final Rule rule : rules) {
+      hasExceptions |= rule.exception;
+    }
+    this.hasExceptions = hasExceptions;
+  }
+
+  /**
+   * Read the {@code .dockerignore} file of a build context, if it has one.
+   */
+  static DockerIgnore load(final Path directory) throws IOException {
+    final List<String> lines;
+    try {
+      lines = Files.readAllLines(directory.resolve(FILE_NAME), UTF_8);
+    } catch (NoSuchFileException e) {
+      return EMPTY;
+    }
+    return parse(lines);
+  }
+
+  static DockerIgnore parse(final List<String> lines) {
+    final ImmutableList.Builder<Rule> rules = ImmutableList.builder();
+    for (final String line : lines) {
+      String pattern = line.trim();
+      if (pattern.isEmpty() || pattern.startsWith("#")) {
+        continue;
+      }
+      final boolean exception = pattern.startsWith("!");
+      if (exception) {
+        pattern = pattern.substring(1).trim();
+      }
+      pattern = clean(pattern);
+      if (!pattern.isEmpty()) {
+        rules.add(new Rule(pattern, exception));
+      }
+    }
+    final List<Rule> built = rules.build();
+    return built.isEmpty() ? EMPTY : new DockerIgnore(built);
+  }
+
+  boolean isEmpty() {
+    return rules.isEmpty();
+  }
+
+  /**
+   * Returns true if {@code path}, relative to the context and separated by {@code /}, should
+   * be left out of it.
+   */
+  boolean isExcluded(final String path) {
+    if (rules.isEmpty() || path.equals(DOCKERFILE) || path.equals(FILE_NAME)) {
+      return false;
+    }
+    boolean excluded = false;
+    for (final Rule rule : rules) {
+      if (rule.exception != excluded) {
+        // This rule can't change the outcome
+        continue;
+      }
+      if (rule.matches(path)) {
+        excluded = !rule.exception;
+      }
+    }
+    return excluded;
+  }
+
+  /**
+   * Returns true if nothing under {@code directory} can be part of the context, so that it
+   * doesn't have to be walked at all. That's the case when the directory is excluded and no
+   * exception could bring back anything inside it.
+   */
+  boolean isPrunable(final String directory) {
+    if (!isExcluded(directory)) {
+      return false;
+    }
+    if (!hasExceptions) {
+      return true;
+    }
+    final String prefix = directory + "/";
+    for (final Rule rule : rules) {
+      if (rule.exception
+          && (rule.literalPrefix.startsWith(prefix) || prefix.startsWith(rule.literalPrefix))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Returns {@code path} relative to {@code root}, separated by {@code /}.
+   */
+  static String relativePath(final Path root, final Path path) {
+    final List<String> names = new ArrayList<>();
+    for (final Path name : root.relativize(path)) {
+      names.add(name.toString());
+    }
+    return Joiner.on('/').join(names);
+  }
+
+  /**
+   * Normalize a pattern the way paths in the context are written: no leading slash, no empty,
+   * {@code .} or trailing components, and {@code ..} resolved.
+   */
+  private static String clean(final String pattern) {
+    final List<String> components = new ArrayList<>();
+    for (final String component : pattern.split("/")) {
+      if (component.isEmpty() || component.equals(".")) {
+        continue;
+      }
+      if (component.equals("..")) {
+        if (!components.isEmpty()) {
+          components.remove(components.size() - 1);
+        }
+        continue;
+      }
+      components.add(component);
+    }
+    return Joiner.on('/').join(components);
+  }
+
+  private static class Rule {
+
+    private final Pattern regex;
+    private final boolean exception;
+    // The part of the pattern before its first wildcard
+    private final String literalPrefix;
+
+    Rule(final String pattern, final boolean exception) {
+      this.regex = compile(pattern);
+      this.exception = exception;
+      this.literalPrefix = literalPrefix(pattern);
+    }
+
+    boolean matches(final String path) {
+      if (regex.matcher(path).matches()) {
+        return true;
+      }
+      // A pattern that matches a parent directory matches everything in it
+      for (int slash = path.indexOf('/'); slash != -1; slash = path.indexOf('/', slash + 1)) {
+        if (regex.matcher(path.substring(0, slash)).matches()) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    private static Pattern compile(final String pattern) {
+      final StringBuilder regex = new StringBuilder("^");
+      final int length = pattern.length();
+      for (int i = 0; i < length; i++) {
+        final char c = pattern.charAt(i);
+        if (c == '*') {
+          if (i + 1 < length && pattern.charAt(i + 1) == '*') {
+            i++;
+            if (i + 1 < length && pattern.charAt(i + 1) == '/') {
+              // "**/" matches zero or more leading directories
+              i++;
+              regex.append("(.*/)?");
+            } else {
+              regex.append(".*");
+            }
+          } else {
+            regex.append("[^/]*");
+          }
+        } else if (c == '?') {
+          regex.append("[^/]");
+        } else if (c == '\\' && i + 1 < length) {
+          i++;
+          appendLiteral(regex, pattern.charAt(i));
+        } else if (c == '[') {
+          final int end = pattern.indexOf(']', i + 2);
+          if (end == -1) {
+            regex.append("\\[");
+            continue;
+          }
+          String range = pattern.substring(i + 1, end);
+          if (range.startsWith("!") || range.startsWith("^")) {
+            range = "^" + range.substring(1);
+          }
+          regex.append('[').append(range.replace("[", "\\[")).append(']');
+          i = end;
+        } else {
+          appendLiteral(regex, c);
+        }
+      }
+      return Pattern.compile(regex.append('$').toString());
+    }
+
+    private static void appendLiteral(final StringBuilder regex, final char c) {
+      if (!Character.isLetterOrDigit(c) && c != '/') {
+        regex.append('\\');
+      }
+      regex.append(c);
+    }
+
+    private static String literalPrefix(final String pattern) {
+      for (int i = 0; i < pattern.length(); i++) {
+        final char c = pattern.charAt(i);
+        if (c == '*' || c == '?' || c == '[' || c == '\\') {
+          return pattern.substring(0, i);
+        }
+      }
+      return pattern;
+    }
+  }
+}
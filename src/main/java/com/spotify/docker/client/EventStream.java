@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import com.google.common.base.Throwables;
+import com.google.common.collect.AbstractIterator;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.spotify.docker.client.messages.Event;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+import static com.spotify.docker.client.ObjectMapperProvider.objectMapper;
+
+/**
+ * A stream of {@link Event Events} from the daemon. Events are parsed lazily as they are
+ * iterated over, so {@link #hasNext()} blocks until the next event arrives or the daemon ends
+ * the stream.
+ */
+public class EventStream extends AbstractIterator<Event> implements Closeable {
+
+  private static final Logger log = LoggerFactory.getLogger(EventStream.class);
+
+  private final ResponseStream stream;
+  private final MappingIterator<Event> iterator;
+
+  private volatile boolean closed;
+
+  EventStream(final InputStream stream) throws IOException {
+    this.stream = new ResponseStream(stream);
+    final JsonParser parser = objectMapper().getFactory().createParser(this.stream);
+    this.iterator = objectMapper().readValues(parser, Event.class);
+  }
+
+  @Override
+  protected Event computeNext() {
+    try {
+      if (!iterator.hasNextValue()) {
+        return endOfData();
+      }
+      return iterator.nextValue();
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  ResponseStream responseStream() {
+    return stream;
+  }
+
+  @Override
+  protected void finalize() throws Throwable {
+    super.finalize();
+    if (!closed) {
+      log.warn(this + " not closed properly");
+      close();
+    }
+  }
+
+  /**
+   * Stops reading events. The daemon only ends the stream once the {@code until} time has passed,
+   * so unless the stream has already ended the connection is aborted rather than drained.
+   */
+  @Override
+  public void close() {
+    closed = true;
+    try {
+      stream.close();
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * A single HTTP/1.1 connection to Docker, used by {@link RawHttpConnector}. Instances are not
+ * thread safe; they are owned by one request at a time through {@link HttpConnectionPool}.
+ */
+class HttpConnection implements Closeable {
+
+  private static final int BUFFER_SIZE = 8192;
+
+  private final Socket socket;
+  private final InputStream in;
+  private final OutputStream out;
+
+  private long idleSinceNanos;
+  private boolean reused;
+
+  HttpConnection(final Socket socket) throws IOException {
+    this.socket = socket;
+    this.in = new BufferedInputStream(socket.getInputStream(), BUFFER_SIZE);
+    this.out = new BufferedOutputStream(socket.getOutputStream(), BUFFER_SIZE);
+  }
+
+  InputStream input() {
+    return in;
+  }
+
+  OutputStream output() {
+    return out;
+  }
+
+  void setSoTimeout(final int timeout) throws IOException {
+    socket.setSoTimeout(timeout);
+  }
+
+  void markIdle() {
+    idleSinceNanos = System.nanoTime();
+    reused = true;
+  }
+
+  /**
+   * Returns true if this connection has been used for an earlier request.
+   */
+  boolean isReused() {
+    return reused;
+  }
+
+  long idleMillis() {
+    return MILLISECONDS.convert(System.nanoTime() - idleSinceNanos, NANOSECONDS);
+  }
+
+  /**
+   * Returns true if the peer has closed this idle connection or sent unexpected data on it.
+   * Blocks for at most a millisecond.
+   */
+  boolean isStale() {
+    try {
+      if (in.available() > 0) {
+        return true;
+      }
+      final int timeout = socket.getSoTimeout();
+      socket.setSoTimeout(1);
+      try {
+        // Either end of stream or data nobody asked for: the connection can't be reused.
+        in.read();
+        return true;
+      } finally {
+        socket.setSoTimeout(timeout);
+      }
+    } catch (SocketTimeoutException e) {
+      return false;
+    } catch (IOException e) {
+      return true;
+    }
+  }
+
+  @Override
+  public void close() {
+    try {
+      socket.close();
+    } catch (IOException ignored) {
+      // nothing to do
+    }
+  }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import org.apache.http.HttpHost;
+import org.apache.http.config.Lookup;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * A keep-alive pool of {@link HttpConnection}s to a single Docker endpoint. At most
+ * {@code maxConnections} connections are leased at any time, and since new connections are only
+ * opened when no idle one is available, that also bounds the number of open sockets.
+ */
+class HttpConnectionPool implements Closeable {
+
+  /**
+   * Idle connections are checked for staleness before reuse once they've been idle this long.
+   */
+  private static final long VALIDATE_AFTER_INACTIVITY_MILLIS = 2000;
+
+  private final HttpHost host;
+  private final ConnectionSocketFactory socketFactory;
+  private final Semaphore permits;
+  private final Deque<HttpConnection> idle = new ArrayDeque<>();
+  // Not a monitor, so that virtual threads contending for it don't pin their carriers
+  private final Lock lock = new ReentrantLock();
+
+  private volatile boolean closed;
+
+  HttpConnectionPool(final URI uri, final Lookup<ConnectionSocketFactory> socketFactories,
+                     final int maxConnections) {
+    checkArgument(maxConnections > 0, "maxConnections must be positive");
+    this.host = new HttpHost(uri.getHost(), port(uri), uri.getScheme());
+    this.socketFactory = socketFactories.lookup(uri.getScheme());
+    checkArgument(socketFactory != null, "Unsupported scheme: " + uri.getScheme());
+    this.permits = new Semaphore(maxConnections, true);
+  }
+
+  /**
+   * Lease a connection, waiting at most {@code requestTimeout} milliseconds for one to become
+   * available and at most {@code connectTimeout} milliseconds to open a new one. Zero timeouts
+   * wait forever. The connection must be handed back through {@link #release}.
+   */
+  HttpConnection lease(final int requestTimeout, final int connectTimeout) throws IOException {
+    acquire(requestTimeout);
+    try {
+      HttpConnection connection;
+      while ((connection = pollIdle()) != null) {
+        if (connection.idleMillis() < VALIDATE_AFTER_INACTIVITY_MILLIS || !connection.isStale()) {
+          return connection;
+        }
+        connection.close();
+      }
+      return connect(connectTimeout);
+    } catch (IOException | RuntimeException e) {
+      permits.release();
+      throw e;
+    }
+  }
+
+  /**
+   * Hand back a leased connection. It is kept for reuse if {@code reusable} is true, and closed
+   * otherwise.
+   */
+  void release(final HttpConnection connection, final boolean reusable) {
+    try {
+      if (reusable && !closed) {
+        lock.lock();
+        try {
+          if (!closed) {
+            connection.markIdle();
+            idle.push(connection);
+            return;
+          }
+        } finally {
+          lock.unlock();
+        }
+      }
+      connection.close();
+    } finally {
+      permits.release();
+    }
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    lock.lock();
+    try {
+      for (final HttpConnection connection : idle) {
+        connection.close();
+      }
+      idle.clear();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private void acquire(final int timeout) throws IOException {
+    if (closed) {
+      throw new IllegalStateException("Connection pool is closed");
+    }
+    try {
+      if (timeout == 0) {
+        permits.acquire();
+      } else if (!permits.tryAcquire(timeout, MILLISECONDS)) {
+        throw new ConnectionPoolTimeoutException("Timeout waiting for connection from pool");
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted waiting for connection from pool");
+    }
+  }
+
+  private HttpConnection pollIdle() {
+    lock.lock();
+    try {
+      return idle.poll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private HttpConnection connect(final int connectTimeout) throws IOException {
+    final HttpContext context = new BasicHttpContext();
+    final InetSocketAddress remoteAddress =
+        new InetSocketAddress(InetAddress.getByName(host.getHostName()), host.getPort());
+    final Socket socket = socketFactory.connectSocket(
+        connectTimeout, socketFactory.createSocket(context), host, remoteAddress, null, context);
+    try {
+      socket.setTcpNoDelay(true);
+      return new HttpConnection(socket);
+    } catch (IOException e) {
+      socket.close();
+      throw e;
+    }
+  }
+
+  private static int port(final URI uri) {
+    if (uri.getPort() != -1) {
+      return uri.getPort();
+    }
+    return uri.getScheme().equals("https") ? 443 : 80;
+  }
+}
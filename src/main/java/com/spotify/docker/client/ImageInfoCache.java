@@ -0,0 +1,154 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import com.google.common.cache.AbstractCache;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.spotify.docker.client.messages.ImageInfo;
+
+import java.util.regex.Pattern;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Caches {@link ImageInfo} by image ID, with or without the {@code sha256:} prefix that newer
+ * daemons put in front of it. Since an image ID identifies immutable content, entries
+ * only leave the cache when it's full or the image is removed. The cache is bounded by the
+ * total size of the JSON the entries were parsed from.
+ *
+ * Other references to an image, such as a repository name, tag or ID prefix, can be moved to
+ * a different image at any time, so they are resolved to an image ID through a second cache
+ * whose entries expire after a short time.
+ */
+class ImageInfoCache {
+
+  private static final String ID_PREFIX = "sha256:";
+  private static final Pattern IMAGE_ID = Pattern.compile("(sha256:)?[0-9a-f]{64}");
+
+  private final Cache<String, Entry> infos;
+  private final Cache<String, String> ids;
+  private final AbstractCache.StatsCounter stats = new AbstractCache.SimpleStatsCounter();
+
+  ImageInfoCache(final long maxBytes, final long nameTtlMillis) {
+    // A single segment so that the size bound applies to the cache as a whole. Reads don't
+    // lock, and writes are rare.
+    this.infos = CacheBuilder.newBuilder()
+        .concurrencyLevel(1)
+        .maximumWeight(maxBytes)
+        .weigher(new Weigher<String, Entry>() {
+          @Override
+          public int weigh(final String id, final Entry entry) {
+            return entry.size;
+          }
+        })
+        .removalListener(new RemovalListener<String, Entry>() {
+          @Override
+          public void onRemoval(final RemovalNotification<String, Entry> notification) {
+            if (notification.wasEvicted()) {
+              stats.recordEviction();
+            }
+          }
+        })
+        .build();
+    this.ids = CacheBuilder.newBuilder()
+        .expireAfterWrite(nameTtlMillis, MILLISECONDS)
+        .build();
+  }
+
+  /**
+   * Returns the cached info for an image ID, name or tag, or null if there is none.
+   */
+  ImageInfo get(final String image) {
+    final String id = isId(image) ? image : ids.getIfPresent(image);
+    final Entry entry = id == null ? null : infos.getIfPresent(key(id));
+    if (entry == null) {
+      stats.recordMisses(1);
+      return null;
+    }
+    stats.recordHits(1);
+    return entry.info;
+  }
+
+  /**
+   * Cache the info that {@code image} resolved to. {@code size} is the size of the JSON it was
+   * parsed from.
+   */
+  void put(final String image, final ImageInfo info, final int size) {
+    if (info.id() == null) {
+      return;
+    }
+    infos.put(key(info.id()), new Entry(info, size));
+    if (!isId(image)) {
+      ids.put(image, info.id());
+    }
+  }
+
+  /**
+   * Forget an image ID, name or tag, and the info it currently resolves to.
+   */
+  void invalidate(final String image) {
+    final String id = ids.getIfPresent(image);
+    ids.invalidate(image);
+    infos.invalidate(key(image));
+    if (id != null) {
+      infos.invalidate(key(id));
+    }
+  }
+
+  /**
+   * Forget which image a name or tag resolves to, e.g. because it was just moved.
+   */
+  void invalidateName(final String name) {
+    ids.invalidate(name);
+  }
+
+  private static boolean isId(final String image) {
+    return IMAGE_ID.matcher(image).matches();
+  }
+
+  /**
+   * Returns the key of an image ID in the info cache, which is the ID without its prefix.
+   */
+  private static String key(final String id) {
+    return id.startsWith(ID_PREFIX) ? id.substring(ID_PREFIX.length()) : id;
+  }
+
+  CacheStats stats() {
+    return stats.snapshot();
+  }
+
+  private static class Entry {
+
+    private final ImageInfo info;
+    private final int size;
+
+    Entry(final ImageInfo info, final int size) {
+      this.info = info;
+      this.size = size;
+    }
+  }
+}
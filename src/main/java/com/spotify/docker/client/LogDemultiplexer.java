@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Splits the frames of a {@link LogStream} into a stdout and a stderr {@link InputStream}
+ * without a thread of its own. Whichever stream runs out of data reads the next frame from the
+ * log. A frame for the other stream is queued for it, up to a limit: once that stream has
+ * {@code bufferLimit} bytes queued, the reader waits for it to catch up.
+ *
+ * So both streams must be read concurrently, or the one that isn't needed closed. Frames for a
+ * closed stream are dropped.
+ */
+class LogDemultiplexer {
+
+  private final LogStream log;
+  private final int bufferLimit;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition changed = lock.newCondition();
+  private final Demultiplexed stdout = new Demultiplexed();
+  private final Demultiplexed stderr = new Demultiplexed();
+
+  // True while a stream is reading a frame, which it does without holding the lock
+  private boolean reading;
+  private boolean endOfStream;
+  private IOException failure;
+
+  LogDemultiplexer(final LogStream log, final int bufferLimit) {
+    this.log = log;
+    this.bufferLimit = bufferLimit;
+  }
+
+  InputStream stdout() {
+    return stdout;
+  }
+
+  InputStream stderr() {
+    return stderr;
+  }
+
+  private Demultiplexed streamOf(final LogMessage message) {
+    switch (message.stream()) {
+      case STDOUT:
+        return stdout;
+      case STDERR:
+        return stderr;
+      case STDIN:
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * Read the next frame into the queue of the stream it belongs to. Returns once {@code
+   * requester} has data, or there will be none. Must be called with the lock held.
+   */
+  private void fill(final Demultiplexed requester) throws IOException {
+    while (requester.queue.isEmpty() && !requester.closed) {
+      if (failure != null) {
+        throw new IOException(failure);
+      }
+      if (endOfStream) {
+        return;
+      }
+      if (reading) {
+        await();
+        continue;
+      }
+
+      reading = true;
+      try {
+        final LogMessage message;
+        lock.unlock();
+        try {
+          message = log.nextMessage();
+        } finally {
+          lock.lock();
+        }
+        if (message == null) {
+          endOfStream = true;
+          return;
+        }
+        final Demultiplexed target = streamOf(message);
+        if (target == null || !message.content().hasRemaining()) {
+          continue;
+        }
+        while (target != requester && !target.closed && !target.queue.isEmpty()
+               && target.queued + message.content().remaining() > bufferLimit) {
+          await();
+        }
+        if (!target.closed) {
+          target.queued += message.content().remaining();
+          target.queue.addLast(message.content());
+        }
+      } catch (IOException e) {
+        failure = e;
+        throw e;
+      } finally {
+        reading = false;
+        changed.signalAll();
+      }
+    }
+  }
+
+  private void await() throws InterruptedIOException {
+    try {
+      changed.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while demultiplexing log");
+    }
+  }
+
+  private class Demultiplexed extends InputStream {
+
+    private final Deque<ByteBuffer> queue = new ArrayDeque<>();
+    private int queued;
+    private boolean closed;
+
+    @Override
+    public int read() throws IOException {
+      final byte[] b = new byte[1];
+      final int n = read(b, 0, 1);
+      return n < 0 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      lock.lock();
+      try {
+        if (closed) {
+          throw new IOException("Stream closed");
+        }
+        fill(this);
+        final ByteBuffer head = queue.peekFirst();
+        if (head == null) {
+          return -1;
+        }
+        final int n = Math.min(len, head.remaining());
+        head.get(b, off, n);
+        if (!head.hasRemaining()) {
+          queue.removeFirst();
+        }
+        queued -= n;
+        changed.signalAll();
+        return n;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    @Override
+    public int available() {
+      lock.lock();
+      try {
+        return queued;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    @Override
+    public void close() {
+      lock.lock();
+      try {
+        closed = true;
+        queue.clear();
+        queued = 0;
+        changed.signalAll();
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+}
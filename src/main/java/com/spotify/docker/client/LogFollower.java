@@ -0,0 +1,477 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.spotify.docker.client.messages.DockerTimestamp;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.google.common.base.Charsets.US_ASCII;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Follows the logs of any number of containers on a single thread. Every followed log has a
+ * connection of its own, but they are all read through one selector, so the number of threads
+ * doesn't grow with the number of containers.
+ *
+ * <p>
+ * A log is followed from the time {@link #follow(String, Listener)} is called. If its connection
+ * fails, it's reopened with a growing delay and resumes from the time of the last message that
+ * was passed on, so messages are neither lost nor repeated. Following ends when the daemon ends
+ * the log, which it does once the container stops.
+ * </p>
+ *
+ * <p>
+ * Only {@code unix://} and {@code http://} URIs are supported, and {@code unix://} only from
+ * Java 16 onwards.
+ * </p>
+ */
+public class LogFollower implements Closeable {
+
+  private static final Logger log = LoggerFactory.getLogger(LogFollower.class);
+
+  private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+  private static final long MIN_RETRY_DELAY_MILLIS = 100;
+  private static final long MAX_RETRY_DELAY_MILLIS = SECONDS.toMillis(10);
+
+  /**
+   * Receives the messages of followed logs. Methods are called on the follower's thread, so
+   * they must not block.
+   */
+  public interface Listener {
+
+    /**
+     * Called for every message of a followed log. The message's content is its own.
+     */
+    void message(String containerId, LogMessage message);
+
+    /**
+     * Called once when following a log ends for good, but not when it's unfollowed or the
+     * follower is closed. If the follower itself fails, it's called for every followed log.
+     *
+     * @param cause Null if the daemon ended the log, otherwise why it can't be followed, e.g.
+     *              a {@link ContainerNotFoundException}.
+     */
+    void ended(String containerId, Exception cause);
+  }
+
+  private final URI uri;
+  private final File socketFile;
+  private final Selector selector;
+  private final Thread thread;
+  private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+
+  private final ConcurrentMap<String, Follow> follows = new ConcurrentHashMap<>();
+  private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+  private final AtomicLong reconnects = new AtomicLong();
+  private volatile boolean closed;
+
+  // Only used on the follower's thread
+  private final PriorityQueue<Follow> retries = new PriorityQueue<>(16, new Comparator<Follow>() {
+    @Override
+    public int compare(final Follow a, final Follow b) {
+      return Long.compare(a.retryAtNanos, b.retryAtNanos);
+    }
+  });
+
+  /**
+   * @param uri The docker rest api uri, e.g. {@code unix:///var/run/docker.sock}.
+   * @throws IllegalArgumentException if the URI's scheme isn't supported on this JVM.
+   */
+  public LogFollower(final URI uri) throws IOException {
+    this.uri = checkNotNull(uri, "uri");
+    switch (uri.getScheme()) {
+      case "unix":
+        checkArgument(NioUnixSocket.isSupported(),
+                      "Following logs over a Unix socket requires Java 16: %s", uri);
+        this.socketFile = new File(uri.getPath());
+        break;
+      case "http":
+        this.socketFile = null;
+        break;
+      default:
+        throw new IllegalArgumentException("Unsupported URI scheme: " + uri);
+    }
+    this.selector = Selector.open();
+    this.thread = new ThreadFactoryBuilder()
+        .setDaemon(true)
+        .setNameFormat("docker-log-follower-%d")
+        .build()
+        .newThread(new Runnable() {
+          @Override
+          public void run() {
+            loop();
+          }
+        });
+    thread.start();
+  }
+
+  /**
+   * Start following the log of a container.
+   *
+   * @param containerId The ID or name of the container.
+   * @param listener    Receives the container's messages, without their timestamps.
+   * @throws IllegalStateException if the container's log is already being followed, or the
+   *                               follower is closed.
+   */
+  public void follow(final String containerId, final Listener listener) {
+    checkNotNull(containerId, "containerId");
+    checkNotNull(listener, "listener");
+    checkState(!closed, "closed");
+    final Follow follow = new Follow(containerId, listener);
+    checkState(follows.putIfAbsent(containerId, follow) == null,
+               "already following %s", containerId);
+    // The follower may have failed since we checked
+    if (closed && follows.remove(containerId, follow)) {
+      throw new IllegalStateException("closed");
+    }
+    submit(new Runnable() {
+      @Override
+      public void run() {
+        connect(follow);
+      }
+    });
+  }
+
+  /**
+   * Stop following the log of a container, if it's being followed.
+   */
+  public void unfollow(final String containerId) {
+    final Follow follow = follows.remove(containerId);
+    if (follow != null) {
+      submit(new Runnable() {
+        @Override
+        public void run() {
+          follow.disconnect();
+          retries.remove(follow);
+        }
+      });
+    }
+  }
+
+  /**
+   * Returns the number of logs that are being followed.
+   */
+  public int followed() {
+    return follows.size();
+  }
+
+  /**
+   * Returns the number of times a failed connection was reopened.
+   */
+  public long reconnects() {
+    return reconnects.get();
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    selector.wakeup();
+    if (Thread.currentThread() == thread) {
+      return;
+    }
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void submit(final Runnable task) {
+    tasks.add(task);
+    selector.wakeup();
+  }
+
+  private void loop() {
+    Exception failure = null;
+    try {
+      while (!closed) {
+        selector.select(retryTimeoutMillis());
+        for (Runnable task; (task = tasks.poll()) != null; ) {
+          task.run();
+        }
+        for (final SelectionKey key : selector.selectedKeys()) {
+          handle(key);
+        }
+        selector.selectedKeys().clear();
+        retryDue();
+      }
+    } catch (IOException | RuntimeException e) {
+      log.error("Log follower failed", e);
+      failure = e;
+    } finally {
+      closed = true;
+      for (final Follow follow : follows.values()) {
+        if (failure != null) {
+          ended(follow, failure);
+        } else {
+          follow.disconnect();
+          follows.remove(follow.containerId, follow);
+        }
+      }
+      try {
+        selector.close();
+      } catch (IOException ignored) {
+        // nothing to do
+      }
+    }
+  }
+
+  /**
+   * Returns how long to wait for the next connection to reopen, or 0 if there is none.
+   */
+  private long retryTimeoutMillis() {
+    final Follow next = retries.peek();
+    if (next == null) {
+      return 0;
+    }
+    final long delayNanos = next.retryAtNanos - System.nanoTime();
+    return Math.max(1, NANOSECONDS.toMillis(delayNanos + MILLISECONDS.toNanos(1) - 1));
+  }
+
+  private void retryDue() {
+    final long now = System.nanoTime();
+    while (!retries.isEmpty() && retries.peek().retryAtNanos - now <= 0) {
+      final Follow follow = retries.poll();
+      if (follows.get(follow.containerId) == follow) {
+        reconnects.incrementAndGet();
+        connect(follow);
+      }
+    }
+  }
+
+  private void connect(final Follow follow) {
+    if (follows.get(follow.containerId) != follow) {
+      return;
+    }
+    try {
+      final SocketChannel channel;
+      final SocketAddress address;
+      if (socketFile != null) {
+        channel = NioUnixSocket.openChannel();
+        address = NioUnixSocket.address(socketFile);
+      } else {
+        channel = SocketChannel.open();
+        address = new InetSocketAddress(uri.getHost(), uri.getPort() < 0 ? 80 : uri.getPort());
+      }
+      follow.connected(channel, request(follow));
+      channel.configureBlocking(false);
+      final boolean connected = channel.connect(address);
+      follow.key = channel.register(selector, connected ? SelectionKey.OP_WRITE
+                                                        : SelectionKey.OP_CONNECT, follow);
+    } catch (IOException e) {
+      failed(follow, e);
+    }
+  }
+
+  private ByteBuffer request(final Follow follow) throws UnsupportedEncodingException {
+    // Unversioned paths are served at the daemon's own API version, which supports since.
+    // Messages from earlier in the second that since is rounded down to are skipped again.
+    final String head = "GET /containers/" + URLEncoder.encode(follow.containerId, "UTF-8")
+                        + "/logs?follow=1&stdout=1&stderr=1&timestamps=1"
+                        + "&since=" + NANOSECONDS.toSeconds(follow.lastNanos) + " HTTP/1.1\r\n"
+                        + "Host: " + (socketFile != null ? "localhost" : uri.getHost()) + "\r\n"
+                        + "\r\n";
+    return ByteBuffer.wrap(head.getBytes(US_ASCII));
+  }
+
+  private void handle(final SelectionKey key) {
+    final Follow follow = (Follow) key.attachment();
+    if (!key.isValid()) {
+      return;
+    }
+    try {
+      if (key.isConnectable() && follow.channel.finishConnect()) {
+        key.interestOps(SelectionKey.OP_WRITE);
+      }
+      if (key.isValid() && key.isWritable()) {
+        follow.channel.write(follow.request);
+        if (!follow.request.hasRemaining()) {
+          key.interestOps(SelectionKey.OP_READ);
+        }
+      }
+      if (key.isValid() && key.isReadable()) {
+        read(follow);
+      }
+    } catch (IOException e) {
+      failed(follow, e);
+    }
+  }
+
+  private void read(final Follow follow) throws IOException {
+    readBuffer.clear();
+    final int n = follow.channel.read(readBuffer);
+    if (n < 0) {
+      if (follow.decoder.endOfInput()) {
+        ended(follow, null);
+      } else {
+        throw new IOException("Connection closed before the end of the log");
+      }
+      return;
+    }
+    readBuffer.flip();
+    follow.decoder.decode(readBuffer, follow);
+
+    final int status = follow.decoder.status();
+    if (status == 200) {
+      follow.attempts = 0;
+    } else if (status == 404) {
+      ended(follow, new ContainerNotFoundException(follow.containerId));
+      return;
+    } else if (status != 0) {
+      ended(follow, new DockerRequestException("GET", uri.resolve(
+          "/containers/" + follow.containerId + "/logs"), status));
+      return;
+    }
+    if (follow.decoder.isDone()) {
+      ended(follow, null);
+    }
+  }
+
+  private void ended(final Follow follow, final Exception cause) {
+    follow.disconnect();
+    if (follows.remove(follow.containerId, follow)) {
+      try {
+        follow.listener.ended(follow.containerId, cause);
+      } catch (RuntimeException e) {
+        log.warn("Log listener for {} failed", follow.containerId, e);
+      }
+    }
+  }
+
+  private void failed(final Follow follow, final IOException cause) {
+    follow.disconnect();
+    if (closed || follows.get(follow.containerId) != follow) {
+      return;
+    }
+    final long delay = Math.min(MIN_RETRY_DELAY_MILLIS << Math.min(follow.attempts, 10),
+                                MAX_RETRY_DELAY_MILLIS);
+    follow.attempts++;
+    log.debug("Following the log of {} failed, retrying in {} ms", follow.containerId, delay,
+              cause);
+    follow.retryAtNanos = System.nanoTime() + MILLISECONDS.toNanos(delay);
+    retries.add(follow);
+  }
+
+  private class Follow implements LogFrameHandler {
+
+    private final String containerId;
+    private final Listener listener;
+
+    // Messages up to this time have been passed on, or were logged before following started
+    private long lastNanos = MILLISECONDS.toNanos(System.currentTimeMillis());
+    // True until the first message after lastNanos, since a connection starts with the whole
+    // second that lastNanos falls into. Later messages are passed on even if stdout and stderr
+    // got slightly out of order.
+    private boolean skipping;
+    private int attempts;
+    private long retryAtNanos;
+
+    private SocketChannel channel;
+    private SelectionKey key;
+    private ByteBuffer request;
+    private LogResponseDecoder decoder;
+
+    Follow(final String containerId, final Listener listener) {
+      this.containerId = containerId;
+      this.listener = listener;
+    }
+
+    void connected(final SocketChannel channel, final ByteBuffer request) {
+      this.channel = channel;
+      this.request = request;
+      this.decoder = new LogResponseDecoder();
+      this.skipping = true;
+    }
+
+    void disconnect() {
+      if (key != null) {
+        key.cancel();
+        key = null;
+      }
+      if (channel != null) {
+        try {
+          channel.close();
+        } catch (IOException ignored) {
+          // nothing to do
+        }
+        channel = null;
+      }
+    }
+
+    @Override
+    public void frame(final LogMessage.Stream stream, final ByteBuffer content) {
+      final int space = LogTimestamps.prefixLength(content);
+      final DockerTimestamp timestamp =
+          space < 0 ? null : LogTimestamps.parsePrefix(content, space);
+      final long nanos = timestamp == null ? -1 : timestamp.epochNanos();
+      final ByteBuffer message;
+      if (nanos >= 0) {
+        if (skipping && nanos <= lastNanos) {
+          return;
+        }
+        skipping = false;
+        lastNanos = Math.max(lastNanos, nanos);
+        message = ByteBuffer.allocate(content.remaining() - space - 1);
+        content.position(content.position() + space + 1);
+      } else {
+        message = ByteBuffer.allocate(content.remaining());
+      }
+      message.put(content);
+      message.flip();
+
+      try {
+        listener.message(containerId, new LogMessage(stream, message));
+      } catch (RuntimeException e) {
+        log.warn("Log listener for {} failed", containerId, e);
+      }
+    }
+  }
+}
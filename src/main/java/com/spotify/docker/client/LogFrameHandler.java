@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Handler for processing the frames of a log stream without allocating a {@link LogMessage}
+ * and a buffer for each of them.
+ */
+public interface LogFrameHandler {
+
+  /**
+   * This method will be called for each frame received from Docker.
+   *
+   * @param stream  the stream the frame was written to
+   * @param content a read-only view of the frame's content. It is reused for the next frame, so
+   *                it must not be retained after this method returns.
+   * @throws IOException
+   */
+  void frame(LogMessage.Stream stream, ByteBuffer content) throws IOException;
+
+}
@@ -31,6 +31,7 @@ import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 
 import static com.google.common.io.ByteStreams.copy;
 import static com.google.common.io.ByteStreams.nullOutputStream;
@@ -42,6 +43,18 @@ public class LogReader implements Closeable {
   public static final int HEADER_SIZE = 8;
   public static final int FRAME_SIZE_OFFSET = 4;
 
+  // Frames larger than this are read into a buffer of their own rather than growing the
+  // reused one, so a single huge frame doesn't pin its buffer for the life of the stream.
+  private static final int MAX_REUSED_FRAME_SIZE = 1024 * 1024;
+
+  // Frames are transferred to channels in chunks of at most this size
+  private static final int TRANSFER_CHUNK_SIZE = 64 * 1024;
+
+  private final byte[] header = new byte[HEADER_SIZE];
+  private byte[] buffer = new byte[0];
+  private ByteBuffer bufferView = ByteBuffer.wrap(buffer).asReadOnlyBuffer();
+  private ByteBuffer chunk;
+
   private volatile boolean closed;
 
   public LogReader(final InputStream stream) {
@@ -49,25 +62,107 @@ public class LogReader implements Closeable {
   }
 
   public LogMessage nextMessage() throws IOException {
-
-    // Read header
-    final byte[] headerBytes = new byte[HEADER_SIZE];
-    final int n = ByteStreams.read(stream, headerBytes, 0, HEADER_SIZE);
-    if (n == 0) {
+    final int frameSize = readHeader();
+    if (frameSize < 0) {
       return null;
     }
-    if (n != HEADER_SIZE) {
-      throw new EOFException();
-    }
-    final ByteBuffer header = ByteBuffer.wrap(headerBytes);
-    final int streamId = header.get();
-    header.position(FRAME_SIZE_OFFSET);
-    final int frameSize = header.getInt();
 
     // Read frame
     final byte[] frame = new byte[frameSize];
     ByteStreams.readFully(stream, frame);
-    return new LogMessage(streamId, ByteBuffer.wrap(frame));
+    return new LogMessage(header[0], ByteBuffer.wrap(frame));
+  }
+
+  /**
+   * Read the next frame into a buffer that is reused for every frame, and pass it to
+   * {@code handler}.
+   *
+   * @return false if the end of the stream was reached, true otherwise.
+   */
+  public boolean nextFrame(final LogFrameHandler handler) throws IOException {
+    final int frameSize = readHeader();
+    if (frameSize < 0) {
+      return false;
+    }
+
+    final LogMessage.Stream type = LogMessage.Stream.of(header[0]);
+    if (frameSize > MAX_REUSED_FRAME_SIZE) {
+      final byte[] large = new byte[frameSize];
+      ByteStreams.readFully(stream, large);
+      handler.frame(type, ByteBuffer.wrap(large).asReadOnlyBuffer());
+      return true;
+    }
+    if (frameSize > buffer.length) {
+      buffer = new byte[Math.min(Math.max(frameSize, 2 * buffer.length), MAX_REUSED_FRAME_SIZE)];
+      bufferView = ByteBuffer.wrap(buffer).asReadOnlyBuffer();
+    }
+    ByteStreams.readFully(stream, buffer, 0, frameSize);
+    bufferView.clear();
+    bufferView.limit(frameSize);
+    handler.frame(type, bufferView);
+    return true;
+  }
+
+  /**
+   * Copy the content of the next frame to {@code stdout} or {@code stderr}, depending on the
+   * stream it belongs to. Frames of any other stream are skipped. The content is copied in
+   * chunks through a buffer that is reused for every frame, so memory use doesn't depend on the
+   * size of the frames.
+   *
+   * @return the number of bytes written, or -1 if the end of the stream was reached.
+   */
+  public long transferFrame(final WritableByteChannel stdout, final WritableByteChannel stderr)
+      throws IOException {
+    final int frameSize = readHeader();
+    if (frameSize < 0) {
+      return -1;
+    }
+
+    final WritableByteChannel target;
+    switch (LogMessage.Stream.of(header[0])) {
+      case STDOUT:
+        target = stdout;
+        break;
+      case STDERR:
+        target = stderr;
+        break;
+      case STDIN:
+      default:
+        ByteStreams.skipFully(stream, frameSize);
+        return 0;
+    }
+
+    if (chunk == null) {
+      chunk = ByteBuffer.allocate(TRANSFER_CHUNK_SIZE);
+    }
+    for (int remaining = frameSize; remaining > 0; ) {
+      final int n = Math.min(remaining, chunk.capacity());
+      ByteStreams.readFully(stream, chunk.array(), 0, n);
+      chunk.clear();
+      chunk.limit(n);
+      while (chunk.hasRemaining()) {
+        target.write(chunk);
+      }
+      remaining -= n;
+    }
+    return frameSize;
+  }
+
+  /**
+   * Read the next frame header, returning the size of the frame, or -1 at the end of the stream.
+   */
+  private int readHeader() throws IOException {
+    final int n = ByteStreams.read(stream, header, 0, HEADER_SIZE);
+    if (n == 0) {
+      return -1;
+    }
+    if (n != HEADER_SIZE) {
+      throw new EOFException();
+    }
+    return (header[FRAME_SIZE_OFFSET] & 0xff) << 24
+           | (header[FRAME_SIZE_OFFSET + 1] & 0xff) << 16
+           | (header[FRAME_SIZE_OFFSET + 2] & 0xff) << 8
+           | (header[FRAME_SIZE_OFFSET + 3] & 0xff);
   }
 
   @Override
@@ -82,6 +177,11 @@ public class LogReader implements Closeable {
   @Override
   public void close() throws IOException {
     closed = true;
+    if (stream instanceof ResponseStream) {
+      // Drains a small remainder of the body or aborts the connection
+      stream.close();
+      return;
+    }
     // Jersey will close the stream and release the connection after we read all the data.
     // We cannot call the stream's close method because it an instance of UncloseableInputStream,
     // where close is a no-op.
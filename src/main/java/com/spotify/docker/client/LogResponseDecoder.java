@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+
+import static com.google.common.base.Charsets.US_ASCII;
+
+/**
+ * Decodes an HTTP response carrying a multiplexed log incrementally, as its bytes arrive. Used by
+ * {@link LogFollower}, which reads many responses on one thread and so can't block in a
+ * {@link LogReader}.
+ *
+ * The response body may be chunked, have a content length, or be delimited by the end of the
+ * connection. Frames are only decoded from successful responses.
+ */
+class LogResponseDecoder {
+
+  private static final int MAX_HEAD_SIZE = 64 * 1024;
+  private static final int MAX_LINE_SIZE = 1024;
+
+  // See LogReader
+  private static final int MAX_REUSED_FRAME_SIZE = 1024 * 1024;
+
+  private enum State {
+    HEAD, CHUNK_SIZE, CHUNK_DATA, CHUNK_END, TRAILERS, BODY, DONE
+  }
+
+  private State state = State.HEAD;
+  private byte[] head = new byte[1024];
+  private int headLength;
+  private final StringBuilder line = new StringBuilder();
+
+  private int status;
+  // Bytes left in the current chunk, or in the body if it has a content length, -1 otherwise
+  private long remaining = -1;
+
+  private final byte[] header = new byte[LogReader.HEADER_SIZE];
+  private int headerLength;
+  private byte[] frame = new byte[0];
+  private int frameSize = -1;
+  private int frameLength;
+
+  /**
+   * Returns the status code of the response, or 0 if its head hasn't been received yet.
+   */
+  int status() {
+    return status;
+  }
+
+  /**
+   * Returns true once the whole response has been received.
+   */
+  boolean isDone() {
+    return state == State.DONE;
+  }
+
+  /**
+   * Decode the bytes remaining in {@code src}, passing each complete frame to {@code handler}.
+   * The frame's content is only valid until the handler returns.
+   *
+   * @throws ProtocolException if the response isn't valid HTTP.
+   * @throws IOException if the handler throws one.
+   */
+  void decode(final ByteBuffer src, final LogFrameHandler handler) throws IOException {
+    while (src.hasRemaining()) {
+      switch (state) {
+        case HEAD:
+          decodeHead(src);
+          break;
+        case CHUNK_SIZE:
+          if (readLine(src)) {
+            decodeChunkSize();
+          }
+          break;
+        case CHUNK_DATA:
+          decodeBody(src, handler);
+          if (remaining == 0) {
+            state = State.CHUNK_END;
+          }
+          break;
+        case CHUNK_END:
+          if (readLine(src)) {
+            line.setLength(0);
+            state = State.CHUNK_SIZE;
+          }
+          break;
+        case TRAILERS:
+          if (readLine(src)) {
+            if (line.length() == 0) {
+              state = State.DONE;
+            }
+            line.setLength(0);
+          }
+          break;
+        case BODY:
+          decodeBody(src, handler);
+          if (remaining == 0) {
+            state = State.DONE;
+          }
+          break;
+        case DONE:
+        default:
+          // Nothing may follow the response on a connection that's only used for it
+          src.position(src.limit());
+          break;
+      }
+      if (state != State.HEAD && state != State.DONE && status != 200) {
+        // Error responses are only looked at for their status
+        state = State.DONE;
+      }
+    }
+  }
+
+  /**
+   * Note that the connection was closed. Returns true if that ended the response, which is the
+   * case when it's delimited by the end of the connection.
+   */
+  boolean endOfInput() {
+    if (state == State.BODY && remaining < 0 && frameSize < 0 && headerLength == 0) {
+      state = State.DONE;
+    }
+    return state == State.DONE;
+  }
+
+  private void decodeHead(final ByteBuffer src) throws ProtocolException {
+    while (src.hasRemaining()) {
+      if (headLength == head.length) {
+        if (head.length >= MAX_HEAD_SIZE) {
+          throw new ProtocolException("Response head too large");
+        }
+        final byte[] larger = new byte[head.length * 2];
+        System.arraycopy(head, 0, larger, 0, headLength);
+        head = larger;
+      }
+      head[headLength++] = src.get();
+      if (headLength >= 4 && head[headLength - 4] == '\r' && head[headLength - 3] == '\n'
+          && head[headLength - 2] == '\r' && head[headLength - 1] == '\n') {
+        parseHead(new String(head, 0, headLength - 4, US_ASCII));
+        head = null;
+        return;
+      }
+    }
+  }
+
+  private void parseHead(final String text) throws ProtocolException {
+    final String[] lines = text.split("\r\n");
+    final String[] statusLine = lines[0].split(" ", 3);
+    if (statusLine.length < 2 || !statusLine[0].startsWith("HTTP/")) {
+      throw new ProtocolException("Invalid status line: " + lines[0]);
+    }
+    try {
+      status = Integer.parseInt(statusLine[1]);
+    } catch (NumberFormatException e) {
+      throw new ProtocolException("Invalid status line: " + lines[0]);
+    }
+
+    boolean chunked = false;
+    for (int i = 1; i < lines.length; i++) {
+      final int colon = lines[i].indexOf(':');
+      if (colon < 0) {
+        continue;
+      }
+      final String name = lines[i].substring(0, colon).trim().toLowerCase(Locale.ROOT);
+      final String value = lines[i].substring(colon + 1).trim();
+      if (name.equals("transfer-encoding")) {
+        chunked = value.toLowerCase(Locale.ROOT).contains("chunked");
+      } else if (name.equals("content-length")) {
+        try {
+          remaining = Long.parseLong(value);
+        } catch (NumberFormatException e) {
+          throw new ProtocolException("Invalid content length: " + value);
+        }
+      }
+    }
+
+    if (chunked) {
+      remaining = -1;
+      state = State.CHUNK_SIZE;
+    } else {
+      state = remaining == 0 ? State.DONE : State.BODY;
+    }
+  }
+
+  /**
+   * Read up to the end of a line into {@link #line}. Returns true if the line is complete.
+   */
+  private boolean readLine(final ByteBuffer src) throws ProtocolException {
+    while (src.hasRemaining()) {
+      final char c = (char) (src.get() & 0xff);
+      if (c == '\n') {
+        final int end = line.length();
+        if (end > 0 && line.charAt(end - 1) == '\r') {
+          line.setLength(end - 1);
+        }
+        return true;
+      }
+      if (line.length() >= MAX_LINE_SIZE) {
+        throw new ProtocolException("Line too long in chunked response");
+      }
+      line.append(c);
+    }
+    return false;
+  }
+
+  private void decodeChunkSize() throws ProtocolException {
+    final int semicolon = line.indexOf(";");
+    final String size = (semicolon < 0 ? line.toString() : line.substring(0, semicolon)).trim();
+    line.setLength(0);
+    try {
+      remaining = Long.parseLong(size, 16);
+    } catch (NumberFormatException e) {
+      throw new ProtocolException("Invalid chunk size: " + size);
+    }
+    if (remaining < 0) {
+      throw new ProtocolException("Invalid chunk size: " + size);
+    }
+    state = remaining == 0 ? State.TRAILERS : State.CHUNK_DATA;
+  }
+
+  /**
+   * Decode frames from the body bytes in {@code src}, up to {@link #remaining} if it's known.
+   */
+  private void decodeBody(final ByteBuffer src, final LogFrameHandler handler)
+      throws IOException {
+    int available = src.remaining();
+    if (remaining >= 0 && remaining < available) {
+      available = (int) remaining;
+    }
+    if (remaining >= 0) {
+      remaining -= available;
+    }
+
+    while (available > 0) {
+      if (frameSize < 0) {
+        final int n = Math.min(available, header.length - headerLength);
+        src.get(header, headerLength, n);
+        headerLength += n;
+        available -= n;
+        if (headerLength == header.length) {
+          startFrame();
+        }
+      } else {
+        final int n = Math.min(available, frameSize - frameLength);
+        src.get(frame, frameLength, n);
+        frameLength += n;
+        available -= n;
+      }
+      if (frameSize >= 0 && frameLength == frameSize) {
+        handler.frame(LogMessage.Stream.of(header[0]),
+                      ByteBuffer.wrap(frame, 0, frameSize).asReadOnlyBuffer());
+        headerLength = 0;
+        frameSize = -1;
+        if (frame.length > MAX_REUSED_FRAME_SIZE) {
+          frame = new byte[0];
+        }
+      }
+    }
+  }
+
+  private void startFrame() throws ProtocolException {
+    frameSize = (header[LogReader.FRAME_SIZE_OFFSET] & 0xff) << 24
+                | (header[LogReader.FRAME_SIZE_OFFSET + 1] & 0xff) << 16
+                | (header[LogReader.FRAME_SIZE_OFFSET + 2] & 0xff) << 8
+                | (header[LogReader.FRAME_SIZE_OFFSET + 3] & 0xff);
+    if (frameSize < 0) {
+      throw new ProtocolException("Invalid frame size: " + frameSize);
+    }
+    frameLength = 0;
+    if (frameSize > MAX_REUSED_FRAME_SIZE) {
+      frame = new byte[frameSize];
+    } else if (frameSize > frame.length) {
+      frame = new byte[Math.min(Math.max(frameSize, 2 * frame.length), MAX_REUSED_FRAME_SIZE)];
+    }
+  }
+}
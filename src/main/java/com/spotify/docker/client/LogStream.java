@@ -34,21 +34,45 @@ import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.PipedInputStream;
 import java.io.PipedOutputStream;
+import java.nio.ByteBuffer;
 import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.channels.WritableByteChannel;
 import java.util.Scanner;
 
 import static com.google.common.base.Charsets.UTF_8;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 
 public class LogStream extends AbstractIterator<LogMessage> implements Closeable {
 
   private static final Logger log = LoggerFactory.getLogger(LogStream.class);
 
+  // Bytes of stdout or stderr that can be queued while the other stream is read
+  private static final int DEMULTIPLEX_BUFFER_LIMIT = 1024 * 1024;
+
+  private final ResponseStream stream;
   private final LogReader reader;
   private volatile boolean closed;
+  private boolean iterating;
+  private volatile LogsFallback fallback;
+  private LogDemultiplexer demultiplexer;
 
   LogStream(final InputStream stream) {
-    this.reader = new LogReader(stream);
+    this.stream = new ResponseStream(stream);
+    this.reader = new LogReader(this.stream);
+  }
+
+  ResponseStream responseStream() {
+    return stream;
+  }
+
+  /**
+   * Filter the messages of this stream on the client, for parameters the daemon doesn't support.
+   * Must be set before the stream is read.
+   */
+  void fallback(final LogsFallback fallback) {
+    this.fallback = fallback;
   }
 
   @Override
@@ -60,11 +84,20 @@ public class LogStream extends AbstractIterator<LogMessage> implements Closeable
     }
   }
 
+  /**
+   * Returns the next message, or null at the end of the stream.
+   */
+  LogMessage nextMessage() throws IOException {
+    return fallback == null ? reader.nextMessage() : fallback.next(reader);
+  }
+
   @Override
   protected LogMessage computeNext() {
+    checkState(demultiplexer == null, "the stream has been split into stdout and stderr");
+    iterating = true;
     final LogMessage message;
     try {
-      message = reader.nextMessage();
+      message = nextMessage();
     } catch (IOException e) {
       throw Throwables.propagate(e);
     }
@@ -84,6 +117,140 @@ public class LogStream extends AbstractIterator<LogMessage> implements Closeable
     }
   }
 
+  /**
+   * Pass every remaining frame of the stream to {@code handler}. Unlike iterating over the
+   * stream, this reads all frames into a single reused buffer, so it allocates next to nothing
+   * per frame. It can't be combined with iterating over the stream.
+   *
+   * @throws IllegalStateException if the stream has been iterated over.
+   * @throws IOException if an I/O error occurs, or the handler throws one.
+   */
+  public void readFrames(final LogFrameHandler handler) throws IOException {
+    checkState(!iterating, "the stream has been iterated over");
+    checkState(demultiplexer == null, "the stream has been split into stdout and stderr");
+    if (fallback != null) {
+      // The fallback needs to look at, and may hold on to, whole messages
+      while (hasNext()) {
+        final LogMessage message = next();
+        handler.frame(message.stream(), message.content());
+      }
+      return;
+    }
+    while (reader.nextFrame(handler)) {
+      // keep reading
+    }
+  }
+
+  /**
+   * Write the content of every remaining stdout frame of the stream to {@code stdout} and of
+   * every stderr frame to {@code stderr}. Frames are copied in bounded chunks through a single
+   * reused buffer rather than read whole into messages, so this is the cheapest way to archive a
+   * log. Both channels may be the same. It can't be combined with iterating over the stream.
+   *
+   * <p>
+   * A {@link FileChannel} is written with positional writes starting at its current position,
+   * which is moved past the written content when the transfer ends. Other channels are written
+   * at their current position.
+   * </p>
+   *
+   * @param stdout Channel for the standard out.
+   * @param stderr Channel for the standard err.
+   * @return the number of bytes written.
+   * @throws IllegalStateException if the stream has been iterated over.
+   * @throws IOException if an I/O error occurs.
+   */
+  public long transferTo(final WritableByteChannel stdout, final WritableByteChannel stderr)
+      throws IOException {
+    checkNotNull(stdout, "stdout");
+    checkNotNull(stderr, "stderr");
+    checkState(!iterating, "the stream has been iterated over");
+    checkState(demultiplexer == null, "the stream has been split into stdout and stderr");
+    final PositionalWriter stdoutWriter = PositionalWriter.of(stdout);
+    final PositionalWriter stderrWriter = stderr == stdout
+                                          ? stdoutWriter
+                                          : PositionalWriter.of(stderr);
+    final WritableByteChannel stdoutTarget = stdoutWriter == null ? stdout : stdoutWriter;
+    final WritableByteChannel stderrTarget = stderrWriter == null ? stderr : stderrWriter;
+    long transferred = 0;
+    try {
+      if (fallback != null) {
+        // The fallback needs to look at whole messages
+        while (hasNext()) {
+          final LogMessage message = next();
+          transferred += message.content().remaining();
+          write(message, stdoutTarget, stderrTarget);
+        }
+        return transferred;
+      }
+      for (long n; (n = reader.transferFrame(stdoutTarget, stderrTarget)) >= 0; ) {
+        transferred += n;
+      }
+      return transferred;
+    } finally {
+      if (stdoutWriter != null) {
+        stdoutWriter.commit();
+      }
+      if (stderrWriter != null && stderrWriter != stdoutWriter) {
+        stderrWriter.commit();
+      }
+    }
+  }
+
+  private static void write(final LogMessage message, final WritableByteChannel stdout,
+                            final WritableByteChannel stderr) throws IOException {
+    final WritableByteChannel target;
+    switch (message.stream()) {
+      case STDOUT:
+        target = stdout;
+        break;
+      case STDERR:
+        target = stderr;
+        break;
+      case STDIN:
+      default:
+        return;
+    }
+    final ByteBuffer content = message.content();
+    while (content.hasRemaining()) {
+      target.write(content);
+    }
+  }
+
+  /**
+   * Returns an {@link InputStream} of the stream's stdout. Together with {@link #stderrStream()}
+   * this splits the stream without pipes or a thread of its own: whichever of the two runs out
+   * of data reads the next frame, and queues frames that belong to the other one. Once the
+   * other one has 1 MiB queued, the reader waits for it to catch up, so both must be read
+   * concurrently, or the one that isn't needed closed. Closing them doesn't close this stream.
+   *
+   * <p>
+   * This can't be combined with iterating over the stream.
+   * </p>
+   *
+   * @throws IllegalStateException if the stream has been iterated over.
+   */
+  public synchronized InputStream stdoutStream() {
+    return demultiplexer().stdout();
+  }
+
+  /**
+   * Returns an {@link InputStream} of the stream's stderr.
+   *
+   * @throws IllegalStateException if the stream has been iterated over.
+   * @see #stdoutStream()
+   */
+  public synchronized InputStream stderrStream() {
+    return demultiplexer().stderr();
+  }
+
+  private LogDemultiplexer demultiplexer() {
+    checkState(!iterating, "the stream has been iterated over");
+    if (demultiplexer == null) {
+      demultiplexer = new LogDemultiplexer(this, DEMULTIPLEX_BUFFER_LIMIT);
+    }
+    return demultiplexer;
+  }
+
   public String readFully() {
     StringBuilder stringBuilder = new StringBuilder();
     while (hasNext()) {
@@ -110,7 +277,13 @@ public class LogStream extends AbstractIterator<LogMessage> implements Closeable
    * </pre>
    *
    * <p>
-   * Typically you use {@link PipedOutputStream PipedOutputStreams} connected to a
+   * To read the output with an {@link InputStreamReader} or a {@link Scanner}, use
+   * {@link #stdoutStream()} and {@link #stderrStream()} instead, which need neither pipes nor an
+   * extra thread.
+   * </p>
+   *
+   * <p>
+   * Otherwise you can use {@link PipedOutputStream PipedOutputStreams} connected to a
    * {@link PipedInputStream} which are read by - for example - an {@link InputStreamReader} or a
    * {@link Scanner}. For small inputs, the {@link PipedOutputStream} just writes to the buffer of
    * the {@link PipedInputStream}, but you actually want to read and write from separate threads, as
@@ -150,21 +323,74 @@ public class LogStream extends AbstractIterator<LogMessage> implements Closeable
   public void attach(final OutputStream stdout, final OutputStream stderr) throws IOException {
     try (WritableByteChannel stdoutChannel = Channels.newChannel(stdout);
          WritableByteChannel stderrChannel = Channels.newChannel(stderr)) {
-      for (LogMessage message; hasNext(); ) {
-        message = next();
-        switch (message.stream()) {
-          case STDOUT:
-            stdoutChannel.write(message.content());
-            break;
-          case STDERR:
-            stderrChannel.write(message.content());
-            break;
-          case STDIN:
-          default:
-            break;
+      final LogFrameHandler handler = new LogFrameHandler() {
+        @Override
+        public void frame(final LogMessage.Stream stream, final ByteBuffer content)
+            throws IOException {
+          switch (stream) {
+            case STDOUT:
+              stdoutChannel.write(content);
+              break;
+            case STDERR:
+              stderrChannel.write(content);
+              break;
+            case STDIN:
+            default:
+              break;
+          }
+        }
+      };
+      if (iterating) {
+        for (LogMessage message; hasNext(); ) {
+          message = next();
+          handler.frame(message.stream(), message.content());
         }
+      } else {
+        readFrames(handler);
       }
     }
   }
 
+  /**
+   * Writes to a {@link FileChannel} at a position of its own, and only moves the channel's
+   * position once all writes are done.
+   */
+  private static class PositionalWriter implements WritableByteChannel {
+
+    private final FileChannel channel;
+    private long position;
+
+    private PositionalWriter(final FileChannel channel) throws IOException {
+      this.channel = channel;
+      this.position = channel.position();
+    }
+
+    /**
+     * Returns a writer for {@code channel}, or null if it isn't a file.
+     */
+    static PositionalWriter of(final WritableByteChannel channel) throws IOException {
+      return channel instanceof FileChannel ? new PositionalWriter((FileChannel) channel) : null;
+    }
+
+    @Override
+    public int write(final ByteBuffer src) throws IOException {
+      final int n = channel.write(src, position);
+      position += n;
+      return n;
+    }
+
+    void commit() throws IOException {
+      channel.position(position);
+    }
+
+    @Override
+    public boolean isOpen() {
+      return channel.isOpen();
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+  }
 }
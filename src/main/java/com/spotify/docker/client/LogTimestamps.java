@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import com.spotify.docker.client.messages.DockerTimestamp;
+
+import java.nio.ByteBuffer;
+import java.text.ParseException;
+
+/**
+ * Reads the timestamps that Docker prefixes log messages with when asked for timestamps.
+ */
+final class LogTimestamps {
+
+  // RFC3339 with nanoseconds and a zone offset
+  private static final int MAX_LENGTH = 35;
+
+  private LogTimestamps() {
+  }
+
+  /**
+   * Returns the length of the timestamp that {@code content} starts with, up to the space that
+   * follows it, or -1 if it doesn't start with something that looks like one.
+   */
+  static int prefixLength(final ByteBuffer content) {
+    final int length = Math.min(content.remaining(), MAX_LENGTH + 1);
+    for (int i = 0; i < length; i++) {
+      if (content.get(content.position() + i) == ' ') {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Parse the first {@code length} bytes of {@code content}, returning null if they aren't a
+   * timestamp.
+   */
+  static DockerTimestamp parsePrefix(final ByteBuffer content, final int length) {
+    try {
+      return DockerTimestamp.parse(new AsciiSequence(content, length));
+    } catch (ParseException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Presents ASCII bytes as characters without copying them.
+   */
+  private static class AsciiSequence implements CharSequence {
+
+    private final ByteBuffer bytes;
+    private final int offset;
+    private final int length;
+
+    AsciiSequence(final ByteBuffer bytes, final int length) {
+      this(bytes, bytes.position(), length);
+    }
+
+    private AsciiSequence(final ByteBuffer bytes, final int offset, final int length) {
+      this.bytes = bytes;
+      this.offset = offset;
+      this.length = length;
+    }
+
+    @Override
+    public int length() {
+      return length;
+    }
+
+    @Override
+    public char charAt(final int index) {
+      if (index < 0 || index >= length) {
+        throw new IndexOutOfBoundsException(String.valueOf(index));
+      }
+      return (char) (bytes.get(offset + index) & 0xff);
+    }
+
+    @Override
+    public CharSequence subSequence(final int start, final int end) {
+      return new AsciiSequence(bytes, offset + start, end - start);
+    }
+
+    @Override
+    public String toString() {
+      final StringBuilder builder = new StringBuilder(length);
+      for (int i = 0; i < length; i++) {
+        builder.append(charAt(i));
+      }
+      return builder.toString();
+    }
+  }
+}
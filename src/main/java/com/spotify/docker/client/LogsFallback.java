@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import com.spotify.docker.client.messages.DockerTimestamp;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Applies the {@code tail} and {@code since} logs parameters on the client, for daemons whose API
+ * version doesn't support them. Filtering by time needs the daemon to prefix every message with
+ * its timestamp, which is removed again unless the caller asked for timestamps.
+ *
+ * Each instance keeps state for a single {@link LogStream}.
+ */
+class LogsFallback {
+
+  private final int tail;
+  private final long sinceMillis;
+  private final boolean stripTimestamps;
+
+  private Deque<LogMessage> tailed;
+
+  /**
+   * @param tail            The number of messages to keep from the end of the log, or -1 to keep
+   *                        all of them.
+   * @param sinceMillis     Drop messages logged before this time, or -1 to keep all of them.
+   * @param stripTimestamps Remove the timestamp prefix from messages that are kept.
+   */
+  LogsFallback(final int tail, final long sinceMillis, final boolean stripTimestamps) {
+    this.tail = tail;
+    this.sinceMillis = sinceMillis;
+    this.stripTimestamps = stripTimestamps;
+  }
+
+  /**
+   * Returns the next message to pass on, or null at the end of the stream. With a tail, the
+   * whole log is read before the first message is returned.
+   */
+  LogMessage next(final LogReader reader) throws IOException {
+    if (tail < 0) {
+      return nextFiltered(reader);
+    }
+    if (tailed == null) {
+      tailed = new ArrayDeque<>();
+      for (LogMessage message; (message = nextFiltered(reader)) != null; ) {
+        if (tail == 0) {
+          continue;
+        }
+        if (tailed.size() == tail) {
+          tailed.removeFirst();
+        }
+        tailed.addLast(message);
+      }
+    }
+    return tailed.pollFirst();
+  }
+
+  private LogMessage nextFiltered(final LogReader reader) throws IOException {
+    for (LogMessage message; (message = reader.nextMessage()) != null; ) {
+      if (sinceMillis < 0 && !stripTimestamps) {
+        return message;
+      }
+      final ByteBuffer content = message.content();
+      final int space = LogTimestamps.prefixLength(content);
+      if (sinceMillis >= 0 && space >= 0 && isBeforeSince(content, space)) {
+        continue;
+      }
+      if (stripTimestamps && space >= 0) {
+        content.position(content.position() + space + 1);
+        return new LogMessage(message.stream(), content.slice());
+      }
+      return message;
+    }
+    return null;
+  }
+
+  private boolean isBeforeSince(final ByteBuffer content, final int length) {
+    final DockerTimestamp timestamp = LogTimestamps.parsePrefix(content, length);
+    // Not a timestamp, so keep the message rather than guess
+    return timestamp != null && timestamp.toDate().getTime() < sinceMillis;
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import com.spotify.docker.client.messages.DockerTimestamp;
+
+import java.nio.ByteBuffer;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A message of a {@link MergedLogStream}: a log message of one of its containers, with the
+ * timestamp it was logged at.
+ */
+public class MergedLogMessage {
+
+  private final String containerId;
+  private final LogMessage.Stream stream;
+  private final DockerTimestamp timestamp;
+  private final ByteBuffer content;
+
+  public MergedLogMessage(final String containerId, final LogMessage.Stream stream,
+                          final DockerTimestamp timestamp, final ByteBuffer content) {
+    this.containerId = checkNotNull(containerId, "containerId");
+    this.stream = checkNotNull(stream, "stream");
+    this.timestamp = checkNotNull(timestamp, "timestamp");
+    this.content = checkNotNull(content, "content");
+  }
+
+  public String containerId() {
+    return containerId;
+  }
+
+  public LogMessage.Stream stream() {
+    return stream;
+  }
+
+  public DockerTimestamp timestamp() {
+    return timestamp;
+  }
+
+  /**
+   * Returns the content of the message, without its timestamp.
+   */
+  public ByteBuffer content() {
+    return content.asReadOnlyBuffer();
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.ImmutableMap;
+import com.spotify.docker.client.messages.DockerTimestamp;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Merges the logs of several containers into one stream in the order the messages were logged.
+ * The logs must have been requested with timestamps, e.g.
+ *
+ * <pre>
+ * {@code
+ * final Map<String, LogStream> logs = new LinkedHashMap<>();
+ * for (final String id : containerIds) {
+ *   logs.put(id, docker.logs(id, STDOUT, STDERR, TIMESTAMPS));
+ * }
+ * try (MergedLogStream merged = new MergedLogStream(logs)) {
+ *   while (merged.hasNext()) {
+ *     final MergedLogMessage message = merged.next();
+ *     // ...
+ *   }
+ * }
+ * }
+ * </pre>
+ *
+ * <p>
+ * Only the next message of every log is held at a time, so memory use doesn't depend on the
+ * length of the logs. Messages with the same timestamp come in the order of the map, and a
+ * message without a timestamp gets the one of the message before it in its log.
+ * </p>
+ */
+public class MergedLogStream extends AbstractIterator<MergedLogMessage> implements Closeable {
+
+  private final Map<String, LogStream> streams;
+  private final PriorityQueue<Source> sources;
+  private boolean started;
+
+  /**
+   * @param streams Log streams with timestamps by the ID or name of their container. Closing
+   *                the merged stream closes them.
+   */
+  public MergedLogStream(final Map<String, LogStream> streams) {
+    this.streams = ImmutableMap.copyOf(streams);
+    this.sources = new PriorityQueue<>(Math.max(1, streams.size()), new Comparator<Source>() {
+      @Override
+      public int compare(final Source a, final Source b) {
+        final int byTime = a.next.timestamp().compareTo(b.next.timestamp());
+        return byTime != 0 ? byTime : a.index - b.index;
+      }
+    });
+  }
+
+  @Override
+  protected MergedLogMessage computeNext() {
+    if (!started) {
+      started = true;
+      int index = 0;
+      for (final Map.Entry<String, LogStream> entry : streams.entrySet()) {
+        advance(new Source(entry.getKey(), entry.getValue(), index++));
+      }
+    }
+    final Source source = sources.poll();
+    if (source == null) {
+      return endOfData();
+    }
+    final MergedLogMessage message = source.next;
+    advance(source);
+    return message;
+  }
+
+  /**
+   * Read the next message of {@code source} and queue it, unless its log has ended.
+   */
+  private void advance(final Source source) {
+    if (!source.stream.hasNext()) {
+      source.next = null;
+      return;
+    }
+    final LogMessage message = source.stream.next();
+    ByteBuffer content = message.content();
+    final int length = LogTimestamps.prefixLength(content);
+    final DockerTimestamp timestamp =
+        length < 0 ? null : LogTimestamps.parsePrefix(content, length);
+    if (timestamp != null) {
+      content.position(content.position() + length + 1);
+      content = content.slice();
+      source.last = timestamp;
+    }
+    source.next = new MergedLogMessage(source.containerId, message.stream(), source.last,
+                                       content);
+    sources.add(source);
+  }
+
+  @Override
+  public void close() {
+    RuntimeException failure = null;
+    for (final LogStream stream : streams.values()) {
+      try {
+        stream.close();
+      } catch (RuntimeException e) {
+        failure = e;
+      }
+    }
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  private static class Source {
+
+    private final String containerId;
+    private final LogStream stream;
+    private final int index;
+    private DockerTimestamp last = DockerTimestamp.of(0, 0);
+    private MergedLogMessage next;
+
+    Source(final String containerId, final LogStream stream, final int index) {
+      this.containerId = containerId;
+      this.stream = stream;
+      this.index = index;
+    }
+  }
+}
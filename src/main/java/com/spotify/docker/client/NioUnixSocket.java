@@ -0,0 +1,737 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.ProtocolFamily;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketException;
+import java.net.SocketOption;
+import java.net.SocketTimeoutException;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Provides a socket for Unix domain sockets built on the JDK's own {@link SocketChannel}, which
+ * supports the UNIX protocol family from Java 16 onwards. Unlike {@link ApacheUnixSocket} it
+ * honors connect and read timeouts and SO_RCVBUF/SO_SNDBUF, and moves data through direct
+ * buffers.
+ *
+ * The channel is kept in non-blocking mode and waits on a selector, since a blocking
+ * SocketChannel ignores SO_TIMEOUT. A virtual thread waiting in a selector keeps its carrier
+ * thread busy though, so sockets created on a virtual thread use a blocking channel instead, on
+ * which a virtual thread unmounts while it waits. Their timeouts are enforced by closing the
+ * channel when they expire, which ends the connection just like a timeout does anyway.
+ *
+ * The JDK classes are looked up reflectively so the library still runs on older JVMs; use
+ * {@link #isSupported()} to check before creating an instance.
+ */
+public class NioUnixSocket extends Socket {
+
+  private static final int READ_BUFFER_SIZE = 32 * 1024;
+  private static final int WRITE_BUFFER_SIZE = 8 * 1024;
+
+  private static final Method OPEN_CHANNEL;
+  private static final Method ADDRESS_OF;
+  private static final ProtocolFamily UNIX;
+  private static final Method IS_VIRTUAL;
+
+  static {
+    Method openChannel = null;
+    Method addressOf = null;
+    ProtocolFamily unix = null;
+    try {
+      unix = StandardProtocolFamily.valueOf("UNIX");
+      openChannel = SocketChannel.class.getMethod("open", ProtocolFamily.class);
+      addressOf = Class.forName("java.net.UnixDomainSocketAddress").getMethod("of", String.class);
+    } catch (IllegalArgumentException | ReflectiveOperationException e) {
+      openChannel = null;
+    }
+    OPEN_CHANNEL = openChannel;
+    ADDRESS_OF = addressOf;
+    UNIX = unix;
+
+    Method isVirtual;
+    try {
+      isVirtual = Thread.class.getMethod("isVirtual");
+    } catch (NoSuchMethodException e) {
+      isVirtual = null;
+    }
+    IS_VIRTUAL = isVirtual;
+  }
+
+  private final SocketChannel channel;
+  private final boolean blocking;
+  private final ChannelInputStream inputStream = new ChannelInputStream();
+  private final ChannelOutputStream outputStream = new ChannelOutputStream();
+
+  private volatile int soTimeout;
+  private volatile boolean inputShutdown;
+  private volatile boolean outputShutdown;
+
+  /**
+   * Returns true if the running JVM supports Unix domain socket channels.
+   */
+  public static boolean isSupported() {
+    return OPEN_CHANNEL != null;
+  }
+
+  /**
+   * Open an unconnected, blocking Unix domain socket channel.
+   */
+  static SocketChannel openChannel() throws IOException {
+    if (!isSupported()) {
+      throw new UnsupportedOperationException("Unix domain socket channels require Java 16");
+    }
+    return (SocketChannel) invoke(OPEN_CHANNEL, UNIX);
+  }
+
+  /**
+   * Returns the address of the Unix socket at the given path.
+   */
+  static SocketAddress address(final File socketFile) throws IOException {
+    return (SocketAddress) invoke(ADDRESS_OF, socketFile.getPath());
+  }
+
+  public NioUnixSocket() throws IOException {
+    this(isVirtual(Thread.currentThread()));
+  }
+
+  /**
+   * @param blocking Wait in blocking channel operations rather than on a selector.
+   */
+  NioUnixSocket(final boolean blocking) throws IOException {
+    this.channel = openChannel();
+    this.blocking = blocking;
+    this.channel.configureBlocking(blocking);
+  }
+
+  /**
+   * Returns true if the thread is a virtual thread.
+   */
+  static boolean isVirtual(final Thread thread) {
+    if (IS_VIRTUAL == null) {
+      return false;
+    }
+    try {
+      return (Boolean) IS_VIRTUAL.invoke(thread);
+    } catch (ReflectiveOperationException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Connect to the Unix socket at the given path, waiting at most {@code timeout} milliseconds.
+   * A timeout of zero waits forever.
+   */
+  public void connect(final File socketFile, final int timeout) throws IOException {
+    final SocketAddress address = address(socketFile);
+    if (blocking) {
+      withTimeout(new BlockingOperation() {
+        @Override
+        public int run() throws IOException {
+          return channel.connect(address) ? 1 : 0;
+        }
+      }, timeout);
+      return;
+    }
+    final long deadline = deadline(timeout);
+    boolean connected = channel.connect(address);
+    while (!connected) {
+      await(inputStream.selector(), SelectionKey.OP_CONNECT, timeout, deadline);
+      connected = channel.finishConnect();
+    }
+  }
+
+  @Override
+  public void connect(final SocketAddress endpoint) throws IOException {
+    connect(endpoint, 0);
+  }
+
+  @Override
+  public void connect(final SocketAddress endpoint, final int timeout) throws IOException {
+    throw new UnsupportedOperationException("Use connect(File, int)");
+  }
+
+  @Override
+  public void bind(final SocketAddress bindpoint) throws IOException {
+    throw new UnsupportedOperationException("Unimplemented");
+  }
+
+  @Override
+  public InetAddress getInetAddress() {
+    throw new UnsupportedOperationException("Unimplemented");
+  }
+
+  @Override
+  public InetAddress getLocalAddress() {
+    throw new UnsupportedOperationException("Unimplemented");
+  }
+
+  @Override
+  public int getPort() {
+    throw new UnsupportedOperationException("Unimplemented");
+  }
+
+  @Override
+  public int getLocalPort() {
+    throw new UnsupportedOperationException("Unimplemented");
+  }
+
+  @Override
+  public SocketAddress getRemoteSocketAddress() {
+    try {
+      return channel.getRemoteAddress();
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  @Override
+  public SocketAddress getLocalSocketAddress() {
+    try {
+      return channel.getLocalAddress();
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  @Override
+  public SocketChannel getChannel() {
+    throw new UnsupportedOperationException("Unimplemented");
+  }
+
+  @Override
+  public InputStream getInputStream() throws IOException {
+    return inputStream;
+  }
+
+  @Override
+  public OutputStream getOutputStream() throws IOException {
+    return outputStream;
+  }
+
+  @Override
+  public void setTcpNoDelay(final boolean on) throws SocketException {
+  }
+
+  @Override
+  public boolean getTcpNoDelay() throws SocketException {
+    return false;
+  }
+
+  @Override
+  public void setSoLinger(final boolean on, final int linger) throws SocketException {
+    // not supported for Unix sockets, where close never lingers: ignore it
+  }
+
+  @Override
+  public int getSoLinger() throws SocketException {
+    return -1;
+  }
+
+  @Override
+  public void sendUrgentData(final int data) throws IOException {
+    throw new UnsupportedOperationException("Unimplemented");
+  }
+
+  @Override
+  public void setOOBInline(final boolean on) throws SocketException {
+    throw new UnsupportedOperationException("Unimplemented");
+  }
+
+  @Override
+  public boolean getOOBInline() throws SocketException {
+    throw new UnsupportedOperationException("Unimplemented");
+  }
+
+  @Override
+  public void setSoTimeout(final int timeout) throws SocketException {
+    if (timeout < 0) {
+      throw new IllegalArgumentException("timeout can't be negative");
+    }
+    this.soTimeout = timeout;
+  }
+
+  @Override
+  public int getSoTimeout() throws SocketException {
+    return soTimeout;
+  }
+
+  @Override
+  public void setSendBufferSize(final int size) throws SocketException {
+    setIntOption(StandardSocketOptions.SO_SNDBUF, size);
+  }
+
+  @Override
+  public int getSendBufferSize() throws SocketException {
+    return getIntOption(StandardSocketOptions.SO_SNDBUF);
+  }
+
+  @Override
+  public void setReceiveBufferSize(final int size) throws SocketException {
+    setIntOption(StandardSocketOptions.SO_RCVBUF, size);
+  }
+
+  @Override
+  public int getReceiveBufferSize() throws SocketException {
+    return getIntOption(StandardSocketOptions.SO_RCVBUF);
+  }
+
+  @Override
+  public void setKeepAlive(final boolean on) throws SocketException {
+    // not supported for Unix sockets: Apache client tries to set it, but we want to just ignore it
+  }
+
+  @Override
+  public boolean getKeepAlive() throws SocketException {
+    return false;
+  }
+
+  @Override
+  public void setTrafficClass(final int tc) throws SocketException {
+    throw new UnsupportedOperationException("Unimplemented");
+  }
+
+  @Override
+  public int getTrafficClass() throws SocketException {
+    throw new UnsupportedOperationException("Unimplemented");
+  }
+
+  @Override
+  public void setReuseAddress(final boolean on) throws SocketException {
+    // not supported: Apache client tries to set it, but we want to just ignore it
+  }
+
+  @Override
+  public boolean getReuseAddress() throws SocketException {
+    throw new UnsupportedOperationException("Unimplemented");
+  }
+
+  @Override
+  public void close() throws IOException {
+    try {
+      channel.close();
+    } finally {
+      inputStream.closeSelector();
+      outputStream.closeSelector();
+    }
+  }
+
+  @Override
+  public void shutdownInput() throws IOException {
+    channel.shutdownInput();
+    inputShutdown = true;
+  }
+
+  @Override
+  public void shutdownOutput() throws IOException {
+    channel.shutdownOutput();
+    outputShutdown = true;
+  }
+
+  @Override
+  public String toString() {
+    return "NioUnixSocket[" + getRemoteSocketAddress() + "]";
+  }
+
+  @Override
+  public boolean isConnected() {
+    return channel.isConnected();
+  }
+
+  @Override
+  public boolean isBound() {
+    return channel.isConnected();
+  }
+
+  @Override
+  public boolean isClosed() {
+    return !channel.isOpen();
+  }
+
+  @Override
+  public boolean isInputShutdown() {
+    return inputShutdown;
+  }
+
+  @Override
+  public boolean isOutputShutdown() {
+    return outputShutdown;
+  }
+
+  @Override
+  public void setPerformancePreferences(final int connectionTime, final int latency,
+                                        final int bandwidth) {
+    throw new UnsupportedOperationException("Unimplemented");
+  }
+
+  private void setIntOption(final SocketOption<Integer> option, final int value)
+      throws SocketException {
+    try {
+      channel.setOption(option, value);
+    } catch (IOException e) {
+      throw socketException(e);
+    }
+  }
+
+  private int getIntOption(final SocketOption<Integer> option) throws SocketException {
+    try {
+      return channel.getOption(option);
+    } catch (IOException e) {
+      throw socketException(e);
+    }
+  }
+
+  private static SocketException socketException(final IOException e) {
+    if (e instanceof SocketException) {
+      return (SocketException) e;
+    }
+    final SocketException exception = new SocketException(e.getMessage());
+    exception.initCause(e);
+    return exception;
+  }
+
+  private void await(final Selector selector, final int ops, final int timeout,
+                     final long deadline) throws IOException {
+    final SelectionKey key = channel.keyFor(selector);
+    if (key == null) {
+      channel.register(selector, ops);
+    } else {
+      key.interestOps(ops);
+    }
+
+    while (true) {
+      final long remaining;
+      if (timeout == 0) {
+        remaining = 0;
+      } else {
+        remaining = MILLISECONDS.convert(deadline - System.nanoTime(), NANOSECONDS);
+        if (remaining <= 0) {
+          throw new SocketTimeoutException("Timed out after " + timeout + " ms");
+        }
+      }
+      final int ready = selector.select(remaining);
+      if (!channel.isOpen()) {
+        throw new SocketException("Socket closed");
+      }
+      if (Thread.currentThread().isInterrupted()) {
+        throw new InterruptedIOException("Interrupted while waiting on socket");
+      }
+      if (ready > 0) {
+        selector.selectedKeys().clear();
+        return;
+      }
+    }
+  }
+
+  /**
+   * Run a blocking channel operation, closing the channel if it takes longer than
+   * {@code timeout} milliseconds. A timeout of zero waits forever.
+   */
+  private int withTimeout(final BlockingOperation operation, final int timeout)
+      throws IOException {
+    if (timeout == 0) {
+      return operation.run();
+    }
+    final Expiry expiry = new Expiry(timeout);
+    try {
+      return operation.run();
+    } catch (AsynchronousCloseException e) {
+      if (expiry.finish() && !(e instanceof ClosedByInterruptException)) {
+        final SocketTimeoutException timedOut =
+            new SocketTimeoutException("Timed out after " + timeout + " ms");
+        timedOut.initCause(e);
+        throw timedOut;
+      }
+      throw e;
+    } finally {
+      expiry.finish();
+    }
+  }
+
+  private interface BlockingOperation {
+
+    int run() throws IOException;
+  }
+
+  /**
+   * Closes the channel unless it's finished before its timeout.
+   */
+  private class Expiry implements Runnable {
+
+    private static final int WAITING = 0;
+    private static final int FINISHED = 1;
+    private static final int EXPIRED = 2;
+
+    private final AtomicInteger state = new AtomicInteger(WAITING);
+    private final ScheduledFuture<?> future;
+
+    Expiry(final int timeout) {
+      this.future = Timeouts.EXECUTOR.schedule(this, timeout, MILLISECONDS);
+    }
+
+    @Override
+    public void run() {
+      if (state.compareAndSet(WAITING, EXPIRED)) {
+        try {
+          channel.close();
+        } catch (IOException ignored) {
+          // the operation fails either way
+        }
+      }
+    }
+
+    /**
+     * Cancel the expiry, and return true if it had already expired.
+     */
+    boolean finish() {
+      future.cancel(false);
+      state.compareAndSet(WAITING, FINISHED);
+      return state.get() == EXPIRED;
+    }
+  }
+
+  /**
+   * Created on first use, so that only blocking sockets start its thread.
+   */
+  private static class Timeouts {
+
+    private static final ScheduledThreadPoolExecutor EXECUTOR;
+
+    static {
+      EXECUTOR = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder()
+          .setDaemon(true)
+          .setNameFormat("nio-unix-socket-timeouts-%d")
+          .build());
+      EXECUTOR.setRemoveOnCancelPolicy(true);
+    }
+  }
+
+  private static long deadline(final int timeout) {
+    return System.nanoTime() + NANOSECONDS.convert(timeout, MILLISECONDS);
+  }
+
+  private static Object invoke(final Method method, final Object argument) throws IOException {
+    try {
+      return method.invoke(null, argument);
+    } catch (InvocationTargetException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException(e.getCause());
+    } catch (IllegalAccessException e) {
+      throw new IOException(e);
+    }
+  }
+
+  /**
+   * Holds a lazily opened selector. Reads and writes use separate selectors so that they can
+   * wait on the channel independently.
+   */
+  private abstract class SelectorHolder {
+
+    // Not a monitor, so that a virtual thread waiting for it doesn't pin its carrier
+    private final Lock lock = new ReentrantLock();
+    private Selector selector;
+
+    Selector selector() throws IOException {
+      lock.lock();
+      try {
+        if (selector == null) {
+          selector = Selector.open();
+        }
+        return selector;
+      } finally {
+        lock.unlock();
+      }
+    }
+
+    void closeSelector() throws IOException {
+      lock.lock();
+      try {
+        if (selector != null) {
+          selector.close();
+          selector = null;
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  private class ChannelInputStream extends InputStream {
+
+    private final SelectorHolder selector = new SelectorHolder() {};
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+
+    ChannelInputStream() {
+      buffer.limit(0);
+    }
+
+    Selector selector() throws IOException {
+      return selector.selector();
+    }
+
+    void closeSelector() throws IOException {
+      selector.closeSelector();
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (!buffer.hasRemaining() && fill() < 0) {
+        return -1;
+      }
+      return buffer.get() & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+      if (len == 0) {
+        return 0;
+      }
+      if (!buffer.hasRemaining() && fill() < 0) {
+        return -1;
+      }
+      final int n = Math.min(len, buffer.remaining());
+      buffer.get(b, off, n);
+      return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+      return buffer.remaining();
+    }
+
+    @Override
+    public void close() throws IOException {
+      NioUnixSocket.this.close();
+    }
+
+    private int fill() throws IOException {
+      final int timeout = soTimeout;
+      final long deadline = deadline(timeout);
+      buffer.clear();
+      try {
+        if (blocking) {
+          return withTimeout(new BlockingOperation() {
+            @Override
+            public int run() throws IOException {
+              return channel.read(buffer);
+            }
+          }, timeout);
+        }
+        while (true) {
+          final int n = channel.read(buffer);
+          if (n != 0) {
+            return n;
+          }
+          await(selector.selector(), SelectionKey.OP_READ, timeout, deadline);
+        }
+      } finally {
+        buffer.flip();
+      }
+    }
+  }
+
+  private class ChannelOutputStream extends OutputStream {
+
+    private final SelectorHolder selector = new SelectorHolder() {};
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+
+    void closeSelector() throws IOException {
+      selector.closeSelector();
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+      write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+      int offset = off;
+      int remaining = len;
+      while (remaining > 0) {
+        final int n = Math.min(remaining, buffer.capacity());
+        buffer.clear();
+        buffer.put(b, offset, n);
+        buffer.flip();
+        drain();
+        offset += n;
+        remaining -= n;
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      NioUnixSocket.this.close();
+    }
+
+    private void drain() throws IOException {
+      final int timeout = soTimeout;
+      if (blocking) {
+        withTimeout(new BlockingOperation() {
+          @Override
+          public int run() throws IOException {
+            int written = 0;
+            while (buffer.hasRemaining()) {
+              written += channel.write(buffer);
+            }
+            return written;
+          }
+        }, timeout);
+        return;
+      }
+      final long deadline = deadline(timeout);
+      while (buffer.hasRemaining()) {
+        if (channel.write(buffer) == 0) {
+          await(selector.selector(), SelectionKey.OP_WRITE, timeout, deadline);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Gzip compresses on a {@link ForkJoinPool}, the way pigz does. The input is cut into blocks of
+ * {@link #BLOCK_SIZE} bytes that are deflated in parallel, each primed with the last 32 KiB of
+ * the block before it so that the compression ratio stays close to that of a single stream.
+ * Every block but the last ends with a sync flush, which byte-aligns it, so the blocks are
+ * written out in order as one gzip member that any gunzip can read.
+ *
+ * At most twice the pool's parallelism worth of blocks are in flight at a time.
+ */
+class ParallelGzipOutputStream extends OutputStream {
+
+  static final int BLOCK_SIZE = 128 * 1024;
+
+  private static final int DICTIONARY_SIZE = 32 * 1024;
+
+  private static final byte[] HEADER = {
+      0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0
+  };
+
+  private final OutputStream out;
+  private final ForkJoinPool pool;
+  private final int level;
+  private final int maxInFlight;
+  private final Deque<ForkJoinTask<byte[]>> inFlight = new ArrayDeque<>();
+  private final Queue<Deflater> deflaters = new ConcurrentLinkedQueue<>();
+  private final CRC32 crc = new CRC32();
+
+  private byte[] block = new byte[BLOCK_SIZE];
+  private int blockLength;
+  // The last block handed to the pool, whose tail primes the next one
+  private byte[] previous;
+  private long size;
+  private boolean closed;
+
+  ParallelGzipOutputStream(final OutputStream out, final ForkJoinPool pool, final int level)
+      throws IOException {
+    this.out = out;
+    this.pool = pool;
+    this.level = level;
+    this.maxInFlight = 2 * pool.getParallelism();
+    out.write(HEADER);
+  }
+
+  @Override
+  public void write(final int b) throws IOException {
+    write(new byte[]{(byte) b}, 0, 1);
+  }
+
+  @Override
+  public void write(final byte[] b, final int off, final int len) throws IOException {
+    if (closed) {
+      throw new IOException("Stream closed");
+    }
+    crc.update(b, off, len);
+    size += len;
+    int written = 0;
+    while (written < len) {
+      final int n = Math.min(len - written, BLOCK_SIZE - blockLength);
+      System.arraycopy(b, off + written, block, blockLength, n);
+      blockLength += n;
+      written += n;
+      if (blockLength == BLOCK_SIZE) {
+        submit(false);
+      }
+    }
+  }
+
+  /**
+   * Writes out the blocks that have been compressed so far. Data that doesn't fill a block yet
+   * is held back until it does, or until the stream is closed.
+   */
+  @Override
+  public void flush() throws IOException {
+    while (!inFlight.isEmpty() && inFlight.peek().isDone()) {
+      writeNext();
+    }
+    out.flush();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      submit(true);
+      final byte[] trailer = new byte[8];
+      putIntLE(trailer, 0, (int) crc.getValue());
+      putIntLE(trailer, 4, (int) size);
+      out.write(trailer);
+      out.flush();
+    } finally {
+      // Let any blocks that are still being compressed give back their deflaters
+      for (final ForkJoinTask<byte[]> task : inFlight) {
+        task.quietlyJoin();
+      }
+      inFlight.clear();
+      Deflater deflater;
+      while ((deflater = deflaters.poll()) != null) {
+        deflater.end();
+      }
+      out.close();
+    }
+  }
+
+  private void submit(final boolean last) throws IOException {
+    final byte[] input = block;
+    final int length = blockLength;
+    final byte[] dictionary = previous;
+    inFlight.add(pool.submit(new Callable<byte[]>() {
+      @Override
+      public byte[] call() {
+        return deflate(input, length, dictionary, last);
+      }
+    }));
+    previous = input;
+    block = last ? null : new byte[BLOCK_SIZE];
+    blockLength = 0;
+
+    while (inFlight.size() > maxInFlight || (last && !inFlight.isEmpty())) {
+      writeNext();
+    }
+  }
+
+  private void writeNext() throws IOException {
+    final byte[] compressed;
+    try {
+      compressed = inFlight.peek().get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException("Interrupted while compressing");
+    } catch (ExecutionException e) {
+      throw new IOException(e.getCause());
+    }
+    inFlight.poll();
+    out.write(compressed);
+  }
+
+  private byte[] deflate(final byte[] input, final int length, final byte[] dictionary,
+                         final boolean last) {
+    Deflater deflater = deflaters.poll();
+    if (deflater == null) {
+      deflater = new Deflater(level, true);
+    }
+    try {
+      if (dictionary != null) {
+        deflater.setDictionary(dictionary, dictionary.length - DICTIONARY_SIZE, DICTIONARY_SIZE);
+      }
+      deflater.setInput(input, 0, length);
+      if (last) {
+        deflater.finish();
+      }
+
+      byte[] output = new byte[length / 2 + 64];
+      int n = 0;
+      while (true) {
+        if (n == output.length) {
+          output = Arrays.copyOf(output, output.length * 2);
+        }
+        n += deflater.deflate(output, n, output.length - n,
+                              last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+        // A sync flush is complete once it leaves room in the output buffer
+        if (last ? deflater.finished() : n < output.length) {
+          return Arrays.copyOf(output, n);
+        }
+      }
+    } finally {
+      deflater.reset();
+      deflaters.offer(deflater);
+    }
+  }
+
+  private static void putIntLE(final byte[] b, final int off, final int value) {
+    b[off] = (byte) value;
+    b[off + 1] = (byte) (value >>> 8);
+    b[off + 2] = (byte) (value >>> 16);
+    b[off + 3] = (byte) (value >>> 24);
+  }
+}
@@ -34,21 +34,19 @@ import java.io.InputStream;
 import java.net.SocketTimeoutException;
 import java.net.URI;
 
-import static com.google.common.io.ByteStreams.copy;
-import static com.google.common.io.ByteStreams.nullOutputStream;
 import static com.spotify.docker.client.ObjectMapperProvider.objectMapper;
 
 class ProgressStream implements Closeable {
 
   private static final Logger log = LoggerFactory.getLogger(ProgressStream.class);
-  private final InputStream stream;
+  private final ResponseStream stream;
   private final MappingIterator<ProgressMessage> iterator;
 
   private volatile boolean closed;
 
   ProgressStream(final InputStream stream) throws IOException {
-    this.stream = stream;
-    final JsonParser parser = objectMapper().getFactory().createParser(stream);
+    this.stream = new ResponseStream(stream);
+    final JsonParser parser = objectMapper().getFactory().createParser(this.stream);
     iterator = objectMapper().readValues(parser, ProgressMessage.class);
   }
 
@@ -72,6 +70,10 @@ class ProgressStream implements Closeable {
     }
   }
 
+  ResponseStream responseStream() {
+    return stream;
+  }
+
   public void tail(ProgressHandler handler, final String method, final URI uri)
       throws DockerException {
     while (hasNextMessage(method, uri)) {
@@ -91,9 +93,7 @@ class ProgressStream implements Closeable {
   @Override
   public void close() throws IOException {
     closed = true;
-    // Jersey will close the stream and release the connection after we read all the data.
-    // We cannot call the stream's close method because it an instance of UncloseableInputStream,
-    // where close is a no-op.
-    copy(stream, nullOutputStream());
+    // Drains a small remainder of the body or aborts the connection
+    stream.close();
   }
 }
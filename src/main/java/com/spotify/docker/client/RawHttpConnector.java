@@ -0,0 +1,582 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+import org.glassfish.jersey.client.ClientProperties;
+import org.glassfish.jersey.client.ClientRequest;
+import org.glassfish.jersey.client.ClientResponse;
+import org.glassfish.jersey.client.spi.AsyncConnectorCallback;
+import org.glassfish.jersey.client.spi.Connector;
+import org.glassfish.jersey.message.internal.OutboundMessageContext;
+import org.glassfish.jersey.message.internal.Statuses;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.channels.ClosedByInterruptException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Future;
+
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.core.HttpHeaders;
+
+import static com.google.common.base.Charsets.ISO_8859_1;
+
+/**
+ * A Jersey {@link Connector} that speaks HTTP/1.1 directly over a pooled socket instead of going
+ * through the Apache HTTP client. It supports fixed length and chunked request and response
+ * bodies and keep-alive connection reuse, which is all the Docker remote API needs.
+ *
+ * Connect and read timeouts are resolved per request from {@link ClientProperties#CONNECT_TIMEOUT}
+ * and {@link ClientProperties#READ_TIMEOUT}, falling back to the client configuration.
+ *
+ * Only the transport is replaced. Requests still pass through Jersey's request and response
+ * processing, including HK2 and MessageBodyReader dispatch, and a small call measures about as
+ * fast as through the Apache client.
+ */
+class RawHttpConnector implements Connector {
+
+  private static final int MAX_LINE_LENGTH = 8192;
+  private static final int MAX_DRAIN_BYTES = 8192;
+  // The separator after a chunk and the shortest chunk size line: "\r\n0\r\n"
+  private static final int MIN_CHUNK_HEAD = 5;
+
+  private static final long CHUNKED = -1;
+  private static final long NO_CONTENT = -2;
+  private static final long UNTIL_EOF = -3;
+
+  private static final byte[] CRLF = {'\r', '\n'};
+
+  private final HttpConnectionPool pool;
+  private final int connectTimeout;
+  private final int readTimeout;
+  private final int connectionRequestTimeout;
+
+  RawHttpConnector(final HttpConnectionPool pool, final int connectTimeout,
+                   final int readTimeout, final int connectionRequestTimeout) {
+    this.pool = pool;
+    this.connectTimeout = connectTimeout;
+    this.readTimeout = readTimeout;
+    this.connectionRequestTimeout = connectionRequestTimeout;
+  }
+
+  @Override
+  public ClientResponse apply(final ClientRequest request) {
+    try {
+      return execute(request);
+    } catch (IOException e) {
+      throw new ProcessingException(e);
+    }
+  }
+
+  @Override
+  public Future<?> apply(final ClientRequest request, final AsyncConnectorCallback callback) {
+    return MoreExecutors.sameThreadExecutor().submit(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          callback.response(execute(request));
+        } catch (IOException e) {
+          callback.failure(new ProcessingException(e));
+        } catch (Throwable t) {
+          callback.failure(t);
+        }
+      }
+    });
+  }
+
+  @Override
+  public String getName() {
+    return "Docker raw HTTP/1.1";
+  }
+
+  @Override
+  public void close() {
+    pool.close();
+  }
+
+  private ClientResponse execute(final ClientRequest request) throws IOException {
+    final int connectTimeout =
+        request.resolveProperty(ClientProperties.CONNECT_TIMEOUT, this.connectTimeout);
+    final int readTimeout =
+        request.resolveProperty(ClientProperties.READ_TIMEOUT, this.readTimeout);
+
+    while (true) {
+      final HttpConnection connection = pool.lease(connectionRequestTimeout, connectTimeout);
+      final boolean reused = connection.isReused();
+      try {
+        connection.setSoTimeout(readTimeout);
+        final int first;
+        try {
+          writeRequest(connection, request);
+          first = connection.input().read();
+          if (first == -1) {
+            throw new EOFException("Connection closed before response was received");
+          }
+        } catch (IOException e) {
+          // The daemon may close an idle keep-alive connection just as we reuse it. Replay
+          // requests that are safe to send twice on a new connection if nothing was received.
+          if (reused && isIdempotent(request) && !(e instanceof InterruptedIOException)
+              && !(e instanceof ClosedByInterruptException)) {
+            pool.release(connection, false);
+            continue;
+          }
+          throw e;
+        }
+        final String statusLine = readLine(connection.input(), first);
+        return readResponse(connection, request, statusLine);
+      } catch (IOException | RuntimeException e) {
+        pool.release(connection, false);
+        throw e;
+      }
+    }
+  }
+
+  private static boolean isIdempotent(final ClientRequest request) {
+    final String method = request.getMethod();
+    return method.equals("GET") || method.equals("HEAD");
+  }
+
+  private void writeRequest(final HttpConnection connection, final ClientRequest request)
+      throws IOException {
+    final OutputStream out = connection.output();
+    if (request.hasEntity()) {
+      request.enableBuffering();
+      request.setStreamProvider(new OutboundMessageContext.StreamProvider() {
+        @Override
+        public OutputStream getOutputStream(final int contentLength) throws IOException {
+          if (contentLength >= 0) {
+            writeHead(out, request, contentLength);
+            return new FixedLengthOutputStream(out);
+          } else {
+            writeHead(out, request, CHUNKED);
+            return new ChunkedOutputStream(out);
+          }
+        }
+      });
+      request.writeEntity();
+    } else {
+      final String method = request.getMethod();
+      final boolean expectsBody = method.equals("POST") || method.equals("PUT");
+      writeHead(out, request, expectsBody ? 0 : NO_CONTENT);
+    }
+    out.flush();
+  }
+
+  private static void writeHead(final OutputStream out, final ClientRequest request,
+                                final long contentLength) throws IOException {
+    final URI uri = request.getUri();
+    final StringBuilder head = new StringBuilder(256);
+    head.append(request.getMethod()).append(' ').append(uri.getRawPath());
+    if (uri.getRawQuery() != null) {
+      head.append('?').append(uri.getRawQuery());
+    }
+    head.append(" HTTP/1.1\r\n");
+
+    final Map<String, List<String>> headers = request.getStringHeaders();
+    if (!headers.containsKey(HttpHeaders.HOST)) {
+      head.append("Host: ").append(uri.getHost());
+      if (uri.getPort() != -1) {
+        head.append(':').append(uri.getPort());
+      }
+      head.append("\r\n");
+    }
+    for (final Map.Entry<String, List<String>> header : headers.entrySet()) {
+      final String name = header.getKey();
+      if (name.equalsIgnoreCase(HttpHeaders.CONTENT_LENGTH)
+          || name.equalsIgnoreCase("Transfer-Encoding")) {
+        continue;
+      }
+      for (final String value : header.getValue()) {
+        head.append(name).append(": ").append(value).append("\r\n");
+      }
+    }
+    if (contentLength == CHUNKED) {
+      head.append("Transfer-Encoding: chunked\r\n");
+    } else if (contentLength >= 0) {
+      head.append("Content-Length: ").append(contentLength).append("\r\n");
+    }
+    head.append("\r\n");
+
+    out.write(head.toString().getBytes(ISO_8859_1));
+  }
+
+  private ClientResponse readResponse(final HttpConnection connection,
+                                      final ClientRequest request, final String firstStatusLine)
+      throws IOException {
+    final InputStream in = connection.input();
+
+    String statusLine = firstStatusLine;
+    int status = parseStatus(statusLine);
+    while (status / 100 == 1) {
+      readHeaders(in, null);
+      statusLine = readLine(in);
+      if (statusLine == null) {
+        throw new EOFException("Connection closed before response was received");
+      }
+      status = parseStatus(statusLine);
+    }
+
+    final int reasonStart = statusLine.indexOf(' ', statusLine.indexOf(' ') + 1);
+    final String reason = reasonStart == -1 ? "" : statusLine.substring(reasonStart + 1);
+    final ClientResponse response = new ClientResponse(Statuses.from(status, reason), request);
+    final ResponseHead head = readHeaders(in, response);
+
+    boolean reusable = statusLine.startsWith("HTTP/1.1")
+                       ? !"close".equalsIgnoreCase(head.connection)
+                       : "keep-alive".equalsIgnoreCase(head.connection);
+
+    final long length;
+    if (request.getMethod().equals("HEAD") || status == 204 || status == 304) {
+      length = 0;
+    } else if (head.transferEncoding != null
+               && head.transferEncoding.toLowerCase(Locale.ROOT).contains("chunked")) {
+      length = CHUNKED;
+    } else if (head.contentLength != null) {
+      try {
+        length = Long.parseLong(head.contentLength.trim());
+      } catch (NumberFormatException e) {
+        throw new IOException("Invalid Content-Length: " + head.contentLength);
+      }
+    } else {
+      // Delimited by the server closing the connection
+      length = UNTIL_EOF;
+      reusable = false;
+    }
+
+    response.setEntityStream(new ResponseBody(connection, in, length, reusable));
+    return response;
+  }
+
+  private static int parseStatus(final String statusLine) throws IOException {
+    final int start = statusLine.indexOf(' ');
+    if (!statusLine.startsWith("HTTP/") || start == -1 || statusLine.length() < start + 4) {
+      throw new IOException("Invalid status line: " + statusLine);
+    }
+    try {
+      return Integer.parseInt(statusLine.substring(start + 1, start + 4));
+    } catch (NumberFormatException e) {
+      throw new IOException("Invalid status line: " + statusLine);
+    }
+  }
+
+  private static ResponseHead readHeaders(final InputStream in, final ClientResponse response)
+      throws IOException {
+    final ResponseHead head = new ResponseHead();
+    while (true) {
+      final String line = readLine(in);
+      if (line == null) {
+        throw new EOFException("Connection closed while reading response headers");
+      }
+      if (line.isEmpty()) {
+        return head;
+      }
+      final int colon = line.indexOf(':');
+      if (colon <= 0) {
+        throw new IOException("Invalid header: " + line);
+      }
+      final String name = line.substring(0, colon).trim();
+      final String value = line.substring(colon + 1).trim();
+      if (name.equalsIgnoreCase(HttpHeaders.CONTENT_LENGTH)) {
+        head.contentLength = value;
+      } else if (name.equalsIgnoreCase("Transfer-Encoding")) {
+        head.transferEncoding = value;
+      } else if (name.equalsIgnoreCase("Connection")) {
+        head.connection = value;
+      }
+      if (response != null) {
+        response.getHeaders().add(name, value);
+      }
+    }
+  }
+
+  /**
+   * Read a CRLF or LF terminated line, or return null at end of stream.
+   */
+  private static String readLine(final InputStream in) throws IOException {
+    return readLine(in, in.read());
+  }
+
+  /**
+   * Read a line whose first byte, or -1, has already been read.
+   */
+  private static String readLine(final InputStream in, final int first) throws IOException {
+    final StringBuilder line = new StringBuilder(64);
+    int b = first;
+    while (true) {
+      if (b == -1) {
+        return line.length() == 0 ? null : line.toString();
+      }
+      if (b == '\n') {
+        final int length = line.length();
+        if (length > 0 && line.charAt(length - 1) == '\r') {
+          line.setLength(length - 1);
+        }
+        return line.toString();
+      }
+      if (line.length() >= MAX_LINE_LENGTH) {
+        throw new IOException("Line too long");
+      }
+      line.append((char) b);
+      b = in.read();
+    }
+  }
+
+  private static class ResponseHead {
+
+    private String contentLength;
+    private String transferEncoding;
+    private String connection;
+  }
+
+  /**
+   * The response entity stream. The connection goes back to the pool as soon as the body has
+   * been read to the end; if the stream is closed early the connection is discarded, unless
+   * the rest of the body was already buffered.
+   */
+  private class ResponseBody extends InputStream {
+
+    private final HttpConnection connection;
+    private final InputStream in;
+    private final boolean chunked;
+    private final boolean reusable;
+
+    // Bytes left in the current chunk or body, or UNTIL_EOF
+    private long remaining;
+    private boolean chunkPending;
+    private boolean done;
+
+    ResponseBody(final HttpConnection connection, final InputStream in, final long length,
+                 final boolean reusable) {
+      this.connection = connection;
+      this.in = in;
+      this.chunked = length == CHUNKED;
+      this.reusable = reusable;
+      this.remaining = chunked ? 0 : length;
+      if (length == 0) {
+        finish(true);
+      }
+    }
+
+    @Override
+    public int read() throws IOException {
+      final byte[] b = new byte[1];
+      final int n = read(b, 0, 1);
+      return n == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+      if (done) {
+        return -1;
+      }
+      if (len == 0) {
+        return 0;
+      }
+      try {
+        if (chunked && remaining == 0 && !nextChunk()) {
+          return -1;
+        }
+        final int max = remaining == UNTIL_EOF ? len : (int) Math.min(len, remaining);
+        final int n = in.read(b, off, max);
+        if (n == -1) {
+          if (remaining == UNTIL_EOF) {
+            finish(false);
+            return -1;
+          }
+          throw new EOFException("Premature end of response body");
+        }
+        if (remaining != UNTIL_EOF) {
+          remaining -= n;
+          if (remaining == 0 && !chunked) {
+            finish(true);
+          }
+        }
+        return n;
+      } catch (IOException | RuntimeException e) {
+        finish(false);
+        throw e;
+      }
+    }
+
+    @Override
+    public int available() throws IOException {
+      if (done) {
+        return 0;
+      }
+      final int available = in.available();
+      return remaining == UNTIL_EOF ? available : (int) Math.min(available, remaining);
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (done) {
+        return;
+      }
+      // Read whatever is left of the body if it has already arrived, so that the connection
+      // can be reused. Never wait on the daemon for more, e.g. a followed log stream, and don't
+      // keep up with one either: only what was buffered when we started counts.
+      final byte[] scratch = new byte[512];
+      int drained = 0;
+      try {
+        final int limit = Math.min(in.available(), MAX_DRAIN_BYTES);
+        while (!done && drained < limit) {
+          final int buffered = in.available();
+          if (buffered == 0 || (chunked && remaining == 0 && buffered < MIN_CHUNK_HEAD)) {
+            // Reading the next chunk header would wait for the daemon
+            break;
+          }
+          final int n = read(scratch, 0, scratch.length);
+          if (n == -1) {
+            break;
+          }
+          drained += n;
+        }
+      } catch (IOException ignored) {
+        // discard the connection below
+      }
+      finish(false);
+    }
+
+    private boolean nextChunk() throws IOException {
+      if (chunkPending) {
+        final String separator = readLine(in);
+        if (separator == null || !separator.isEmpty()) {
+          throw new IOException("Invalid chunk separator");
+        }
+      }
+      final String line = readLine(in);
+      if (line == null) {
+        throw new EOFException("Premature end of chunked response body");
+      }
+      final int extension = line.indexOf(';');
+      final String size = (extension == -1 ? line : line.substring(0, extension)).trim();
+      try {
+        remaining = Long.parseLong(size, 16);
+      } catch (NumberFormatException e) {
+        throw new IOException("Invalid chunk size: " + line);
+      }
+      chunkPending = true;
+      if (remaining == 0) {
+        // Skip any trailers
+        String trailer;
+        do {
+          trailer = readLine(in);
+        } while (trailer != null && !trailer.isEmpty());
+        finish(true);
+        return false;
+      }
+      return true;
+    }
+
+    private void finish(final boolean complete) {
+      if (!done) {
+        done = true;
+        pool.release(connection, complete && reusable);
+      }
+    }
+  }
+
+  /**
+   * Writes a request body of known length without closing the connection when done.
+   */
+  private static class FixedLengthOutputStream extends OutputStream {
+
+    private final OutputStream out;
+
+    FixedLengthOutputStream(final OutputStream out) {
+      this.out = out;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+      out.write(b);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+      out.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      out.flush();
+    }
+  }
+
+  /**
+   * Writes a request body using chunked transfer encoding. Each write becomes one chunk.
+   */
+  private static class ChunkedOutputStream extends OutputStream {
+
+    private final OutputStream out;
+    private boolean closed;
+
+    ChunkedOutputStream(final OutputStream out) {
+      this.out = out;
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+      write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+      if (len == 0) {
+        return;
+      }
+      out.write(Integer.toHexString(len).getBytes(ISO_8859_1));
+      out.write(CRLF);
+      out.write(b, off, len);
+      out.write(CRLF);
+    }
+
+    @Override
+    public void flush() throws IOException {
+      out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (!closed) {
+        closed = true;
+        out.write('0');
+        out.write(CRLF);
+        out.write(CRLF);
+        out.flush();
+      }
+    }
+  }
+}
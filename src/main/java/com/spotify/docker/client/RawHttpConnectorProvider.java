@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import org.glassfish.jersey.client.ClientProperties;
+import org.glassfish.jersey.client.spi.Connector;
+import org.glassfish.jersey.client.spi.ConnectorProvider;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.core.Configuration;
+
+/**
+ * Provides {@link RawHttpConnector}s that all share one {@link HttpConnectionPool}, so that
+ * clients configured with different timeouts still reuse each other's connections.
+ */
+class RawHttpConnectorProvider implements ConnectorProvider {
+
+  private final HttpConnectionPool pool;
+  private final int connectionRequestTimeout;
+
+  RawHttpConnectorProvider(final HttpConnectionPool pool, final int connectionRequestTimeout) {
+    this.pool = pool;
+    this.connectionRequestTimeout = connectionRequestTimeout;
+  }
+
+  @Override
+  public Connector getConnector(final Client client, final Configuration runtimeConfig) {
+    final int connectTimeout = ClientProperties.getValue(
+        runtimeConfig.getProperties(), ClientProperties.CONNECT_TIMEOUT, 0);
+    final int readTimeout = ClientProperties.getValue(
+        runtimeConfig.getProperties(), ClientProperties.READ_TIMEOUT, 0);
+    return new RawHttpConnector(pool, connectTimeout, readTimeout, connectionRequestTimeout);
+  }
+}
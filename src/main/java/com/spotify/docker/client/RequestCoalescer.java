@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import com.google.common.base.Supplier;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+
+import java.io.Closeable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.Response;
+
+/**
+ * Lets concurrent identical read requests share a single in-flight request and its result.
+ * Once the shared request completes it is forgotten, so later calls issue a new request.
+ *
+ * Every caller gets its own future, so cancelling one doesn't affect the others. Callers share
+ * the deserialized result and must not modify it.
+ */
+class RequestCoalescer {
+
+  private final ConcurrentMap<String, ListenableFuture<?>> inFlight = new ConcurrentHashMap<>();
+  private final AtomicLong coalesced = new AtomicLong();
+
+  /**
+   * Returns true if responses of the given type can be shared between callers. Streams and raw
+   * responses are consumed by whoever reads them, so they can't.
+   */
+  static boolean isShareable(final GenericType<?> type) {
+    final Class<?> rawType = type.getRawType();
+    return !Response.class.isAssignableFrom(rawType)
+           && !Closeable.class.isAssignableFrom(rawType)
+           && !AutoCloseable.class.isAssignableFrom(rawType);
+  }
+
+  /**
+   * Join the in-flight request for {@code key}, or start one with {@code request} if there
+   * is none.
+   */
+  @SuppressWarnings("unchecked")
+  <T> ListenableFuture<T> coalesce(final String key,
+                                   final Supplier<ListenableFuture<T>> request) {
+    ListenableFuture<T> shared = (ListenableFuture<T>) inFlight.get(key);
+    if (shared != null) {
+      coalesced.incrementAndGet();
+    } else {
+      final SettableFuture<T> future = SettableFuture.create();
+      shared = (ListenableFuture<T>) inFlight.putIfAbsent(key, future);
+      if (shared != null) {
+        coalesced.incrementAndGet();
+      } else {
+        shared = future;
+        future.addListener(new Runnable() {
+          @Override
+          public void run() {
+            inFlight.remove(key, future);
+          }
+        }, MoreExecutors.sameThreadExecutor());
+        try {
+          forward(request.get(), future);
+        } catch (RuntimeException e) {
+          future.setException(e);
+        }
+      }
+    }
+
+    final SettableFuture<T> result = SettableFuture.create();
+    forward(shared, result);
+    return result;
+  }
+
+  /**
+   * Returns the number of calls that were served by another call's request.
+   */
+  long coalescedRequests() {
+    return coalesced.get();
+  }
+
+  private static <T> void forward(final ListenableFuture<T> from, final SettableFuture<T> to) {
+    Futures.addCallback(from, new FutureCallback<T>() {
+      @Override
+      public void onSuccess(final T result) {
+        to.set(result);
+      }
+
+      @Override
+      public void onFailure(final Throwable t) {
+        to.setException(t);
+      }
+    });
+  }
+}
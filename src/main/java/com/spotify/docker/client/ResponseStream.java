@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import org.apache.http.conn.ManagedHttpClientConnection;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.core.Response;
+
+import static com.google.common.io.ByteStreams.copy;
+import static com.google.common.io.ByteStreams.nullOutputStream;
+
+/**
+ * The entity stream of a streaming response, such as a log or progress stream. It keeps track of
+ * how much of the body has been read, so that closing it early can be handed to a
+ * {@link StreamCloser} once it has been attached to its response.
+ *
+ * Jersey only hands readers a stream whose close does nothing, so until then, and for streams
+ * created outside of this client, closing reads the rest of the body.
+ */
+class ResponseStream extends FilterInputStream {
+
+  private volatile long position;
+  private volatile boolean done;
+  private volatile boolean closed;
+
+  private volatile Response response;
+  private volatile ManagedHttpClientConnection connection;
+  private volatile StreamCloser closer;
+
+  ResponseStream(final InputStream in) {
+    super(in);
+  }
+
+  /**
+   * @param connection The Apache connection that received the response, or null if the
+   *                   response can be aborted by closing it.
+   */
+  void attach(final Response response, final ManagedHttpClientConnection connection,
+              final StreamCloser closer) {
+    this.response = response;
+    this.connection = connection;
+    this.closer = closer;
+  }
+
+  @Override
+  public int read() throws IOException {
+    try {
+      final int b = super.read();
+      if (b == -1) {
+        done = true;
+      } else {
+        position++;
+      }
+      return b;
+    } catch (IOException | RuntimeException e) {
+      done = true;
+      throw e;
+    }
+  }
+
+  @Override
+  public int read(final byte[] b, final int off, final int len) throws IOException {
+    try {
+      final int n = super.read(b, off, len);
+      if (n == -1) {
+        done = true;
+      } else {
+        position += n;
+      }
+      return n;
+    } catch (IOException | RuntimeException e) {
+      done = true;
+      throw e;
+    }
+  }
+
+  @Override
+  public long skip(final long n) throws IOException {
+    final long skipped = super.skip(n);
+    position += skipped;
+    return skipped;
+  }
+
+  @Override
+  public boolean markSupported() {
+    return false;
+  }
+
+  /**
+   * Returns the number of bytes left in the body, or -1 if that isn't known.
+   */
+  long remaining() {
+    final Response response = this.response;
+    final int length = response == null ? -1 : response.getLength();
+    return length < 0 ? -1 : Math.max(0, length - position);
+  }
+
+  /**
+   * Read and discard the rest of the body, which releases the connection for reuse.
+   */
+  void drain() throws IOException {
+    copy(in, nullOutputStream());
+  }
+
+  /**
+   * Give up the connection without reading the rest of the body.
+   */
+  void abort() {
+    final ManagedHttpClientConnection connection = this.connection;
+    if (connection != null) {
+      try {
+        // Otherwise closing the response would read the rest of the body first
+        connection.shutdown();
+      } catch (IOException ignored) {
+        // the connection is gone either way
+      }
+    }
+    try {
+      response.close();
+    } catch (ProcessingException ignored) {
+      // The connection was shut down under the response
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    if (done) {
+      return;
+    }
+    final StreamCloser closer = this.closer;
+    if (closer == null || response == null) {
+      drain();
+    } else {
+      closer.close(this);
+    }
+  }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decides what closing a streaming response before its end does to the connection. If the rest
+ * of the body is known to be at most {@code drainLimit} bytes it is read and discarded, so that
+ * the connection can be reused. Otherwise, e.g. for a followed log or a large remainder, the
+ * connection is aborted rather than waiting for a body that may never end.
+ */
+class StreamCloser {
+
+  private final long drainLimit;
+  private final AtomicLong drained = new AtomicLong();
+  private final AtomicLong aborted = new AtomicLong();
+
+  StreamCloser(final long drainLimit) {
+    this.drainLimit = drainLimit;
+  }
+
+  void close(final ResponseStream stream) throws IOException {
+    final long remaining = stream.remaining();
+    if (remaining >= 0 && remaining <= drainLimit) {
+      drained.incrementAndGet();
+      stream.drain();
+    } else {
+      aborted.incrementAndGet();
+      stream.abort();
+    }
+  }
+
+  /**
+   * Returns the number of streams closed early whose remainder was drained.
+   */
+  long drainedStreams() {
+    return drained.get();
+  }
+
+  /**
+   * Returns the number of streams closed early whose connection was aborted.
+   */
+  long abortedStreams() {
+    return aborted.get();
+  }
+}
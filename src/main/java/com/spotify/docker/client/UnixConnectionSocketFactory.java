@@ -38,15 +38,43 @@ import jnr.unixsocket.UnixSocketAddress;
 
 /**
  * Provides a ConnectionSocketFactory for connecting Apache HTTP clients to Unix sockets.
+ *
+ * Sockets are created with {@link NioUnixSocket} when the JVM supports Unix domain socket
+ * channels, and with the jnr-unixsocket based {@link ApacheUnixSocket} otherwise.
  */
 @Immutable
 public class UnixConnectionSocketFactory implements ConnectionSocketFactory {
 
-  private File socketFile;
+  private final File socketFile;
+  private final int receiveBufferSize;
+  private final int sendBufferSize;
+  private final boolean nio;
 
   public UnixConnectionSocketFactory(final URI socketUri) {
+    this(socketUri, 0, 0);
+  }
+
+  /**
+   * Create a factory for the Unix socket at the given URI. Buffer sizes of zero leave the
+   * system defaults in place, and are only applied when {@link NioUnixSocket} is supported.
+   */
+  public UnixConnectionSocketFactory(final URI socketUri, final int receiveBufferSize,
+                                     final int sendBufferSize) {
+    this(socketUri, receiveBufferSize, sendBufferSize, true);
+  }
+
+  /**
+   * Create a factory that uses {@link ApacheUnixSocket} even where {@link NioUnixSocket} is
+   * supported unless {@code nio} is set, so that benchmarks can compare the two.
+   */
+  UnixConnectionSocketFactory(final URI socketUri, final int receiveBufferSize,
+                              final int sendBufferSize, final boolean nio) {
     super();
 
+    this.receiveBufferSize = receiveBufferSize;
+    this.sendBufferSize = sendBufferSize;
+    this.nio = nio && NioUnixSocket.isSupported();
+
     final String filename = socketUri.toString()
         .replaceAll("^unix:///", "unix://localhost/")
         .replaceAll("^unix://localhost", "");
@@ -64,7 +92,18 @@ public class UnixConnectionSocketFactory implements ConnectionSocketFactory {
 
   @Override
   public Socket createSocket(final HttpContext context) throws IOException {
-    return new ApacheUnixSocket();
+    if (!nio) {
+      return new ApacheUnixSocket();
+    }
+
+    final NioUnixSocket socket = new NioUnixSocket();
+    if (receiveBufferSize > 0) {
+      socket.setReceiveBufferSize(receiveBufferSize);
+    }
+    if (sendBufferSize > 0) {
+      socket.setSendBufferSize(sendBufferSize);
+    }
+    return socket;
   }
 
   @Override
@@ -75,7 +114,11 @@ public class UnixConnectionSocketFactory implements ConnectionSocketFactory {
                               final InetSocketAddress localAddress,
                               final HttpContext context) throws IOException {
     try {
-      socket.connect(new UnixSocketAddress(socketFile), connectTimeout);
+      if (socket instanceof NioUnixSocket) {
+        ((NioUnixSocket) socket).connect(socketFile, connectTimeout);
+      } else {
+        socket.connect(new UnixSocketAddress(socketFile), connectTimeout);
+      }
     } catch (SocketTimeoutException e) {
       throw new ConnectTimeoutException(e, null, remoteAddress.getAddress());
     }
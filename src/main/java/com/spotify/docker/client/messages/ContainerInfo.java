@@ -39,7 +39,7 @@ import static com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility.NONE;
 public class ContainerInfo {
 
   @JsonProperty("Id") private String id;
-  @JsonProperty("Created") private Date created;
+  @JsonProperty("Created") private DockerTimestamp created;
   @JsonProperty("Path") private String path;
   @JsonProperty("Args") private ImmutableList<String> args;
   @JsonProperty("Config") private ContainerConfig config;
@@ -63,7 +63,14 @@ public class ContainerInfo {
   }
 
   public Date created() {
-    return created == null ? null : new Date(created.getTime());
+    return created == null ? null : created.toDate();
+  }
+
+  /**
+   * Returns the time the container was created at, with nanosecond precision.
+   */
+  public DockerTimestamp createdTimestamp() {
+    return created;
   }
 
   public String path() {
@@ -39,8 +39,8 @@ public class ContainerState {
   @JsonProperty("Restarting") private Boolean restarting;
   @JsonProperty("Pid") private Integer pid;
   @JsonProperty("ExitCode") private Integer exitCode;
-  @JsonProperty("StartedAt") private Date startedAt;
-  @JsonProperty("FinishedAt") private Date finishedAt;
+  @JsonProperty("StartedAt") private DockerTimestamp startedAt;
+  @JsonProperty("FinishedAt") private DockerTimestamp finishedAt;
 
   public Boolean running() {
     return running;
@@ -63,11 +63,25 @@ public class ContainerState {
   }
 
   public Date startedAt() {
-    return startedAt == null ? null : new Date(startedAt.getTime());
+    return startedAt == null ? null : startedAt.toDate();
+  }
+
+  /**
+   * Returns the time the container was started at, with nanosecond precision.
+   */
+  public DockerTimestamp startedAtTimestamp() {
+    return startedAt;
   }
 
   public Date finishedAt() {
-    return finishedAt == null ? null : new Date(finishedAt.getTime());
+    return finishedAt == null ? null : finishedAt.toDate();
+  }
+
+  /**
+   * Returns the time the container finished at, with nanosecond precision.
+   */
+  public DockerTimestamp finishedAtTimestamp() {
+    return finishedAt;
   }
 
   @Override
@@ -0,0 +1,283 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client.messages;
+
+import com.google.common.primitives.Longs;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * A point in time with the nanosecond precision of the timestamps Docker returns, such as
+ * <tt>2014-10-17T21:22:56.949763914Z</tt>, which {@link Date} can't hold.
+ */
+public final class DockerTimestamp implements Comparable<DockerTimestamp> {
+
+  private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+  private static final long SECONDS_PER_DAY = 24 * 60 * 60;
+
+  // Days from 0000-03-01, the start of a 400 year cycle, to the epoch
+  private static final long EPOCH_DAY_OFFSET = 719468;
+  private static final long DAYS_PER_CYCLE = 146097;
+
+  private final long epochSecond;
+  private final int nano;
+
+  private DockerTimestamp(final long epochSecond, final int nano) {
+    this.epochSecond = epochSecond;
+    this.nano = nano;
+  }
+
+  /**
+   * @param epochSecond Seconds since the epoch.
+   * @param nano        Nanoseconds within the second, from 0 to 999,999,999.
+   */
+  public static DockerTimestamp of(final long epochSecond, final int nano) {
+    checkArgument(nano >= 0 && nano < SECONDS.toNanos(1), "nano out of range: %s", nano);
+    return new DockerTimestamp(epochSecond, nano);
+  }
+
+  public static DockerTimestamp of(final Date date) {
+    return ofMillis(date.getTime());
+  }
+
+  @JsonCreator
+  static DockerTimestamp ofMillis(final long millis) {
+    // Round down, also before the epoch
+    final long epochSecond = millis / 1000 - (millis % 1000 < 0 ? 1 : 0);
+    return new DockerTimestamp(epochSecond,
+                               (int) MILLISECONDS.toNanos(millis - SECONDS.toMillis(epochSecond)));
+  }
+
+  @JsonCreator
+  static DockerTimestamp fromJson(final String source) throws ParseException {
+    return parse(source);
+  }
+
+  /**
+   * Parse an RFC3339 timestamp with up to nine fractional digits, such as Docker returns. Any
+   * further digits are ignored.
+   *
+   * <p>
+   * Dates before the Gregorian calendar was introduced in 1582 are read as Julian dates like
+   * {@link GregorianCalendar} does, so that Docker's zero time of <tt>0001-01-01T00:00:00Z</tt>
+   * is the same point in time as the {@link Date} parsed from it.
+   * </p>
+   *
+   * @throws ParseException if {@code source} isn't such a timestamp.
+   */
+  public static DockerTimestamp parse(final CharSequence source) throws ParseException {
+    final int length = source.length();
+    if (length < 20) {
+      throw new ParseException("Not an RFC3339 timestamp: " + source, 0);
+    }
+    final int year = digits(source, 0, 4);
+    expect(source, 4, '-');
+    final int month = digits(source, 5, 2);
+    expect(source, 7, '-');
+    final int day = digits(source, 8, 2);
+    final char t = source.charAt(10);
+    if (t != 'T' && t != 't') {
+      throw new ParseException("Expected 'T': " + source, 10);
+    }
+    final int hour = digits(source, 11, 2);
+    expect(source, 13, ':');
+    final int minute = digits(source, 14, 2);
+    expect(source, 16, ':');
+    final int second = digits(source, 17, 2);
+    if (month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+        || hour > 23 || minute > 59 || second > 60) {
+      throw new ParseException("Field out of range: " + source, 0);
+    }
+
+    int i = 19;
+    int nano = 0;
+    if (source.charAt(i) == '.') {
+      int scale = 100000000;
+      final int start = ++i;
+      for (; i < length && isDigit(source.charAt(i)); i++) {
+        nano += (source.charAt(i) - '0') * scale;
+        scale /= 10;
+      }
+      if (i == start) {
+        throw new ParseException("Expected fractional digits: " + source, i);
+      }
+    }
+
+    final int offsetSeconds;
+    if (i < length && (source.charAt(i) == 'Z' || source.charAt(i) == 'z')) {
+      offsetSeconds = 0;
+      i++;
+    } else if (i + 6 <= length && (source.charAt(i) == '+' || source.charAt(i) == '-')) {
+      final int offsetHour = digits(source, i + 1, 2);
+      expect(source, i + 3, ':');
+      final int offsetMinute = digits(source, i + 4, 2);
+      final int offset = (offsetHour * 60 + offsetMinute) * 60;
+      offsetSeconds = source.charAt(i) == '-' ? -offset : offset;
+      i += 6;
+    } else {
+      throw new ParseException("Expected a zone offset: " + source, i);
+    }
+    if (i != length) {
+      throw new ParseException("Unexpected trailing characters: " + source, i);
+    }
+
+    final long localSecond;
+    if (year < 1582 || (year == 1582 && (month < 10 || (month == 10 && day < 15)))) {
+      final Calendar calendar = new GregorianCalendar(UTC, Locale.ROOT);
+      calendar.clear();
+      calendar.set(year, month - 1, day, hour, minute, second);
+      localSecond = ofMillis(calendar.getTimeInMillis()).epochSecond;
+    } else {
+      localSecond = epochDay(year, month, day) * SECONDS_PER_DAY
+                    + hour * 3600 + minute * 60 + second;
+    }
+    return new DockerTimestamp(localSecond - offsetSeconds, nano);
+  }
+
+  private static int digits(final CharSequence source, final int start, final int count)
+      throws ParseException {
+    int value = 0;
+    for (int i = start; i < start + count; i++) {
+      final char c = i < source.length() ? source.charAt(i) : 0;
+      if (!isDigit(c)) {
+        throw new ParseException("Expected a digit: " + source, i);
+      }
+      value = value * 10 + (c - '0');
+    }
+    return value;
+  }
+
+  private static boolean isDigit(final char c) {
+    return c >= '0' && c <= '9';
+  }
+
+  private static void expect(final CharSequence source, final int index, final char expected)
+      throws ParseException {
+    if (index >= source.length() || source.charAt(index) != expected) {
+      throw new ParseException("Expected '" + expected + "': " + source, index);
+    }
+  }
+
+  private static boolean isLeapYear(final int year) {
+    return year % 4 == 0 && (year % 100 != 0 || year % 400 == 0);
+  }
+
+  private static int daysInMonth(final int year, final int month) {
+    switch (month) {
+      case 2:
+        return isLeapYear(year) ? 29 : 28;
+      case 4:
+      case 6:
+      case 9:
+      case 11:
+        return 30;
+      default:
+        return 31;
+    }
+  }
+
+  /**
+   * Returns the number of days from the epoch to a date in the proleptic Gregorian calendar.
+   */
+  private static long epochDay(final int year, final int month, final int day) {
+    // Count years from March, so that the leap day is the last day of the year
+    final long y = month <= 2 ? year - 1 : year;
+    final long era = (y >= 0 ? y : y - 399) / 400;
+    final long yearOfEra = y - era * 400;
+    final long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+    final long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+    return era * DAYS_PER_CYCLE + dayOfEra - EPOCH_DAY_OFFSET;
+  }
+
+  public long epochSecond() {
+    return epochSecond;
+  }
+
+  public int nano() {
+    return nano;
+  }
+
+  /**
+   * Returns nanoseconds since the epoch. Overflows for times after the year 2262.
+   */
+  public long epochNanos() {
+    return SECONDS.toNanos(epochSecond) + nano;
+  }
+
+  /**
+   * Returns this time as a {@link Date}, which truncates it to milliseconds.
+   */
+  public Date toDate() {
+    return new Date(SECONDS.toMillis(epochSecond) + NANOSECONDS.toMillis(nano));
+  }
+
+  @Override
+  public int compareTo(final DockerTimestamp other) {
+    final int bySecond = Longs.compare(epochSecond, other.epochSecond);
+    return bySecond != 0 ? bySecond : nano - other.nano;
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+    final DockerTimestamp that = (DockerTimestamp) o;
+    return epochSecond == that.epochSecond && nano == that.nano;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * Longs.hashCode(epochSecond) + nano;
+  }
+
+  /**
+   * Returns the timestamp in UTC with all nine fractional digits, e.g.
+   * <tt>2014-10-17T21:22:56.949763914Z</tt>.
+   */
+  @Override
+  @JsonValue
+  public String toString() {
+    final SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss", Locale.ROOT);
+    format.setTimeZone(UTC);
+    return format.format(new Date(SECONDS.toMillis(epochSecond)))
+           + String.format(Locale.ROOT, ".%09dZ", nano);
+  }
+}
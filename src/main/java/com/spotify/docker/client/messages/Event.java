@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client.messages;
+
+import com.google.common.base.Objects;
+
+import com.fasterxml.jackson.annotation.JsonAutoDetect;
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Date;
+
+import static com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility.ANY;
+import static com.fasterxml.jackson.annotation.JsonAutoDetect.Visibility.NONE;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * A single event from the daemon's event stream, e.g. a container being created or dying.
+ */
+@JsonAutoDetect(fieldVisibility = ANY, getterVisibility = NONE, setterVisibility = NONE)
+public class Event {
+
+  @JsonProperty("status") private String status;
+  @JsonProperty("id") private String id;
+  @JsonProperty("from") private String from;
+  @JsonProperty("time") private Long time;
+
+  public Event() {
+  }
+
+  public Event(final String status, final String id, final String from, final Long time) {
+    this.status = status;
+    this.id = id;
+    this.from = from;
+    this.time = time;
+  }
+
+  /**
+   * What happened, e.g. {@code create}, {@code start}, {@code die} or {@code destroy}.
+   */
+  public String status() {
+    return status;
+  }
+
+  /**
+   * The ID of the container or image the event is about.
+   */
+  public String id() {
+    return id;
+  }
+
+  /**
+   * The image the container was created from, for container events.
+   */
+  public String from() {
+    return from;
+  }
+
+  /**
+   * When the event happened, with second precision.
+   */
+  public Date time() {
+    return time == null ? null : new Date(SECONDS.toMillis(time));
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+
+    final Event that = (Event) o;
+
+    if (status != null ? !status.equals(that.status) : that.status != null) {
+      return false;
+    }
+    if (id != null ? !id.equals(that.id) : that.id != null) {
+      return false;
+    }
+    if (from != null ? !from.equals(that.from) : that.from != null) {
+      return false;
+    }
+    if (time != null ? !time.equals(that.time) : that.time != null) {
+      return false;
+    }
+
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    int result = status != null ? status.hashCode() : 0;
+    result = 31 * result + (id != null ? id.hashCode() : 0);
+    result = 31 * result + (from != null ? from.hashCode() : 0);
+    result = 31 * result + (time != null ? time.hashCode() : 0);
+    return result;
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(this)
+        .add("status", status)
+        .add("id", id)
+        .add("from", from)
+        .add("time", time)
+        .toString();
+  }
+}
@@ -0,0 +1,293 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import com.google.common.io.ByteStreams;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+import jnr.unixsocket.UnixServerSocketChannel;
+import jnr.unixsocket.UnixSocketAddress;
+import jnr.unixsocket.UnixSocketChannel;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Measures submitting a build of a synthetic {@code contextMegabytes} MiB context, from walking
+ * the directory to the daemon having read the whole context, for each
+ * {@link BuildContextEncoding} over a unix socket and over TCP. A stand-in daemon gunzips the
+ * context if it's compressed, as docker does, and answers with a successful build.
+ *
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.spotify.docker.client.BuildContextBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BuildContextBenchmark {
+
+  private static final int FILE_SIZE = 1024 * 1024;
+
+  private static final byte[] RESPONSE = ("{\"stream\":\"Successfully built 0123456789ab\\n\"}")
+      .getBytes(UTF_8);
+
+  @Param({"unix", "tcp"})
+  public String endpoint;
+
+  @Param({"tar", "gzip1", "gzip6"})
+  public String encoding;
+
+  @Param({"32"})
+  public int contextMegabytes;
+
+  private Path context;
+  private File socketFile;
+  private UnixServerSocketChannel unixServer;
+  private ServerSocket tcpServer;
+  private Thread serverThread;
+  private DefaultDockerClient client;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    context = Files.createTempDirectory("docker-client-context");
+    final Random random = new Random(0);
+    final byte[] file = new byte[FILE_SIZE];
+    for (int i = 0; i < contextMegabytes; i++) {
+      // Half text that compresses well, half noise that doesn't
+      for (int off = 0; off < FILE_SIZE / 2; off++) {
+        file[off] = (byte) ('a' + random.nextInt(8));
+      }
+      final byte[] noise = new byte[FILE_SIZE / 2];
+      random.nextBytes(noise);
+      System.arraycopy(noise, 0, file, FILE_SIZE / 2, noise.length);
+      Files.write(context.resolve("file" + i), file);
+    }
+    Files.write(context.resolve("Dockerfile"), "FROM scratch\nCOPY . /\n".getBytes(UTF_8));
+
+    final String uri;
+    if (endpoint.equals("unix")) {
+      socketFile = new File(Files.createTempDirectory("docker-client-bench").toFile(), "sock");
+      unixServer = UnixServerSocketChannel.open();
+      unixServer.socket().bind(new UnixSocketAddress(socketFile));
+      serverThread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            while (true) {
+              try (UnixSocketChannel channel = unixServer.accept()) {
+                serve(Channels.newInputStream(channel), Channels.newOutputStream(channel));
+              }
+            }
+          } catch (IOException ignored) {
+            // closed by tearDown
+          }
+        }
+      });
+      uri = "unix://" + socketFile.getAbsolutePath();
+    } else {
+      tcpServer = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+      serverThread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            while (true) {
+              try (Socket socket = tcpServer.accept()) {
+                serve(socket.getInputStream(), socket.getOutputStream());
+              }
+            }
+          } catch (IOException ignored) {
+            // closed by tearDown
+          }
+        }
+      });
+      uri = "http://127.0.0.1:" + tcpServer.getLocalPort();
+    }
+    serverThread.setDaemon(true);
+    serverThread.start();
+
+    final BuildContextEncoding contextEncoding;
+    if (encoding.equals("tar")) {
+      contextEncoding = BuildContextEncoding.tar();
+    } else {
+      contextEncoding = BuildContextEncoding.gzip(Integer.parseInt(encoding.substring(4)));
+    }
+    client = DefaultDockerClient.builder()
+        .uri(uri)
+        .buildContextEncoding(contextEncoding)
+        .build();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    client.close();
+    if (unixServer != null) {
+      unixServer.close();
+      socketFile.delete();
+      socketFile.getParentFile().delete();
+    } else {
+      tcpServer.close();
+    }
+    serverThread.interrupt();
+    for (final File file : context.toFile().listFiles()) {
+      file.delete();
+    }
+    Files.delete(context);
+  }
+
+  @Benchmark
+  public String build() throws Exception {
+    return client.build(context);
+  }
+
+  public static void main(final String... args) throws Exception {
+    new Runner(new OptionsBuilder()
+                   .include(BuildContextBenchmark.class.getSimpleName())
+                   .build()).run();
+  }
+
+  /**
+   * Read one build request, decompressing the context if needed, and answer it.
+   */
+  private static void serve(final InputStream socketIn, final OutputStream out)
+      throws IOException {
+    final InputStream in = new BufferedInputStream(socketIn, 64 * 1024);
+    boolean chunked = false;
+    long contentLength = 0;
+    String line;
+    while (!(line = readLine(in)).isEmpty()) {
+      final String header = line.toLowerCase(Locale.ROOT);
+      if (header.startsWith("transfer-encoding:") && header.contains("chunked")) {
+        chunked = true;
+      } else if (header.startsWith("content-length:")) {
+        contentLength = Long.parseLong(header.substring(header.indexOf(':') + 1).trim());
+      }
+    }
+
+    final InputStream body = new BufferedInputStream(
+        chunked ? new ChunkedBody(in) : ByteStreams.limit(in, contentLength));
+    body.mark(2);
+    final boolean gzipped = body.read() == 0x1f && body.read() == 0x8b;
+    body.reset();
+    if (gzipped) {
+      ByteStreams.copy(new GZIPInputStream(body, 64 * 1024), ByteStreams.nullOutputStream());
+    }
+    // Read to the end of the body, past the gzip trailer
+    ByteStreams.copy(body, ByteStreams.nullOutputStream());
+
+    out.write(("HTTP/1.1 200 OK\r\nContent-Type: application/json\r\n"
+               + "Content-Length: " + RESPONSE.length + "\r\nConnection: close\r\n\r\n")
+                  .getBytes(ISO_8859_1));
+    out.write(RESPONSE);
+    out.flush();
+  }
+
+  private static String readLine(final InputStream in) throws IOException {
+    final StringBuilder line = new StringBuilder();
+    int b;
+    while ((b = in.read()) != '\n') {
+      if (b == -1) {
+        throw new EOFException();
+      }
+      if (b != '\r') {
+        line.append((char) b);
+      }
+    }
+    return line.toString();
+  }
+
+  private static class ChunkedBody extends FilterInputStream {
+
+    private long remaining;
+    private boolean done;
+
+    ChunkedBody(final InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      final byte[] b = new byte[1];
+      return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+      if (done) {
+        return -1;
+      }
+      if (remaining == 0) {
+        final String size = readLine(in);
+        remaining = Long.parseLong(size.split(";")[0].trim(), 16);
+        if (remaining == 0) {
+          readLine(in);
+          done = true;
+          return -1;
+        }
+      }
+      final int n = in.read(b, off, (int) Math.min(len, remaining));
+      if (n == -1) {
+        throw new EOFException();
+      }
+      remaining -= n;
+      if (remaining == 0) {
+        readLine(in);
+      }
+      return n;
+    }
+  }
+}
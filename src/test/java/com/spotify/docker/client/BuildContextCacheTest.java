@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import com.google.common.io.ByteStreams;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPInputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class BuildContextCacheTest {
+
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
+  private byte[] write(final Path context, final BuildContextCache cache) throws Exception {
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    CompressedDirectory.write(context, out, BuildContextEncoding.gzip(), null, cache);
+    return out.toByteArray();
+  }
+
+  private static Map<String, String> read(final byte[] context) throws Exception {
+    final Map<String, String> files = new LinkedHashMap<>();
+    try (TarArchiveInputStream tarIn = new TarArchiveInputStream(
+        new GZIPInputStream(new ByteArrayInputStream(context)))) {
+      TarArchiveEntry entry;
+      while ((entry = tarIn.getNextTarEntry()) != null) {
+        files.put(entry.getName(), new String(ByteStreams.toByteArray(tarIn), UTF_8));
+      }
+    }
+    return files;
+  }
+
+  @Test
+  public void testUnchangedFilesComeFromCache() throws Exception {
+    final Path context = folder.newFolder("context").toPath();
+    final BuildContextCache cache = new BuildContextCache(folder.newFolder("cache").toPath());
+    final Path dockerfile = context.resolve("Dockerfile");
+    final Path data = context.resolve("data.txt");
+    Files.write(dockerfile, Arrays.asList("FROM scratch"), UTF_8);
+    Files.write(data, "first".getBytes(UTF_8));
+    final byte[] large = new byte[300 * 1024];
+    new Random(0).nextBytes(large);
+    Files.write(context.resolve("large.bin"), large);
+
+    final byte[] first = write(context, cache);
+    assertThat(read(first).get("data.txt"), equalTo("first"));
+    assertThat(read(first).get("Dockerfile"), equalTo("FROM scratch\n"));
+    assertThat(read(first).keySet().size(), equalTo(3));
+    assertThat(write(context, cache), equalTo(first));
+
+    // Same size and modification time: the file is taken to be unchanged
+    final FileTime modified = Files.getLastModifiedTime(data);
+    Files.write(data, "again".getBytes(UTF_8));
+    Files.setLastModifiedTime(data, modified);
+    assertThat(read(write(context, cache)).get("data.txt"), equalTo("first"));
+
+    Files.setLastModifiedTime(data, FileTime.fromMillis(modified.toMillis() + 1000));
+    assertThat(read(write(context, cache)).get("data.txt"), equalTo("again"));
+    assertThat(read(write(context, null)).get("data.txt"), equalTo("again"));
+  }
+
+  @Test
+  public void testUnwritableCacheDoesNotFailBuild() throws Exception {
+    final Path context = folder.newFolder("context").toPath();
+    Files.write(context.resolve("Dockerfile"), Arrays.asList("FROM scratch"), UTF_8);
+    // The cache directory can't be created under a regular file
+    final Path file = folder.newFile("not-a-directory").toPath();
+    final BuildContextCache cache = new BuildContextCache(file.resolve("cache"));
+
+    assertThat(read(write(context, cache)).get("Dockerfile"), equalTo("FROM scratch\n"));
+  }
+
+  @Test
+  public void testParallelCompression() throws Exception {
+    final Path context = folder.newFolder("context").toPath();
+    final BuildContextCache cache = new BuildContextCache(folder.newFolder("cache").toPath());
+    Files.write(context.resolve("Dockerfile"), Arrays.asList("FROM scratch"), UTF_8);
+    final byte[] large = new byte[ParallelGzipOutputStream.BLOCK_SIZE * 3];
+    new Random(0).nextBytes(large);
+    Files.write(context.resolve("large.bin"), large);
+
+    final ForkJoinPool pool = new ForkJoinPool(2);
+    try {
+      final ByteArrayOutputStream out = new ByteArrayOutputStream();
+      CompressedDirectory.write(context, out, BuildContextEncoding.gzip(), pool, cache);
+      final Map<String, String> files = read(out.toByteArray());
+      assertThat(files.get("Dockerfile"), equalTo("FROM scratch\n"));
+      // Members compressed in parallel are spliced into a build without a pool
+      assertThat(read(write(context, cache)), equalTo(files));
+    } finally {
+      pool.shutdown();
+    }
+  }
+}
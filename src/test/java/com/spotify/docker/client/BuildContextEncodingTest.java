@@ -0,0 +1,53 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class BuildContextEncodingTest {
+
+  @Test
+  public void testAutoResolvesByScheme() {
+    assertThat(BuildContextEncoding.auto().forScheme("unix"),
+               equalTo(BuildContextEncoding.tar()));
+    assertThat(BuildContextEncoding.auto().forScheme("http"),
+               equalTo(BuildContextEncoding.gzip()));
+    assertThat(BuildContextEncoding.auto().forScheme("https"),
+               equalTo(BuildContextEncoding.gzip()));
+    assertThat(BuildContextEncoding.gzip(1).forScheme("unix").level(), is(1));
+    assertThat(BuildContextEncoding.tar().forScheme("http").isCompressed(), is(false));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testGzipLevelOutOfRange() {
+    BuildContextEncoding.gzip(10);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testUnresolvedAuto() {
+    BuildContextEncoding.auto().isCompressed();
+  }
+}
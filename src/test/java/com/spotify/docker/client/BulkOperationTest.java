@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import com.google.common.base.Function;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class BulkOperationTest {
+
+  @Test
+  public void testSeparatesOutcomes() throws Exception {
+    final ListenableFuture<BulkResult<String>> future = BulkOperation.run(
+        ImmutableList.of("a", "missing", "broken", "b"), 2,
+        new Function<String, ListenableFuture<String>>() {
+          @Override
+          public ListenableFuture<String> apply(final String id) {
+            switch (id) {
+              case "missing":
+                return Futures.immediateFailedFuture(new ContainerNotFoundException(id));
+              case "broken":
+                return Futures.immediateFailedFuture(new DockerException("boom"));
+              default:
+                return Futures.immediateFuture(id.toUpperCase());
+            }
+          }
+        });
+
+    final BulkResult<String> result = future.get();
+    assertThat(result.successes().keySet(), contains("a", "b"));
+    assertThat(result.successes().get("b"), equalTo("B"));
+    assertThat(result.notFound(), contains("missing"));
+    assertThat(result.failures().get("broken"), instanceOf(DockerException.class));
+    assertThat(result.isSuccessful(), is(false));
+  }
+
+  @Test
+  public void testBoundsConcurrency() throws Exception {
+    final List<SettableFuture<Void>> started = new ArrayList<>();
+    final List<String> ids = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      ids.add("c" + i);
+    }
+
+    final ListenableFuture<BulkResult<Void>> future = BulkOperation.run(
+        ids, 3, new Function<String, ListenableFuture<Void>>() {
+          @Override
+          public ListenableFuture<Void> apply(final String id) {
+            final SettableFuture<Void> request = SettableFuture.create();
+            started.add(request);
+            return request;
+          }
+        });
+
+    assertThat(started.size(), is(3));
+    started.get(1).set(null);
+    assertThat(started.size(), is(4));
+    for (int i = 0; i < 10; i++) {
+      started.get(i).set(null);
+    }
+    assertThat(started.size(), is(10));
+
+    final BulkResult<Void> result = future.get();
+    assertThat(result.isSuccessful(), is(true));
+    assertThat(ImmutableList.copyOf(result.successes().keySet()), equalTo(ids));
+  }
+
+  @Test
+  public void testImmediateResultsDontRecurse() throws Exception {
+    final AtomicInteger calls = new AtomicInteger();
+    final List<String> ids = new ArrayList<>();
+    for (int i = 0; i < 100000; i++) {
+      ids.add(String.valueOf(i));
+    }
+
+    final BulkResult<Void> result = BulkOperation.run(
+        ids, 1, new Function<String, ListenableFuture<Void>>() {
+          @Override
+          public ListenableFuture<Void> apply(final String id) {
+            calls.incrementAndGet();
+            return Futures.immediateFuture(null);
+          }
+        }).get();
+
+    assertThat(calls.get(), is(100000));
+    assertThat(result.successes().size(), is(100000));
+  }
+
+  @Test
+  public void testEmpty() throws Exception {
+    final BulkResult<Void> result = BulkOperation.run(
+        Collections.<String>emptyList(), 1, new Function<String, ListenableFuture<Void>>() {
+          @Override
+          public ListenableFuture<Void> apply(final String id) {
+            throw new AssertionError();
+          }
+        }).get();
+
+    assertThat(result.isSuccessful(), is(true));
+  }
+}
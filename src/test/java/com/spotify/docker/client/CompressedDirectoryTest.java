@@ -26,22 +26,35 @@ import com.google.common.io.Resources;
 import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.spotify.docker.client.CompressedDirectory.delete;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.is;
 import static org.junit.Assert.assertThat;
 
 public class CompressedDirectoryTest {
 
+  @Rule
+  public final TemporaryFolder folder = new TemporaryFolder();
+
   @Test
   public void testFile() throws Exception {
     // note: Paths.get(someURL.toUri()) is the platform-neutral way to convert a URL to a Path
@@ -63,4 +76,73 @@ public class CompressedDirectoryTest {
     }
   }
 
+  @Test
+  public void testWriteToStream() throws Exception {
+    final URL dockerDirectory = Resources.getResource("dockerDirectory");
+    final AtomicBoolean closed = new AtomicBoolean();
+    final ByteArrayOutputStream out = new ByteArrayOutputStream() {
+      @Override
+      public void close() {
+        closed.set(true);
+      }
+    };
+    CompressedDirectory.write(Paths.get(dockerDirectory.toURI()), out);
+    assertThat(closed.get(), is(false));
+
+    try (TarArchiveInputStream tarIn = new TarArchiveInputStream(
+        new GzipCompressorInputStream(new ByteArrayInputStream(out.toByteArray())))) {
+      final List<String> names = new ArrayList<>();
+      TarArchiveEntry entry;
+      while ((entry = tarIn.getNextTarEntry()) != null) {
+        names.add(entry.getName());
+      }
+      assertThat(names, containsInAnyOrder("Dockerfile", "bin/date.sh"));
+    }
+  }
+
+  @Test
+  public void testWriteUncompressed() throws Exception {
+    final URL dockerDirectory = Resources.getResource("dockerDirectory");
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    CompressedDirectory.write(Paths.get(dockerDirectory.toURI()), out,
+                              BuildContextEncoding.tar(), null, null);
+
+    try (TarArchiveInputStream tarIn =
+             new TarArchiveInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+      final List<String> names = new ArrayList<>();
+      TarArchiveEntry entry;
+      while ((entry = tarIn.getNextTarEntry()) != null) {
+        names.add(entry.getName());
+      }
+      assertThat(names, containsInAnyOrder("Dockerfile", "bin/date.sh"));
+    }
+  }
+
+  @Test
+  public void testDockerIgnore() throws Exception {
+    final Path directory = folder.getRoot().toPath();
+    Files.write(directory.resolve(".dockerignore"),
+                Arrays.asList("# build output", "target", "*.log", "!keep.log"), UTF_8);
+    Files.write(directory.resolve("Dockerfile"), Arrays.asList("FROM scratch"), UTF_8);
+    Files.write(directory.resolve("debug.log"), Arrays.asList("debug"), UTF_8);
+    Files.write(directory.resolve("keep.log"), Arrays.asList("keep"), UTF_8);
+    Files.createDirectories(directory.resolve("target/classes"));
+    Files.write(directory.resolve("target/classes/Foo.class"), Arrays.asList("foo"), UTF_8);
+    Files.createDirectories(directory.resolve("src"));
+    Files.write(directory.resolve("src/Foo.java"), Arrays.asList("foo"), UTF_8);
+
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    CompressedDirectory.write(directory, out, BuildContextEncoding.tar(), null, null);
+
+    try (TarArchiveInputStream tarIn =
+             new TarArchiveInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+      final List<String> names = new ArrayList<>();
+      TarArchiveEntry entry;
+      while ((entry = tarIn.getNextTarEntry()) != null) {
+        names.add(entry.getName());
+      }
+      assertThat(names, containsInAnyOrder(".dockerignore", "Dockerfile", "keep.log",
+                                           "src/Foo.java"));
+    }
+  }
 }
@@ -0,0 +1,219 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import com.google.common.base.Strings;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import com.spotify.docker.client.messages.ContainerExit;
+import com.spotify.docker.client.messages.ContainerInfo;
+import com.spotify.docker.client.messages.ContainerState;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static com.spotify.docker.client.ObjectMapperProvider.objectMapper;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.notNullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class ContainerExitWatcherTest {
+
+  private static final String RUNNING_STATE =
+      "{\"Running\":true,\"ExitCode\":0,\"StartedAt\":\"2015-03-01T10:00:00Z\","
+      + "\"FinishedAt\":\"0001-01-01T00:00:00Z\"}";
+
+  /**
+   * Inspects that have been sent to the fake daemon and not answered yet.
+   */
+  private final BlockingQueue<Inspect> inspects = new LinkedBlockingQueue<>();
+
+  /**
+   * Event stream requests that have been sent to the fake daemon and not answered yet.
+   */
+  private final BlockingQueue<SettableFuture<EventStream>> events = new LinkedBlockingQueue<>();
+
+  private ContainerExitWatcher watcher;
+
+  @After
+  public void tearDown() {
+    if (watcher != null) {
+      watcher.close();
+    }
+  }
+
+  private static class Inspect {
+
+    final String id;
+    final SettableFuture<ContainerInfo> response = SettableFuture.create();
+
+    Inspect(final String id) {
+      this.id = id;
+    }
+  }
+
+  private ContainerExitWatcher watcher(final int inspectConcurrency) {
+    final AsyncDockerClient docker = (AsyncDockerClient) Proxy.newProxyInstance(
+        AsyncDockerClient.class.getClassLoader(), new Class<?>[]{AsyncDockerClient.class},
+        new InvocationHandler() {
+          @Override
+          public Object invoke(final Object proxy, final Method method, final Object[] args) {
+            switch (method.getName()) {
+              case "inspectContainer":
+                final Inspect inspect = new Inspect((String) args[0]);
+                inspects.add(inspect);
+                return inspect.response;
+              case "events":
+                final SettableFuture<EventStream> stream = SettableFuture.create();
+                events.add(stream);
+                return stream;
+              default:
+                throw new UnsupportedOperationException(method.getName());
+            }
+          }
+        });
+    watcher = new ContainerExitWatcher(docker, inspectConcurrency);
+    return watcher;
+  }
+
+  private static String id(final int n) {
+    return Strings.padStart(Integer.toHexString(n), 64, '0');
+  }
+
+  private static ContainerInfo info(final String id, final String state) throws IOException {
+    return objectMapper().readValue("{\"Id\":\"" + id + "\",\"State\":" + state + "}",
+                                    ContainerInfo.class);
+  }
+
+  private Inspect nextInspect() throws InterruptedException {
+    final Inspect inspect = inspects.poll(5, SECONDS);
+    assertThat(inspect, notNullValue());
+    return inspect;
+  }
+
+  private static ContainerState state(final boolean running, final int exitCode,
+                                      final String startedAt, final String finishedAt)
+      throws IOException {
+    return objectMapper().readValue(
+        "{\"Running\":" + running + ",\"Paused\":false,\"Restarting\":false,\"Pid\":0,"
+        + "\"ExitCode\":" + exitCode + ",\"StartedAt\":\"" + startedAt + "\","
+        + "\"FinishedAt\":\"" + finishedAt + "\"}",
+        ContainerState.class);
+  }
+
+  @Test
+  public void testCreatedContainerHasNotExited() throws Exception {
+    assertThat(ContainerExitWatcher.exited(
+        state(false, 0, "0001-01-01T00:00:00Z", "0001-01-01T00:00:00Z")), is(false));
+  }
+
+  @Test
+  public void testRunningContainerHasNotExited() throws Exception {
+    assertThat(ContainerExitWatcher.exited(
+        state(true, 0, "2015-03-01T10:00:00.123456789Z", "0001-01-01T00:00:00Z")), is(false));
+  }
+
+  @Test
+  public void testStoppedContainerHasExited() throws Exception {
+    assertThat(ContainerExitWatcher.exited(
+        state(false, 137, "2015-03-01T10:00:00.123456789Z", "2015-03-01T10:00:05.5Z")),
+               is(true));
+  }
+
+  @Test
+  public void testRestartedContainerHasNotExited() throws Exception {
+    assertThat(ContainerExitWatcher.exited(
+        state(true, 1, "2015-03-01T10:00:06Z", "2015-03-01T10:00:05Z")), is(false));
+  }
+
+  @Test
+  public void testInspectsAreBoundedByConcurrency() throws Exception {
+    final ContainerExitWatcher watcher = watcher(2);
+    final List<ListenableFuture<ContainerExit>> exits = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      exits.add(watcher.watch(id(i)));
+    }
+    assertThat(inspects.size(), is(2));
+
+    final Inspect first = inspects.take();
+    first.response.set(info(first.id, RUNNING_STATE));
+    assertThat(inspects.size(), is(2));
+    assertThat(exits.get(0).isDone(), is(false));
+
+    final Inspect second = inspects.take();
+    second.response.set(info(second.id, "{\"Running\":false,\"ExitCode\":3,"
+                                        + "\"StartedAt\":\"2015-03-01T10:00:00Z\","
+                                        + "\"FinishedAt\":\"2015-03-01T10:00:05Z\"}"));
+    assertThat(exits.get(1).get().statusCode(), is(3));
+    assertThat(inspects.size(), is(2));
+  }
+
+  @Test
+  public void testContainerRemovedAfterRegistration() throws Exception {
+    final ContainerExitWatcher watcher = watcher(1);
+    final String id = id(1);
+    final ListenableFuture<ContainerExit> exit = watcher.watch(id);
+    final Inspect registration = nextInspect();
+    registration.response.set(info(id, RUNNING_STATE));
+
+    // Losing the event stream makes the watcher check on the container, which is gone by now.
+    final SettableFuture<EventStream> stream = events.poll(5, SECONDS);
+    assertThat(stream, notNullValue());
+    stream.setException(new DockerException("events failed"));
+    final Inspect check = nextInspect();
+    check.response.setException(new ContainerNotFoundException(id));
+    try {
+      exit.get(5, SECONDS);
+      fail("expected the wait to fail");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause(), instanceOf(ContainerRemovedException.class));
+    }
+  }
+
+  @Test
+  public void testMissingContainerIsNotFound() throws Exception {
+    final ContainerExitWatcher watcher = watcher(1);
+    final String id = id(1);
+    final ListenableFuture<ContainerExit> exit = watcher.watch(id);
+    nextInspect().response.setException(new ContainerNotFoundException(id));
+    try {
+      exit.get(5, SECONDS);
+      fail("expected the wait to fail");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause(), instanceOf(ContainerNotFoundException.class));
+      assertThat(e.getCause() instanceof ContainerRemovedException, is(false));
+    }
+  }
+}
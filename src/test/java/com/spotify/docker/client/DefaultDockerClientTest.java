@@ -25,6 +25,7 @@ import com.google.common.base.Throwables;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Sets;
 import com.google.common.io.Resources;
+import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 import com.fasterxml.jackson.databind.util.StdDateFormat;
 import com.spotify.docker.client.DockerClient.AttachParameter;
@@ -34,6 +35,7 @@ import com.spotify.docker.client.messages.ContainerConfig;
 import com.spotify.docker.client.messages.ContainerCreation;
 import com.spotify.docker.client.messages.ContainerExit;
 import com.spotify.docker.client.messages.ContainerInfo;
+import com.spotify.docker.client.messages.Event;
 import com.spotify.docker.client.messages.HostConfig;
 import com.spotify.docker.client.messages.Image;
 import com.spotify.docker.client.messages.ImageInfo;
@@ -68,6 +70,7 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CompletionService;
@@ -81,12 +84,17 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicReference;
 
+import javax.ws.rs.client.Client;
+
 import static com.google.common.base.Strings.isNullOrEmpty;
 import static com.google.common.collect.Iterables.getOnlyElement;
 import static com.spotify.docker.client.DefaultDockerClient.NO_TIMEOUT;
 import static com.spotify.docker.client.DockerClient.BuildParameter.FORCE_RM;
 import static com.spotify.docker.client.DockerClient.BuildParameter.NO_CACHE;
 import static com.spotify.docker.client.DockerClient.BuildParameter.NO_RM;
+import static com.spotify.docker.client.DockerClient.EventsParam.container;
+import static com.spotify.docker.client.DockerClient.EventsParam.since;
+import static com.spotify.docker.client.DockerClient.EventsParam.until;
 import static com.spotify.docker.client.DockerClient.ListImagesParam.allImages;
 import static com.spotify.docker.client.DockerClient.ListImagesParam.danglingImages;
 import static com.spotify.docker.client.DockerClient.LogsParameter.STDERR;
@@ -95,12 +103,15 @@ import static com.spotify.docker.client.messages.RemovedImage.Type.DELETED;
 import static com.spotify.docker.client.messages.RemovedImage.Type.UNTAGGED;
 import static java.lang.Long.toHexString;
 import static java.lang.String.format;
+import static java.lang.System.currentTimeMillis;
 import static java.lang.System.getenv;
+import static java.util.Arrays.asList;
 import static org.apache.commons.lang.StringUtils.containsIgnoreCase;
 import static org.hamcrest.Matchers.allOf;
 import static org.hamcrest.Matchers.any;
 import static org.hamcrest.Matchers.anyOf;
 import static org.hamcrest.Matchers.both;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.equalTo;
@@ -113,6 +124,7 @@ import static org.hamcrest.Matchers.lessThan;
 import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
 import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.hamcrest.Matchers.startsWith;
 import static org.hamcrest.collection.IsEmptyCollection.empty;
 import static org.hamcrest.collection.IsMapContaining.hasEntry;
@@ -760,6 +772,16 @@ public class DefaultDockerClientTest {
     assertThat(getClientConnectionPoolStats(sut).getLeased(), equalTo(0));
   }
 
+  @Test
+  public void testClientsShareConnectionPool() throws Exception {
+    assertThat(getConnectionManager(sut.getNoTimeoutClient()),
+               sameInstance(getConnectionManager(sut.getClient())));
+
+    sut.info();
+    assertThat(getNoTimeoutClientConnectionPoolStats(sut).getAvailable(),
+               equalTo(getClientConnectionPoolStats(sut).getAvailable()));
+  }
+
   @Test(expected = DockerTimeoutException.class)
   public void testConnectTimeout() throws Exception {
     // Attempt to connect to reserved IP -> should timeout
@@ -872,6 +894,117 @@ public class DefaultDockerClientTest {
     exitFuture.get();
   }
 
+  @Test
+  public void testBulkContainerOperations() throws Exception {
+    sut.pull("busybox");
+
+    final List<String> ids = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      final ContainerConfig config = ContainerConfig.builder()
+          .image("busybox")
+          .build();
+      ids.add(sut.createContainer(config, randomName()).id());
+    }
+    final String missing = "nonexistent" + nameTag;
+
+    final BulkResult<ContainerInfo> inspected = sut.inspectContainers(ids);
+    assertThat(inspected.isSuccessful(), is(true));
+    assertThat(inspected.successes().get(ids.get(1)).id(), equalTo(ids.get(1)));
+
+    final List<String> toRemove = new ArrayList<>(ids);
+    toRemove.add(missing);
+    final BulkResult<Void> removed = sut.removeContainers(toRemove, false);
+    assertThat(removed.successes().keySet(), equalTo((Set<String>) ImmutableSet.copyOf(ids)));
+    assertThat(removed.notFound(), contains(missing));
+    assertThat(removed.failures().isEmpty(), is(true));
+  }
+
+  @Test
+  public void testWaitContainers() throws Exception {
+    sut.pull("busybox");
+
+    final List<String> ids = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      final ContainerConfig config = ContainerConfig.builder()
+          .image("busybox")
+          .cmd("sh", "-c", "sleep " + i + "; exit " + i)
+          .build();
+      final String id = sut.createContainer(config, randomName()).id();
+      sut.startContainer(id);
+      ids.add(id);
+    }
+
+    final Map<String, ListenableFuture<ContainerExit>> exits = sut.async().waitContainers(ids);
+    for (int i = 0; i < 3; i++) {
+      assertThat(exits.get(ids.get(i)).get(30, TimeUnit.SECONDS).statusCode(), equalTo(i));
+    }
+  }
+
+  @Test
+  public void testEvents() throws Exception {
+    sut.pull("busybox");
+    final Date start = new Date();
+
+    final ContainerConfig config = ContainerConfig.builder()
+        .image("busybox")
+        .cmd("sh", "-c", "exit 0")
+        .build();
+    final String id = sut.createContainer(config, randomName()).id();
+    sut.startContainer(id);
+    sut.waitContainer(id);
+
+    final List<String> statuses = new ArrayList<>();
+    // Event times have second precision, so look a little past the last event
+    final Date end = new Date(currentTimeMillis() + 1000);
+    try (EventStream events = sut.events(since(start), until(end), container(id))) {
+      while (events.hasNext()) {
+        final Event event = events.next();
+        if (id.equals(event.id())) {
+          statuses.add(event.status());
+        }
+      }
+    }
+    assertThat(statuses, equalTo(asList("create", "start", "die")));
+  }
+
+  @Test
+  public void testContainerStateMirror() throws Exception {
+    sut.pull("busybox");
+
+    try (ContainerStateMirror mirror = new ContainerStateMirror(sut, 4000)) {
+      mirror.start();
+
+      final ContainerConfig config = ContainerConfig.builder()
+          .image("busybox")
+          .cmd("sh", "-c", "while :; do sleep 1; done")
+          .build();
+      final String name = randomName();
+      final String id = sut.createContainer(config, name).id();
+      sut.startContainer(id);
+
+      // Wait for the start event to reach the mirror
+      ContainerInfo info = null;
+      for (int i = 0; i < 50 && (info == null || !info.state().running()); i++) {
+        try {
+          info = mirror.inspectContainer(name);
+        } catch (ContainerNotFoundException ignored) {
+          // not seen yet
+        }
+        Thread.sleep(100);
+      }
+      assertThat(info.id(), equalTo(id));
+      assertThat(info.state().running(), equalTo(true));
+
+      sut.killContainer(id);
+      sut.removeContainer(id);
+      for (int i = 0; i < 50 && mirror.listContainers(true).contains(info); i++) {
+        Thread.sleep(100);
+      }
+      exception.expect(ContainerNotFoundException.class);
+      mirror.inspectContainer(id);
+    }
+  }
+
   @Test
   public void testInspectContainerWithExposedPorts() throws Exception {
     sut.pull("rohan/memcached-mini");
@@ -1176,6 +1309,33 @@ public class DefaultDockerClientTest {
     sut.removeImage(randomName());
   }
 
+  @Test
+  public void testAsyncInspectContainer() throws Exception {
+    sut.pull("busybox");
+
+    final ContainerConfig config = ContainerConfig.builder()
+        .image("busybox")
+        .cmd("sh", "-c", "while :; do sleep 1; done")
+        .build();
+    final String name = randomName();
+    final ContainerCreation creation = sut.async().createContainer(config, name).get();
+    final String id = creation.id();
+
+    final ContainerInfo info = sut.async().inspectContainer(id).get();
+    assertThat(info.id(), equalTo(id));
+    assertThat(info.name(), equalTo("/" + name));
+  }
+
+  @Test
+  public void testAsyncInspectBadContainer() throws Exception {
+    try {
+      sut.async().inspectContainer(randomName()).get();
+      fail();
+    } catch (ExecutionException e) {
+      assertThat(e.getCause(), instanceOf(ContainerNotFoundException.class));
+    }
+  }
+
   @Test
   public void testExec() throws DockerException, InterruptedException, IOException {
     assumeTrue("Docker API should be at least v1.15 to support Exec, got "
@@ -1260,12 +1420,15 @@ public class DefaultDockerClientTest {
   }
 
   private PoolStats getClientConnectionPoolStats(final DefaultDockerClient client) {
-    return ((PoolingHttpClientConnectionManager) client.getClient().getConfiguration()
-        .getProperty(ApacheClientProperties.CONNECTION_MANAGER)).getTotalStats();
+    return getConnectionManager(client.getClient()).getTotalStats();
   }
 
   private PoolStats getNoTimeoutClientConnectionPoolStats(final DefaultDockerClient client) {
-    return ((PoolingHttpClientConnectionManager) client.getNoTimeoutClient().getConfiguration()
-        .getProperty(ApacheClientProperties.CONNECTION_MANAGER)).getTotalStats();
+    return getConnectionManager(client.getNoTimeoutClient()).getTotalStats();
+  }
+
+  private PoolingHttpClientConnectionManager getConnectionManager(final Client client) {
+    return (PoolingHttpClientConnectionManager) client.getConfiguration()
+        .getProperty(ApacheClientProperties.CONNECTION_MANAGER);
   }
 }
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import org.junit.Test;
+
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class DockerIgnoreTest {
+
+  private static DockerIgnore ignore(final String... lines) {
+    return DockerIgnore.parse(Arrays.asList(lines));
+  }
+
+  @Test
+  public void testPatterns() {
+    final DockerIgnore ignore = ignore("# comment", "", "/target/", "*.log", "docs/?.md",
+                                       "**/node_modules", "tmp[0-9]", "./build/../out");
+
+    assertThat(ignore.isExcluded("target"), is(true));
+    assertThat(ignore.isExcluded("target/classes/Foo.class"), is(true));
+    assertThat(ignore.isExcluded("src/target"), is(false));
+    assertThat(ignore.isExcluded("debug.log"), is(true));
+    assertThat(ignore.isExcluded("logs/debug.log"), is(false));
+    assertThat(ignore.isExcluded("docs/a.md"), is(true));
+    assertThat(ignore.isExcluded("docs/ab.md"), is(false));
+    assertThat(ignore.isExcluded("node_modules/x/index.js"), is(true));
+    assertThat(ignore.isExcluded("web/app/node_modules/x/index.js"), is(true));
+    assertThat(ignore.isExcluded("tmp1"), is(true));
+    assertThat(ignore.isExcluded("tmpx"), is(false));
+    assertThat(ignore.isExcluded("out/a"), is(true));
+    assertThat(ignore.isExcluded("# comment"), is(false));
+  }
+
+  @Test
+  public void testExceptions() {
+    final DockerIgnore ignore = ignore("*.md", "!README.md", "docs", "!docs/keep/*.txt");
+
+    assertThat(ignore.isExcluded("CHANGES.md"), is(true));
+    assertThat(ignore.isExcluded("README.md"), is(false));
+    assertThat(ignore.isExcluded("docs/index.html"), is(true));
+    assertThat(ignore.isExcluded("docs/keep/a.txt"), is(false));
+    assertThat(ignore.isExcluded("docs/keep/a.bin"), is(true));
+  }
+
+  @Test
+  public void testPruning() {
+    final DockerIgnore ignore = ignore(".git", "target", "docs", "!docs/keep/*.txt");
+
+    assertThat(ignore.isPrunable(".git"), is(true));
+    assertThat(ignore.isPrunable("target"), is(true));
+    assertThat(ignore.isPrunable("src"), is(false));
+    // An exception may bring back files under docs/keep
+    assertThat(ignore.isPrunable("docs"), is(false));
+    assertThat(ignore.isPrunable("docs/keep"), is(false));
+    assertThat(ignore.isPrunable("docs/other"), is(true));
+  }
+
+  @Test
+  public void testDockerfileIsAlwaysSent() {
+    final DockerIgnore ignore = ignore("*", "Dockerfile", ".dockerignore");
+
+    assertThat(ignore.isExcluded("Dockerfile"), is(false));
+    assertThat(ignore.isExcluded(".dockerignore"), is(false));
+    assertThat(ignore.isExcluded("anything"), is(true));
+  }
+
+  @Test
+  public void testRelativePath() {
+    assertThat(DockerIgnore.relativePath(Paths.get("/ctx"), Paths.get("/ctx/a/b/c.txt")),
+               equalTo("a/b/c.txt"));
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import com.fasterxml.jackson.databind.util.StdDateFormat;
+import com.spotify.docker.client.messages.DockerTimestamp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.nio.ByteBuffer;
+import java.text.ParseException;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+
+/**
+ * Compares parsing a Docker timestamp the way {@link DockerDateFormat} used to, with a regex,
+ * and a fresh {@link StdDateFormat} as Jackson clones one per use, with {@link DockerDateFormat}
+ * and {@link DockerTimestamp} as they are now, and with parsing the timestamp prefix of a log
+ * message. Run with {@code -prof gc} to compare allocation rates.
+ *
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.spotify.docker.client.DockerTimestampBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DockerTimestampBenchmark {
+
+  private static final String TIMESTAMP = "2014-10-17T21:22:56.949763914Z";
+
+  private final ByteBuffer message =
+      ByteBuffer.wrap((TIMESTAMP + " a log message\n").getBytes(US_ASCII));
+
+  @Benchmark
+  public Date regexAndStdDateFormat() throws ParseException {
+    String source = TIMESTAMP;
+    if (source.matches(".+\\.\\d{9}Z$")) {
+      source = source.replaceAll("\\d{6}Z$", "Z");
+    }
+    return new StdDateFormat().parse(source);
+  }
+
+  @Benchmark
+  public Date dockerDateFormat() throws ParseException {
+    return new DockerDateFormat().clone().parse(TIMESTAMP);
+  }
+
+  @Benchmark
+  public DockerTimestamp dockerTimestamp() throws ParseException {
+    return DockerTimestamp.parse(TIMESTAMP);
+  }
+
+  @Benchmark
+  public DockerTimestamp logPrefix() {
+    return LogTimestamps.parsePrefix(message, LogTimestamps.prefixLength(message));
+  }
+
+  public static void main(final String... args) throws Exception {
+    new Runner(new OptionsBuilder()
+                   .include(DockerTimestampBenchmark.class.getSimpleName())
+                   .build()).run();
+  }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import com.google.common.collect.ImmutableList;
+import com.spotify.docker.client.messages.Event;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.PipedInputStream;
+import java.io.PipedOutputStream;
+import java.util.Date;
+
+import javax.ws.rs.core.Response;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class EventStreamTest {
+
+  @Test
+  public void testParsesConcatenatedEvents() throws Exception {
+    final String json =
+        "{\"status\":\"create\",\"id\":\"dfdf82bd3881\",\"from\":\"base:latest\","
+        + "\"time\":1374067924}\n"
+        + "{\"status\":\"die\",\"id\":\"dfdf82bd3881\",\"from\":\"base:latest\","
+        + "\"time\":1374067970}";
+
+    try (EventStream stream = new EventStream(new ByteArrayInputStream(json.getBytes(UTF_8)))) {
+      final ImmutableList<Event> events = ImmutableList.copyOf(stream);
+      assertThat(events, contains(
+          new Event("create", "dfdf82bd3881", "base:latest", 1374067924L),
+          new Event("die", "dfdf82bd3881", "base:latest", 1374067970L)));
+      assertThat(events.get(0).time(), equalTo(new Date(1374067924000L)));
+    }
+  }
+
+  @Test
+  public void testEmptyStream() throws Exception {
+    try (EventStream stream = new EventStream(new ByteArrayInputStream(new byte[0]))) {
+      assertThat(stream.hasNext(), equalTo(false));
+    }
+  }
+
+  @Test(timeout = 5000)
+  public void testCloseAbortsOpenEndedStream() throws Exception {
+    // An events stream without until is never ended by the daemon
+    final PipedOutputStream daemon = new PipedOutputStream();
+    final PipedInputStream body = new PipedInputStream(daemon);
+    daemon.write(("{\"status\":\"start\",\"id\":\"dfdf82bd3881\",\"from\":\"base:latest\","
+                  + "\"time\":1374067924}\n").getBytes(UTF_8));
+    daemon.flush();
+
+    final StreamCloser closer = new StreamCloser(100);
+    final EventStream stream = new EventStream(body);
+    stream.responseStream().attach(Response.ok().build(), null, closer);
+    assertThat(stream.next().status(), equalTo("start"));
+
+    stream.close();
+
+    assertThat(closer.abortedStreams(), equalTo(1L));
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A minimal in-process stand-in for the docker daemon, for benchmarks. It answers
+ * {@code /_ping}, inspects any container and streams {@code frames} log frames for any
+ * container, {@code frameIntervalMillis} apart.
+ */
+class FakeDockerDaemon implements Closeable {
+
+  static final byte[] CONTAINER_INFO = ("{\"Id\":\"" + repeat('a', 64) + "\","
+      + "\"Name\":\"/fake\",\"State\":{\"Running\":true,\"Pid\":1}}").getBytes(UTF_8);
+
+  static {
+    // The JDK server otherwise waits for delayed ACKs between response head and body
+    System.setProperty("sun.net.httpserver.nodelay", "true");
+  }
+
+  private final HttpServer server;
+  private final int frames;
+  private final long frameIntervalMillis;
+
+  FakeDockerDaemon(final Executor executor, final int frames, final long frameIntervalMillis)
+      throws IOException {
+    this.frames = frames;
+    this.frameIntervalMillis = frameIntervalMillis;
+    this.server = HttpServer.create(
+        new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 4096);
+    server.setExecutor(executor);
+    server.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(final HttpExchange exchange) throws IOException {
+        try {
+          respond(exchange);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } finally {
+          exchange.close();
+        }
+      }
+    });
+    server.start();
+  }
+
+  URI uri() {
+    return URI.create("http://127.0.0.1:" + server.getAddress().getPort());
+  }
+
+  @Override
+  public void close() {
+    server.stop(0);
+  }
+
+  private void respond(final HttpExchange exchange) throws IOException, InterruptedException {
+    final String path = exchange.getRequestURI().getPath();
+    if (path.endsWith("/_ping")) {
+      send(exchange, "text/plain", "OK".getBytes(UTF_8));
+    } else if (path.endsWith("/json")) {
+      send(exchange, "application/json", CONTAINER_INFO);
+    } else if (path.endsWith("/logs")) {
+      exchange.getResponseHeaders().add("Content-Type", "application/vnd.docker.raw-stream");
+      exchange.sendResponseHeaders(200, 0);
+      final OutputStream out = exchange.getResponseBody();
+      final byte[] line = "log line\n".getBytes(UTF_8);
+      final ByteBuffer frame = ByteBuffer.allocate(8 + line.length);
+      frame.put((byte) 1).position(4);
+      frame.putInt(line.length).put(line);
+      for (int i = 0; i < frames; i++) {
+        if (i > 0 && frameIntervalMillis > 0) {
+          Thread.sleep(frameIntervalMillis);
+        }
+        out.write(frame.array());
+        out.flush();
+      }
+    } else {
+      exchange.sendResponseHeaders(404, -1);
+    }
+  }
+
+  private static void send(final HttpExchange exchange, final String contentType,
+                           final byte[] body) throws IOException {
+    exchange.getResponseHeaders().add("Content-Type", contentType);
+    exchange.sendResponseHeaders(200, body.length);
+    exchange.getResponseBody().write(body);
+  }
+
+  private static String repeat(final char c, final int n) {
+    final StringBuilder builder = new StringBuilder(n);
+    for (int i = 0; i < n; i++) {
+      builder.append(c);
+    }
+    return builder.toString();
+  }
+}
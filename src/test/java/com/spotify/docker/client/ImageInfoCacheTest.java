@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import com.google.common.base.Strings;
+import com.spotify.docker.client.messages.ImageInfo;
+
+import org.junit.Test;
+
+import static com.spotify.docker.client.ObjectMapperProvider.objectMapper;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class ImageInfoCacheTest {
+
+  private static final String ID1 = Strings.repeat("a", 64);
+  private static final String ID2 = Strings.repeat("b", 64);
+
+  private final ImageInfoCache sut = new ImageInfoCache(1000, 60000);
+
+  @Test
+  public void testGetById() throws Exception {
+    final ImageInfo info = imageInfo(ID1);
+    sut.put(ID1, info, 100);
+
+    assertThat(sut.get(ID1), is(info));
+    assertThat(sut.stats().hitCount(), is(1L));
+  }
+
+  @Test
+  public void testGetByPrefixedId() throws Exception {
+    final ImageInfo info = imageInfo("sha256:" + ID1);
+    sut.put("sha256:" + ID1, info, 100);
+
+    assertThat(sut.get("sha256:" + ID1), is(info));
+    assertThat(sut.get(ID1), is(info));
+    assertThat(sut.stats().hitCount(), is(2L));
+  }
+
+  @Test
+  public void testGetByNameWithPrefixedId() throws Exception {
+    final ImageInfo info = imageInfo("sha256:" + ID1);
+    sut.put("busybox:latest", info, 100);
+
+    assertThat(sut.get("busybox:latest"), is(info));
+    assertThat(sut.get("sha256:" + ID1), is(info));
+
+    sut.invalidate("sha256:" + ID1);
+    assertThat(sut.get("busybox:latest"), is(nullValue()));
+  }
+
+  @Test
+  public void testGetByName() throws Exception {
+    final ImageInfo info = imageInfo(ID1);
+    sut.put("busybox:latest", info, 100);
+
+    assertThat(sut.get("busybox:latest"), is(info));
+    assertThat(sut.get(ID1), is(info));
+    assertThat(sut.get("busybox"), is(nullValue()));
+    assertThat(sut.stats().hitCount(), is(2L));
+    assertThat(sut.stats().missCount(), is(1L));
+  }
+
+  @Test
+  public void testExpiredNameIsResolvedAgain() throws Exception {
+    final ImageInfoCache cache = new ImageInfoCache(1000, 1);
+    final ImageInfo info = imageInfo(ID1);
+    cache.put("busybox:latest", info, 100);
+    Thread.sleep(10);
+
+    assertThat(cache.get("busybox:latest"), is(nullValue()));
+    assertThat(cache.get(ID1), is(info));
+  }
+
+  @Test
+  public void testInvalidate() throws Exception {
+    sut.put("busybox:latest", imageInfo(ID1), 100);
+    sut.invalidate("busybox:latest");
+
+    assertThat(sut.get("busybox:latest"), is(nullValue()));
+    assertThat(sut.get(ID1), is(nullValue()));
+  }
+
+  @Test
+  public void testInvalidateNameKeepsImage() throws Exception {
+    final ImageInfo info = imageInfo(ID1);
+    sut.put("busybox:latest", info, 100);
+    sut.invalidateName("busybox:latest");
+
+    assertThat(sut.get("busybox:latest"), is(nullValue()));
+    assertThat(sut.get(ID1), is(info));
+  }
+
+  @Test
+  public void testEvictsBySize() throws Exception {
+    sut.put(ID1, imageInfo(ID1), 600);
+    sut.put(ID2, imageInfo(ID2), 600);
+
+    assertThat(sut.get(ID1), is(nullValue()));
+    assertThat(sut.get(ID2).id(), equalTo(ID2));
+    assertThat(sut.stats().evictionCount(), is(1L));
+  }
+
+  private static ImageInfo imageInfo(final String id) throws Exception {
+    return objectMapper().readValue("{\"Id\":\"" + id + "\"}", ImageInfo.class);
+  }
+}
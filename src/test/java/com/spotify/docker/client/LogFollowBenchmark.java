@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.spotify.docker.client.DockerClient.LogsParameter.FOLLOW;
+import static com.spotify.docker.client.DockerClient.LogsParameter.STDOUT;
+
+/**
+ * Runs {@code follows} concurrent async {@code logs(FOLLOW)} calls against a
+ * {@link FakeDockerDaemon} that sends a frame every 50ms, or follows as many logs with a
+ * {@link LogFollower}. The calls run on the executor passed to
+ * {@link DefaultDockerClient.Builder#requestExecutor}, which also reads the streams, on platform
+ * threads or on virtual threads. With virtual threads the number of platform threads stays flat
+ * as the number of follows grows. The follower reads every log on one thread.
+ *
+ * The daemon runs in the same JVM, so each follow takes two file descriptors. Virtual threads
+ * are created reflectively and need JDK 21 or later. Run with
+ * {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.spotify.docker.client.LogFollowBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xss256k")
+public class LogFollowBenchmark {
+
+  private static final int FRAMES = 20;
+  private static final long FRAME_INTERVAL_MILLIS = 50;
+
+  @Param({"platform", "virtual", "selector"})
+  public String threads;
+
+  @Param({"10000"})
+  public int follows;
+
+  private ExecutorService executor;
+  private FakeDockerDaemon daemon;
+  private DefaultDockerClient client;
+  private LogFollower follower;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    executor = threads.equals("virtual") ? newVirtualThreadPerTaskExecutor()
+                                         : Executors.newCachedThreadPool();
+    daemon = new FakeDockerDaemon(executor, FRAMES, FRAME_INTERVAL_MILLIS);
+    client = DefaultDockerClient.builder()
+        .uri(daemon.uri())
+        .rawHttpConnector(true)
+        .connectionPoolSize(follows)
+        .readTimeoutMillis(0)
+        .requestExecutor(executor)
+        .build();
+    follower = new LogFollower(daemon.uri());
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    client.close();
+    follower.close();
+    daemon.close();
+    executor.shutdownNow();
+  }
+
+  @Benchmark
+  public int followAll() throws Exception {
+    final CountDownLatch done = new CountDownLatch(follows);
+    final AtomicInteger frames = new AtomicInteger();
+    final AtomicReference<Throwable> failure = new AtomicReference<>();
+    if (threads.equals("selector")) {
+      followAllOnSelector(done, frames, failure);
+    } else {
+      followAllOnExecutor(done, frames, failure);
+    }
+    done.await();
+    if (failure.get() != null) {
+      throw new AssertionError(failure.get());
+    }
+    return frames.get();
+  }
+
+  private void followAllOnExecutor(final CountDownLatch done, final AtomicInteger frames,
+                                   final AtomicReference<Throwable> failure) {
+    for (int i = 0; i < follows; i++) {
+      // Read each stream on the request executor too, rather than on the benchmark thread
+      Futures.addCallback(client.async().logs("fake", FOLLOW, STDOUT),
+                          new FutureCallback<LogStream>() {
+                            @Override
+                            public void onSuccess(final LogStream stream) {
+                              try (LogStream logs = stream) {
+                                while (logs.hasNext()) {
+                                  logs.next();
+                                  frames.incrementAndGet();
+                                }
+                              } catch (Throwable t) {
+                                failure.compareAndSet(null, t);
+                              } finally {
+                                done.countDown();
+                              }
+                            }
+
+                            @Override
+                            public void onFailure(final Throwable t) {
+                              failure.compareAndSet(null, t);
+                              done.countDown();
+                            }
+                          }, executor);
+    }
+  }
+
+  private void followAllOnSelector(final CountDownLatch done, final AtomicInteger frames,
+                                   final AtomicReference<Throwable> failure) {
+    final LogFollower.Listener listener = new LogFollower.Listener() {
+      @Override
+      public void message(final String containerId, final LogMessage message) {
+        frames.incrementAndGet();
+      }
+
+      @Override
+      public void ended(final String containerId, final Exception cause) {
+        if (cause != null) {
+          failure.compareAndSet(null, cause);
+        }
+        done.countDown();
+      }
+    };
+    for (int i = 0; i < follows; i++) {
+      follower.follow("fake-" + i, listener);
+    }
+  }
+
+  private static ExecutorService newVirtualThreadPerTaskExecutor() throws Exception {
+    try {
+      return (ExecutorService) Executors.class
+          .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (NoSuchMethodException e) {
+      throw new UnsupportedOperationException("Virtual threads need JDK 21 or later", e);
+    }
+  }
+
+  public static void main(final String... args) throws Exception {
+    new Runner(new OptionsBuilder()
+                   .include(LogFollowBenchmark.class.getSimpleName())
+                   .build()).run();
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import com.google.common.primitives.Bytes;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.spotify.docker.client.LogMessage.Stream.STDERR;
+import static com.spotify.docker.client.LogMessage.Stream.STDOUT;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class LogFollowerTest {
+
+  private final List<String> requests = Collections.synchronizedList(new ArrayList<String>());
+  private final List<String> messages = Collections.synchronizedList(new ArrayList<String>());
+  private final CountDownLatch ended = new CountDownLatch(1);
+  private final AtomicReference<Exception> endedCause = new AtomicReference<>();
+
+  private final LogFollower.Listener listener = new LogFollower.Listener() {
+    @Override
+    public void message(final String containerId, final LogMessage message) {
+      messages.add(containerId + ":" + message.stream() + ":" + UTF_8.decode(message.content()));
+    }
+
+    @Override
+    public void ended(final String containerId, final Exception cause) {
+      endedCause.set(cause);
+      ended.countDown();
+    }
+  };
+
+  private ServerSocket server;
+  private LogFollower follower;
+
+  @Before
+  public void setUp() throws Exception {
+    server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    follower = new LogFollower(URI.create("http://127.0.0.1:" + server.getLocalPort()));
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    follower.close();
+    server.close();
+  }
+
+  private static String timestamp(final long millis, final int nanos) {
+    final SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+    format.setTimeZone(TimeZone.getTimeZone("UTC"));
+    final long fraction = millis % 1000 * 1000000 + nanos;
+    return format.format(new Date(millis)) + String.format(".%09dZ", fraction);
+  }
+
+  private static byte[] chunk(final LogMessage.Stream stream, final String content) {
+    final byte[] bytes = content.getBytes(UTF_8);
+    final ByteBuffer frame = ByteBuffer.allocate(LogReader.HEADER_SIZE + bytes.length);
+    frame.put((byte) stream.id());
+    frame.position(LogReader.FRAME_SIZE_OFFSET);
+    frame.putInt(bytes.length);
+    frame.put(bytes);
+    return Bytes.concat((Integer.toHexString(frame.capacity()) + "\r\n").getBytes(US_ASCII),
+                        frame.array(), "\r\n".getBytes(US_ASCII));
+  }
+
+  /**
+   * Accept a connection, record the request line and send {@code response}.
+   */
+  private void serve(final byte[] response) throws IOException {
+    try (Socket socket = server.accept()) {
+      final InputStream in = socket.getInputStream();
+      final ByteArrayOutputStream head = new ByteArrayOutputStream();
+      while (!head.toString("US-ASCII").endsWith("\r\n\r\n")) {
+        head.write(in.read());
+      }
+      requests.add(head.toString("US-ASCII").split("\r\n")[0]);
+      final OutputStream out = socket.getOutputStream();
+      out.write(response);
+      out.flush();
+    }
+  }
+
+  @Test
+  public void testResumeAfterDisconnect() throws Exception {
+    // In the future, so that the messages are after the time following started
+    final long millis = System.currentTimeMillis() + SECONDS.toMillis(2);
+    final byte[] head = ("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n")
+        .getBytes(US_ASCII);
+    final byte[] one = chunk(STDOUT, timestamp(millis, 1) + " one\n");
+    final byte[] two = chunk(STDERR, timestamp(millis, 2) + " two\n");
+    final byte[] three = chunk(STDOUT, timestamp(millis, 3) + " three\n");
+
+    follower.follow("foo", listener);
+    // The connection breaks without the end of the body
+    serve(Bytes.concat(head, one, two));
+    // The daemon sends the whole second again
+    serve(Bytes.concat(head, one, two, three, "0\r\n\r\n".getBytes(US_ASCII)));
+
+    assertTrue(ended.await(10, SECONDS));
+    assertThat(endedCause.get(), is(nullValue()));
+    assertThat(messages, contains("foo:STDOUT:one\n", "foo:STDERR:two\n", "foo:STDOUT:three\n"));
+    assertThat(follower.reconnects(), is(1L));
+    assertThat(follower.followed(), is(0));
+    assertThat(requests.get(1), containsString("since=" + SECONDS.convert(millis, MILLISECONDS)));
+  }
+
+  @Test
+  public void testContainerNotFound() throws Exception {
+    follower.follow("foo", listener);
+    serve("HTTP/1.1 404 Not Found\r\nContent-Length: 0\r\n\r\n".getBytes(US_ASCII));
+
+    assertTrue(ended.await(10, SECONDS));
+    assertThat(endedCause.get(), instanceOf(ContainerNotFoundException.class));
+    assertThat(requests.get(0), containsString("GET /containers/foo/logs?follow=1"));
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+
+package com.spotify.docker.client;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading a synthetic multiplexed log stream of {@code frames} frames of up to
+ * {@code maxFrameSize} bytes with {@link LogReader#nextMessage()}, which allocates a message and
+ * a buffer per frame, and with {@link LogReader#nextFrame(LogFrameHandler)}, which reuses one
+ * buffer. Run with {@code -prof gc} to compare allocation rates.
+ *
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.spotify.docker.client.LogReaderBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LogReaderBenchmark {
+
+  @Param({"128", "16384"})
+  public int maxFrameSize;
+
+  @Param({"1000"})
+  public int frames;
+
+  private byte[] stream;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    final Random random = new Random(0);
+    final ByteBuffer buffer = ByteBuffer.allocate(frames * (LogReader.HEADER_SIZE + maxFrameSize));
+    for (int i = 0; i < frames; i++) {
+      final byte[] content = new byte[1 + random.nextInt(maxFrameSize)];
+      random.nextBytes(content);
+      buffer.put((byte) (1 + random.nextInt(2)));
+      buffer.put(new byte[LogReader.FRAME_SIZE_OFFSET - 1]);
+      buffer.putInt(content.length);
+      buffer.put(content);
+    }
+    stream = new byte[buffer.position()];
+    buffer.flip();
+    buffer.get(stream);
+  }
+
+  @Benchmark
+  public void nextMessage(final Blackhole blackhole) throws IOException {
+    try (LogReader reader = new LogReader(new ByteArrayInputStream(stream))) {
+      for (LogMessage message; (message = reader.nextMessage()) != null; ) {
+        blackhole.consume(message.stream());
+        blackhole.consume(message.content().get(0));
+      }
+    }
+  }
+
+  @Benchmark
+  public void nextFrame(final Blackhole blackhole) throws IOException {
+    final LogFrameHandler handler = new LogFrameHandler() {
+      @Override
+      public void frame(final LogMessage.Stream stream, final ByteBuffer content) {
+        blackhole.consume(stream);
+        blackhole.consume(content.get(0));
+      }
+    };
+    try (LogReader reader = new LogReader(new ByteArrayInputStream(stream))) {
+      while (reader.nextFrame(handler)) {
+        // keep reading
+      }
+    }
+  }
+
+  public static void main(final String... args) throws Exception {
+    new Runner(new OptionsBuilder()
+                   .include(LogReaderBenchmark.class.getSimpleName())
+                   .build()).run();
+  }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import com.google.common.primitives.Bytes;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.spotify.docker.client.LogMessage.Stream.STDERR;
+import static com.spotify.docker.client.LogMessage.Stream.STDOUT;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class LogReaderTest {
+
+  private static byte[] frame(final LogMessage.Stream stream, final byte[] content) {
+    final ByteBuffer frame = ByteBuffer.allocate(LogReader.HEADER_SIZE + content.length);
+    frame.put((byte) stream.id());
+    frame.position(LogReader.FRAME_SIZE_OFFSET);
+    frame.putInt(content.length);
+    frame.put(content);
+    return frame.array();
+  }
+
+  private static byte[] frame(final LogMessage.Stream stream, final String content) {
+    return frame(stream, content.getBytes(UTF_8));
+  }
+
+  @Test
+  public void testNextFrameReusesBuffer() throws Exception {
+    final byte[] bytes = Bytes.concat(frame(STDOUT, "hello\n"),
+                                      frame(STDERR, "oops\n"),
+                                      frame(STDOUT, "longer than the first frame\n"));
+    final List<String> frames = new ArrayList<>();
+    final List<ByteBuffer> buffers = new ArrayList<>();
+    final LogFrameHandler handler = new LogFrameHandler() {
+      @Override
+      public void frame(final LogMessage.Stream stream, final ByteBuffer content) {
+        buffers.add(content);
+        frames.add(stream + ":" + UTF_8.decode(content.duplicate()));
+      }
+    };
+
+    try (LogReader reader = new LogReader(new ByteArrayInputStream(bytes))) {
+      while (reader.nextFrame(handler)) {
+        // keep reading
+      }
+    }
+
+    assertThat(frames, contains("STDOUT:hello\n", "STDERR:oops\n",
+                                "STDOUT:longer than the first frame\n"));
+    assertThat(buffers.get(0) == buffers.get(1), equalTo(true));
+    assertThat(buffers.get(0).isReadOnly(), equalTo(true));
+  }
+
+  @Test
+  public void testNextFrameReadsLargeFrame() throws Exception {
+    final byte[] large = new byte[3 * 1024 * 1024];
+    Arrays.fill(large, (byte) 'x');
+    final byte[] bytes = Bytes.concat(frame(STDOUT, "small\n"), frame(STDOUT, large));
+    final List<Integer> sizes = new ArrayList<>();
+
+    try (LogReader reader = new LogReader(new ByteArrayInputStream(bytes))) {
+      while (reader.nextFrame(new LogFrameHandler() {
+        @Override
+        public void frame(final LogMessage.Stream stream, final ByteBuffer content) {
+          sizes.add(content.remaining());
+        }
+      })) {
+        // keep reading
+      }
+    }
+
+    assertThat(sizes, contains(6, large.length));
+  }
+
+  @Test
+  public void testAttach() throws Exception {
+    final byte[] bytes = Bytes.concat(frame(STDOUT, "out1 "), frame(STDERR, "err"),
+                                      frame(STDOUT, "out2"));
+    final ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+    final ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+
+    try (LogStream stream = new LogStream(new ByteArrayInputStream(bytes))) {
+      stream.attach(stdout, stderr);
+    }
+
+    assertThat(stdout.toString("UTF-8"), equalTo("out1 out2"));
+    assertThat(stderr.toString("UTF-8"), equalTo("err"));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testReadFramesAfterIterating() throws Exception {
+    final byte[] bytes = Bytes.concat(frame(STDOUT, "a"), frame(STDOUT, "b"));
+    try (LogStream stream = new LogStream(new ByteArrayInputStream(bytes))) {
+      stream.next();
+      stream.readFrames(new LogFrameHandler() {
+        @Override
+        public void frame(final LogMessage.Stream stream, final ByteBuffer content)
+            throws IOException {
+        }
+      });
+    }
+  }
+}
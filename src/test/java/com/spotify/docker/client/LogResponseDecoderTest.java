@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import com.google.common.primitives.Bytes;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.spotify.docker.client.LogMessage.Stream.STDERR;
+import static com.spotify.docker.client.LogMessage.Stream.STDOUT;
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class LogResponseDecoderTest {
+
+  private final List<String> frames = new ArrayList<>();
+
+  private final LogFrameHandler handler = new LogFrameHandler() {
+    @Override
+    public void frame(final LogMessage.Stream stream, final ByteBuffer content) {
+      frames.add(stream + ":" + UTF_8.decode(content));
+    }
+  };
+
+  private static byte[] frame(final LogMessage.Stream stream, final String content) {
+    final byte[] bytes = content.getBytes(UTF_8);
+    final ByteBuffer frame = ByteBuffer.allocate(LogReader.HEADER_SIZE + bytes.length);
+    frame.put((byte) stream.id());
+    frame.position(LogReader.FRAME_SIZE_OFFSET);
+    frame.putInt(bytes.length);
+    frame.put(bytes);
+    return frame.array();
+  }
+
+  private static byte[] ascii(final String s) {
+    return s.getBytes(US_ASCII);
+  }
+
+  private static byte[] chunk(final byte[] data) {
+    return Bytes.concat(ascii(Integer.toHexString(data.length) + "\r\n"), data, ascii("\r\n"));
+  }
+
+  private void decodeByteByByte(final LogResponseDecoder decoder, final byte[] response)
+      throws IOException {
+    for (final byte b : response) {
+      decoder.decode(ByteBuffer.wrap(new byte[]{b}), handler);
+    }
+  }
+
+  @Test
+  public void testChunked() throws Exception {
+    // Frames split across chunks, and chunks with several frames
+    final byte[] body = Bytes.concat(frame(STDOUT, "one\n"), frame(STDERR, "two\n"),
+                                     frame(STDOUT, "three\n"));
+    final byte[] response = Bytes.concat(
+        ascii("HTTP/1.1 200 OK\r\nContent-Type: application/vnd.docker.raw-stream\r\n"
+              + "Transfer-Encoding: chunked\r\n\r\n"),
+        chunk(Arrays.copyOfRange(body, 0, 5)),
+        chunk(Arrays.copyOfRange(body, 5, body.length)),
+        ascii("0\r\n\r\n"));
+
+    final LogResponseDecoder decoder = new LogResponseDecoder();
+    decodeByteByByte(decoder, response);
+
+    assertThat(decoder.status(), is(200));
+    assertThat(decoder.isDone(), is(true));
+    assertThat(frames, contains("STDOUT:one\n", "STDERR:two\n", "STDOUT:three\n"));
+  }
+
+  @Test
+  public void testChunkedEndsEarly() throws Exception {
+    final byte[] response = Bytes.concat(
+        ascii("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n"),
+        chunk(frame(STDOUT, "one\n")));
+
+    final LogResponseDecoder decoder = new LogResponseDecoder();
+    decoder.decode(ByteBuffer.wrap(response), handler);
+
+    assertThat(decoder.endOfInput(), is(false));
+    assertThat(frames, contains("STDOUT:one\n"));
+  }
+
+  @Test
+  public void testContentLength() throws Exception {
+    final byte[] body = frame(STDOUT, "one\n");
+    final byte[] response = Bytes.concat(
+        ascii("HTTP/1.1 200 OK\r\nContent-Length: " + body.length + "\r\n\r\n"), body);
+
+    final LogResponseDecoder decoder = new LogResponseDecoder();
+    decoder.decode(ByteBuffer.wrap(response), handler);
+
+    assertThat(decoder.isDone(), is(true));
+    assertThat(frames, contains("STDOUT:one\n"));
+  }
+
+  @Test
+  public void testEndOfConnection() throws Exception {
+    final byte[] response = Bytes.concat(ascii("HTTP/1.0 200 OK\r\n\r\n"),
+                                         frame(STDERR, "one\n"));
+
+    final LogResponseDecoder decoder = new LogResponseDecoder();
+    decoder.decode(ByteBuffer.wrap(response), handler);
+
+    assertThat(decoder.isDone(), is(false));
+    assertThat(decoder.endOfInput(), is(true));
+    assertThat(frames, contains("STDERR:one\n"));
+  }
+
+  @Test
+  public void testErrorStatus() throws Exception {
+    final byte[] response = ascii("HTTP/1.1 404 Not Found\r\nContent-Length: 17\r\n\r\n"
+                                  + "no such container");
+
+    final LogResponseDecoder decoder = new LogResponseDecoder();
+    decoder.decode(ByteBuffer.wrap(response), handler);
+
+    assertThat(decoder.status(), is(404));
+    assertThat(decoder.isDone(), is(true));
+    assertThat(frames, empty());
+  }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import com.google.common.base.Strings;
+import com.google.common.primitives.Bytes;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.spotify.docker.client.LogMessage.Stream.STDERR;
+import static com.spotify.docker.client.LogMessage.Stream.STDIN;
+import static com.spotify.docker.client.LogMessage.Stream.STDOUT;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class LogStreamTest {
+
+  @Rule public final TemporaryFolder folder = new TemporaryFolder();
+  @Rule public final ExpectedException exception = ExpectedException.none();
+
+  private static byte[] frame(final LogMessage.Stream stream, final String content) {
+    final byte[] bytes = content.getBytes(UTF_8);
+    final ByteBuffer frame = ByteBuffer.allocate(LogReader.HEADER_SIZE + bytes.length);
+    frame.put((byte) stream.id());
+    frame.position(LogReader.FRAME_SIZE_OFFSET);
+    frame.putInt(bytes.length);
+    frame.put(bytes);
+    return frame.array();
+  }
+
+  private static List<String> readLines(final InputStream stream) throws Exception {
+    final List<String> lines = new ArrayList<>();
+    try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, UTF_8))) {
+      for (String line; (line = reader.readLine()) != null; ) {
+        lines.add(line);
+      }
+    }
+    return lines;
+  }
+
+  @Test
+  public void testTransferToFiles() throws Exception {
+    // Larger than the chunks frames are transferred in
+    final String large = Strings.repeat("0123456789abcdef", 10000) + "\n";
+    final byte[] log = Bytes.concat(frame(STDOUT, "one\n"),
+                                    frame(STDERR, "oops\n"),
+                                    frame(STDIN, "ignored\n"),
+                                    frame(STDOUT, large));
+    final File out = folder.newFile();
+    final File err = folder.newFile();
+    Files.write(out.toPath(), "existing\n".getBytes(UTF_8));
+
+    final long transferred;
+    try (LogStream stream = new LogStream(new ByteArrayInputStream(log));
+         FileChannel outChannel = new RandomAccessFile(out, "rw").getChannel();
+         FileChannel errChannel = new RandomAccessFile(err, "rw").getChannel()) {
+      outChannel.position(outChannel.size());
+      transferred = stream.transferTo(outChannel, errChannel);
+      assertThat(outChannel.position(), equalTo(outChannel.size()));
+      assertThat(errChannel.position(), equalTo(5L));
+    }
+
+    assertThat(transferred, equalTo(4L + 5L + large.length()));
+    assertThat(new String(Files.readAllBytes(out.toPath()), UTF_8),
+               equalTo("existing\none\n" + large));
+    assertThat(new String(Files.readAllBytes(err.toPath()), UTF_8), equalTo("oops\n"));
+  }
+
+  @Test
+  public void testTransferToSameFile() throws Exception {
+    final byte[] log = Bytes.concat(frame(STDOUT, "one\n"),
+                                    frame(STDERR, "two\n"),
+                                    frame(STDOUT, "three\n"));
+    final File file = folder.newFile();
+
+    try (LogStream stream = new LogStream(new ByteArrayInputStream(log));
+         FileChannel channel = new RandomAccessFile(file, "rw").getChannel()) {
+      stream.transferTo(channel, channel);
+    }
+
+    assertThat(new String(Files.readAllBytes(file.toPath()), UTF_8), equalTo("one\ntwo\nthree\n"));
+  }
+
+  @Test
+  public void testTransferToStreams() throws Exception {
+    final byte[] log = Bytes.concat(frame(STDOUT, "one\n"),
+                                    frame(STDERR, "two\n"));
+    final ByteArrayOutputStream out = new ByteArrayOutputStream();
+    final ByteArrayOutputStream err = new ByteArrayOutputStream();
+
+    try (LogStream stream = new LogStream(new ByteArrayInputStream(log))) {
+      stream.transferTo(Channels.newChannel(out), Channels.newChannel(err));
+    }
+
+    assertThat(out.toString("UTF-8"), equalTo("one\n"));
+    assertThat(err.toString("UTF-8"), equalTo("two\n"));
+  }
+
+  @Test
+  public void testSplitWithOneStreamClosed() throws Exception {
+    final byte[] log = Bytes.concat(frame(STDOUT, "one\n"),
+                                    frame(STDERR, "ignored\n"),
+                                    frame(STDOUT, "two\n"));
+
+    try (LogStream stream = new LogStream(new ByteArrayInputStream(log))) {
+      stream.stderrStream().close();
+      assertThat(readLines(stream.stdoutStream()), contains("one", "two"));
+    }
+  }
+
+  @Test
+  public void testSplitReadConcurrently() throws Exception {
+    final List<byte[]> frames = new ArrayList<>();
+    for (int i = 0; i < 1000; i++) {
+      frames.add(frame(i % 3 == 0 ? STDERR : STDOUT, "line " + i + "\n"));
+    }
+    final byte[] log = Bytes.concat(frames.toArray(new byte[frames.size()][]));
+
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try (LogStream stream = new LogStream(new ByteArrayInputStream(log))) {
+      // A small limit, so that both readers have to wait for each other
+      final LogDemultiplexer demultiplexer = new LogDemultiplexer(stream, 16);
+      final Future<List<String>> stderr = executor.submit(new Callable<List<String>>() {
+        @Override
+        public List<String> call() throws Exception {
+          return readLines(demultiplexer.stderr());
+        }
+      });
+      final List<String> stdout = readLines(demultiplexer.stdout());
+
+      final List<String> expectedStdout = new ArrayList<>();
+      final List<String> expectedStderr = new ArrayList<>();
+      for (int i = 0; i < 1000; i++) {
+        (i % 3 == 0 ? expectedStderr : expectedStdout).add("line " + i);
+      }
+      assertThat(stdout, equalTo(expectedStdout));
+      assertThat(stderr.get(10, SECONDS), equalTo(expectedStderr));
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testSplitAfterIterating() throws Exception {
+    final byte[] log = Bytes.concat(frame(STDOUT, "one\n"), frame(STDOUT, "two\n"));
+
+    try (LogStream stream = new LogStream(new ByteArrayInputStream(log))) {
+      stream.next();
+      exception.expect(IllegalStateException.class);
+      stream.stdoutStream();
+    }
+  }
+}
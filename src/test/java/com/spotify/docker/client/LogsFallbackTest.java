@@ -0,0 +1,103 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import com.google.common.primitives.Bytes;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.spotify.docker.client.LogMessage.Stream.STDERR;
+import static com.spotify.docker.client.LogMessage.Stream.STDOUT;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class LogsFallbackTest {
+
+  private static final byte[] LOG = Bytes.concat(
+      frame(STDOUT, "2015-03-01T10:00:00.000000000Z one\n"),
+      frame(STDERR, "2015-03-01T10:00:01.000000000Z two\n"),
+      frame(STDOUT, "2015-03-01T10:00:02.500000000Z three\n"),
+      frame(STDOUT, "2015-03-01T10:00:03.000000000Z four\n"));
+
+  // 2015-03-01T10:00:01Z
+  private static final long SINCE_MILLIS = 1425204001000L;
+
+  private static byte[] frame(final LogMessage.Stream stream, final String content) {
+    final byte[] bytes = content.getBytes(UTF_8);
+    final ByteBuffer frame = ByteBuffer.allocate(LogReader.HEADER_SIZE + bytes.length);
+    frame.put((byte) stream.id());
+    frame.position(LogReader.FRAME_SIZE_OFFSET);
+    frame.putInt(bytes.length);
+    frame.put(bytes);
+    return frame.array();
+  }
+
+  private static List<String> read(final LogsFallback fallback) throws IOException {
+    final List<String> messages = new ArrayList<>();
+    try (LogReader reader = new LogReader(new ByteArrayInputStream(LOG))) {
+      for (LogMessage message; (message = fallback.next(reader)) != null; ) {
+        messages.add(message.stream() + ":" + UTF_8.decode(message.content()));
+      }
+    }
+    return messages;
+  }
+
+  @Test
+  public void testTail() throws Exception {
+    assertThat(read(new LogsFallback(2, -1, false)),
+               contains("STDOUT:2015-03-01T10:00:02.500000000Z three\n",
+                        "STDOUT:2015-03-01T10:00:03.000000000Z four\n"));
+  }
+
+  @Test
+  public void testTailLongerThanLog() throws Exception {
+    assertThat(read(new LogsFallback(10, -1, false)).size(), is(4));
+  }
+
+  @Test
+  public void testTailZero() throws Exception {
+    assertThat(read(new LogsFallback(0, -1, false)), empty());
+  }
+
+  @Test
+  public void testSince() throws Exception {
+    assertThat(read(new LogsFallback(-1, SINCE_MILLIS, false)),
+               contains("STDERR:2015-03-01T10:00:01.000000000Z two\n",
+                        "STDOUT:2015-03-01T10:00:02.500000000Z three\n",
+                        "STDOUT:2015-03-01T10:00:03.000000000Z four\n"));
+  }
+
+  @Test
+  public void testSinceAndTailStripTimestamps() throws Exception {
+    assertThat(read(new LogsFallback(2, SINCE_MILLIS + 1, true)),
+               contains("STDOUT:three\n", "STDOUT:four\n"));
+  }
+}
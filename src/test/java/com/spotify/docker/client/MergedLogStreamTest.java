@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import com.google.common.primitives.Bytes;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.spotify.docker.client.LogMessage.Stream.STDERR;
+import static com.spotify.docker.client.LogMessage.Stream.STDOUT;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.contains;
+import static org.junit.Assert.assertThat;
+
+public class MergedLogStreamTest {
+
+  private static byte[] frame(final LogMessage.Stream stream, final String content) {
+    final byte[] bytes = content.getBytes(UTF_8);
+    final ByteBuffer frame = ByteBuffer.allocate(LogReader.HEADER_SIZE + bytes.length);
+    frame.put((byte) stream.id());
+    frame.position(LogReader.FRAME_SIZE_OFFSET);
+    frame.putInt(bytes.length);
+    frame.put(bytes);
+    return frame.array();
+  }
+
+  private static LogStream log(final byte[]... frames) {
+    return new LogStream(new ByteArrayInputStream(Bytes.concat(frames)));
+  }
+
+  @Test
+  public void testMerge() throws Exception {
+    final Map<String, LogStream> logs = new LinkedHashMap<>();
+    logs.put("a", log(frame(STDOUT, "2015-03-01T10:00:00.000000001Z a1\n"),
+                      frame(STDERR, "2015-03-01T10:00:00.000000003Z a2\n"),
+                      frame(STDOUT, "2015-03-01T10:00:02Z a3\n")));
+    logs.put("b", log(frame(STDOUT, "2015-03-01T10:00:00.000000002Z b1\n"),
+                      frame(STDOUT, "2015-03-01T10:00:00.000000003Z b2\n"),
+                      frame(STDOUT, "no timestamp\n")));
+    logs.put("c", log());
+
+    final List<String> messages = new ArrayList<>();
+    try (MergedLogStream merged = new MergedLogStream(logs)) {
+      while (merged.hasNext()) {
+        final MergedLogMessage message = merged.next();
+        messages.add(message.containerId() + ":" + message.stream() + ":"
+                     + message.timestamp().nano() + ":" + UTF_8.decode(message.content()));
+      }
+    }
+
+    // Equal timestamps come in the order of the map, and a message without a timestamp has the
+    // one of the message before it.
+    assertThat(messages, contains("a:STDOUT:1:a1\n",
+                                  "b:STDOUT:2:b1\n",
+                                  "a:STDERR:3:a2\n",
+                                  "b:STDOUT:3:b2\n",
+                                  "b:STDOUT:3:no timestamp\n",
+                                  "a:STDOUT:0:a3\n"));
+  }
+}
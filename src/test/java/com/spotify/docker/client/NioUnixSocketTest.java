@@ -0,0 +1,202 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import com.google.common.util.concurrent.SettableFuture;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import jnr.unixsocket.UnixServerSocketChannel;
+import jnr.unixsocket.UnixSocketAddress;
+import jnr.unixsocket.UnixSocketChannel;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.Matchers.anyOf;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class NioUnixSocketTest {
+
+  private File socketFile;
+  private UnixServerSocketChannel server;
+  private final List<UnixSocketChannel> connections = new ArrayList<>();
+
+  @Before
+  public void setUp() throws Exception {
+    Assume.assumeTrue(NioUnixSocket.isSupported());
+    socketFile = new File(Files.createTempDirectory("docker-client-test").toFile(), "sock");
+    server = UnixServerSocketChannel.open();
+    server.socket().bind(new UnixSocketAddress(socketFile));
+    // Echoes the first message of every connection and then stays silent
+    final Thread thread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          while (true) {
+            final UnixSocketChannel channel = server.accept();
+            synchronized (connections) {
+              connections.add(channel);
+            }
+            final ByteBuffer buffer = ByteBuffer.allocate(8192);
+            channel.read(buffer);
+            buffer.flip();
+            channel.write(buffer);
+          }
+        } catch (IOException ignored) {
+          // closed by tearDown
+        }
+      }
+    });
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (server == null) {
+      return;
+    }
+    server.close();
+    synchronized (connections) {
+      for (final UnixSocketChannel channel : connections) {
+        channel.close();
+      }
+    }
+    socketFile.delete();
+    socketFile.getParentFile().delete();
+  }
+
+  private NioUnixSocket connect(final boolean blocking) throws IOException {
+    final NioUnixSocket socket = new NioUnixSocket(blocking);
+    socket.connect(socketFile, 1000);
+    return socket;
+  }
+
+  private static String echo(final NioUnixSocket socket, final String message)
+      throws IOException {
+    socket.getOutputStream().write(message.getBytes(UTF_8));
+    final byte[] buffer = new byte[message.length()];
+    int read = 0;
+    while (read < buffer.length) {
+      read += socket.getInputStream().read(buffer, read, buffer.length - read);
+    }
+    return new String(buffer, UTF_8);
+  }
+
+  private static void assertReadTimesOut(final NioUnixSocket socket) throws IOException {
+    socket.setSoTimeout(200);
+    try {
+      socket.getInputStream().read();
+      fail("read should have timed out");
+    } catch (SocketTimeoutException expected) {
+      // the server doesn't send anything else
+    }
+  }
+
+  private static void assertReadInterruptible(final NioUnixSocket socket) throws Exception {
+    final SettableFuture<Throwable> thrown = SettableFuture.create();
+    final Thread reader = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          socket.getInputStream().read();
+          thrown.set(null);
+        } catch (Throwable t) {
+          thrown.set(t);
+        }
+      }
+    });
+    reader.start();
+    Thread.sleep(100);
+    reader.interrupt();
+    assertThat(thrown.get(10, SECONDS), anyOf(instanceOf(InterruptedIOException.class),
+                                              instanceOf(ClosedByInterruptException.class)));
+  }
+
+  @Test
+  public void testSelectorEcho() throws Exception {
+    try (NioUnixSocket socket = connect(false)) {
+      assertThat(echo(socket, "hello"), equalTo("hello"));
+    }
+  }
+
+  @Test
+  public void testBlockingEcho() throws Exception {
+    try (NioUnixSocket socket = connect(true)) {
+      socket.setSoTimeout(1000);
+      assertThat(echo(socket, "hello"), equalTo("hello"));
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testSelectorReadTimeout() throws Exception {
+    try (NioUnixSocket socket = connect(false)) {
+      assertReadTimesOut(socket);
+      assertThat(socket.isClosed(), is(false));
+    }
+  }
+
+  @Test(timeout = 10000)
+  public void testBlockingReadTimeout() throws Exception {
+    try (NioUnixSocket socket = connect(true)) {
+      assertReadTimesOut(socket);
+      // The expired timeout closed the channel
+      assertThat(socket.isClosed(), is(true));
+    }
+  }
+
+  @Test(timeout = 20000)
+  public void testSelectorReadInterruptible() throws Exception {
+    try (NioUnixSocket socket = connect(false)) {
+      assertReadInterruptible(socket);
+    }
+  }
+
+  @Test(timeout = 20000)
+  public void testBlockingReadInterruptible() throws Exception {
+    try (NioUnixSocket socket = connect(true)) {
+      assertReadInterruptible(socket);
+    }
+  }
+
+  @Test
+  public void testPlatformThreadIsNotVirtual() throws Exception {
+    assertThat(NioUnixSocket.isVirtual(Thread.currentThread()), is(false));
+  }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import com.google.common.io.ByteStreams;
+
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Compares compressing a synthetic build context of {@code contextMegabytes} MiB with a
+ * {@link GzipCompressorOutputStream}, as {@link CompressedDirectory} does by default, and with
+ * a {@link ParallelGzipOutputStream} on {@code threads} threads. The context is a mix of source
+ * like text and incompressible noise, written in 8 KiB pieces the way a tar stream is, and the
+ * compressed output is discarded. Pass {@code -p contextMegabytes=2048} for a 2 GiB context;
+ * the default keeps a run short.
+ *
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.spotify.docker.client.ParallelGzipBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 1)
+@Fork(1)
+public class ParallelGzipBenchmark {
+
+  private static final int SOURCE_SIZE = 8 * 1024 * 1024;
+  private static final int WRITE_SIZE = 8 * 1024;
+
+  @Param({"256"})
+  public int contextMegabytes;
+
+  @Param({"1", "2", "4", "8"})
+  public int threads;
+
+  private byte[] source;
+  private ForkJoinPool pool;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    final Random random = new Random(0);
+    source = new byte[SOURCE_SIZE];
+    int off = 0;
+    while (off < SOURCE_SIZE) {
+      final byte[] piece;
+      if (random.nextInt(10) == 0) {
+        piece = new byte[random.nextInt(16 * 1024)];
+        random.nextBytes(piece);
+      } else {
+        piece = ("  private static final int FIELD_" + random.nextInt(1000) + " = "
+                 + random.nextInt() + ";\n").getBytes(UTF_8);
+      }
+      final int n = Math.min(piece.length, SOURCE_SIZE - off);
+      System.arraycopy(piece, 0, source, off, n);
+      off += n;
+    }
+    pool = new ForkJoinPool(threads);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    pool.shutdown();
+  }
+
+  private void writeContext(final OutputStream out) throws IOException {
+    final long size = contextMegabytes * 1024L * 1024L;
+    for (long written = 0; written < size; written += WRITE_SIZE) {
+      out.write(source, (int) (written % SOURCE_SIZE), WRITE_SIZE);
+    }
+  }
+
+  @Benchmark
+  public void gzipCompressorOutputStream() throws IOException {
+    try (OutputStream out = new GzipCompressorOutputStream(ByteStreams.nullOutputStream())) {
+      writeContext(out);
+    }
+  }
+
+  @Benchmark
+  public void parallelGzipOutputStream() throws IOException {
+    try (OutputStream out = new ParallelGzipOutputStream(ByteStreams.nullOutputStream(), pool,
+                                                         Deflater.DEFAULT_COMPRESSION)) {
+      writeContext(out);
+    }
+  }
+
+  public static void main(final String... args) throws Exception {
+    new Runner(new OptionsBuilder()
+                   .include(ParallelGzipBenchmark.class.getSimpleName())
+                   .build()).run();
+  }
+}
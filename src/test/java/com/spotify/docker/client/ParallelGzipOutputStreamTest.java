@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import com.google.common.io.ByteStreams;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.junit.Assert.assertThat;
+
+public class ParallelGzipOutputStreamTest {
+
+  private final ForkJoinPool pool = new ForkJoinPool(3);
+
+  @After
+  public void tearDown() {
+    pool.shutdown();
+  }
+
+  private byte[] compress(final byte[] data, final int writeSize) throws Exception {
+    final ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+    try (OutputStream out = new ParallelGzipOutputStream(compressed, pool,
+                                                         Deflater.DEFAULT_COMPRESSION)) {
+      for (int off = 0; off < data.length; off += writeSize) {
+        out.write(data, off, Math.min(writeSize, data.length - off));
+      }
+    }
+    return compressed.toByteArray();
+  }
+
+  private static byte[] decompress(final byte[] compressed) throws Exception {
+    try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+      return ByteStreams.toByteArray(in);
+    }
+  }
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    // Several blocks of mixed text and noise, and a partial block at the end
+    final Random random = new Random(0);
+    final ByteArrayOutputStream data = new ByteArrayOutputStream();
+    while (data.size() < 10 * ParallelGzipOutputStream.BLOCK_SIZE + 1234) {
+      data.write(("line " + random.nextInt(100) + " of some build context\n").getBytes(UTF_8));
+      if (random.nextInt(50) == 0) {
+        final byte[] noise = new byte[random.nextInt(4096)];
+        random.nextBytes(noise);
+        data.write(noise);
+      }
+    }
+    final byte[] bytes = data.toByteArray();
+
+    assertThat(decompress(compress(bytes, 1000)), equalTo(bytes));
+    assertThat(decompress(compress(bytes, 1 << 20)), equalTo(bytes));
+  }
+
+  @Test
+  public void testEmpty() throws Exception {
+    assertThat(decompress(compress(new byte[0], 1)), equalTo(new byte[0]));
+  }
+
+  @Test
+  public void testDictionaryKeepsRatio() throws Exception {
+    // Each block repeats what the one before it ends with, which only a primed deflater sees
+    final byte[] pattern = new byte[16 * 1024];
+    new Random(0).nextBytes(pattern);
+    final byte[] bytes = new byte[8 * ParallelGzipOutputStream.BLOCK_SIZE];
+    for (int off = 0; off < bytes.length; off += pattern.length) {
+      System.arraycopy(pattern, 0, bytes, off, pattern.length);
+    }
+
+    final ByteArrayOutputStream single = new ByteArrayOutputStream();
+    try (GZIPOutputStream out = new GZIPOutputStream(single)) {
+      out.write(bytes);
+    }
+
+    final byte[] parallel = compress(bytes, 1 << 20);
+    assertThat(decompress(parallel), equalTo(bytes));
+    assertThat(parallel.length, lessThan(single.size() + 8 * 1024));
+  }
+}
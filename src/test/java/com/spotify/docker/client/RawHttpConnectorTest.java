@@ -0,0 +1,333 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.glassfish.jersey.client.ClientConfig;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.core.Response;
+
+import static java.nio.charset.StandardCharsets.ISO_8859_1;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class RawHttpConnectorTest {
+
+  private static final String OK = "HTTP/1.1 200 OK\r\nContent-Length: 2\r\n\r\nok";
+
+  /**
+   * Answers a request, or returns false to close the connection without answering it.
+   */
+  private interface Handler {
+
+    boolean handle(int connection, int request, String requestLine, OutputStream out)
+        throws IOException;
+  }
+
+  private ServerSocket server;
+  private URI uri;
+  private HttpConnectionPool pool;
+  private Client client;
+  private volatile Handler handler;
+
+  private final AtomicInteger connections = new AtomicInteger();
+  private final List<String> requests = new ArrayList<>();
+  private final List<Socket> sockets = new ArrayList<>();
+
+  @Before
+  public void setUp() throws Exception {
+    server = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+    uri = URI.create("http://127.0.0.1:" + server.getLocalPort());
+    final Thread acceptor = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          while (true) {
+            final Socket socket = server.accept();
+            synchronized (sockets) {
+              sockets.add(socket);
+            }
+            final int connection = connections.getAndIncrement();
+            final Thread thread = new Thread(new Runnable() {
+              @Override
+              public void run() {
+                serve(connection, socket);
+              }
+            });
+            thread.setDaemon(true);
+            thread.start();
+          }
+        } catch (IOException ignored) {
+          // closed by tearDown
+        }
+      }
+    });
+    acceptor.setDaemon(true);
+    acceptor.start();
+
+    pool = new HttpConnectionPool(uri, RegistryBuilder.<ConnectionSocketFactory>create()
+        .register("http", PlainConnectionSocketFactory.INSTANCE)
+        .build(), 4);
+    client = ClientBuilder.newClient(
+        new ClientConfig().connectorProvider(new RawHttpConnectorProvider(pool, 1000)));
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    client.close();
+    server.close();
+    synchronized (sockets) {
+      for (final Socket socket : sockets) {
+        socket.close();
+      }
+    }
+  }
+
+  private void serve(final int connection, final Socket socket) {
+    try (Socket ignored = socket) {
+      final InputStream in = new BufferedInputStream(socket.getInputStream());
+      final OutputStream out = socket.getOutputStream();
+      for (int request = 0; ; request++) {
+        final String requestLine = readLine(in);
+        if (requestLine == null) {
+          return;
+        }
+        int contentLength = 0;
+        for (String header; !(header = readLine(in)).isEmpty(); ) {
+          if (header.toLowerCase().startsWith("content-length:")) {
+            contentLength = Integer.parseInt(header.substring(15).trim());
+          }
+        }
+        for (int i = 0; i < contentLength; i++) {
+          in.read();
+        }
+        synchronized (requests) {
+          requests.add(requestLine);
+        }
+        if (!handler.handle(connection, request, requestLine, out)) {
+          return;
+        }
+        out.flush();
+      }
+    } catch (IOException ignored) {
+      // the client went away
+    }
+  }
+
+  private static String readLine(final InputStream in) throws IOException {
+    final StringBuilder line = new StringBuilder();
+    for (int b; (b = in.read()) != '\n'; ) {
+      if (b == -1) {
+        return line.length() == 0 ? null : line.toString();
+      }
+      if (b != '\r') {
+        line.append((char) b);
+      }
+    }
+    return line.toString();
+  }
+
+  private static void write(final OutputStream out, final String response) throws IOException {
+    out.write(response.getBytes(ISO_8859_1));
+  }
+
+  private Response get(final String path) {
+    return client.target(uri).path(path).request().get();
+  }
+
+  private List<String> requests() {
+    synchronized (requests) {
+      return new ArrayList<>(requests);
+    }
+  }
+
+  @Test
+  public void testChunkedResponse() throws Exception {
+    handler = new Handler() {
+      @Override
+      public boolean handle(final int connection, final int request, final String requestLine,
+                            final OutputStream out) throws IOException {
+        write(out, "HTTP/1.1 200 OK\r\nTransfer-Encoding: Chunked\r\n\r\n"
+                   + "5\r\nhello\r\n"
+                   + "6;name=value\r\n world\r\n"
+                   + "0\r\nTrailer: ignored\r\n\r\n");
+        return true;
+      }
+    };
+
+    assertThat(get("chunked").readEntity(String.class), equalTo("hello world"));
+    // The whole body was read, so the connection is reused
+    assertThat(get("chunked").readEntity(String.class), equalTo("hello world"));
+    assertThat(connections.get(), is(1));
+  }
+
+  @Test
+  public void testKeepAliveReuse() throws Exception {
+    handler = new Handler() {
+      @Override
+      public boolean handle(final int connection, final int request, final String requestLine,
+                            final OutputStream out) throws IOException {
+        write(out, OK);
+        return true;
+      }
+    };
+
+    for (int i = 0; i < 3; i++) {
+      assertThat(get("ping").readEntity(String.class), equalTo("ok"));
+    }
+    assertThat(connections.get(), is(1));
+    assertThat(requests().size(), is(3));
+  }
+
+  @Test
+  public void testConnectionCloseIsNotReused() throws Exception {
+    handler = new Handler() {
+      @Override
+      public boolean handle(final int connection, final int request, final String requestLine,
+                            final OutputStream out) throws IOException {
+        write(out, "HTTP/1.1 200 OK\r\nConnection: close\r\nContent-Length: 2\r\n\r\nok");
+        return false;
+      }
+    };
+
+    assertThat(get("ping").readEntity(String.class), equalTo("ok"));
+    assertThat(get("ping").readEntity(String.class), equalTo("ok"));
+    assertThat(connections.get(), is(2));
+  }
+
+  @Test
+  public void testEvictsStaleIdleConnection() throws Exception {
+    handler = new Handler() {
+      @Override
+      public boolean handle(final int connection, final int request, final String requestLine,
+                            final OutputStream out) throws IOException {
+        write(out, OK);
+        out.flush();
+        // Close the kept-alive connection while it's idle in the pool
+        return false;
+      }
+    };
+
+    assertThat(get("ping").readEntity(String.class), equalTo("ok"));
+    // Idle connections are only validated after a while
+    Thread.sleep(2500);
+
+    final HttpConnection connection = pool.lease(1000, 1000);
+    try {
+      assertThat(connection.isReused(), is(false));
+    } finally {
+      pool.release(connection, false);
+    }
+    assertThat(connections.get(), is(2));
+  }
+
+  /**
+   * Answers the first request on the first connection, drops the second one without a response
+   * byte and answers everything on later connections.
+   */
+  private class DropSecondRequest implements Handler {
+
+    @Override
+    public boolean handle(final int connection, final int request, final String requestLine,
+                          final OutputStream out) throws IOException {
+      if (connection == 0 && request == 1) {
+        return false;
+      }
+      write(out, OK);
+      return true;
+    }
+  }
+
+  @Test
+  public void testReplaysGetOnDroppedKeepAlive() throws Exception {
+    handler = new DropSecondRequest();
+
+    assertThat(get("first").readEntity(String.class), equalTo("ok"));
+    assertThat(get("second").readEntity(String.class), equalTo("ok"));
+    assertThat(requests(), contains("GET /first HTTP/1.1", "GET /second HTTP/1.1",
+                                    "GET /second HTTP/1.1"));
+  }
+
+  @Test
+  public void testDoesNotReplayPost() throws Exception {
+    handler = new DropSecondRequest();
+
+    assertThat(get("first").readEntity(String.class), equalTo("ok"));
+    try {
+      client.target(uri).path("kill").request().method("POST");
+      fail("POST should not have been replayed");
+    } catch (ProcessingException expected) {
+      // the daemon may already have acted on it
+    }
+    assertThat(requests(), contains("GET /first HTTP/1.1", "POST /kill HTTP/1.1"));
+  }
+
+  @Test
+  public void testDoesNotReplayAfterResponseBytes() throws Exception {
+    handler = new Handler() {
+      @Override
+      public boolean handle(final int connection, final int request, final String requestLine,
+                            final OutputStream out) throws IOException {
+        if (request == 0) {
+          write(out, OK);
+          return true;
+        }
+        // A status line, then nothing
+        write(out, "HTTP/1.1 200 OK\r\n");
+        out.flush();
+        return false;
+      }
+    };
+
+    assertThat(get("first").readEntity(String.class), equalTo("ok"));
+    try {
+      get("second");
+      fail("GET should not have been replayed after part of a response");
+    } catch (ProcessingException expected) {
+      // the response was cut short
+    }
+    assertThat(requests(), contains("GET /first HTTP/1.1", "GET /second HTTP/1.1"));
+  }
+}
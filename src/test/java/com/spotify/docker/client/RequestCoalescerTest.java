@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import com.google.common.base.Supplier;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+import org.junit.Test;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class RequestCoalescerTest {
+
+  private final RequestCoalescer sut = new RequestCoalescer();
+
+  private final AtomicInteger requests = new AtomicInteger();
+
+  private SettableFuture<String> response = SettableFuture.create();
+
+  private final Supplier<ListenableFuture<String>> request =
+      new Supplier<ListenableFuture<String>>() {
+        @Override
+        public ListenableFuture<String> get() {
+          requests.incrementAndGet();
+          return response;
+        }
+      };
+
+  @Test
+  public void testConcurrentCallsShareRequest() throws Exception {
+    final ListenableFuture<String> first = sut.coalesce("GET /foo", request);
+    final ListenableFuture<String> second = sut.coalesce("GET /foo", request);
+
+    response.set("foo");
+
+    assertThat(first.get(), is("foo"));
+    assertThat(second.get(), is("foo"));
+    assertThat(requests.get(), is(1));
+    assertThat(sut.coalescedRequests(), is(1L));
+  }
+
+  @Test
+  public void testDifferentKeysDoNotShareRequest() throws Exception {
+    sut.coalesce("GET /foo", request);
+    sut.coalesce("GET /bar", request);
+
+    assertThat(requests.get(), is(2));
+    assertThat(sut.coalescedRequests(), is(0L));
+  }
+
+  @Test
+  public void testCompletedRequestIsNotReused() throws Exception {
+    sut.coalesce("GET /foo", request);
+    response.set("foo");
+
+    response = SettableFuture.create();
+    final ListenableFuture<String> second = sut.coalesce("GET /foo", request);
+    response.set("bar");
+
+    assertThat(second.get(), equalTo("bar"));
+    assertThat(requests.get(), is(2));
+  }
+
+  @Test
+  public void testFailureIsShared() throws Exception {
+    final ListenableFuture<String> first = sut.coalesce("GET /foo", request);
+    final ListenableFuture<String> second = sut.coalesce("GET /foo", request);
+
+    response.setException(new DockerException("failed"));
+
+    for (final ListenableFuture<String> future : new ListenableFuture[]{first, second}) {
+      try {
+        future.get();
+        fail();
+      } catch (ExecutionException e) {
+        assertThat(e.getCause(), instanceOf(DockerException.class));
+      }
+    }
+  }
+
+  @Test
+  public void testCancellingOneCallerDoesNotCancelOthers() throws Exception {
+    final ListenableFuture<String> first = sut.coalesce("GET /foo", request);
+    final ListenableFuture<String> second = sut.coalesce("GET /foo", request);
+
+    first.cancel(true);
+    response.set("foo");
+
+    assertThat(second.get(), is("foo"));
+  }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class StreamCloserTest {
+
+  private final StreamCloser closer = new StreamCloser(100);
+
+  private static Response response(final int length) {
+    final Response.ResponseBuilder builder = Response.ok();
+    if (length >= 0) {
+      builder.header(HttpHeaders.CONTENT_LENGTH, length);
+    }
+    return builder.build();
+  }
+
+  @Test
+  public void testDrainsSmallRemainder() throws Exception {
+    final ByteArrayInputStream body = new ByteArrayInputStream(new byte[150]);
+    final ResponseStream stream = new ResponseStream(body);
+    stream.attach(response(150), null, closer);
+    stream.read(new byte[100]);
+
+    stream.close();
+
+    assertThat(body.available(), equalTo(0));
+    assertThat(closer.drainedStreams(), equalTo(1L));
+    assertThat(closer.abortedStreams(), equalTo(0L));
+  }
+
+  @Test
+  public void testAbortsLargeRemainder() throws Exception {
+    final ByteArrayInputStream body = new ByteArrayInputStream(new byte[150]);
+    final ResponseStream stream = new ResponseStream(body);
+    stream.attach(response(150), null, closer);
+    stream.read(new byte[10]);
+
+    stream.close();
+
+    assertThat(body.available(), equalTo(140));
+    assertThat(closer.drainedStreams(), equalTo(0L));
+    assertThat(closer.abortedStreams(), equalTo(1L));
+  }
+
+  @Test
+  public void testAbortsUnknownRemainder() throws Exception {
+    final ByteArrayInputStream body = new ByteArrayInputStream(new byte[10]);
+    final ResponseStream stream = new ResponseStream(body);
+    stream.attach(response(-1), null, closer);
+
+    stream.close();
+
+    assertThat(body.available(), equalTo(10));
+    assertThat(closer.abortedStreams(), equalTo(1L));
+  }
+
+  @Test
+  public void testNothingToDoAtEnd() throws Exception {
+    final ResponseStream stream = new ResponseStream(new ByteArrayInputStream(new byte[10]));
+    stream.attach(response(-1), null, closer);
+    while (stream.read() != -1) {
+      // read to the end
+    }
+
+    stream.close();
+
+    assertThat(closer.drainedStreams(), equalTo(0L));
+    assertThat(closer.abortedStreams(), equalTo(0L));
+  }
+}
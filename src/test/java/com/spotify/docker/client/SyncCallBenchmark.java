@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import com.spotify.docker.client.messages.ContainerInfo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of {@code ping()} and {@code inspectContainer()} against a
+ * {@link FakeDockerDaemon}, either sent on the calling thread as the blocking client does, or
+ * handed to the request executor and waited for, as the blocking client used to do and as
+ * {@link DefaultDockerClient#async()} still does.
+ *
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.spotify.docker.client.SyncCallBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SyncCallBenchmark {
+
+  @Param({"callerThread", "asyncExecutor"})
+  public String dispatch;
+
+  @Param({"apache", "raw"})
+  public String connector;
+
+  private ExecutorService executor;
+  private FakeDockerDaemon daemon;
+  private DefaultDockerClient client;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    executor = Executors.newCachedThreadPool();
+    daemon = new FakeDockerDaemon(executor, 0, 0);
+    client = DefaultDockerClient.builder()
+        .uri(daemon.uri())
+        .rawHttpConnector(connector.equals("raw"))
+        .build();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    client.close();
+    daemon.close();
+    executor.shutdownNow();
+  }
+
+  @Benchmark
+  public String ping() throws Exception {
+    return dispatch.equals("callerThread") ? client.ping() : client.async().ping().get();
+  }
+
+  @Benchmark
+  public ContainerInfo inspectContainer() throws Exception {
+    return dispatch.equals("callerThread") ? client.inspectContainer("fake")
+                                           : client.async().inspectContainer("fake").get();
+  }
+
+  public static void main(final String... args) throws Exception {
+    new Runner(new OptionsBuilder()
+                   .include(SyncCallBenchmark.class.getSimpleName())
+                   .build()).run();
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import com.google.common.util.concurrent.SettableFuture;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import jnr.unixsocket.UnixServerSocketChannel;
+import jnr.unixsocket.UnixSocketAddress;
+import jnr.unixsocket.UnixSocketChannel;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class SyncInterruptTest {
+
+  private File socketFile;
+  private UnixServerSocketChannel server;
+  private Thread serverThread;
+  private final CountDownLatch received = new CountDownLatch(1);
+  private final List<UnixSocketChannel> connections = new ArrayList<>();
+
+  @Before
+  public void setUp() throws Exception {
+    socketFile = new File(Files.createTempDirectory("docker-client-test").toFile(), "sock");
+    server = UnixServerSocketChannel.open();
+    server.socket().bind(new UnixSocketAddress(socketFile));
+    // A daemon that reads requests and never answers them, like waitContainer on a container
+    // that keeps running
+    serverThread = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          while (true) {
+            final UnixSocketChannel channel = server.accept();
+            synchronized (connections) {
+              connections.add(channel);
+            }
+            channel.read(ByteBuffer.allocate(8192));
+            received.countDown();
+          }
+        } catch (IOException ignored) {
+          // closed by tearDown
+        }
+      }
+    });
+    serverThread.setDaemon(true);
+    serverThread.start();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    server.close();
+    synchronized (connections) {
+      for (final UnixSocketChannel channel : connections) {
+        channel.close();
+      }
+    }
+    socketFile.delete();
+    socketFile.getParentFile().delete();
+  }
+
+  private void assertInterruptible(final DefaultDockerClient.Builder builder) throws Exception {
+    final SettableFuture<Throwable> thrown = SettableFuture.create();
+    try (final DockerClient docker = builder.uri("unix://" + socketFile.getPath()).build()) {
+      final Thread caller = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            docker.waitContainer("running");
+            thrown.set(null);
+          } catch (Throwable t) {
+            thrown.set(t);
+          }
+        }
+      });
+      caller.start();
+      assertThat(received.await(10, SECONDS), is(true));
+
+      caller.interrupt();
+
+      assertThat(thrown.get(10, SECONDS), instanceOf(InterruptedException.class));
+    }
+  }
+
+  @Test(timeout = 30000)
+  public void testInterruptWaitContainer() throws Exception {
+    assertInterruptible(DefaultDockerClient.builder());
+  }
+
+  @Test(timeout = 30000)
+  public void testInterruptWaitContainerRawConnector() throws Exception {
+    assertInterruptible(DefaultDockerClient.builder().rawHttpConnector(true));
+  }
+
+  @Test
+  public void testInterruptibleSockets() throws Exception {
+    assertThat(DefaultDockerClient.interruptibleSockets(URI.create("http://localhost:2375")),
+               is(true));
+    assertThat(DefaultDockerClient.interruptibleSockets(URI.create("https://localhost:2376")),
+               is(false));
+    assertThat(DefaultDockerClient.interruptibleSockets(URI.create("unix:///var/run/docker.sock")),
+               is(NioUnixSocket.isSupported()));
+  }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client;
+
+import com.spotify.docker.client.messages.ContainerInfo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import jnr.unixsocket.UnixServerSocketChannel;
+import jnr.unixsocket.UnixSocketAddress;
+import jnr.unixsocket.UnixSocketChannel;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Measures the latency of {@code ping()} and {@code inspectContainer()} through the client over
+ * a unix socket, with the jnr-unixsocket based {@link ApacheUnixSocket} and with
+ * {@link NioUnixSocket}. Both go through {@link UnixConnectionSocketFactory} and the Apache
+ * connector. A local server answers like {@link FakeDockerDaemon} on a unix socket, keeping
+ * connections alive.
+ *
+ * Calls over jnr sockets are handed to the async executor, as they are wherever the JDK lacks
+ * unix socket channels, because those sockets ignore interrupts. The difference between the two
+ * therefore includes that hop, which {@link SyncCallBenchmark} measures on its own over TCP.
+ *
+ * Run with {@code mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=com.spotify.docker.client.UnixSocketBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UnixSocketBenchmark {
+
+  @Param({"jnr", "nio"})
+  public String socket;
+
+  private File socketFile;
+  private UnixServerSocketChannel server;
+  private Thread serverThread;
+  private DefaultDockerClient client;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    if (socket.equals("nio") && !NioUnixSocket.isSupported()) {
+      throw new IllegalStateException("Unix domain socket channels are not supported");
+    }
+
+    socketFile = new File(Files.createTempDirectory("docker-client-bench").toFile(), "sock");
+    server = UnixServerSocketChannel.open();
+    server.socket().bind(new UnixSocketAddress(socketFile));
+    serverThread = new Thread(new Server(server));
+    serverThread.setDaemon(true);
+    serverThread.start();
+
+    client = DefaultDockerClient.builder()
+        .uri("unix://" + socketFile.getAbsolutePath())
+        .nioUnixSockets(socket.equals("nio"))
+        .build();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    client.close();
+    server.close();
+    serverThread.interrupt();
+    socketFile.delete();
+    socketFile.getParentFile().delete();
+  }
+
+  @Benchmark
+  public String ping() throws Exception {
+    return client.ping();
+  }
+
+  @Benchmark
+  public ContainerInfo inspectContainer() throws Exception {
+    return client.inspectContainer("fake");
+  }
+
+  public static void main(final String... args) throws Exception {
+    new Runner(new OptionsBuilder()
+                   .include(UnixSocketBenchmark.class.getSimpleName())
+                   .build()).run();
+  }
+
+  /**
+   * Accepts connections and serves each on its own thread.
+   */
+  private static class Server implements Runnable {
+
+    private final UnixServerSocketChannel server;
+
+    Server(final UnixServerSocketChannel server) {
+      this.server = server;
+    }
+
+    @Override
+    public void run() {
+      try {
+        while (true) {
+          final Thread connection = new Thread(new Connection(server.accept()));
+          connection.setDaemon(true);
+          connection.start();
+        }
+      } catch (IOException ignored) {
+        // the benchmark closed the server
+      }
+    }
+  }
+
+  /**
+   * Answers bodiless requests on a kept-alive connection until the client closes it.
+   */
+  private static class Connection implements Runnable {
+
+    private final UnixSocketChannel channel;
+
+    Connection(final UnixSocketChannel channel) {
+      this.channel = channel;
+    }
+
+    @Override
+    public void run() {
+      try (final UnixSocketChannel channel = this.channel) {
+        final InputStream in = new BufferedInputStream(Channels.newInputStream(channel));
+        final OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel));
+        String requestLine;
+        while ((requestLine = readLine(in)) != null) {
+          String header;
+          do {
+            header = readLine(in);
+          } while (header != null && !header.isEmpty());
+
+          final String path = requestLine.split(" ")[1];
+          if (path.endsWith("/_ping")) {
+            respond(out, "text/plain", "OK".getBytes(UTF_8));
+          } else if (path.endsWith("/json")) {
+            respond(out, "application/json", FakeDockerDaemon.CONTAINER_INFO);
+          } else {
+            out.write("HTTP/1.1 404 Not Found\r\nContent-Length: 0\r\n\r\n".getBytes(US_ASCII));
+            out.flush();
+          }
+        }
+      } catch (IOException ignored) {
+        // the client closed the connection
+      }
+    }
+
+    private static void respond(final OutputStream out, final String contentType,
+                                final byte[] body) throws IOException {
+      out.write(("HTTP/1.1 200 OK\r\nContent-Type: " + contentType + "\r\n"
+                 + "Content-Length: " + body.length + "\r\n\r\n").getBytes(US_ASCII));
+      out.write(body);
+      out.flush();
+    }
+
+    /**
+     * Returns the next CRLF terminated line, or null at the end of the stream.
+     */
+    private static String readLine(final InputStream in) throws IOException {
+      final ByteArrayOutputStream line = new ByteArrayOutputStream();
+      int b;
+      while ((b = in.read()) != '\n') {
+        if (b < 0) {
+          return null;
+        }
+        if (b != '\r') {
+          line.write(b);
+        }
+      }
+      return line.toString("US-ASCII");
+    }
+  }
+}
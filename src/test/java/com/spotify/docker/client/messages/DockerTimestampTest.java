@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2014 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.docker.client.messages;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spotify.docker.client.ObjectMapperProvider;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.ExpectedException;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class DockerTimestampTest {
+
+  @Rule
+  public ExpectedException expectedException = ExpectedException.none();
+
+  @Test
+  public void testParse() throws Exception {
+    final DockerTimestamp timestamp = DockerTimestamp.parse("2014-10-17T21:22:56.949763914Z");
+    assertThat(timestamp.epochSecond(), is(1413580976L));
+    assertThat(timestamp.nano(), is(949763914));
+    assertThat(timestamp.toDate(), is(new Date(1413580976949L)));
+    assertThat(timestamp.toString(), is("2014-10-17T21:22:56.949763914Z"));
+  }
+
+  @Test
+  public void testParseShortFractionAndOffset() throws Exception {
+    assertThat(DockerTimestamp.parse("2014-10-17T21:22:56Z"),
+               is(DockerTimestamp.of(1413580976L, 0)));
+    assertThat(DockerTimestamp.parse("2014-10-17T21:22:56.5Z"),
+               is(DockerTimestamp.of(1413580976L, 500000000)));
+    assertThat(DockerTimestamp.parse("2014-10-17T23:22:56.949+02:00"),
+               is(DockerTimestamp.of(1413580976L, 949000000)));
+  }
+
+  @Test
+  public void testParseMatchesSimpleDateFormat() throws Exception {
+    final SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'",
+                                                         Locale.ROOT);
+    format.setTimeZone(TimeZone.getTimeZone("UTC"));
+    final Random random = new Random(0);
+    for (int i = 0; i < 1000; i++) {
+      // From 1583 to 2500
+      final long millis = -12212553600000L + (long) (random.nextDouble() * 4.2e13);
+      final String source = format.format(new Date(millis));
+      assertThat(source, DockerTimestamp.parse(source).toDate().getTime(), equalTo(millis));
+    }
+  }
+
+  @Test
+  public void testParseZeroTime() throws Exception {
+    // Docker's zero time, which GregorianCalendar reads as a Julian date
+    final SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ssX", Locale.ROOT);
+    assertThat(DockerTimestamp.parse("0001-01-01T00:00:00Z").toDate(),
+               is(format.parse("0001-01-01T00:00:00Z")));
+  }
+
+  @Test
+  public void testParseInvalid() throws Exception {
+    expectedException.expect(ParseException.class);
+    DockerTimestamp.parse("2014-02-30T21:22:56Z");
+  }
+
+  @Test
+  public void testParseMissingZone() throws Exception {
+    expectedException.expect(ParseException.class);
+    DockerTimestamp.parse("2014-10-17T21:22:56.949763914");
+  }
+
+  @Test
+  public void testJson() throws Exception {
+    final ObjectMapper objectMapper = new ObjectMapperProvider().getContext(DockerTimestamp.class);
+    final DockerTimestamp timestamp = DockerTimestamp.of(1413580976L, 949763914);
+    final String json = objectMapper.writeValueAsString(timestamp);
+    assertThat(json, is("\"2014-10-17T21:22:56.949763914Z\""));
+    assertThat(objectMapper.readValue(json, DockerTimestamp.class), is(timestamp));
+    assertThat(objectMapper.readValue("1413580976949", DockerTimestamp.class),
+               is(DockerTimestamp.of(1413580976L, 949000000)));
+  }
+}